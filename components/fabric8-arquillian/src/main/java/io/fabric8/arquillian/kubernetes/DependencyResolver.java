@@ -54,12 +54,10 @@ public class DependencyResolver {
             for (File f : files) {
                 if (f.getName().endsWith("jar") && hasKubernetesJson(f)) {
                     Path dir = Files.createTempDirectory(session.getId());
-                    try (FileInputStream fis = new FileInputStream(f); JarInputStream jis = new JarInputStream(fis)) {
-                        Zips.unzip(new FileInputStream(f), dir.toFile());
-                        File jsonPath = dir.resolve(DEFAULT_CONFIG_FILE_NAME).toFile();
-                        if (jsonPath.exists()) {
-                            dependencies.add(jsonPath.toURI().toString());
-                        }
+                    Zips.unzip(f, dir.toFile());
+                    File jsonPath = dir.resolve(DEFAULT_CONFIG_FILE_NAME).toFile();
+                    if (jsonPath.exists()) {
+                        dependencies.add(jsonPath.toURI().toString());
                     }
                 } else if (f.getName().endsWith(".json")) {
                     dependencies.add(f.toURI().toString());
@@ -15,7 +15,7 @@
  */
 package io.fabric8.arquillian.utils;
 
-import io.fabric8.utils.Base64Encoder;
+import io.fabric8.utils.Base64Codec;
 
 import java.security.KeyPairGenerator;
 import java.util.HashMap;
@@ -36,7 +36,7 @@ public enum SecretKeys {
                 KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
                 keyGen.initialize(512);
                 byte[] publicKey = keyGen.genKeyPair().getPublic().getEncoded();
-                return new String(Base64Encoder.encode(publicKey));
+                return Base64Codec.BASIC.encodeToString(publicKey);
             } catch (Throwable t) {
                 throw new RuntimeException(t);
             }
@@ -49,7 +49,7 @@ public enum SecretKeys {
                 KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
                 keyGen.initialize(512);
                 byte[] publicKey = keyGen.genKeyPair().getPublic().getEncoded();
-                return new String(Base64Encoder.encode(publicKey));
+                return Base64Codec.BASIC.encodeToString(publicKey);
             } catch (Throwable t) {
                 throw new RuntimeException(t);
             }
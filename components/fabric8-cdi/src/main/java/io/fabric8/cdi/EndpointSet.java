@@ -0,0 +1,194 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.cdi;
+
+import io.fabric8.kubernetes.api.model.Endpoints;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.utils.Strings;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The live set of endpoint urls of a service, which can be injected with {@link io.fabric8.annotations.ServiceName}.
+ * The urls follow the endpoints of the service as pods come and go, so that the set can be used for client side load balancing
+ * with {@link #next()} (round robin), {@link #random()} or {@link #acquire()} / {@link #release(String)} (least outstanding requests).
+ */
+public class EndpointSet implements Closeable {
+
+    private final EndpointsWatch endpointsWatch;
+    private final String serviceProtocol;
+    private final String servicePort;
+    private final AtomicInteger counter = new AtomicInteger();
+    private final Map<String, AtomicInteger> outstanding = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(null, Collections.<String>emptyList());
+    private volatile boolean closed;
+
+    EndpointSet(EndpointsWatch endpointsWatch, String serviceProtocol, String servicePort) {
+        this.endpointsWatch = endpointsWatch;
+        this.serviceProtocol = Strings.isNullOrBlank(serviceProtocol) ? Services.DEFAULT_PROTO : serviceProtocol;
+        this.servicePort = Strings.isNullOrBlank(servicePort) ? null : servicePort;
+    }
+
+    public static EndpointSet open(String serviceName, String serviceProtocol, String servicePort) {
+        KubernetesClient client = KubernetesHolder.getClient();
+        return open(client, client.getNamespace(), serviceName, serviceProtocol, servicePort);
+    }
+
+    public static EndpointSet open(KubernetesClient client, String namespace, String serviceName, String serviceProtocol, String servicePort) {
+        if (serviceName == null) {
+            throw new IllegalArgumentException("No service id has been specified.");
+        }
+        return new EndpointSet(EndpointsWatch.acquire(client, namespace, serviceName), serviceProtocol, servicePort);
+    }
+
+    public String getNamespace() {
+        return endpointsWatch.getNamespace();
+    }
+
+    public String getServiceName() {
+        return endpointsWatch.getServiceName();
+    }
+
+    /**
+     * Returns the current endpoint urls of the service
+     */
+    public List<String> getEndpoints() {
+        if (closed) {
+            throw new IllegalStateException("Endpoint set of service " + getServiceName() + " has been closed.");
+        }
+        Endpoints endpoints = endpointsWatch.getEndpoints();
+        Snapshot current = snapshot;
+        if (current.endpoints != endpoints) {
+            current = new Snapshot(endpoints, Collections.unmodifiableList(Services.toEndpointUrls(endpoints, serviceProtocol, servicePort)));
+            snapshot = current;
+            outstanding.keySet().retainAll(current.urls);
+        }
+        return current.urls;
+    }
+
+    public boolean isEmpty() {
+        return getEndpoints().isEmpty();
+    }
+
+    /**
+     * Returns the next endpoint url in round robin order or null if the service has no endpoints
+     */
+    public String next() {
+        List<String> urls = getEndpoints();
+        if (urls.isEmpty()) {
+            return null;
+        }
+        return urls.get((counter.getAndIncrement() & Integer.MAX_VALUE) % urls.size());
+    }
+
+    /**
+     * Returns a random endpoint url or null if the service has no endpoints
+     */
+    public String random() {
+        List<String> urls = getEndpoints();
+        if (urls.isEmpty()) {
+            return null;
+        }
+        return urls.get(ThreadLocalRandom.current().nextInt(urls.size()));
+    }
+
+    /**
+     * Returns the endpoint url with the least outstanding requests and counts a new request against it,
+     * which must be completed with {@link #release(String)}. Returns null if the service has no endpoints.
+     */
+    public String acquire() {
+        List<String> urls = getEndpoints();
+        if (urls.isEmpty()) {
+            return null;
+        }
+        //start from a rotating offset so that ties are spread over the endpoints.
+        int start = (counter.getAndIncrement() & Integer.MAX_VALUE) % urls.size();
+        String answer = null;
+        AtomicInteger answerCount = null;
+        for (int i = 0; i < urls.size(); i++) {
+            String url = urls.get((start + i) % urls.size());
+            AtomicInteger count = getOutstandingCounter(url);
+            if (answerCount == null || count.get() < answerCount.get()) {
+                answer = url;
+                answerCount = count;
+            }
+        }
+        answerCount.incrementAndGet();
+        return answer;
+    }
+
+    /**
+     * Completes a request started with {@link #acquire()}
+     */
+    public void release(String url) {
+        AtomicInteger count = url != null ? outstanding.get(url) : null;
+        if (count != null && count.decrementAndGet() < 0) {
+            count.set(0);
+        }
+    }
+
+    /**
+     * Returns the number of outstanding requests of the given endpoint url
+     */
+    public int getOutstanding(String url) {
+        AtomicInteger count = outstanding.get(url);
+        return count != null ? count.get() : 0;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            endpointsWatch.release();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointSet[" +
+                "serviceName='" + getServiceName() + '\'' +
+                ", serviceProtocol='" + serviceProtocol + '\'' +
+                ", servicePort='" + servicePort + '\'' +
+                ']';
+    }
+
+    private AtomicInteger getOutstandingCounter(String url) {
+        AtomicInteger count = outstanding.get(url);
+        if (count == null) {
+            AtomicInteger existing = outstanding.putIfAbsent(url, count = new AtomicInteger());
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        return count;
+    }
+
+    private static final class Snapshot {
+        private final Endpoints endpoints;
+        private final List<String> urls;
+
+        private Snapshot(Endpoints endpoints, List<String> urls) {
+            this.endpoints = endpoints;
+            this.urls = urls;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.cdi;
+
+import io.fabric8.kubernetes.api.model.Endpoints;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the {@link Endpoints} of a service current using a single watch, which is shared by all the
+ * {@link EndpointSet} instances of the same namespace and service and closed when the last one is closed.
+ * If the watch can't be opened or gets closed the endpoints are re-listed on access, at most once per resync interval.
+ */
+final class EndpointsWatch implements Watcher<Endpoints> {
+
+    static final long RESYNC_INTERVAL = 5000L;
+
+    private static final Map<String, EndpointsWatch> WATCHES = new HashMap<>();
+
+    private final KubernetesClient client;
+    private final String namespace;
+    private final String serviceName;
+    private int references;
+
+    private volatile Endpoints endpoints;
+    private volatile boolean watching;
+    private volatile long lastSync;
+    private Watch watch;
+    private boolean closed;
+
+    private EndpointsWatch(KubernetesClient client, String namespace, String serviceName) {
+        this.client = client;
+        this.namespace = namespace;
+        this.serviceName = serviceName;
+    }
+
+    static EndpointsWatch acquire(KubernetesClient client, String namespace, String serviceName) {
+        EndpointsWatch answer;
+        synchronized (WATCHES) {
+            String key = toKey(namespace, serviceName);
+            answer = WATCHES.get(key);
+            if (answer == null) {
+                answer = new EndpointsWatch(client, namespace, serviceName);
+                WATCHES.put(key, answer);
+            }
+            answer.references++;
+        }
+        answer.resyncIfNeeded();
+        return answer;
+    }
+
+    /**
+     * Returns the open watch of the service or null if there is none
+     */
+    static EndpointsWatch lookup(String namespace, String serviceName) {
+        synchronized (WATCHES) {
+            return WATCHES.get(toKey(namespace, serviceName));
+        }
+    }
+
+    void release() {
+        synchronized (WATCHES) {
+            if (--references > 0) {
+                return;
+            }
+            WATCHES.remove(toKey(namespace, serviceName));
+        }
+        synchronized (this) {
+            closed = true;
+            watching = false;
+            if (watch != null) {
+                watch.close();
+                watch = null;
+            }
+        }
+    }
+
+    String getNamespace() {
+        return namespace;
+    }
+
+    String getServiceName() {
+        return serviceName;
+    }
+
+    boolean isWatching() {
+        return watching;
+    }
+
+    /**
+     * Returns the latest known endpoints of the service, or null if the service has no endpoints
+     */
+    Endpoints getEndpoints() {
+        resyncIfNeeded();
+        return endpoints;
+    }
+
+    private void resyncIfNeeded() {
+        if (!watching && System.currentTimeMillis() - lastSync >= RESYNC_INTERVAL) {
+            resync();
+        }
+    }
+
+    private synchronized void resync() {
+        if (closed || watching || System.currentTimeMillis() - lastSync < RESYNC_INTERVAL) {
+            return;
+        }
+        lastSync = System.currentTimeMillis();
+        String resourceVersion = null;
+        try {
+            Endpoints item = client.endpoints().inNamespace(namespace).withName(serviceName).get();
+            endpoints = item;
+            if (item != null && item.getMetadata() != null) {
+                resourceVersion = item.getMetadata().getResourceVersion();
+            }
+        } catch (KubernetesClientException e) {
+            //keep the last known endpoints and try again on the next resync.
+            return;
+        }
+        if (watch != null) {
+            watch.close();
+            watch = null;
+        }
+        //set before opening the watch, so that an immediate onClose is not overwritten.
+        watching = true;
+        try {
+            if (resourceVersion != null) {
+                watch = client.endpoints().inNamespace(namespace).withName(serviceName).watch(resourceVersion, this);
+            } else {
+                watch = client.endpoints().inNamespace(namespace).withName(serviceName).watch(this);
+            }
+        } catch (KubernetesClientException e) {
+            watching = false;
+        }
+    }
+
+    @Override
+    public void eventReceived(Action action, Endpoints resource) {
+        switch (action) {
+            case ADDED:
+            case MODIFIED:
+                endpoints = resource;
+                break;
+            case DELETED:
+                endpoints = null;
+                break;
+            default:
+                //force a re-list on the next access.
+                watching = false;
+                lastSync = 0;
+        }
+    }
+
+    @Override
+    public void onClose(KubernetesClientException cause) {
+        watching = false;
+    }
+
+    private static String toKey(String namespace, String serviceName) {
+        return namespace + "/" + serviceName;
+    }
+}
@@ -25,6 +25,7 @@ import io.fabric8.annotations.PortName;
 import io.fabric8.annotations.Protocol;
 import io.fabric8.annotations.ServiceName;
 import io.fabric8.cdi.bean.ConfigurationBean;
+import io.fabric8.cdi.bean.EndpointSetBean;
 import io.fabric8.cdi.bean.KubernetesClientBean;
 import io.fabric8.cdi.bean.ServiceBean;
 import io.fabric8.cdi.bean.ServiceUrlBean;
@@ -111,6 +112,10 @@ public class Fabric8Extension implements Extension {
             event.addBean(bean);
         }
 
+        for (EndpointSetBean bean : EndpointSetBean.getBeans()) {
+            event.addBean(bean);
+        }
+
         for (ServiceBean bean : ServiceBean.getBeans()) {
             if (bean.getProducer() != null) {
                 event.addBean(bean);
@@ -154,6 +159,8 @@ public class Fabric8Extension implements Extension {
 
             if (type.equals(String.class)) {
                 ServiceUrlBean.getBean(serviceName, serviceProtocol, servicePort, servicePath, serviceAlias, serviceEndpoint, serviceExternal);
+            } else if (type.equals(EndpointSet.class)) {
+                EndpointSetBean.getBean(serviceName, serviceProtocol, servicePort, servicePath, serviceAlias, serviceEndpoint, serviceExternal);
             } else if (isGenericOf(type, List.class, String.class)) {
                 ServiceUrlCollectionBean.getBean(serviceName, serviceProtocol, servicePort, servicePath, serviceAlias, serviceEndpoint, serviceExternal, Types.LIST_OF_STRINGS);
             } else if (isGenericOf(type, List.class, null)) {
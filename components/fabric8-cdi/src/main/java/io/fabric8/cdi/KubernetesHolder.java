@@ -27,10 +27,15 @@ import java.util.concurrent.atomic.AtomicReference;
 
 public class KubernetesHolder {
 
-    private static KubernetesClient client;
+    private static final AtomicReference<KubernetesClient> CLIENT = new AtomicReference<>();
     private static final AtomicReference<BeanManager> BEAN_MANAGER = new AtomicReference<>();
 
-    public synchronized static KubernetesClient getClient() {
+    /**
+     * Returns the shared client. The client is looked up without holding a lock; if two threads race,
+     * the first client to be set wins and a client created by the losing thread is closed.
+     */
+    public static KubernetesClient getClient() {
+        KubernetesClient client = CLIENT.get();
         if (client != null) {
             return client;
         }
@@ -43,8 +48,15 @@ public class KubernetesHolder {
                 CreationalContext ctx = beanManager.createCreationalContext(null);
                 client = (KubernetesClient) beanManager.getReference(beans.iterator().next(), KubernetesClient.class, ctx);
             }
+            if (!CLIENT.compareAndSet(null, client)) {
+                client = CLIENT.get();
+            }
         } else {
             client = new DefaultKubernetesClient();
+            if (!CLIENT.compareAndSet(null, client)) {
+                client.close();
+                client = CLIENT.get();
+            }
         }
         return client;
     }
@@ -15,7 +15,7 @@
  */
 package io.fabric8.cdi;
 
-import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.ServiceUrlCache;
 import io.fabric8.kubernetes.api.model.EndpointAddress;
 import io.fabric8.kubernetes.api.model.EndpointPort;
 import io.fabric8.kubernetes.api.model.EndpointSubset;
@@ -35,22 +35,29 @@ public class Services {
         KubernetesClient client = KubernetesHolder.getClient();
         String serviceNamespace = client.getNamespace();
         String actualProtocol = Strings.isNullOrBlank(serviceProtocol) ? DEFAULT_PROTO : serviceProtocol;
-        return URLUtils.pathJoin(KubernetesHelper.getServiceURL(client, serviceName, serviceNamespace, actualProtocol, servicePortName, serviceExternal), servicePath);
+        return URLUtils.pathJoin(ServiceUrlCache.getDefault().getServiceURL(client, serviceName, serviceNamespace, actualProtocol, servicePortName, serviceExternal), servicePath);
     }
 
     public static List<String> toServiceEndpointUrl(String serviceId, String serviceProtocol, String servicePort) {
-        List<String> endpoints = new ArrayList<>();
         KubernetesClient client = KubernetesHolder.getClient();
         String namespace = client.getNamespace();
         String actualProtocol = serviceProtocol != null ? serviceProtocol : DEFAULT_PROTO;
 
-        Endpoints item = KubernetesHolder.getClient().endpoints().inNamespace(namespace).withName(serviceId).get();
+        //Reuse the endpoints of an open endpoint set, instead of asking the server again.
+        EndpointsWatch watch = EndpointsWatch.lookup(namespace, serviceId);
+        Endpoints item = watch != null && watch.isWatching() ? watch.getEndpoints()
+                : client.endpoints().inNamespace(namespace).withName(serviceId).get();
+        return toEndpointUrls(item, actualProtocol, servicePort);
+    }
+
+    public static List<String> toEndpointUrls(Endpoints item, String serviceProtocol, String servicePort) {
+        List<String> endpoints = new ArrayList<>();
         if (item != null) {
             for (EndpointSubset subset : item.getSubsets()) {
                 for (EndpointAddress address : subset.getAddresses()) {
                     for (EndpointPort endpointPort : subset.getPorts()) {
                         if (servicePort == null || servicePort.equals(endpointPort.getName())) {
-                            endpoints.add(actualProtocol + "://" + address.getIp() + ":" + endpointPort.getPort());
+                            endpoints.add(serviceProtocol + "://" + address.getIp() + ":" + endpointPort.getPort());
                         }
                     }
                 }
@@ -18,17 +18,22 @@ package io.fabric8.cdi.bean;
 
 import io.fabric8.cdi.Utils;
 import io.fabric8.cdi.qualifiers.Qualifiers;
-import io.fabric8.utils.Objects;
 
 import javax.enterprise.inject.spi.Producer;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ServiceBean<X> extends ProducerBean<X> {
 
-    private static final Map<Key, ServiceBean> BEANS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Key, ServiceBean<?>> BEANS = new ConcurrentHashMap<>();
+    //Secondary indexes, so that lookups by type or by service don't need to scan all the beans.
+    private static final ConcurrentMap<Type, Set<Key>> KEYS_BY_TYPE = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Key, ServiceBean<?>> BEANS_BY_SERVICE = new ConcurrentHashMap<>();
     
     private final String serviceName;
     private final String serviceProtocol;
@@ -43,44 +48,89 @@ public class ServiceBean<X> extends ProducerBean<X> {
                 Utils.toAlias(name, protocol, port, path, endpoint, external, "bean-" + type.toString());
 
         Key key = new Key(name, protocol, port, path, serviceAlias, endpoint, external, type, null);
-        if (BEANS.containsKey(key)) {
-            return BEANS.get(key);
+        ServiceBean<?> bean = BEANS.get(key);
+        if (bean != null) {
+            return cast(bean);
         }
-        ServiceBean bean = new ServiceBean(name, protocol, port, path, serviceAlias, type, null, endpoint, external);
-        BEANS.put(key, bean);
-        return bean;
+        ServiceBean<S> newBean = new ServiceBean<S>(name, protocol, port, path, serviceAlias, type, null, endpoint, external);
+        bean = BEANS.putIfAbsent(key, newBean);
+        if (bean != null) {
+            return cast(bean);
+        }
+        index(key, newBean);
+        return newBean;
     }
 
     public static <S> ServiceBean<S> anyBean(String id, String protocol, String port, String path, Boolean endpoint, Boolean external, Type type) {
-        for (Map.Entry<Key, ServiceBean> entry : BEANS.entrySet()) {
-            Key key = entry.getKey();
-            if (Objects.equal(key.serviceName, id)
-                    && Objects.equal(key.serviceProtocol, protocol)
-                    && Objects.equal(key.servicePort, port)
-                    && Objects.equal(key.servicePath, path)
-                    && Objects.equal(key.serviceEndpoint, endpoint)
-                    && Objects.equal(key.serviceExternal, external)
-                    && Objects.equal(key.type, type)) {
-                return entry.getValue();
-            }
+        ServiceBean<?> bean = BEANS_BY_SERVICE.get(toServiceKey(id, protocol, port, path, endpoint, external, type));
+        if (bean != null) {
+            return cast(bean);
         }
         return getBean(id, protocol, port, path, null, endpoint, external, type);
     }
     
     
-    public static final Collection<ServiceBean> getBeans() {
+    public static final Collection<ServiceBean<?>> getBeans() {
         return BEANS.values();
     }
 
     public static void doWith(Type type, Callback callback) {
-        for (Map.Entry<Key, ServiceBean> entry : BEANS.entrySet()) {
-            Key key = entry.getKey();
-            if (type.equals(key.type)) {
-                ServiceBean newBean = callback.apply(BEANS.remove(key));
-                Key newKey = new Key(newBean.getServiceName(), newBean.getServiceProtocol(), newBean.getServicePort(), newBean.getServicePath(), newBean.getServiceAlias(), newBean.getServiceEndpoint(), newBean.getServiceExternal(), newBean.getBeanClass(), newBean.getProducer());
-                BEANS.put(newKey, newBean);
+        Set<Key> keys = KEYS_BY_TYPE.get(type);
+        if (keys == null) {
+            return;
+        }
+        //Iterate over a copy, as the callback results are added back to the index.
+        for (Key key : new ArrayList<>(keys)) {
+            ServiceBean<?> bean = BEANS.remove(key);
+            if (bean == null) {
+                continue;
+            }
+            unindex(key, bean);
+            ServiceBean<?> newBean = callback.apply(bean);
+            Key newKey = new Key(newBean.getServiceName(), newBean.getServiceProtocol(), newBean.getServicePort(), newBean.getServicePath(), newBean.getServiceAlias(), newBean.getServiceEndpoint(), newBean.getServiceExternal(), newBean.getBeanClass(), newBean.getProducer());
+            BEANS.put(newKey, newBean);
+            index(newKey, newBean);
+        }
+    }
+
+    private static void index(Key key, ServiceBean<?> bean) {
+        Set<Key> keys = KEYS_BY_TYPE.get(key.type);
+        if (keys == null) {
+            Set<Key> newKeys = ConcurrentHashMap.newKeySet();
+            keys = KEYS_BY_TYPE.putIfAbsent(key.type, newKeys);
+            if (keys == null) {
+                keys = newKeys;
             }
         }
+        keys.add(key);
+        BEANS_BY_SERVICE.putIfAbsent(toServiceKey(key), bean);
+    }
+
+    private static void unindex(Key key, ServiceBean<?> bean) {
+        Set<Key> keys = KEYS_BY_TYPE.get(key.type);
+        if (keys != null) {
+            keys.remove(key);
+        }
+        BEANS_BY_SERVICE.remove(toServiceKey(key), bean);
+    }
+
+    /**
+     * The beans of a key are only ever created by {@link #getBean}, for the type of that key.
+     */
+    @SuppressWarnings("unchecked")
+    private static <S> ServiceBean<S> cast(ServiceBean<?> bean) {
+        return (ServiceBean<S>) bean;
+    }
+
+    private static Key toServiceKey(Key key) {
+        return toServiceKey(key.serviceName, key.serviceProtocol, key.servicePort, key.servicePath, key.serviceEndpoint, key.serviceExternal, key.type);
+    }
+
+    /**
+     * Returns the key of a service regardless of the alias and the producer of its beans.
+     */
+    private static Key toServiceKey(String name, String protocol, String port, String path, Boolean endpoint, Boolean external, Type type) {
+        return new Key(name, protocol, port, path, null, endpoint, external, type, null);
     }
     
     private ServiceBean(String serviceName, String serviceProtocol, String servicePort, String servicePath, String serviceAlias, Type type, Producer<X> producer, Boolean serviceEndpoint, Boolean serviceExternal) {
@@ -20,45 +20,51 @@ import io.fabric8.cdi.Utils;
 import io.fabric8.cdi.producers.FirstEndpointProducer;
 import io.fabric8.cdi.producers.ServiceUrlProducer;
 import io.fabric8.cdi.qualifiers.Qualifiers;
-import io.fabric8.utils.Objects;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ServiceUrlBean extends ProducerBean<String> {
 
     private static final String SUFFIX = "url";
-    private static final Map<Key, ServiceUrlBean> BEANS = new HashMap<>();
+    private static final ConcurrentMap<Key, ServiceUrlBean> BEANS = new ConcurrentHashMap<>();
+    //Index of the beans by service regardless of the alias, so that anyBean doesn't need to scan all the beans.
+    private static final ConcurrentMap<Key, ServiceUrlBean> BEANS_BY_SERVICE = new ConcurrentHashMap<>();
 
     public static ServiceUrlBean getBean(String name, String protocol, String port, String path, String alias, Boolean endpoint, Boolean external) {
         String serviceAlias = alias != null ? alias :
                 Utils.toAlias(name, protocol, port, path, endpoint, external, SUFFIX);
 
         Key key = new Key(name, protocol, port, path, serviceAlias, endpoint, external);
-        if (BEANS.containsKey(key)) {
-            return BEANS.get(key);
+        ServiceUrlBean bean = BEANS.get(key);
+        if (bean != null) {
+            return bean;
         }
-        ServiceUrlBean bean = new ServiceUrlBean(name, protocol, port, path, serviceAlias, endpoint, external);
-        BEANS.put(key, bean);
+        bean = new ServiceUrlBean(name, protocol, port, path, serviceAlias, endpoint, external);
+        ServiceUrlBean existing = BEANS.putIfAbsent(key, bean);
+        if (existing != null) {
+            return existing;
+        }
+        BEANS_BY_SERVICE.putIfAbsent(toServiceKey(name, protocol, port, path, endpoint, external), bean);
         return bean;
     }
 
     public static ServiceUrlBean anyBean(String id, String protocol, String port, String path, Boolean endpoint, Boolean external) {
-        for (Map.Entry<Key, ServiceUrlBean> entry : BEANS.entrySet()) {
-           Key key = entry.getKey();
-           if (Objects.equal(key.serviceName, id)
-                   && Objects.equal(key.serviceProtocol, protocol)
-                   && Objects.equal(key.servicePort, port)
-                   && Objects.equal(key.servicePath, path)
-                   && Objects.equal(key.serviceEndpoint, endpoint)
-                   && Objects.equal(key.serviceExternal, external)) {
-               return entry.getValue();
-           }
+        ServiceUrlBean bean = BEANS_BY_SERVICE.get(toServiceKey(id, protocol, port, path, endpoint, external));
+        if (bean != null) {
+            return bean;
         }
         return getBean(id, protocol, port, path, null, endpoint, external);
     }
 
+    /**
+     * Returns the key of a service regardless of the alias of its beans.
+     */
+    private static Key toServiceKey(String name, String protocol, String port, String path, Boolean endpoint, Boolean external) {
+        return new Key(name, protocol, port, path, null, endpoint, external);
+    }
+
     public static Collection<ServiceUrlBean> getBeans() {
         return BEANS.values();
     }
@@ -19,47 +19,53 @@ package io.fabric8.cdi.bean;
 import io.fabric8.cdi.Utils;
 import io.fabric8.cdi.producers.ServiceEndpointsProducer;
 import io.fabric8.cdi.qualifiers.Qualifiers;
-import io.fabric8.utils.Objects;
 
 import java.lang.reflect.Type;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ServiceUrlCollectionBean extends ProducerBean<List<String>> {
 
     private static final String SUFFIX = "urls";
-    private static final Map<Key, ServiceUrlCollectionBean> BEANS = new HashMap<>();
+    private static final ConcurrentMap<Key, ServiceUrlCollectionBean> BEANS = new ConcurrentHashMap<>();
+    //Index of the beans by service regardless of the alias, so that anyBean doesn't need to scan all the beans.
+    private static final ConcurrentMap<Key, ServiceUrlCollectionBean> BEANS_BY_SERVICE = new ConcurrentHashMap<>();
 
     public static ServiceUrlCollectionBean getBean(String name, String protocol, String port, String path, String alias, Boolean endpoint, Boolean external, Type collectionType) {
         String serviceAlias = alias != null ? alias :
                 Utils.toAlias(name, protocol, port, path, endpoint, external, SUFFIX);
 
         Key key = new Key(name, protocol, port, path, serviceAlias, endpoint, external, collectionType);
-        if (BEANS.containsKey(key)) {
-            return BEANS.get(key);
+        ServiceUrlCollectionBean bean = BEANS.get(key);
+        if (bean != null) {
+            return bean;
         }
-        ServiceUrlCollectionBean bean = new ServiceUrlCollectionBean(name, protocol, port, path, serviceAlias, endpoint, external, collectionType);
-        BEANS.put(key, bean);
+        bean = new ServiceUrlCollectionBean(name, protocol, port, path, serviceAlias, endpoint, external, collectionType);
+        ServiceUrlCollectionBean existing = BEANS.putIfAbsent(key, bean);
+        if (existing != null) {
+            return existing;
+        }
+        BEANS_BY_SERVICE.putIfAbsent(toServiceKey(name, protocol, port, path, endpoint, external), bean);
         return bean;
     }
 
     public static ServiceUrlCollectionBean anyBean(String id, String protocol, String port, String path, Boolean endpoint, Boolean external, Type collectionType) {
-        for (Map.Entry<Key, ServiceUrlCollectionBean> entry : BEANS.entrySet()) {
-           Key key = entry.getKey();
-            if (Objects.equal(key.serviceId, id)
-                    && Objects.equal(key.serviceProtocol, protocol)
-                    && Objects.equal(key.servicePort, port)
-                    && Objects.equal(key.servicePath, path)
-                    && Objects.equal(key.serviceEndpoint, endpoint)
-                    && Objects.equal(key.serviceExternal, external)) {
-               return entry.getValue();
-           }
+        ServiceUrlCollectionBean bean = BEANS_BY_SERVICE.get(toServiceKey(id, protocol, port, path, endpoint, external));
+        if (bean != null) {
+            return bean;
         }
         return getBean(id, protocol, port, path, null, endpoint, external, collectionType);
     }
 
+    /**
+     * Returns the key of a service regardless of the alias of its beans.
+     */
+    private static Key toServiceKey(String name, String protocol, String port, String path, Boolean endpoint, Boolean external) {
+        return new Key(name, protocol, port, path, null, endpoint, external, null);
+    }
+
     public static Collection<ServiceUrlCollectionBean> getBeans() {
         return BEANS.values();
     }
@@ -162,7 +168,7 @@ public class ServiceUrlCollectionBean extends ProducerBean<List<String>> {
             if (serviceProtocol != null ? !serviceProtocol.equals(key.serviceProtocol) : key.serviceProtocol != null) return false;
             if (servicePort != null ? !servicePort.equals(key.servicePort) : key.servicePort != null) return false;
             if (servicePath != null ? !servicePath.equals(key.servicePath) : key.servicePath != null) return false;
-            if (serviceAlias != null ? !serviceAlias.equals(key.serviceProtocol) : key.serviceAlias != null) return false;
+            if (serviceAlias != null ? !serviceAlias.equals(key.serviceAlias) : key.serviceAlias != null) return false;
             if (serviceEndpoint != null ? !serviceEndpoint.equals(key.serviceEndpoint) : key.serviceEndpoint != null) return false;
             if (serviceExternal != null ? !serviceExternal.equals(key.serviceExternal) : key.serviceExternal != null) return false;
             if (serviceCollectionType != null ? !serviceCollectionType.equals(key.serviceCollectionType) : key.serviceCollectionType != null) return false;
@@ -0,0 +1,130 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.cdi;
+
+import io.fabric8.kubernetes.api.model.Endpoints;
+import io.fabric8.kubernetes.api.model.EndpointsBuilder;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.Watcher;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class EndpointSetInternalTest {
+
+    private static KubernetesClient client;
+
+    @BeforeClass
+    public static void setUpClass() {
+        MockConfigurer.configure();
+        client = new DefaultKubernetesClient();
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        client.close();
+    }
+
+    @Test
+    public void testSharesWatchPerService() {
+        EndpointSet first = EndpointSet.open(client, "cdi", "service1", null, null);
+        EndpointSet second = EndpointSet.open(client, "cdi", "service1", "http", null);
+        try {
+            EndpointsWatch watch = EndpointsWatch.lookup("cdi", "service1");
+            Assert.assertNotNull(watch);
+            Assert.assertEquals(Arrays.asList("tcp://10.0.0.1:8080", "tcp://10.0.0.2:8080"), first.getEndpoints());
+            Assert.assertEquals(Arrays.asList("http://10.0.0.1:8080", "http://10.0.0.2:8080"), second.getEndpoints());
+
+            first.close();
+            Assert.assertSame(watch, EndpointsWatch.lookup("cdi", "service1"));
+        } finally {
+            first.close();
+            second.close();
+        }
+        Assert.assertNull(EndpointsWatch.lookup("cdi", "service1"));
+    }
+
+    @Test
+    public void testFollowsEndpointChanges() {
+        EndpointSet endpoints = EndpointSet.open(client, "cdi", "service1", null, null);
+        try {
+            Assert.assertEquals(2, endpoints.getEndpoints().size());
+
+            EndpointsWatch.lookup("cdi", "service1").eventReceived(Watcher.Action.MODIFIED, newEndpoints("10.0.0.1", "10.0.0.2", "10.0.0.3"));
+            Assert.assertEquals(Arrays.asList("tcp://10.0.0.1:8080", "tcp://10.0.0.2:8080", "tcp://10.0.0.3:8080"), endpoints.getEndpoints());
+
+            EndpointsWatch.lookup("cdi", "service1").eventReceived(Watcher.Action.DELETED, newEndpoints());
+            Assert.assertTrue(endpoints.isEmpty());
+            Assert.assertNull(endpoints.next());
+            Assert.assertNull(endpoints.acquire());
+        } finally {
+            endpoints.close();
+        }
+    }
+
+    @Test
+    public void testSelection() {
+        EndpointSet endpoints = EndpointSet.open(client, "cdi", "service1", null, null);
+        try {
+            EndpointsWatch.lookup("cdi", "service1").eventReceived(Watcher.Action.MODIFIED, newEndpoints("10.0.0.1", "10.0.0.2", "10.0.0.3"));
+
+            Set<String> roundRobin = new HashSet<>();
+            for (int i = 0; i < 3; i++) {
+                roundRobin.add(endpoints.next());
+            }
+            Assert.assertEquals(new HashSet<>(endpoints.getEndpoints()), roundRobin);
+            Assert.assertTrue(endpoints.getEndpoints().contains(endpoints.random()));
+
+            String a = endpoints.acquire();
+            String b = endpoints.acquire();
+            String c = endpoints.acquire();
+            Assert.assertEquals(3, new HashSet<>(Arrays.asList(a, b, c)).size());
+            endpoints.release(b);
+            Assert.assertEquals(b, endpoints.acquire());
+            Assert.assertEquals(1, endpoints.getOutstanding(a));
+            endpoints.release(a);
+            Assert.assertEquals(0, endpoints.getOutstanding(a));
+        } finally {
+            endpoints.close();
+        }
+    }
+
+    private static Endpoints newEndpoints(String... ips) {
+        EndpointsBuilder builder = new EndpointsBuilder()
+                .withNewMetadata()
+                .withName("service1")
+                .withNamespace("cdi")
+                .endMetadata();
+        for (String ip : ips) {
+            builder.addNewSubset()
+                    .addNewPort()
+                    .withName("port")
+                    .withPort(8080)
+                    .endPort()
+                    .addNewAddress()
+                    .withIp(ip)
+                    .endAddress()
+                    .endSubset();
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.cdi;
+
+import io.fabric8.cdi.bean.ServiceBean;
+import io.fabric8.cdi.bean.ServiceUrlBean;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the bean registries at boot (registering service injection points and applying factories)
+ * and the throughput of the lookups done on each produced bean, with several threads.
+ * The sizes are fixed by its constants, so the numbers of two runs can be compared directly.
+ */
+public class RegistryBenchmark {
+
+    private static final int SERVICES = 500;
+    private static final int TYPES = 50;
+    private static final int THREADS = 8;
+    private static final int CALLS = 1000000;
+
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < SERVICES; i++) {
+            ServiceUrlBean.getBean("service" + i, null, null, null, null, false, false);
+            for (int t = 0; t < TYPES; t++) {
+                ServiceBean.getBean("service" + i, null, null, null, null, false, false, type(t));
+            }
+        }
+        long registered = System.nanoTime();
+        for (int t = 0; t < TYPES; t++) {
+            ServiceBean.doWith(type(t), new ServiceBean.Callback() {
+                @Override
+                public ServiceBean apply(ServiceBean bean) {
+                    return bean;
+                }
+            });
+        }
+        long applied = System.nanoTime();
+        System.out.printf("Registered %d beans in %d ms, applied %d factories in %d ms%n",
+                SERVICES * (TYPES + 1), TimeUnit.NANOSECONDS.toMillis(registered - start),
+                TYPES, TimeUnit.NANOSECONDS.toMillis(applied - registered));
+
+        run("KubernetesHolder.getClient", new Runnable() {
+            @Override
+            public void run() {
+                KubernetesHolder.getClient();
+            }
+        });
+        run("ServiceUrlBean.anyBean", new Runnable() {
+            @Override
+            public void run() {
+                ServiceUrlBean.anyBean("service" + (SERVICES - 1), null, null, null, false, false);
+            }
+        });
+        run("ServiceBean.anyBean", new Runnable() {
+            @Override
+            public void run() {
+                ServiceBean.anyBean("service" + (SERVICES - 1), null, null, null, false, false, type(TYPES - 1));
+            }
+        });
+        KubernetesHolder.getClient().close();
+    }
+
+    private static void run(String name, final Runnable call) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        long start = System.nanoTime();
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int c = 0; c < CALLS / THREADS; c++) {
+                        call.run();
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        System.out.printf("%s: %d calls with %d threads in %d ms (%d ns/call)%n",
+                name, CALLS, THREADS, TimeUnit.NANOSECONDS.toMillis(elapsed), elapsed / CALLS);
+    }
+
+    private static Type type(int index) {
+        return BEAN_TYPES[index];
+    }
+
+    private static final Type[] BEAN_TYPES = new Type[TYPES];
+
+    static {
+        //Distinct types are all that matters for the registries.
+        for (int t = 0; t < TYPES; t++) {
+            BEAN_TYPES[t] = Types.genericType(List.class, String.class);
+        }
+    }
+}
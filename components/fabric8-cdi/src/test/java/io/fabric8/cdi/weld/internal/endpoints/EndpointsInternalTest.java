@@ -15,6 +15,7 @@
  */
 package io.fabric8.cdi.weld.internal.endpoints;
 
+import io.fabric8.cdi.EndpointSet;
 import io.fabric8.cdi.Fabric8Extension;
 import io.fabric8.cdi.MockConfigurer;
 import org.jboss.weld.environment.se.Weld;
@@ -51,7 +52,8 @@ public class EndpointsInternalTest {
                         ServiceListInstanceWithEndpoint.class,
                         ServiceListInstanceWithEndpoint2.class,
                         ServiceInstanceWithMultiPortEndpoint.class,
-                        ServiceInstanceUsingFactoryAndEndpoints.class)
+                        ServiceInstanceUsingFactoryAndEndpoints.class,
+                        ServiceEndpointSet.class)
                 .initialize();
 
     }
@@ -102,6 +104,16 @@ public class EndpointsInternalTest {
         Assert.assertNotNull(obj.getService());
     }
 
+    @Test
+    public void testServiceEndpointSet() {
+        ServiceEndpointSet obj = createInstance(ServiceEndpointSet.class);
+        EndpointSet endpoints = obj.getService();
+        Assert.assertEquals(2, endpoints.getEndpoints().size());
+        Assert.assertTrue(endpoints.getEndpoints().contains("tcp://10.0.0.1:8080"));
+        Assert.assertTrue(endpoints.getEndpoints().contains("tcp://10.0.0.2:8080"));
+        Assert.assertNotEquals(endpoints.next(), endpoints.next());
+    }
+
     @Test
     public void testChangingEndpoints() {
         ServiceListInstanceWithEndpoint2 obj = createInstance(ServiceListInstanceWithEndpoint2.class);
@@ -0,0 +1,188 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jgroups;
+
+import io.fabric8.kubernetes.api.ServiceDnsResolver;
+import org.jgroups.PhysicalAddress;
+import org.jgroups.stack.IpAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Resolves the members of a cluster from the DNS records of a headless service, so that no API server
+ * access is required. The records are cached for their TTL by the {@link ServiceDnsResolver}.
+ * <p/>
+ * A records are combined with a fixed port while SRV records supply the port of each member; the SRV targets
+ * are resolved through the cached A/AAAA records of the resolver too, so {@link #getMembers()} never blocks.
+ * <p/>
+ * The resolver keeps its cached records when a refresh fails, and answers a failed first lookup with no records.
+ * An empty answer for the service therefore never replaces the current members, so a DNS outage cannot empty
+ * the cluster view; a new SRV target whose first lookup failed is only left out until it resolves.
+ */
+public class DnsMemberSource implements MemberSource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DnsMemberSource.class);
+
+    /**
+     * How long {@link #start()} waits for the first resolution before carrying on without members
+     */
+    public static final long DEFAULT_START_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final ServiceDnsResolver resolver;
+    private final String serviceName;
+    private final boolean useSrvRecords;
+    private final int port;
+    private long startTimeoutMillis = DEFAULT_START_TIMEOUT_MILLIS;
+    private volatile List<Object> lastResolved;
+    private volatile Set<PhysicalAddress> members = Collections.emptySet();
+
+    public DnsMemberSource(ServiceDnsResolver resolver, String serviceName, boolean useSrvRecords, int port) {
+        this.resolver = resolver;
+        this.serviceName = serviceName;
+        this.useSrvRecords = useSrvRecords;
+        this.port = port;
+    }
+
+    @Override
+    public void start() {
+        // lets wait a little for the first lookup so that the initial discovery finds the members
+        long deadline = System.currentTimeMillis() + startTimeoutMillis;
+        try {
+            Collection<String> resolved = resolve().get(startTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (useSrvRecords) {
+                for (String endpoint : resolved) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new TimeoutException();
+                    }
+                    resolver.resolveHostAddresses(getHost(endpoint)).get(remaining, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (TimeoutException e) {
+            LOGGER.warn("Resolving {} took longer than {} ms, the members will be discovered once it completes.", serviceName, startTimeoutMillis);
+        } catch (ExecutionException e) {
+            LOGGER.warn("Failed to resolve {}: {}", serviceName, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        getMembers();
+    }
+
+    @Override
+    public void stop() {
+        lastResolved = null;
+        members = Collections.emptySet();
+    }
+
+    @Override
+    public Set<PhysicalAddress> getMembers() {
+        Collection<String> resolved = getIfDone(resolve());
+        if (resolved == null || resolved.isEmpty()) {
+            return members;
+        }
+        // the resolver returns the same instances until the records are refreshed
+        List<Object> values = new ArrayList<>();
+        values.add(resolved);
+        if (useSrvRecords) {
+            for (String endpoint : resolved) {
+                List<InetAddress> hostAddresses = getIfDone(resolver.resolveHostAddresses(getHost(endpoint)));
+                if (hostAddresses == null) {
+                    // keep the current members until all the targets are resolved
+                    return members;
+                }
+                values.add(hostAddresses);
+            }
+        }
+        if (!isSame(values, lastResolved)) {
+            members = toAddresses(values);
+            lastResolved = values;
+        }
+        return members;
+    }
+
+    public long getStartTimeoutMillis() {
+        return startTimeoutMillis;
+    }
+
+    public void setStartTimeoutMillis(long startTimeoutMillis) {
+        this.startTimeoutMillis = startTimeoutMillis;
+    }
+
+    private CompletableFuture<? extends Collection<String>> resolve() {
+        if (useSrvRecords) {
+            return resolver.resolveServiceEndpoints(serviceName);
+        } else {
+            return resolver.resolveServiceAddresses(serviceName);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<PhysicalAddress> toAddresses(List<Object> values) {
+        Collection<String> resolved = (Collection<String>) values.get(0);
+        Set<PhysicalAddress> answer = new HashSet<>(resolved.size());
+        int i = 1;
+        for (String value : resolved) {
+            try {
+                if (useSrvRecords) {
+                    int targetPort = Integer.parseInt(value.substring(value.lastIndexOf(':') + 1));
+                    for (InetAddress address : (List<InetAddress>) values.get(i++)) {
+                        answer.add(new IpAddress(address, targetPort));
+                    }
+                } else {
+                    answer.add(new IpAddress(value, port));
+                }
+            } catch (Exception ex) {
+                LOGGER.warn("Failed to create Address {}.", value);
+            }
+        }
+        return Collections.unmodifiableSet(answer);
+    }
+
+    private static String getHost(String endpoint) {
+        return endpoint.substring(0, endpoint.lastIndexOf(':'));
+    }
+
+    private static <T> T getIfDone(CompletableFuture<T> future) {
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            return future.join();
+        }
+        return null;
+    }
+
+    private static boolean isSame(List<Object> values, List<Object> last) {
+        if (last == null || values.size() != last.size()) {
+            return false;
+        }
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) != last.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jgroups;
+
+import io.fabric8.kubernetes.api.model.EndpointAddress;
+import io.fabric8.kubernetes.api.model.EndpointPort;
+import io.fabric8.kubernetes.api.model.EndpointSubset;
+import io.fabric8.kubernetes.api.model.Endpoints;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import org.jgroups.PhysicalAddress;
+import org.jgroups.stack.IpAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves the members of a cluster from the ready addresses of the <tt>Endpoints</tt> of a service.
+ * <p/>
+ * The members are cached for a fixed TTL; once it expires the cached members are still returned
+ * while they are refreshed in the background.
+ */
+public class EndpointsMemberSource implements MemberSource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EndpointsMemberSource.class);
+
+    private final KubernetesClient client;
+    private final String serviceName;
+    private final int port;
+    private final long ttlMillis;
+    private final Executor executor;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Set<PhysicalAddress> members = Collections.emptySet();
+    private volatile long expiresAt;
+
+    public EndpointsMemberSource(KubernetesClient client, String serviceName, int port, long ttlMillis, Executor executor) {
+        this.client = client;
+        this.serviceName = serviceName;
+        this.port = port;
+        this.ttlMillis = ttlMillis;
+        this.executor = executor;
+    }
+
+    @Override
+    public void start() {
+        refresh();
+    }
+
+    @Override
+    public void stop() {
+        members = Collections.emptySet();
+        expiresAt = 0;
+    }
+
+    @Override
+    public Set<PhysicalAddress> getMembers() {
+        if (System.currentTimeMillis() >= expiresAt && refreshing.compareAndSet(false, true)) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            refresh();
+                        } finally {
+                            refreshing.set(false);
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                refreshing.set(false);
+                LOGGER.warn("Failed to schedule the refresh of the endpoints of service {}: {}", serviceName, e.getMessage());
+            }
+        }
+        return members;
+    }
+
+    protected void refresh() {
+        try {
+            Endpoints endpoints = client.endpoints().withName(serviceName).get();
+            if (endpoints == null) {
+                LOGGER.warn("No endpoints found for service {}", serviceName);
+                members = Collections.emptySet();
+            } else {
+                members = Collections.unmodifiableSet(getMemberAddresses(endpoints, port));
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Failed to get the endpoints of service {}: {}", serviceName, e.getMessage());
+        } finally {
+            expiresAt = System.currentTimeMillis() + ttlMillis;
+        }
+    }
+
+    /**
+     * Returns the addresses of the ready endpoints using the port named {@link Constants#JGROUPS_TCP_PORT}
+     * or the given default port if the endpoints have no such port
+     */
+    public static Set<PhysicalAddress> getMemberAddresses(Endpoints endpoints, int defaultPort) {
+        Set<PhysicalAddress> answer = new HashSet<>();
+        List<EndpointSubset> subsets = endpoints.getSubsets();
+        if (subsets == null) {
+            return answer;
+        }
+        for (EndpointSubset subset : subsets) {
+            List<Integer> ports = new ArrayList<>();
+            if (subset.getPorts() != null) {
+                for (EndpointPort endpointPort : subset.getPorts()) {
+                    if (Constants.JGROUPS_TCP_PORT.equals(endpointPort.getName()) && endpointPort.getPort() != null) {
+                        ports.add(endpointPort.getPort());
+                    }
+                }
+            }
+            if (ports.isEmpty()) {
+                ports.add(defaultPort);
+            }
+            if (subset.getAddresses() != null) {
+                for (EndpointAddress address : subset.getAddresses()) {
+                    for (Integer port : ports) {
+                        try {
+                            answer.add(new IpAddress(address.getIp(), port));
+                        } catch (Exception ex) {
+                            LOGGER.warn("Failed to create Address {}.", address.getIp());
+                        }
+                    }
+                }
+            }
+        }
+        return answer;
+    }
+}
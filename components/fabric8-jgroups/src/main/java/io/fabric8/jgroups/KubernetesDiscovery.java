@@ -16,9 +16,7 @@
 package io.fabric8.jgroups;
 
 
-import io.fabric8.kubernetes.api.KubernetesHelper;
-import io.fabric8.kubernetes.api.model.Container;
-import io.fabric8.kubernetes.api.model.ContainerPort;
+import io.fabric8.kubernetes.api.ServiceDnsResolver;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.client.ConfigBuilder;
 import io.fabric8.kubernetes.client.DefaultKubernetesClient;
@@ -34,7 +32,6 @@ import org.jgroups.annotations.Property;
 import org.jgroups.protocols.Discovery;
 import org.jgroups.protocols.PingData;
 import org.jgroups.protocols.PingHeader;
-import org.jgroups.stack.IpAddress;
 import org.jgroups.util.BoundedList;
 import org.jgroups.util.Responses;
 import org.jgroups.util.Tuple;
@@ -43,22 +40,61 @@ import org.slf4j.LoggerFactory;
 
 
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 @MBean(description = "Kubernetes discovery protocol")
 public class KubernetesDiscovery extends Discovery {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(KubernetesDiscovery.class);
 
+    public static final String DISCOVERY_MODE_PODS = "pods";
+    public static final String DISCOVERY_MODE_DNS = "dns";
+    public static final String DISCOVERY_MODE_ENDPOINTS = "endpoints";
+
     @Property
     private String address;
 
+    @Property(description = "Where the members are discovered from: 'pods' (listing or watching the cluster pods), " +
+            "'dns' (the A or SRV records of a headless service) or 'endpoints' (the Endpoints of a service)")
+    private String discovery_mode = DISCOVERY_MODE_PODS;
+
+    @Property(description = "The name of the service used by the 'dns' and 'endpoints' discovery modes; " +
+            "for 'dns' this is the DNS name to query. Defaults to the cluster name")
+    private String service_name;
+
+    @Property(description = "Whether the 'dns' discovery mode queries A records (combined with port) or SRV records")
+    private String dns_record_type = "A";
+
+    @Property(description = "The JGroups port of the members when it is not provided by SRV records or a named endpoint port")
+    private int port = 7800;
+
+    @Property(description = "Time (in milliseconds) the members found by the 'endpoints' discovery mode are cached for")
+    private long endpoints_cache_ttl = 5000;
+
+    @Property(description = "Whether the members are kept in memory using a watch on the cluster pods rather than listing the pods on every discovery")
+    private boolean use_watch = true;
+
+    @Property(description = "Interval (in milliseconds) at which the watched members are re-listed from the API server")
+    private long resync_interval = 60000;
+
     private KubernetesClient client;
-    private List<PhysicalAddress> kubernetesHosts = Collections.emptyList();
+    private MemberSource memberSource;
+    private Future<?> resyncTask;
+    private volatile Set<PhysicalAddress> kubernetesHosts = Collections.emptySet();
     private BoundedList<PhysicalAddress> dynamic_hosts = new BoundedList<>(2000);
-    
+
     @Override
     public void init() throws Exception {
         super.init();
+        if (!Arrays.asList(DISCOVERY_MODE_PODS, DISCOVERY_MODE_DNS, DISCOVERY_MODE_ENDPOINTS).contains(discovery_mode)) {
+            throw new IllegalArgumentException("Unknown discovery_mode " + discovery_mode);
+        }
+        if (DISCOVERY_MODE_DNS.equals(discovery_mode)) {
+            // DNS discovery does not need the API server at all
+            return;
+        }
         if (!Strings.isNullOrBlank(address)) {
             client = new DefaultKubernetesClient(new ConfigBuilder().withMasterUrl(address).build());
         } else {
@@ -66,6 +102,64 @@ public class KubernetesDiscovery extends Discovery {
         }
     }
 
+    @Override
+    public void handleConnect() {
+        super.handleConnect();
+        if (memberSource != null) {
+            return;
+        }
+        if (DISCOVERY_MODE_DNS.equals(discovery_mode)) {
+            memberSource = new DnsMemberSource(ServiceDnsResolver.getDefault(), getServiceName(), "SRV".equalsIgnoreCase(dns_record_type), port);
+        } else if (DISCOVERY_MODE_ENDPOINTS.equals(discovery_mode)) {
+            memberSource = new EndpointsMemberSource(client, getServiceName(), port, endpoints_cache_ttl, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    timer.execute(command);
+                }
+            });
+        } else if (use_watch) {
+            final KubernetesMemberCache memberCache = new KubernetesMemberCache(client, getClusterLabels());
+            memberSource = memberCache;
+            if (resync_interval > 0) {
+                resyncTask = timer.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        memberCache.resync();
+                    }
+
+                    @Override
+                    public String toString() {
+                        return KubernetesDiscovery.class.getSimpleName() + ": member resync (" + resync_interval + "ms)";
+                    }
+                }, resync_interval, resync_interval, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (memberSource != null) {
+            memberSource.start();
+            kubernetesHosts = memberSource.getMembers();
+        }
+    }
+
+    @Override
+    public void handleDisconnect() {
+        stopMemberSource();
+        super.handleDisconnect();
+    }
+
+    @Override
+    public void stop() {
+        stopMemberSource();
+        super.stop();
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        if (client != null) {
+            client.close();
+        }
+    }
+
     public Object down(Event evt) {
         Object retval = super.down(evt);
         switch (evt.getType()) {
@@ -97,7 +191,11 @@ public class KubernetesDiscovery extends Discovery {
 
     @Override
     public void findMembers(List<Address> members, boolean initial_discovery, Responses responses) {
-        kubernetesHosts = findKubernetesHosts();
+        if (memberSource != null) {
+            kubernetesHosts = memberSource.getMembers();
+        } else {
+            kubernetesHosts = new HashSet<>(findKubernetesHosts());
+        }
         
         PhysicalAddress physical_addr = (PhysicalAddress) down(new Event(Event.GET_PHYSICAL_ADDRESS, local_addr));
         // https://issues.jboss.org/browse/JGRP-1670
@@ -128,31 +226,36 @@ public class KubernetesDiscovery extends Discovery {
     }
 
 
+    /**
+     * Lists the addresses of the ready cluster members from the API server
+     */
     public List<PhysicalAddress> findKubernetesHosts() {
         List<PhysicalAddress> addresses = new ArrayList<>();
-        Map<String, String> labels = Collections.singletonMap(Constants.JGROUPS_CLUSTER_NAME, cluster_name);
-
-        for (Pod pod : client.pods().withLabels(labels).list().getItems()) {
-            List<Container> containers = KubernetesHelper.getContainers(pod);
-            for (Container container : containers) {
-
-                for (ContainerPort port : container.getPorts()) {
-                    if (Constants.JGROUPS_TCP_PORT.equals(port.getName())) {
-                        try {
-                            String ip = pod.getStatus().getPodIP();
-                            if (ip != null) {
-                                addresses.add(new IpAddress(ip, port.getContainerPort()));
-                            }
-                        } catch (Exception ex) {
-                            LOGGER.warn("Failed to create Address {}.", pod.getStatus().getPodIP());
-                        }
-                    }
-                }
-            }
+        for (Pod pod : client.pods().withLabels(getClusterLabels()).list().getItems()) {
+            addresses.addAll(KubernetesMemberCache.getMemberAddresses(pod));
         }
         return addresses;
     }
 
+    private String getServiceName() {
+        return Strings.isNullOrBlank(service_name) ? cluster_name : service_name;
+    }
+
+    private Map<String, String> getClusterLabels() {
+        return Collections.singletonMap(Constants.JGROUPS_CLUSTER_NAME, cluster_name);
+    }
+
+    private void stopMemberSource() {
+        if (resyncTask != null) {
+            resyncTask.cancel(false);
+            resyncTask = null;
+        }
+        if (memberSource != null) {
+            memberSource.stop();
+            memberSource = null;
+        }
+    }
+
     @Override
     public boolean isDynamic() {
         return true;
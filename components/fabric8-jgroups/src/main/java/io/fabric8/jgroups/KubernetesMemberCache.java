@@ -0,0 +1,229 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jgroups;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.ContainerPort;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import org.jgroups.PhysicalAddress;
+import org.jgroups.stack.IpAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the physical addresses of the ready pods of a cluster in memory, using a watch on the pods
+ * plus a periodic {@link #resync()} in case watch events are missed. Each resync restarts the watch
+ * from the resourceVersion of the list, so that a list never overwrites newer watch events, and a
+ * watch that is closed by the server is re-opened straight away.
+ */
+public class KubernetesMemberCache implements MemberSource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KubernetesMemberCache.class);
+
+    private final KubernetesClient client;
+    private final Map<String, String> labels;
+    private final Map<String, List<PhysicalAddress>> podAddresses = new HashMap<>();
+    private volatile Set<PhysicalAddress> members = Collections.emptySet();
+    private Watch watch;
+    private PodWatcher watcher;
+    private volatile boolean started;
+
+    public KubernetesMemberCache(KubernetesClient client, Map<String, String> labels) {
+        this.client = client;
+        this.labels = labels;
+    }
+
+    /**
+     * Returns the physical addresses of the ready members of the cluster
+     */
+    @Override
+    public Set<PhysicalAddress> getMembers() {
+        return members;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    @Override
+    public void start() {
+        started = true;
+        resync();
+    }
+
+    @Override
+    public void stop() {
+        started = false;
+        synchronized (this) {
+            closeWatch();
+        }
+        synchronized (podAddresses) {
+            podAddresses.clear();
+            members = Collections.emptySet();
+        }
+    }
+
+    /**
+     * Re-lists the pods from the API server, replacing the cached members, and restarts the watch
+     * from the resourceVersion of the list
+     */
+    public synchronized void resync() {
+        if (!started) {
+            return;
+        }
+        //stop the current watch first, its events may be older or newer than the list.
+        closeWatch();
+        String resourceVersion = null;
+        try {
+            PodList list = client.pods().withLabels(labels).list();
+            Map<String, List<PhysicalAddress>> addresses = new HashMap<>();
+            if (list != null) {
+                for (Pod pod : list.getItems()) {
+                    List<PhysicalAddress> podMembers = getMemberAddresses(pod);
+                    if (!podMembers.isEmpty()) {
+                        addresses.put(KubernetesHelper.getName(pod), podMembers);
+                    }
+                }
+                if (list.getMetadata() != null) {
+                    resourceVersion = list.getMetadata().getResourceVersion();
+                }
+            }
+            synchronized (podAddresses) {
+                podAddresses.clear();
+                podAddresses.putAll(addresses);
+                updateMembers();
+            }
+        } catch (KubernetesClientException e) {
+            LOGGER.warn("Failed to list the pods with labels {}: {}", labels, e.getMessage());
+            return;
+        }
+        PodWatcher newWatcher = new PodWatcher();
+        watcher = newWatcher;
+        try {
+            if (resourceVersion != null) {
+                watch = client.pods().withLabels(labels).watch(resourceVersion, newWatcher);
+            } else {
+                watch = client.pods().withLabels(labels).watch(newWatcher);
+            }
+        } catch (KubernetesClientException e) {
+            watcher = null;
+            LOGGER.warn("Failed to watch the pods with labels {} so relying on resync: {}", labels, e.getMessage());
+        }
+    }
+
+    private synchronized boolean isCurrent(PodWatcher podWatcher) {
+        return started && watcher == podWatcher;
+    }
+
+    private void onEvent(Watcher.Action action, Pod pod) {
+        String name = KubernetesHelper.getName(pod);
+        if (name == null) {
+            return;
+        }
+        List<PhysicalAddress> addresses = action == Watcher.Action.DELETED ? Collections.<PhysicalAddress>emptyList() : getMemberAddresses(pod);
+        synchronized (podAddresses) {
+            List<PhysicalAddress> old = addresses.isEmpty() ? podAddresses.remove(name) : podAddresses.put(name, addresses);
+            if (old == null) {
+                old = Collections.emptyList();
+            }
+            if (!old.equals(addresses)) {
+                updateMembers();
+            }
+        }
+    }
+
+    private void updateMembers() {
+        Set<PhysicalAddress> answer = new HashSet<>();
+        for (List<PhysicalAddress> addresses : podAddresses.values()) {
+            answer.addAll(addresses);
+        }
+        members = Collections.unmodifiableSet(answer);
+    }
+
+    private void closeWatch() {
+        Watch w = watch;
+        watch = null;
+        watcher = null;
+        if (w != null) {
+            w.close();
+        }
+    }
+
+    /**
+     * Watcher of a single watch, so that events and closes of a watch that has since been replaced are ignored
+     */
+    private class PodWatcher implements Watcher<Pod> {
+
+        @Override
+        public void eventReceived(Action action, Pod pod) {
+            //hold the lock so that a resync cannot start between the check and the update.
+            synchronized (KubernetesMemberCache.this) {
+                if (isCurrent(this)) {
+                    onEvent(action, pod);
+                }
+            }
+        }
+
+        @Override
+        public void onClose(KubernetesClientException cause) {
+            if (!isCurrent(this)) {
+                return;
+            }
+            LOGGER.warn("Watch of the pods with labels {} closed, re-listing and re-opening it: {}", labels, cause != null ? cause.getMessage() : null);
+            resync();
+        }
+    }
+
+    /**
+     * Returns the JGroups addresses of the given pod or an empty list if the pod is not ready or is terminating
+     */
+    public static List<PhysicalAddress> getMemberAddresses(Pod pod) {
+        if (pod.getMetadata() == null || pod.getMetadata().getDeletionTimestamp() != null || !KubernetesHelper.isPodReady(pod)) {
+            return Collections.emptyList();
+        }
+        String ip = pod.getStatus().getPodIP();
+        if (ip == null) {
+            return Collections.emptyList();
+        }
+        List<PhysicalAddress> addresses = new ArrayList<>();
+        for (Container container : KubernetesHelper.getContainers(pod)) {
+            for (ContainerPort port : container.getPorts()) {
+                if (Constants.JGROUPS_TCP_PORT.equals(port.getName())) {
+                    try {
+                        addresses.add(new IpAddress(ip, port.getContainerPort()));
+                    } catch (Exception ex) {
+                        LOGGER.warn("Failed to create Address {}.", ip);
+                    }
+                }
+            }
+        }
+        return addresses;
+    }
+}
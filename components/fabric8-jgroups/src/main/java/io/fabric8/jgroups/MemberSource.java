@@ -0,0 +1,36 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jgroups;
+
+import org.jgroups.PhysicalAddress;
+
+import java.util.Set;
+
+/**
+ * A source of the physical addresses of the members of a cluster used by {@link KubernetesDiscovery}
+ */
+public interface MemberSource {
+
+    void start();
+
+    void stop();
+
+    /**
+     * Returns the physical addresses of the members; implementations should answer from memory
+     * so that discovery does not block on the API server or DNS
+     */
+    Set<PhysicalAddress> getMembers();
+}
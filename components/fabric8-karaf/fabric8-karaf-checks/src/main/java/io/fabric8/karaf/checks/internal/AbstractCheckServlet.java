@@ -0,0 +1,124 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import io.fabric8.karaf.checks.Check;
+
+/**
+ * Serves the last result computed by a {@link CheckResults}, as plain text or
+ * as JSON when requested with <tt>?format=json</tt> or an
+ * <tt>Accept: application/json</tt> header.
+ */
+public abstract class AbstractCheckServlet extends HttpServlet {
+
+    private final CheckResults<?> results;
+    private final String passedStatus;
+    private final String failedStatus;
+
+    protected AbstractCheckServlet(CheckResults<?> results, String passedStatus, String failedStatus) {
+        this.results = results;
+        this.passedStatus = passedStatus;
+        this.failedStatus = failedStatus;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        CheckResults.Result result = results.getResult();
+        List<Check> checks = result.getFailingChecks();
+        if (!checks.isEmpty()) {
+            resp.setStatus(503);
+        }
+
+        PrintWriter writer = resp.getWriter();
+        if (isJson(req)) {
+            resp.setContentType("application/json");
+            writer.print("{\"status\":\"");
+            writer.print(checks.isEmpty() ? passedStatus : failedStatus);
+            writer.print("\",\"timestamp\":");
+            writer.print(result.getTimestamp());
+            writer.print(",\"checks\":[");
+            for (int i = 0; i < checks.size(); i++) {
+                Check check = checks.get(i);
+                if (i > 0) {
+                    writer.print(',');
+                }
+                writer.print("{\"name\":\"");
+                writer.print(escapeJson(check.getName()));
+                writer.print("\",\"description\":\"");
+                writer.print(escapeJson(check.getLongDescription()));
+                writer.print("\"}");
+            }
+            writer.println("]}");
+        } else if (checks.isEmpty()) {
+            writer.println(passedStatus);
+        } else {
+            writer.println(failedStatus);
+            for (Check check : checks) {
+                writer.println(check.getName() + ": " + check.getLongDescription());
+            }
+        }
+    }
+
+    private static boolean isJson(HttpServletRequest req) {
+        if ("json".equalsIgnoreCase(req.getParameter("format"))) {
+            return true;
+        }
+        String accept = req.getHeader("Accept");
+        return accept != null && accept.contains("application/json");
+    }
+
+    static String escapeJson(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -32,11 +32,14 @@ public abstract class AbstractChecker implements io.fabric8.karaf.checks.HealthC
     protected final Bundle systemBundle;
     protected final BundleContext systemBundleContext;
 
+    private volatile Runnable changeListener;
+
     public AbstractChecker() {
         bundle = FrameworkUtil.getBundle(getClass());
-        bundleContext = bundle.getBundleContext();
-        systemBundle= bundleContext.getBundle(0);
-        systemBundleContext = systemBundle.getBundleContext();
+        // no bundle outside of an OSGi framework, as in unit tests
+        bundleContext = bundle != null ? bundle.getBundleContext() : null;
+        systemBundle = bundleContext != null ? bundleContext.getBundle(0) : null;
+        systemBundleContext = systemBundle != null ? systemBundle.getBundleContext() : null;
     }
 
     @Override
@@ -51,5 +54,18 @@ public abstract class AbstractChecker implements io.fabric8.karaf.checks.HealthC
 
     protected abstract List<Check> doCheck();
 
+    /**
+     * Sets the callback notified when the checker knows its result may have changed
+     */
+    public void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    protected void fireChanged() {
+        Runnable listener = changeListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
 
 }
@@ -17,45 +17,293 @@
 
 package io.fabric8.karaf.checks.internal;
 
+import javax.management.InstanceNotFoundException;
 import javax.management.MBeanServer;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.Notification;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
 import javax.management.ObjectName;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.fabric8.karaf.checks.Check;
-import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
 import org.osgi.util.tracker.ServiceTracker;
 
-public class CamelState extends AbstractChecker {
+/**
+ * Keeps the state of the Camel contexts (and optionally routes) registered in JMX
+ * up to date using MBean registration notifications and the notifications of the
+ * Camel JMX event notifiers, so a check is a map read: only the contexts and routes
+ * which are not started yet are queried again on each check.
+ * <p/>
+ * Camel unregisters the MBeans of the contexts it stops, but only reports other changes
+ * of a started context or route, like a suspend, through a JMX event notifier, which
+ * Camel does not register by default. Add a
+ * <tt>org.apache.camel.management.JmxNotificationEventNotifier</tt> to the contexts
+ * for those changes to be noticed.
+ */
+public class CamelState extends AbstractChecker implements NotificationListener {
+
+    /**
+     * Whether readiness requires all the Camel routes to be started, false by default
+     */
+    public static final String CHECK_ROUTES = "fabric8.checks.camel.routes";
+    /**
+     * Maximum number of inflight exchanges per Camel context for readiness, disabled by default
+     */
+    public static final String MAX_INFLIGHT_EXCHANGES = "fabric8.checks.camel.inflight.max";
+
+    private static final String CAMEL_DOMAIN = "org.apache.camel";
+    private static final String STARTED = "Started";
 
-    private ServiceTracker<MBeanServer, MBeanServer> mbeanServer;
+    private final ServiceTracker<MBeanServer, MBeanServer> mbeanServer;
+    private final Map<ObjectName, String> contextStates = new ConcurrentHashMap<>();
+    private final Map<ObjectName, String> routeStates = new ConcurrentHashMap<>();
+    private final Set<ObjectName> notifiers = ConcurrentHashMap.newKeySet();
+    private final boolean checkRoutes;
+    private final int maxInflightExchanges;
+    private volatile MBeanServer server;
+    private volatile Exception failure;
 
     public CamelState() {
-        this.mbeanServer = new ServiceTracker<>(bundleContext, MBeanServer.class, null);
+        this.checkRoutes = Boolean.getBoolean(CHECK_ROUTES);
+        this.maxInflightExchanges = Integer.getInteger(MAX_INFLIGHT_EXCHANGES, -1);
+        this.mbeanServer = new ServiceTracker<MBeanServer, MBeanServer>(bundleContext, MBeanServer.class, null) {
+            @Override
+            public MBeanServer addingService(ServiceReference<MBeanServer> reference) {
+                MBeanServer service = super.addingService(reference);
+                if (service != null && server == null) {
+                    subscribe(service);
+                }
+                return service;
+            }
+
+            @Override
+            public void removedService(ServiceReference<MBeanServer> reference, MBeanServer service) {
+                if (service == server) {
+                    unsubscribe(service);
+                }
+                super.removedService(reference, service);
+            }
+        };
         this.mbeanServer.open();
     }
 
+    /**
+     * Creates a checker which is not tracking the MBeanServer service, see {@link #subscribe(MBeanServer)}
+     */
+    CamelState(boolean checkRoutes, int maxInflightExchanges) {
+        this.checkRoutes = checkRoutes;
+        this.maxInflightExchanges = maxInflightExchanges;
+        this.mbeanServer = null;
+    }
+
     @Override
     protected List<Check> doCheck() {
-        MBeanServer server = this.mbeanServer.getService();
-        if (server != null) {
-            try {
-                List<Check> checks = new ArrayList<>();
-                Set<ObjectName> contexts = server.queryNames(new ObjectName("org.apache.camel:type=context,*"), null);
-                for (ObjectName ctxName : contexts) {
-                    String state = server.getAttribute(ctxName, "State").toString();
-                    if (!"Started".equals(state)) {
-                        String name = ctxName.getKeyProperty("name");
-                        checks.add(new Check("camel-state", "Camel context " + name + " is in state " + state));
+        MBeanServer server = this.server;
+        if (server == null) {
+            return Collections.emptyList();
+        }
+        if (failure != null) {
+            return Collections.singletonList(new Check("camel-state", "Unable to check camel contexts: " + failure.toString()));
+        }
+
+        List<Check> checks = new ArrayList<>();
+        try {
+            for (ObjectName ctxName : contextStates.keySet()) {
+                String state = getState(server, ctxName, contextStates);
+                if (state != null && !STARTED.equals(state)) {
+                    String name = ctxName.getKeyProperty("name");
+                    checks.add(new Check("camel-state", "Camel context " + name + " is in state " + state));
+                }
+            }
+        } catch (Exception e) {
+            return Collections.singletonList(new Check("camel-state", "Unable to check camel contexts: " + e.toString()));
+        }
+        return checks;
+    }
+
+    @Override
+    public List<Check> getFailingReadinessChecks() {
+        List<Check> checks = doCheck();
+        MBeanServer server = this.server;
+        if (server == null || (!checkRoutes && maxInflightExchanges < 0)) {
+            return checks;
+        }
+
+        checks = new ArrayList<>(checks);
+        try {
+            if (checkRoutes) {
+                for (ObjectName routeName : routeStates.keySet()) {
+                    String state = getState(server, routeName, routeStates);
+                    if (state != null && !STARTED.equals(state)) {
+                        checks.add(new Check("camel-route-state", "Camel route " + routeName.getKeyProperty("name")
+                            + " of context " + routeName.getKeyProperty("context") + " is in state " + state));
+                    }
+                }
+            }
+            if (maxInflightExchanges >= 0) {
+                for (ObjectName ctxName : contextStates.keySet()) {
+                    Object inflight = getAttribute(server, ctxName, "InflightExchanges");
+                    if (inflight instanceof Number && ((Number) inflight).intValue() > maxInflightExchanges) {
+                        checks.add(new Check("camel-inflight", "Camel context " + ctxName.getKeyProperty("name")
+                            + " has " + inflight + " inflight exchanges"));
                     }
                 }
-                return checks;
+            }
+        } catch (Exception e) {
+            checks.add(new Check("camel-state", "Unable to check camel routes: " + e.toString()));
+        }
+        return checks;
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        MBeanServer server = this.server;
+        if (server == null) {
+            return;
+        }
+
+        try {
+            if (notification instanceof MBeanServerNotification) {
+                ObjectName name = ((MBeanServerNotification) notification).getMBeanName();
+                if (!CAMEL_DOMAIN.equals(name.getDomain())) {
+                    return;
+                }
+                if (MBeanServerNotification.REGISTRATION_NOTIFICATION.equals(notification.getType())) {
+                    registered(server, name);
+                } else if (MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(notification.getType())) {
+                    contextStates.remove(name);
+                    routeStates.remove(name);
+                    notifiers.remove(name);
+                }
+            } else if (notification.getSource() instanceof ObjectName) {
+                // a Camel event, refresh the states of the context which has emitted it
+                String context = ((ObjectName) notification.getSource()).getKeyProperty("context");
+                refresh(server, contextStates, context);
+                if (checkRoutes) {
+                    refresh(server, routeStates, context);
+                }
+            }
+        } catch (Exception e) {
+            // the states which could not be read are queried again by the next check
+        }
+        fireChanged();
+    }
+
+    void subscribe(MBeanServer server) {
+        try {
+            server.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this, new NotificationFilter() {
+                @Override
+                public boolean isNotificationEnabled(Notification notification) {
+                    return notification instanceof MBeanServerNotification;
+                }
+            }, null);
+            this.server = server;
+
+            for (ObjectName name : server.queryNames(new ObjectName(CAMEL_DOMAIN + ":*"), null)) {
+                registered(server, name);
+            }
+            failure = null;
+        } catch (Exception e) {
+            failure = e;
+        }
+        fireChanged();
+    }
+
+    void unsubscribe(MBeanServer server) {
+        try {
+            server.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this);
+        } catch (Exception e) {
+            // ignore
+        }
+        for (ObjectName notifier : notifiers) {
+            try {
+                server.removeNotificationListener(notifier, this);
             } catch (Exception e) {
-                return Collections.singletonList(new Check("camel-state", "Unable to check camel contexts: " + e.toString()));
+                // already unregistered
             }
         }
-        return Collections.emptyList();
+        this.server = null;
+        contextStates.clear();
+        routeStates.clear();
+        notifiers.clear();
+        failure = null;
+    }
+
+    private void registered(MBeanServer server, ObjectName name) throws Exception {
+        String type = name.getKeyProperty("type");
+        if ("context".equals(type)) {
+            registerState(server, name, contextStates);
+        } else if ("routes".equals(type) && checkRoutes) {
+            registerState(server, name, routeStates);
+        } else if ("eventnotifiers".equals(type) && server.isInstanceOf(name, "javax.management.NotificationBroadcaster")) {
+            server.addNotificationListener(name, this, new NotificationFilter() {
+                @Override
+                public boolean isNotificationEnabled(Notification notification) {
+                    // only context and route lifecycle events, not the exchange ones
+                    String type = notification.getType();
+                    return type != null && !type.contains("Exchange") && (type.contains("Context") || type.contains("Route"));
+                }
+            }, null);
+            notifiers.add(name);
+            // the events emitted before the listener was added are lost
+            refresh(server, contextStates, name.getKeyProperty("context"));
+            if (checkRoutes) {
+                refresh(server, routeStates, name.getKeyProperty("context"));
+            }
+        }
+    }
+
+    private void registerState(MBeanServer server, ObjectName name, Map<ObjectName, String> states) {
+        try {
+            putState(server, name, states);
+        } catch (Exception e) {
+            // will be queried again by the next check
+            states.put(name, "Unknown");
+        }
+    }
+
+    private void refresh(MBeanServer server, Map<ObjectName, String> states, String context) {
+        for (ObjectName name : states.keySet()) {
+            if (context == null || context.equals(name.getKeyProperty("context"))) {
+                registerState(server, name, states);
+            }
+        }
+    }
+
+    /**
+     * Returns the cached state, querying it again if not started yet
+     */
+    private String getState(MBeanServer server, ObjectName name, Map<ObjectName, String> states) throws Exception {
+        String state = states.get(name);
+        if (state != null && !STARTED.equals(state)) {
+            state = putState(server, name, states);
+        }
+        return state;
+    }
+
+    private String putState(MBeanServer server, ObjectName name, Map<ObjectName, String> states) throws Exception {
+        Object state = getAttribute(server, name, "State");
+        if (state == null) {
+            states.remove(name);
+            return null;
+        }
+        states.put(name, state.toString());
+        return state.toString();
+    }
+
+    private Object getAttribute(MBeanServer server, ObjectName name, String attribute) throws Exception {
+        try {
+            return server.getAttribute(name, attribute);
+        } catch (InstanceNotFoundException e) {
+            return null;
+        }
     }
 }
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.fabric8.karaf.checks.Check;
+
+/**
+ * Holds the last failing checks computed from a list of checkers so probes
+ * can be answered without running the checkers, which are re-evaluated on
+ * the given executor whenever {@link #invalidate()} is called.
+ */
+public abstract class CheckResults<T> implements Runnable {
+
+    private final CopyOnWriteArrayList<T> checkers;
+    private final ScheduledExecutorService executor;
+    private final long delay;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile Result result;
+
+    public CheckResults(CopyOnWriteArrayList<T> checkers, ScheduledExecutorService executor, long delay) {
+        this.checkers = checkers;
+        this.executor = executor;
+        this.delay = delay;
+    }
+
+    /**
+     * Returns the last computed result, evaluating the checkers only if they have never been evaluated
+     */
+    public Result getResult() {
+        Result answer = result;
+        if (answer == null) {
+            answer = evaluate();
+        }
+        return answer;
+    }
+
+    /**
+     * Schedules a re-evaluation of the checkers, the invalidations happening
+     * before it runs are coalesced into a single evaluation.
+     */
+    public void invalidate() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                scheduled.set(false);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        scheduled.set(false);
+        evaluate();
+    }
+
+    protected synchronized Result evaluate() {
+        List<Check> checks = new ArrayList<>();
+        for (T checker : checkers) {
+            try {
+                checks.addAll(check(checker));
+            } catch (Throwable t) {
+                checks.add(new Check("check-failure", "Unable to run " + checker.getClass().getName() + ": " + t));
+            }
+        }
+
+        Result answer = new Result(Collections.unmodifiableList(checks), System.currentTimeMillis());
+        result = answer;
+        return answer;
+    }
+
+    protected abstract List<Check> check(T checker);
+
+    public static final class Result {
+        private final List<Check> failingChecks;
+        private final long timestamp;
+
+        public Result(List<Check> failingChecks, long timestamp) {
+            this.failingChecks = failingChecks;
+            this.timestamp = timestamp;
+        }
+
+        public List<Check> getFailingChecks() {
+            return failingChecks;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
@@ -18,9 +18,15 @@
 package io.fabric8.karaf.checks.internal;
 
 import javax.servlet.ServletException;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+import io.fabric8.karaf.checks.Check;
 import io.fabric8.karaf.checks.HealthChecker;
 import io.fabric8.karaf.checks.ReadinessChecker;
 import org.apache.felix.scr.annotations.Activate;
@@ -30,6 +36,13 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.SynchronousBundleListener;
 import org.osgi.service.http.HttpService;
 import org.osgi.service.http.NamespaceException;
 
@@ -40,7 +53,16 @@ import org.osgi.service.http.NamespaceException;
     policy    = ConfigurationPolicy.IGNORE,
     createPid = false
 )
-public class ChecksService {
+public class ChecksService implements SynchronousBundleListener, ServiceListener, FrameworkListener {
+
+    /**
+     * Delay in millis used to coalesce the events triggering a re-evaluation of the checks
+     */
+    public static final String CHECKS_DELAY = "fabric8.checks.delay";
+    /**
+     * Interval in millis of the periodic re-evaluation of the checks, for checks not driven by events
+     */
+    public static final String CHECKS_INTERVAL = "fabric8.checks.interval";
 
     @Reference(referenceInterface = HttpService.class, cardinality = ReferenceCardinality.MANDATORY_UNARY)
     private HttpService httpService;
@@ -56,6 +78,11 @@ public class ChecksService {
     String readinessCheckPath = "/readiness-check";
     String healthCheckPath = "/health-check";
 
+    private ScheduledExecutorService executor;
+    private BundleContext bundleContext;
+    private volatile CheckResults<ReadinessChecker> readinessResults;
+    private volatile CheckResults<HealthChecker> healthResults;
+
     public ChecksService() {
         bind(new FrameworkState());
         bind(new BundleState());
@@ -75,10 +102,22 @@ public class ChecksService {
         } catch (Throwable t) {
             // Ignore
         }
-        bind(new CamelState());
+        try {
+            bind(new CamelState());
+        } catch (Throwable t) {
+            // Ignore
+        }
     }
 
     private void bind(Object checker) {
+        if (checker instanceof AbstractChecker) {
+            ((AbstractChecker) checker).setChangeListener(new Runnable() {
+                @Override
+                public void run() {
+                    invalidate();
+                }
+            });
+        }
         if (checker instanceof ReadinessChecker) {
             bindReadinessCheckers((ReadinessChecker) checker);
         }
@@ -88,15 +127,89 @@ public class ChecksService {
     }
 
     @Activate
-    void activate(Map<String, ?> configuration) throws ServletException, NamespaceException {
-        httpService.registerServlet(readinessCheckPath, new ReadinessCheckServlet(readinessCheckers), null, null);
-        httpService.registerServlet(healthCheckPath, new HealthCheckServlet(healthCheckers), null, null);
+    void activate(BundleContext bundleContext, Map<String, ?> configuration) throws ServletException, NamespaceException {
+        long delay = Long.getLong(CHECKS_DELAY, 100L);
+        long interval = Long.getLong(CHECKS_INTERVAL, 10000L);
+
+        this.bundleContext = bundleContext;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "fabric8-karaf-checks");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        this.readinessResults = new CheckResults<ReadinessChecker>(readinessCheckers, executor, delay) {
+            @Override
+            protected List<Check> check(ReadinessChecker checker) {
+                return checker.getFailingReadinessChecks();
+            }
+        };
+        this.healthResults = new CheckResults<HealthChecker>(healthCheckers, executor, delay) {
+            @Override
+            protected List<Check> check(HealthChecker checker) {
+                return checker.getFailingHealthChecks();
+            }
+        };
+
+        bundleContext.addBundleListener(this);
+        bundleContext.addServiceListener(this);
+        bundleContext.addFrameworkListener(this);
+
+        // fallback for the checks whose state changes are not notified
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                invalidate();
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+
+        httpService.registerServlet(readinessCheckPath, new ReadinessCheckServlet(readinessResults), null, null);
+        httpService.registerServlet(healthCheckPath, new HealthCheckServlet(healthResults), null, null);
     }
 
     @Deactivate
     void deactivate() {
         httpService.unregister(readinessCheckPath);
         httpService.unregister(healthCheckPath);
+
+        bundleContext.removeBundleListener(this);
+        bundleContext.removeServiceListener(this);
+        bundleContext.removeFrameworkListener(this);
+
+        executor.shutdownNow();
+        readinessResults = null;
+        healthResults = null;
+    }
+
+    @Override
+    public void bundleChanged(BundleEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void serviceChanged(ServiceEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void frameworkEvent(FrameworkEvent event) {
+        if (event.getType() == FrameworkEvent.STARTED || event.getType() == FrameworkEvent.STARTLEVEL_CHANGED) {
+            invalidate();
+        }
+    }
+
+    void invalidate() {
+        CheckResults<?> results = readinessResults;
+        if (results != null) {
+            results.invalidate();
+        }
+        results = healthResults;
+        if (results != null) {
+            results.invalidate();
+        }
     }
 
     void bindHttpService(HttpService httpService) {
@@ -108,15 +221,19 @@ public class ChecksService {
 
     void bindReadinessCheckers(ReadinessChecker value) {
         readinessCheckers.add(value);
+        invalidate();
     }
     void unbindReadinessCheckers(ReadinessChecker value) {
         readinessCheckers.remove(value);
+        invalidate();
     }
 
     void bindHealthCheckers(HealthChecker value) {
         healthCheckers.add(value);
+        invalidate();
     }
     void unbindHealthCheckers(HealthChecker value) {
         healthCheckers.remove(value);
+        invalidate();
     }
 }
@@ -31,41 +31,12 @@
  */
 package io.fabric8.karaf.checks.internal;
 
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServlet;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-
-import io.fabric8.karaf.checks.Check;
 import io.fabric8.karaf.checks.HealthChecker;
 
-public class HealthCheckServlet extends HttpServlet {
-
-    private final CopyOnWriteArrayList<HealthChecker> checkers;
-
-    public HealthCheckServlet(CopyOnWriteArrayList<HealthChecker> checkers) {
-        this.checkers = checkers;
-    }
+public class HealthCheckServlet extends AbstractCheckServlet {
 
-    @Override
-    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        List<Check> checks = new ArrayList<>();
-        for (HealthChecker checker : checkers) {
-            checks.addAll(checker.getFailingHealthChecks());
-        }
-        if (checks.isEmpty()) {
-            resp.getWriter().println("HEALTHY");
-        } else {
-            resp.setStatus(503);
-            resp.getWriter().println("NOT HEALTHY");
-            for (Check check : checks) {
-                resp.getWriter().println(check.getName() + ": " + check.getLongDescription());
-            }
-        }
+    public HealthCheckServlet(CheckResults<HealthChecker> results) {
+        super(results, "HEALTHY", "NOT HEALTHY");
     }
 
 }
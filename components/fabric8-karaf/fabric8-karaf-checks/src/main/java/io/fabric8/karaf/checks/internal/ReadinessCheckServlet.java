@@ -31,41 +31,12 @@
  */
 package io.fabric8.karaf.checks.internal;
 
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServlet;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-
-import io.fabric8.karaf.checks.Check;
 import io.fabric8.karaf.checks.ReadinessChecker;
 
-public class ReadinessCheckServlet extends HttpServlet {
-
-    private final CopyOnWriteArrayList<ReadinessChecker> checkers;
-
-    public ReadinessCheckServlet(CopyOnWriteArrayList<ReadinessChecker> readinessCheckers) {
-        this.checkers = readinessCheckers;
-    }
+public class ReadinessCheckServlet extends AbstractCheckServlet {
 
-    @Override
-    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        List<Check> checks = new ArrayList<>();
-        for (ReadinessChecker checker : checkers) {
-            checks.addAll(checker.getFailingReadinessChecks());
-        }
-        if (checks.isEmpty()) {
-            resp.getWriter().println("READY");
-        } else {
-            resp.setStatus(503);
-            resp.getWriter().println("NOT READY");
-            for (Check check : checks) {
-                resp.getWriter().println(check.getName() + ": " + check.getLongDescription());
-            }
-        }
+    public ReadinessCheckServlet(CheckResults<ReadinessChecker> results) {
+        super(results, "READY", "NOT READY");
     }
 
 }
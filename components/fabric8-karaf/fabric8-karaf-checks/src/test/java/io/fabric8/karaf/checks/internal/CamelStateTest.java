@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fabric8.karaf.checks.internal;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.Notification;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.ObjectName;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.fabric8.karaf.checks.Check;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CamelStateTest {
+
+    private MBeanServer server;
+    private ObjectName contextName;
+    private ObjectName notifierName;
+    private Context context;
+    private final AtomicInteger changes = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = MBeanServerFactory.newMBeanServer();
+        contextName = new ObjectName("org.apache.camel:context=camel-1,type=context,name=camel-1");
+        notifierName = new ObjectName("org.apache.camel:context=camel-1,type=eventnotifiers,name=JmxEventNotifier");
+        context = new Context("Started");
+        server.registerMBean(context, contextName);
+    }
+
+    @Test
+    public void testReadsStartedStatesOnlyWhenRegistered() throws Exception {
+        CamelState state = subscribe();
+        Assert.assertTrue(state.doCheck().isEmpty());
+        Assert.assertTrue(state.doCheck().isEmpty());
+        Assert.assertEquals(1, context.reads.get());
+    }
+
+    @Test
+    public void testQueriesStatesUntilStarted() throws Exception {
+        context.state = "Starting";
+        CamelState state = subscribe();
+        List<Check> checks = state.doCheck();
+        Assert.assertEquals(1, checks.size());
+        Assert.assertEquals("Camel context camel-1 is in state Starting", checks.get(0).getLongDescription());
+
+        context.state = "Started";
+        Assert.assertTrue(state.doCheck().isEmpty());
+        int reads = context.reads.get();
+        Assert.assertTrue(state.doCheck().isEmpty());
+        Assert.assertEquals(reads, context.reads.get());
+    }
+
+    @Test
+    public void testTracksRegisteredAndUnregisteredContexts() throws Exception {
+        CamelState state = subscribe();
+        ObjectName otherName = new ObjectName("org.apache.camel:context=camel-2,type=context,name=camel-2");
+        server.registerMBean(new Context("Stopped"), otherName);
+        Assert.assertEquals(1, state.doCheck().size());
+        Assert.assertTrue(changes.get() > 0);
+
+        server.unregisterMBean(otherName);
+        Assert.assertTrue(state.doCheck().isEmpty());
+    }
+
+    @Test
+    public void testRefreshesStatesOnNotifierEvents() throws Exception {
+        Notifier notifier = new Notifier();
+        server.registerMBean(notifier, notifierName);
+        CamelState state = subscribe();
+
+        context.state = "Suspended";
+        // a started state is not queried again without an event
+        Assert.assertTrue(state.doCheck().isEmpty());
+
+        int before = changes.get();
+        notifier.send("CamelContextSuspendedEvent");
+        Assert.assertEquals(before + 1, changes.get());
+        Assert.assertEquals(1, state.doCheck().size());
+
+        // exchange events do not refresh anything
+        int reads = context.reads.get();
+        notifier.send("ExchangeCompletedEvent");
+        Assert.assertEquals(reads, context.reads.get());
+    }
+
+    @Test
+    public void testUnsubscribeRemovesTheNotifierListeners() throws Exception {
+        Notifier notifier = new Notifier();
+        server.registerMBean(notifier, notifierName);
+        CamelState state = subscribe();
+        state.unsubscribe(server);
+
+        int before = changes.get();
+        notifier.send("CamelContextSuspendedEvent");
+        Assert.assertEquals(before, changes.get());
+        try {
+            server.removeNotificationListener(notifierName, state);
+            Assert.fail("The listener should have been removed");
+        } catch (ListenerNotFoundException e) {
+            // expected
+        }
+    }
+
+    private CamelState subscribe() {
+        CamelState state = new CamelState(false, -1);
+        state.setChangeListener(new Runnable() {
+            @Override
+            public void run() {
+                changes.incrementAndGet();
+            }
+        });
+        state.subscribe(server);
+        return state;
+    }
+
+    public interface ContextMBean {
+        String getState();
+    }
+
+    public static class Context implements ContextMBean {
+        private final AtomicInteger reads = new AtomicInteger();
+        private volatile String state;
+
+        Context(String state) {
+            this.state = state;
+        }
+
+        @Override
+        public String getState() {
+            reads.incrementAndGet();
+            return state;
+        }
+    }
+
+    public interface NotifierMBean {
+    }
+
+    public static class Notifier extends NotificationBroadcasterSupport implements NotifierMBean {
+        private long sequence;
+
+        void send(String type) {
+            sendNotification(new Notification(type, this, ++sequence));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.fabric8.karaf.checks.Check;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CheckResultsTest {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final CopyOnWriteArrayList<CountingChecker> checkers = new CopyOnWriteArrayList<>();
+    private final CheckResults<CountingChecker> results = new CheckResults<CountingChecker>(checkers, executor, 50) {
+        @Override
+        protected List<Check> check(CountingChecker checker) {
+            return checker.check();
+        }
+    };
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testServesCachedResult() throws Exception {
+        CountingChecker checker = new CountingChecker();
+        checkers.add(checker);
+
+        CheckResults.Result first = results.getResult();
+        Assert.assertTrue(first.getFailingChecks().isEmpty());
+        checker.failing = true;
+        Assert.assertSame(first, results.getResult());
+        Assert.assertEquals(1, checker.runs.get());
+    }
+
+    @Test
+    public void testCoalescesInvalidations() throws Exception {
+        CountingChecker checker = new CountingChecker();
+        checkers.add(checker);
+        results.getResult();
+
+        checker.failing = true;
+        for (int i = 0; i < 10; i++) {
+            results.invalidate();
+        }
+        awaitEvaluations(checker, 2);
+        Thread.sleep(200);
+        Assert.assertEquals(2, checker.runs.get());
+        Assert.assertEquals(1, results.getResult().getFailingChecks().size());
+
+        // a later invalidation schedules a new evaluation
+        checker.failing = false;
+        results.invalidate();
+        awaitEvaluations(checker, 3);
+    }
+
+    @Test
+    public void testReportsFailingCheckers() throws Exception {
+        checkers.add(new CountingChecker() {
+            @Override
+            List<Check> check() {
+                throw new IllegalStateException("boom");
+            }
+        });
+
+        List<Check> checks = results.getResult().getFailingChecks();
+        Assert.assertEquals(1, checks.size());
+        Assert.assertEquals("check-failure", checks.get(0).getName());
+    }
+
+    @Test
+    public void testIgnoresInvalidationsOnceShutdown() throws Exception {
+        executor.shutdownNow();
+        results.invalidate();
+        results.invalidate();
+    }
+
+    private static void awaitEvaluations(CountingChecker checker, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (checker.runs.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, checker.runs.get());
+    }
+
+    static class CountingChecker {
+        final AtomicInteger runs = new AtomicInteger();
+        volatile boolean failing;
+
+        List<Check> check() {
+            runs.incrementAndGet();
+            return failing ? Collections.singletonList(new Check("failing", "Failing check")) : Collections.<Check>emptyList();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.fabric8.karaf.checks.Check;
+import io.fabric8.karaf.checks.ReadinessChecker;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CheckServletTest {
+
+    private volatile List<Check> failingChecks = Collections.emptyList();
+    private final CopyOnWriteArrayList<ReadinessChecker> checkers = new CopyOnWriteArrayList<ReadinessChecker>(Collections.<ReadinessChecker>singletonList(new ReadinessChecker() {
+        @Override
+        public List<Check> getFailingReadinessChecks() {
+            return failingChecks;
+        }
+    }));
+    private final CheckResults<ReadinessChecker> results = new CheckResults<ReadinessChecker>(checkers, null, 0) {
+        @Override
+        protected List<Check> check(ReadinessChecker checker) {
+            return checker.getFailingReadinessChecks();
+        }
+    };
+    private final ReadinessCheckServlet servlet = new ReadinessCheckServlet(results);
+
+    @Test
+    public void testServesPlainText() throws Exception {
+        Response response = get(null, null);
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals("READY", response.body.toString().trim());
+    }
+
+    @Test
+    public void testServesFailingChecksWith503() throws Exception {
+        failingChecks = Arrays.asList(new Check("camel-state", "Camel context foo is in state Stopped"));
+        Response response = get(null, null);
+        Assert.assertEquals(503, response.status);
+        Assert.assertEquals("NOT READY\ncamel-state: Camel context foo is in state Stopped", response.body.toString().trim().replace("\r", ""));
+    }
+
+    @Test
+    public void testServesJsonForFormatParameter() throws Exception {
+        failingChecks = Arrays.asList(new Check("disk", "Only \"5\" kb\nleft"));
+        Response response = get("json", null);
+        long timestamp = results.getResult().getTimestamp();
+        Assert.assertEquals(503, response.status);
+        Assert.assertEquals("application/json", response.contentType);
+        Assert.assertEquals("{\"status\":\"NOT READY\",\"timestamp\":" + timestamp
+            + ",\"checks\":[{\"name\":\"disk\",\"description\":\"Only \\\"5\\\" kb\\nleft\"}]}", response.body.toString().trim());
+    }
+
+    @Test
+    public void testServesJsonForAcceptHeader() throws Exception {
+        Response response = get(null, "text/plain, application/json;q=0.9");
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals("application/json", response.contentType);
+        Assert.assertTrue(response.body.toString().startsWith("{\"status\":\"READY\""));
+    }
+
+    @Test
+    public void testServesTheCachedResult() throws Exception {
+        get(null, null);
+        failingChecks = Arrays.asList(new Check("late", "Not evaluated until invalidated"));
+        Assert.assertEquals(200, get(null, null).status);
+    }
+
+    @Test
+    public void testEscapesJson() {
+        Assert.assertEquals("a\\\\b\\\"c\\td\\u0001", AbstractCheckServlet.escapeJson("a\\b\"c\td\u0001"));
+        Assert.assertEquals("", AbstractCheckServlet.escapeJson(null));
+    }
+
+    private Response get(String format, String accept) throws Exception {
+        final Map<String, String> parameters = new HashMap<>();
+        if (format != null) {
+            parameters.put("format", format);
+        }
+        final Map<String, String> headers = new HashMap<>();
+        if (accept != null) {
+            headers.put("Accept", accept);
+        }
+        HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getMethod".equals(method.getName())) {
+                    return "GET";
+                } else if ("getParameter".equals(method.getName())) {
+                    return parameters.get(args[0]);
+                } else if ("getHeader".equals(method.getName())) {
+                    return headers.get(args[0]);
+                }
+                return null;
+            }
+        });
+        final Response response = new Response();
+        HttpServletResponse servletResponse = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletResponse.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("setStatus".equals(method.getName())) {
+                    response.status = (Integer) args[0];
+                } else if ("setContentType".equals(method.getName())) {
+                    response.contentType = (String) args[0];
+                } else if ("getWriter".equals(method.getName())) {
+                    return response.writer;
+                }
+                return null;
+            }
+        });
+        servlet.doGet(request, servletResponse);
+        response.writer.flush();
+        return response;
+    }
+
+    private static class Response {
+        private final StringWriter body = new StringWriter();
+        private final PrintWriter writer = new PrintWriter(body);
+        private int status = 200;
+        private String contentType;
+    }
+}
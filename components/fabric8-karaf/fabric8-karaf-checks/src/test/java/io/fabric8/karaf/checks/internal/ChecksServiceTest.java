@@ -0,0 +1,135 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import javax.servlet.Servlet;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.fabric8.karaf.checks.Check;
+import io.fabric8.karaf.checks.HealthChecker;
+import io.fabric8.karaf.checks.ReadinessChecker;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.http.HttpService;
+
+public class ChecksServiceTest {
+
+    private final Map<String, Servlet> servlets = new ConcurrentHashMap<>();
+    private final AtomicInteger readinessRuns = new AtomicInteger();
+    private final ChecksService service = new ChecksService();
+
+    @After
+    public void tearDown() {
+        service.deactivate();
+        System.clearProperty(ChecksService.CHECKS_DELAY);
+        System.clearProperty(ChecksService.CHECKS_INTERVAL);
+    }
+
+    @Test
+    public void testRegistersAndUnregistersTheProbeServlets() throws Exception {
+        activate(10, 60000);
+        Assert.assertTrue(servlets.get("/readiness-check") instanceof ReadinessCheckServlet);
+        Assert.assertTrue(servlets.get("/health-check") instanceof HealthCheckServlet);
+
+        service.deactivate();
+        Assert.assertTrue(servlets.isEmpty());
+        activate(10, 60000);
+    }
+
+    @Test
+    public void testReEvaluatesPeriodically() throws Exception {
+        activate(10, 50);
+        // nothing notifies a change, only the periodic fallback runs the checker
+        awaitRuns(5);
+    }
+
+    @Test
+    public void testCoalescesEvents() throws Exception {
+        activate(200, 60000);
+        awaitRuns(1);
+        Thread.sleep(300);
+        int before = readinessRuns.get();
+
+        for (int i = 0; i < 20; i++) {
+            service.bundleChanged(null);
+            service.serviceChanged(null);
+        }
+        awaitRuns(before + 1);
+        Thread.sleep(400);
+        Assert.assertEquals(before + 1, readinessRuns.get());
+    }
+
+    private void activate(long delay, long interval) throws Exception {
+        System.setProperty(ChecksService.CHECKS_DELAY, Long.toString(delay));
+        System.setProperty(ChecksService.CHECKS_INTERVAL, Long.toString(interval));
+        // only the checkers of the test, the built-in ones need a framework
+        service.readinessCheckers.clear();
+        service.healthCheckers.clear();
+        service.bindReadinessCheckers(new ReadinessChecker() {
+            @Override
+            public List<Check> getFailingReadinessChecks() {
+                readinessRuns.incrementAndGet();
+                return Collections.emptyList();
+            }
+        });
+        service.bindHealthCheckers(new HealthChecker() {
+            @Override
+            public List<Check> getFailingHealthChecks() {
+                return Collections.emptyList();
+            }
+        });
+        service.bindHttpService(proxy(HttpService.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("registerServlet".equals(method.getName())) {
+                    servlets.put((String) args[0], (Servlet) args[1]);
+                } else if ("unregister".equals(method.getName())) {
+                    servlets.remove(args[0]);
+                }
+                return null;
+            }
+        }));
+        service.activate(proxy(BundleContext.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return null;
+            }
+        }), Collections.<String, Object>emptyMap());
+    }
+
+    private void awaitRuns(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (readinessRuns.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue("Expected " + count + " evaluations but got " + readinessRuns.get(), readinessRuns.get() >= count);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(ChecksServiceTest.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
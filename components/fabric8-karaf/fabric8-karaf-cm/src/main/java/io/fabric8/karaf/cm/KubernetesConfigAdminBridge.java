@@ -16,12 +16,22 @@
 package io.fabric8.karaf.cm;
 
 import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.ConfigMapList;
@@ -52,6 +62,8 @@ import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_META;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_META_DEFAULT;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PID_CFG;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_COALESCE_DELAY;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_COALESCE_DELAY_DEFAULT;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_DEFAULT;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_K8S_META_NAME;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_K8S_META_NAMESPACE;
@@ -79,12 +91,19 @@ import static io.fabric8.kubernetes.client.utils.Utils.getSystemPropertyOrEnvVar
         policy = ReferencePolicy.STATIC,
         cardinality = ReferenceCardinality.MANDATORY_UNARY)
 })
-public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
+public class KubernetesConfigAdminBridge implements Watcher<ConfigMap>, KubernetesConfigAdminBridgeMBean {
     private static final Logger LOGGER = LoggerFactory.getLogger(KubernetesConfigAdminBridge.class);
+    private static final String MBEAN_NAME = "io.fabric8.karaf:type=KubernetesConfigAdminBridge";
+    private static final long RECONNECT_DELAY_MIN = 1000;
+    private static final long RECONNECT_DELAY_MAX = 60000;
 
     private final Object lock;
     private final AtomicReference<ConfigurationAdmin> configAdmin;
     private final AtomicReference<KubernetesClient> kubernetesClient;
+    private final Map<String, PendingEvent> pendingEvents;
+    private final Map<String, ConfigMap> configMaps;
+    private final long reconnectDelayMin;
+    private final long reconnectDelayMax;
 
     private boolean enabled;
     private String pidLabel;
@@ -93,15 +112,37 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
     private boolean configMerge;
     private boolean configMeta;
     private boolean configWatch;
+    private int coalesceDelay;
+    private long reconnectDelay;
+    private boolean closed;
+    private ScheduledExecutorService executor;
+    private ObjectName mbeanName;
+
+    private volatile String lastResourceVersion;
+    private volatile long lastSyncTimestamp;
+    private volatile long lastEventTimestamp;
+    private volatile long lastEventLag;
+    private volatile long maxEventLag;
+    private volatile long reconnectCount;
 
     public KubernetesConfigAdminBridge() {
+        this(RECONNECT_DELAY_MIN, RECONNECT_DELAY_MAX);
+    }
+
+    KubernetesConfigAdminBridge(long reconnectDelayMin, long reconnectDelayMax) {
         this.enabled = FABRIC8_CM_BRIDGE_ENABLED_DEFAULT;
         this.lock = new Object();
         this.configAdmin = new AtomicReference<>();
         this.kubernetesClient = new AtomicReference<>();
+        this.pendingEvents = new LinkedHashMap<>();
+        this.configMaps = new ConcurrentHashMap<>();
         this.configMerge = FABRIC8_CONFIG_MERGE_DEFAULT;
         this.configMeta = FABRIC8_CONFIG_META_DEFAULT;
         this.configWatch = FABRIC8_CONFIG_WATCH_DEFAULT;
+        this.coalesceDelay = FABRIC8_CONFIG_WATCH_COALESCE_DELAY_DEFAULT;
+        this.reconnectDelayMin = reconnectDelayMin;
+        this.reconnectDelayMax = reconnectDelayMax;
+        this.reconnectDelay = reconnectDelayMin;
         this.watch = null;
         this.pidLabel = FABRIC8_PID_LABEL_DEFAULT;
         this.filters = null;
@@ -118,6 +159,7 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
         configMerge = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_MERGE, configMerge);
         configMeta = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_META, configMeta);
         configWatch = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_WATCH, configWatch);
+        coalesceDelay = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_WATCH_COALESCE_DELAY, coalesceDelay);
         filters = new HashMap<>();
 
         String filterList = getSystemPropertyOrEnvVar(FABRIC8_PID_FILTERS);
@@ -132,23 +174,39 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
 
         if (enabled) {
             synchronized (lock) {
-                watchConfigMapList();
-
-                ConfigMapList list = getConfigMapList();
-                if (list != null) {
-                    for (ConfigMap map : list.getItems()) {
-                        updateConfig(map);
+                closed = false;
+                executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "fabric8-configmap-bridge");
+                        thread.setDaemon(true);
+                        return thread;
                     }
-                }
+                });
+
+                resync();
             }
+
+            registerMBean();
         }
     }
 
     @Deactivate
     void deactivate() {
-        if (watch != null) {
-            watch.close();
+        synchronized (lock) {
+            closed = true;
+            closeWatch();
+
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+
+            pendingEvents.clear();
+            configMaps.clear();
         }
+
+        unregisterMBean();
     }
 
     // ***********************
@@ -175,24 +233,246 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
     // Watcher
     // ***********************
 
+    /**
+     * Queues the event to be applied on the bridge executor, a later event for
+     * the same pid received within the coalesce delay replaces it.
+     */
     @Override
     public void eventReceived(Action action, ConfigMap map) {
+        long now = System.currentTimeMillis();
+        lastEventTimestamp = now;
+
+        if (action == Action.ERROR) {
+            LOGGER.warn("Received an error event watching ConfigMaps, re-listing them");
+            scheduleReconnect(true);
+            return;
+        }
+
+        if (map.getMetadata() != null && map.getMetadata().getResourceVersion() != null) {
+            lastResourceVersion = map.getMetadata().getResourceVersion();
+        }
+
+        String pid = getPid(map);
+        if (pid == null) {
+            return;
+        }
+
         synchronized (lock) {
-            switch (action) {
-            case ADDED:
-            case MODIFIED:
-                updateConfig(map);
-                break;
-            case DELETED:
-            case ERROR:
-                deleteConfig(map);
-                break;
+            if (closed || executor == null) {
+                return;
+            }
+
+            // keep the time the first coalesced event was received to measure the lag
+            PendingEvent previous = pendingEvents.remove(pid);
+            pendingEvents.put(pid, new PendingEvent(action, map, previous != null ? previous.received : now));
+
+            if (pendingEvents.size() == 1) {
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyPendingEvents();
+                    }
+                }, coalesceDelay, TimeUnit.MILLISECONDS);
             }
         }
     }
 
     @Override
     public void onClose(KubernetesClientException e) {
+        if (e == null) {
+            return;
+        }
+
+        LOGGER.warn("ConfigMap watch closed, reconnecting: {}", e.getMessage());
+        scheduleReconnect(e.getCode() == HttpURLConnection.HTTP_GONE);
+    }
+
+    // ***********************
+    // Metrics
+    // ***********************
+
+    @Override
+    public long getLastSyncTimestamp() {
+        return lastSyncTimestamp;
+    }
+
+    @Override
+    public long getLastEventTimestamp() {
+        return lastEventTimestamp;
+    }
+
+    @Override
+    public long getLastEventLag() {
+        return lastEventLag;
+    }
+
+    @Override
+    public long getMaxEventLag() {
+        return maxEventLag;
+    }
+
+    @Override
+    public int getPendingEventCount() {
+        synchronized (lock) {
+            return pendingEvents.size();
+        }
+    }
+
+    @Override
+    public long getReconnectCount() {
+        return reconnectCount;
+    }
+
+    @Override
+    public String getLastResourceVersion() {
+        return lastResourceVersion;
+    }
+
+    // ***********************
+    // Watch
+    // ***********************
+
+    private void applyPendingEvents() {
+        Map<String, PendingEvent> events;
+        synchronized (lock) {
+            events = new LinkedHashMap<>(pendingEvents);
+            pendingEvents.clear();
+        }
+
+        for (Map.Entry<String, PendingEvent> entry : events.entrySet()) {
+            PendingEvent event = entry.getValue();
+            if (event.action == Action.DELETED) {
+                configMaps.remove(entry.getKey());
+                deleteConfig(event.map);
+            } else {
+                configMaps.put(entry.getKey(), event.map);
+                updateConfig(event.map);
+            }
+
+            long lag = System.currentTimeMillis() - event.received;
+            lastEventLag = lag;
+            if (lag > maxEventLag) {
+                maxEventLag = lag;
+            }
+        }
+    }
+
+    /**
+     * Lists the ConfigMaps, applying them and deleting the configurations of
+     * the ConfigMaps removed meanwhile, then watches from the list version.
+     */
+    private void resync() {
+        ConfigMapList list = getConfigMapList();
+        Map<String, ConfigMap> current = new HashMap<>();
+        if (list != null) {
+            for (ConfigMap map : list.getItems()) {
+                String pid = getPid(map);
+                if (pid != null) {
+                    current.put(pid, map);
+                }
+            }
+
+            if (list.getMetadata() != null) {
+                lastResourceVersion = list.getMetadata().getResourceVersion();
+            }
+        }
+
+        for (Map.Entry<String, ConfigMap> entry : configMaps.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                deleteConfig(entry.getValue());
+            }
+        }
+        for (ConfigMap map : current.values()) {
+            updateConfig(map);
+        }
+
+        configMaps.clear();
+        configMaps.putAll(current);
+        lastSyncTimestamp = System.currentTimeMillis();
+
+        watchConfigMapList();
+    }
+
+    private void scheduleReconnect(final boolean relist) {
+        synchronized (lock) {
+            closeWatch();
+            if (closed || executor == null) {
+                return;
+            }
+
+            long delay = reconnectDelay;
+            reconnectDelay = Math.min(reconnectDelay * 2, reconnectDelayMax);
+
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    reconnect(relist);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void reconnect(boolean relist) {
+        synchronized (lock) {
+            if (closed || watch != null) {
+                return;
+            }
+        }
+
+        try {
+            // apply what has been received before resuming
+            applyPendingEvents();
+
+            if (relist || lastResourceVersion == null) {
+                LOGGER.info("Re-listing ConfigMaps");
+                resync();
+            } else {
+                LOGGER.info("Resuming ConfigMap watch from version {}", lastResourceVersion);
+                watchConfigMapList();
+            }
+
+            reconnectCount++;
+            synchronized (lock) {
+                reconnectDelay = reconnectDelayMin;
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to watch ConfigMaps: {}", e.getMessage());
+            scheduleReconnect(relist
+                || (e instanceof KubernetesClientException && ((KubernetesClientException) e).getCode() == HttpURLConnection.HTTP_GONE));
+        }
+    }
+
+    private void closeWatch() {
+        synchronized (lock) {
+            if (watch != null) {
+                watch.close();
+                watch = null;
+            }
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                mbeanName = name;
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Unable to register the ConfigAdmin bridge MBean: {}", e.getMessage());
+        }
+    }
+
+    private void unregisterMBean() {
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (Exception e) {
+                LOGGER.debug("", e);
+            }
+            mbeanName = null;
+        }
     }
 
     // **********************
@@ -333,6 +613,12 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
     // Helpers
     // ***********************
 
+    private String getPid(ConfigMap map) {
+        return map.getMetadata() != null && map.getMetadata().getLabels() != null
+            ? map.getMetadata().getLabels().get(pidLabel)
+            : null;
+    }
+
     private String[] parsePid(String pid) {
         String factoryPid = null;
 
@@ -357,7 +643,17 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
             KubernetesClient client = kubernetesClient.get();
 
             if (client != null) {
-                watch = client.configMaps().withLabel(pidLabel).withLabels(filters).watch(this);
+                Watch newWatch = lastResourceVersion != null
+                    ? client.configMaps().withLabel(pidLabel).withLabels(filters).watch(lastResourceVersion, this)
+                    : client.configMaps().withLabel(pidLabel).withLabels(filters).watch(this);
+
+                synchronized (lock) {
+                    if (closed) {
+                        newWatch.close();
+                    } else {
+                        watch = newWatch;
+                    }
+                }
             } else {
                 throw new RuntimeException("KubernetesClient not set");
             }
@@ -411,5 +707,16 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
 
         return false;
     }
-}
 
+    private static final class PendingEvent {
+        final Action action;
+        final ConfigMap map;
+        final long received;
+
+        PendingEvent(Action action, ConfigMap map, long received) {
+            this.action = action;
+            this.map = map;
+            this.received = received;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+/**
+ * Metrics of the ConfigMap to ConfigAdmin bridge
+ */
+public interface KubernetesConfigAdminBridgeMBean {
+
+    /**
+     * @return the time in millis of the last full list of the ConfigMaps, 0 if never synced
+     */
+    long getLastSyncTimestamp();
+
+    /**
+     * @return the time in millis of the last ConfigMap event received, 0 if none
+     */
+    long getLastEventTimestamp();
+
+    /**
+     * @return the millis between receiving the last applied event and applying it
+     */
+    long getLastEventLag();
+
+    /**
+     * @return the highest event lag in millis since the bridge has been activated
+     */
+    long getMaxEventLag();
+
+    /**
+     * @return the number of events waiting to be applied
+     */
+    int getPendingEventCount();
+
+    /**
+     * @return the number of times the ConfigMap watch has been re-opened
+     */
+    long getReconnectCount();
+
+    /**
+     * @return the resource version the watch resumes from
+     */
+    String getLastResourceVersion();
+}
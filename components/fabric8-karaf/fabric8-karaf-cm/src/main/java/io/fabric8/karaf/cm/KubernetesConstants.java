@@ -25,10 +25,14 @@ import org.osgi.service.cm.ConfigurationAdmin;
 final class KubernetesConstants {
     public static final String FABRIC8_CONFIG_PLUGIN_ENABLED = "fabric8.config.plugin.enabled";
     public static final Boolean FABRIC8_CONFIG_PLUGIN_ENABLED_DEFAULT = false;
+    public static final String FABRIC8_CONFIG_PLUGIN_UPDATE_DELAY = "fabric8.config.plugin.update.delay";
+    public static final int FABRIC8_CONFIG_PLUGIN_UPDATE_DELAY_DEFAULT = 2000;
     public static final String FABRIC8_CM_BRIDGE_ENABLED = "fabric8.cm.bridge.enabled";
     public static final Boolean FABRIC8_CM_BRIDGE_ENABLED_DEFAULT = true;
     public static final String FABRIC8_CONFIG_WATCH = "fabric8.config.watch";
     public static final Boolean FABRIC8_CONFIG_WATCH_DEFAULT = true;
+    public static final String FABRIC8_CONFIG_WATCH_COALESCE_DELAY = "fabric8.config.watch.coalesce.delay";
+    public static final int FABRIC8_CONFIG_WATCH_COALESCE_DELAY_DEFAULT = 500;
     public static final String FABRIC8_CONFIG_MERGE = "fabric8.config.merge";
     public static final Boolean FABRIC8_CONFIG_MERGE_DEFAULT = false;
     public static final String FABRIC8_CONFIG_META = "fabric8.config.meta";
@@ -15,26 +15,46 @@
  */
 package io.fabric8.karaf.cm;
 
+import java.io.IOException;
 import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
+import io.fabric8.karaf.core.properties.PlaceholderDependencies;
+import io.fabric8.karaf.core.properties.PlaceholderDependency;
+import io.fabric8.karaf.core.properties.PlaceholderDependencyListener;
 import io.fabric8.karaf.core.properties.PlaceholderResolver;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.ConfigurationPolicy;
+import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
+import org.apache.felix.scr.annotations.References;
 import org.apache.felix.scr.annotations.Service;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.cm.ConfigurationPlugin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PLUGIN_ENABLED;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PLUGIN_ENABLED_DEFAULT;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PLUGIN_UPDATE_DELAY;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PLUGIN_UPDATE_DELAY_DEFAULT;
 import static io.fabric8.kubernetes.client.utils.Utils.getSystemPropertyOrEnvVar;
 
 @Component(
@@ -42,25 +62,44 @@ import static io.fabric8.kubernetes.client.utils.Utils.getSystemPropertyOrEnvVar
     policy = ConfigurationPolicy.IGNORE,
     createPid = false
 )
-@Reference(
-    name = "resolver",
-    cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE,
-    policy = ReferencePolicy.DYNAMIC,
-    referenceInterface = PlaceholderResolver.class
-)
+@References({
+    @Reference(
+        name = "resolver",
+        cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE,
+        policy = ReferencePolicy.DYNAMIC,
+        referenceInterface = PlaceholderResolver.class),
+    @Reference(
+        name = "configAdmin",
+        cardinality = ReferenceCardinality.OPTIONAL_UNARY,
+        policy = ReferencePolicy.DYNAMIC,
+        referenceInterface = ConfigurationAdmin.class)
+})
 @Properties({
     @Property(name = ConfigurationPlugin.CM_RANKING, value = "10", classValue = Integer.class)
 })
-@Service(ConfigurationPlugin.class)
-public class PlaceholderResolverConfigurationPlugin implements ConfigurationPlugin {
+@Service({ ConfigurationPlugin.class, PlaceholderDependencyListener.class })
+public class PlaceholderResolverConfigurationPlugin implements ConfigurationPlugin, PlaceholderDependencyListener {
     private static final Logger LOGGER = LoggerFactory.getLogger(PlaceholderResolverConfigurationPlugin.class);
 
+    private final Object lock;
     private final AtomicReference<PlaceholderResolver> resolver;
+    private final AtomicReference<ConfigurationAdmin> configAdmin;
+    private final Map<String, Set<PlaceholderDependency>> pidDependencies;
+    private final Map<PlaceholderDependency, Set<String>> dependentPids;
+    private final Set<String> pendingPids;
     private boolean enabled;
+    private int updateDelay;
+    private ScheduledExecutorService executor;
 
     public PlaceholderResolverConfigurationPlugin() {
+        this.lock = new Object();
         this.resolver = new AtomicReference<>();
+        this.configAdmin = new AtomicReference<>();
+        this.pidDependencies = new HashMap<>();
+        this.dependentPids = new HashMap<>();
+        this.pendingPids = new HashSet<>();
         this.enabled = FABRIC8_CONFIG_PLUGIN_ENABLED_DEFAULT;
+        this.updateDelay = FABRIC8_CONFIG_PLUGIN_UPDATE_DELAY_DEFAULT;
     }
 
     // ***********************
@@ -70,7 +109,35 @@ public class PlaceholderResolverConfigurationPlugin implements ConfigurationPlug
     @Activate
     void activate() {
         enabled = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_PLUGIN_ENABLED, enabled);
+        updateDelay = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_PLUGIN_UPDATE_DELAY, updateDelay);
         LOGGER.debug("Configuration update is {}", enabled ? "ENABLED" : "DISABLED");
+
+        if (enabled) {
+            synchronized (lock) {
+                executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "fabric8-config-plugin-updater");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+        }
+    }
+
+    @Deactivate
+    void deactivate() {
+        synchronized (lock) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+
+            pidDependencies.clear();
+            dependentPids.clear();
+            pendingPids.clear();
+        }
     }
 
     // ****************************
@@ -85,6 +152,14 @@ public class PlaceholderResolverConfigurationPlugin implements ConfigurationPlug
         this.resolver.compareAndSet(resolver, null);
     }
 
+    protected void bindConfigAdmin(ConfigurationAdmin service) {
+        this.configAdmin.set(service);
+    }
+
+    protected void unbindConfigAdmin(ConfigurationAdmin service) {
+        this.configAdmin.compareAndSet(service, null);
+    }
+
     // ***********************
     // ConfigurationPlugin
     // ***********************
@@ -93,7 +168,127 @@ public class PlaceholderResolverConfigurationPlugin implements ConfigurationPlug
     public void modifyConfiguration(ServiceReference<?> reference, Dictionary<String, Object> dictionary) {
         PlaceholderResolver res = resolver.get();
         if (enabled && res != null) {
-            res.replaceAll(dictionary);
+            PlaceholderDependencies.startTracking();
+            try {
+                res.replaceAll(dictionary);
+            } finally {
+                Set<PlaceholderDependency> dependencies = PlaceholderDependencies.stopTracking();
+                Object pid = dictionary.get(Constants.SERVICE_PID);
+                if (pid instanceof String) {
+                    trackDependencies((String) pid, dependencies);
+                }
+            }
+        }
+    }
+
+    // ***********************
+    // PlaceholderDependencyListener
+    // ***********************
+
+    /**
+     * Schedules an update of the configurations whose placeholders have been
+     * resolved using the given dependency, the updates triggered within the
+     * update delay are batched together.
+     */
+    @Override
+    public void dependencyChanged(PlaceholderDependency dependency) {
+        synchronized (lock) {
+            Set<String> pids = dependentPids.get(dependency);
+            if (pids == null || executor == null) {
+                return;
+            }
+
+            LOGGER.debug("{} has changed, scheduling the update of {}", dependency, pids);
+
+            boolean schedule = pendingPids.isEmpty();
+            pendingPids.addAll(pids);
+
+            if (schedule) {
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        updateConfigurations();
+                    }
+                }, updateDelay, TimeUnit.MILLISECONDS);
+            }
         }
     }
+
+    // ***********************
+    // Helpers
+    // ***********************
+
+    private void trackDependencies(String pid, Set<PlaceholderDependency> dependencies) {
+        synchronized (lock) {
+            Set<PlaceholderDependency> old = dependencies.isEmpty()
+                ? pidDependencies.remove(pid)
+                : pidDependencies.put(pid, dependencies);
+
+            if (old != null) {
+                for (PlaceholderDependency dependency : old) {
+                    Set<String> pids = dependentPids.get(dependency);
+                    if (pids != null && pids.remove(pid) && pids.isEmpty()) {
+                        dependentPids.remove(dependency);
+                    }
+                }
+            }
+
+            for (PlaceholderDependency dependency : dependencies) {
+                Set<String> pids = dependentPids.get(dependency);
+                if (pids == null) {
+                    pids = new HashSet<>();
+                    dependentPids.put(dependency, pids);
+                }
+
+                pids.add(pid);
+            }
+        }
+    }
+
+    private void updateConfigurations() {
+        Set<String> pids;
+        synchronized (lock) {
+            pids = new HashSet<>(pendingPids);
+            pendingPids.clear();
+        }
+
+        ConfigurationAdmin admin = configAdmin.get();
+        if (admin == null) {
+            LOGGER.warn("ConfigurationAdmin is not available, unable to update {}", pids);
+            return;
+        }
+
+        for (String pid : pids) {
+            try {
+                Configuration[] configurations = admin.listConfigurations(
+                    "(" + Constants.SERVICE_PID + "=" + escapeFilterValue(pid) + ")");
+
+                if (configurations != null) {
+                    for (Configuration configuration : configurations) {
+                        Dictionary<String, Object> properties = configuration.getProperties();
+                        if (properties != null) {
+                            LOGGER.debug("Updating configuration {}", pid);
+                            // the placeholders are resolved again while delivering the configuration
+                            configuration.update(properties);
+                        }
+                    }
+                }
+            } catch (IOException | InvalidSyntaxException | IllegalStateException e) {
+                LOGGER.warn("Unable to update configuration {}", pid, e);
+            }
+        }
+    }
+
+    private static String escapeFilterValue(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '(' || c == ')' || c == '*') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+
+        return sb.toString();
+    }
 }
@@ -0,0 +1,281 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.ConfigMapList;
+import io.fabric8.kubernetes.api.model.ConfigMapListBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_COALESCE_DELAY;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_PID_LABEL_DEFAULT;
+
+public class KubernetesConfigAdminBridgeTest {
+    private static final long COALESCE_DELAY = 100;
+
+    private final Map<String, Dictionary<String, Object>> configurations = new ConcurrentHashMap<>();
+    private final List<String> updates = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> deletes = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> watchVersions = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Long> watchTimes = Collections.synchronizedList(new ArrayList<Long>());
+    private final AtomicInteger listCount = new AtomicInteger();
+    private final AtomicInteger watchFailures = new AtomicInteger();
+    private volatile ConfigMapList configMapList;
+    private KubernetesConfigAdminBridge bridge;
+
+    @Before
+    public void setUp() {
+        System.setProperty(FABRIC8_CONFIG_WATCH_COALESCE_DELAY, Long.toString(COALESCE_DELAY));
+    }
+
+    @After
+    public void tearDown() {
+        if (bridge != null) {
+            bridge.deactivate();
+        }
+
+        System.clearProperty(FABRIC8_CONFIG_WATCH_COALESCE_DELAY);
+    }
+
+    @Test
+    public void testCoalescesEventsPerPid() throws Exception {
+        activate(new KubernetesConfigAdminBridge(), "1");
+
+        bridge.eventReceived(Watcher.Action.ADDED, configMap("app.db", "2", "1"));
+        bridge.eventReceived(Watcher.Action.MODIFIED, configMap("app.db", "3", "2"));
+        bridge.eventReceived(Watcher.Action.ADDED, configMap("app.web", "4", "1"));
+        bridge.eventReceived(Watcher.Action.MODIFIED, configMap("app.db", "5", "3"));
+        Assert.assertEquals(2, bridge.getPendingEventCount());
+        Assert.assertEquals("5", bridge.getLastResourceVersion());
+        Assert.assertTrue("Applied before the coalesce delay", updates.isEmpty());
+
+        awaitSize(updates, 2);
+        Thread.sleep(COALESCE_DELAY * 2);
+        Assert.assertEquals(2, updates.size());
+        Assert.assertTrue(updates.containsAll(Arrays.asList("app.db=3", "app.web=1")));
+        Assert.assertEquals(0, bridge.getPendingEventCount());
+    }
+
+    @Test
+    public void testResumesWatchFromLastResourceVersion() throws Exception {
+        activate(new KubernetesConfigAdminBridge(10, 100), "10");
+        Assert.assertEquals(Collections.singletonList("10"), watchVersions);
+
+        bridge.eventReceived(Watcher.Action.ADDED, configMap("app.db", "12", "1"));
+        bridge.onClose(new KubernetesClientException("closed", 500, null));
+
+        awaitSize(watchVersions, 2);
+        Assert.assertEquals("12", watchVersions.get(1));
+        Assert.assertEquals(1, listCount.get());
+        // the events received before the close are applied before resuming
+        Assert.assertEquals(Collections.singletonList("app.db=1"), updates);
+        Assert.assertEquals(1, bridge.getReconnectCount());
+    }
+
+    @Test
+    public void testRelistsWhenResourceVersionIsGone() throws Exception {
+        activate(new KubernetesConfigAdminBridge(10, 100), "10", configMap("app.db", "10", "1"));
+        Assert.assertEquals(Collections.singletonList("app.db=1"), updates);
+
+        configMapList = configMapList("20", configMap("app.web", "15", "1"));
+        bridge.onClose(new KubernetesClientException("too old resource version", 410, null));
+
+        awaitSize(watchVersions, 2);
+        Assert.assertEquals("20", watchVersions.get(1));
+        Assert.assertEquals(2, listCount.get());
+        Assert.assertEquals(Collections.singletonList("app.db"), deletes);
+        Assert.assertEquals(Arrays.asList("app.db=1", "app.web=1"), updates);
+    }
+
+    @Test
+    public void testBacksOffReconnects() throws Exception {
+        activate(new KubernetesConfigAdminBridge(100, 200), "10");
+
+        // the delay doubles on each failure up to the max: 100, 200, 200, 200
+        watchFailures.set(3);
+        long closed = System.nanoTime();
+        bridge.onClose(new KubernetesClientException("closed", 500, null));
+
+        awaitSize(watchTimes, 5);
+        Assert.assertTrue(elapsed(closed, watchTimes.get(1)) >= 100);
+        Assert.assertTrue(elapsed(watchTimes.get(1), watchTimes.get(2)) >= 200);
+        Assert.assertTrue(elapsed(watchTimes.get(2), watchTimes.get(3)) >= 200);
+        Assert.assertTrue(elapsed(watchTimes.get(2), watchTimes.get(3)) < 400);
+        Assert.assertTrue(elapsed(watchTimes.get(3), watchTimes.get(4)) < 400);
+        Assert.assertEquals(1, bridge.getReconnectCount());
+
+        // a successful reconnect resets the delay
+        closed = System.nanoTime();
+        bridge.onClose(new KubernetesClientException("closed", 500, null));
+
+        awaitSize(watchTimes, 6);
+        Assert.assertTrue(elapsed(closed, watchTimes.get(5)) >= 100);
+        Assert.assertTrue(elapsed(closed, watchTimes.get(5)) < 200);
+        Assert.assertEquals(2, bridge.getReconnectCount());
+    }
+
+    private void activate(KubernetesConfigAdminBridge bridge, String resourceVersion, ConfigMap... items) {
+        this.bridge = bridge;
+        this.configMapList = configMapList(resourceVersion, items);
+
+        bridge.bindConfigAdmin(configAdmin());
+        bridge.bindKubernetesClient(kubernetesClient());
+        bridge.activate();
+    }
+
+    private static long elapsed(long from, long to) {
+        return TimeUnit.NANOSECONDS.toMillis(to - from);
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(size, list.size());
+    }
+
+    private static ConfigMap configMap(String pid, String resourceVersion, String value) {
+        return new ConfigMapBuilder()
+            .withNewMetadata()
+                .withName(pid)
+                .withNamespace("test")
+                .withResourceVersion(resourceVersion)
+                .addToLabels(FABRIC8_PID_LABEL_DEFAULT, pid)
+            .endMetadata()
+            .addToData("value", value)
+            .build();
+    }
+
+    private static ConfigMapList configMapList(String resourceVersion, ConfigMap... items) {
+        return new ConfigMapListBuilder()
+            .withNewMetadata()
+                .withResourceVersion(resourceVersion)
+            .endMetadata()
+            .withItems(items)
+            .build();
+    }
+
+    /**
+     * A client whose operations chain up to listing the ConfigMaps and watching them
+     */
+    private KubernetesClient kubernetesClient() {
+        return proxy(KubernetesClient.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "list":
+                        listCount.incrementAndGet();
+                        return configMapList;
+                    case "watch":
+                        watchTimes.add(System.nanoTime());
+                        if (watchFailures.getAndDecrement() > 0) {
+                            throw new KubernetesClientException("connection refused");
+                        }
+                        watchFailures.set(0);
+                        watchVersions.add(args.length == 2 ? (String) args[0] : null);
+                        return proxy(Watch.class, this);
+                    case "close":
+                        return null;
+                    case "withLabel":
+                    case "withLabels":
+                        // generic filters, erased to Object
+                        return proxy(FilterWatchListDeletable.class, this);
+                    default:
+                        return method.getReturnType().isInterface() ? proxy(method.getReturnType(), this) : null;
+                }
+            }
+        });
+    }
+
+    private ConfigurationAdmin configAdmin() {
+        return proxy(ConfigurationAdmin.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "listConfigurations":
+                        String filter = (String) args[0];
+                        String pid = filter.substring(filter.indexOf('=') + 1, filter.length() - 1);
+                        return configurations.containsKey(pid) ? new Configuration[]{ configuration(pid) } : null;
+                    case "getConfiguration":
+                        return configuration((String) args[0]);
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    private Configuration configuration(final String pid) {
+        return proxy(Configuration.class, new InvocationHandler() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getPid":
+                        return pid;
+                    case "getProperties":
+                        Dictionary<String, Object> properties = configurations.get(pid);
+                        return properties != null ? new Hashtable<>((Map<String, Object>) properties) : null;
+                    case "update":
+                        if (args != null) {
+                            Dictionary<String, Object> update = (Dictionary<String, Object>) args[0];
+                            configurations.put(pid, update);
+                            updates.add(pid + "=" + update.get("value"));
+                        }
+                        return null;
+                    case "delete":
+                        configurations.remove(pid);
+                        deletes.add(pid);
+                        return null;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(
+            KubernetesConfigAdminBridgeTest.class.getClassLoader(), new Class<?>[]{ type }, handler);
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.karaf.core.properties.PlaceholderDependencies;
+import io.fabric8.karaf.core.properties.PlaceholderDependency;
+import io.fabric8.karaf.core.properties.PlaceholderResolver;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Constants;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PLUGIN_ENABLED;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PLUGIN_UPDATE_DELAY;
+
+public class PlaceholderResolverConfigurationPluginTest {
+    private static final long UPDATE_DELAY = 200;
+    private static final PlaceholderDependency PASSWORD = new PlaceholderDependency("secret", "db", "password");
+    private static final PlaceholderDependency URL = new PlaceholderDependency("configmap", "app", "url");
+
+    private final Map<String, Set<PlaceholderDependency>> resolved = new HashMap<>();
+    private final List<String> updates = Collections.synchronizedList(new ArrayList<String>());
+    private PlaceholderResolverConfigurationPlugin plugin;
+
+    @Before
+    public void setUp() {
+        System.setProperty(FABRIC8_CONFIG_PLUGIN_ENABLED, "true");
+        System.setProperty(FABRIC8_CONFIG_PLUGIN_UPDATE_DELAY, Long.toString(UPDATE_DELAY));
+
+        plugin = new PlaceholderResolverConfigurationPlugin();
+        plugin.bindResolver(new RecordingResolver());
+        plugin.bindConfigAdmin(configAdmin());
+        plugin.activate();
+    }
+
+    @After
+    public void tearDown() {
+        plugin.deactivate();
+
+        System.clearProperty(FABRIC8_CONFIG_PLUGIN_ENABLED);
+        System.clearProperty(FABRIC8_CONFIG_PLUGIN_UPDATE_DELAY);
+    }
+
+    @Test
+    public void testUpdatesDependentConfigurations() throws Exception {
+        modify("app.db", PASSWORD);
+        modify("app.web", URL);
+        modify("app.other");
+
+        plugin.dependencyChanged(PASSWORD);
+        awaitUpdates(1);
+        Assert.assertEquals(Collections.singletonList("app.db"), updates);
+
+        plugin.dependencyChanged(new PlaceholderDependency("secret", "db", "user"));
+        Thread.sleep(UPDATE_DELAY * 2);
+        Assert.assertEquals(Collections.singletonList("app.db"), updates);
+    }
+
+    @Test
+    public void testReplacesDependenciesOfModifiedConfigurations() throws Exception {
+        modify("app.db", PASSWORD);
+        modify("app.db", URL);
+
+        plugin.dependencyChanged(PASSWORD);
+        Thread.sleep(UPDATE_DELAY * 2);
+        Assert.assertTrue(updates.isEmpty());
+
+        plugin.dependencyChanged(URL);
+        awaitUpdates(1);
+        Assert.assertEquals(Collections.singletonList("app.db"), updates);
+
+        // a configuration without placeholders no longer depends on anything
+        modify("app.db");
+        plugin.dependencyChanged(URL);
+        Thread.sleep(UPDATE_DELAY * 2);
+        Assert.assertEquals(1, updates.size());
+    }
+
+    @Test
+    public void testBatchesUpdatesWithinTheDelay() throws Exception {
+        modify("app.db", PASSWORD, URL);
+        modify("app.web", URL);
+
+        plugin.dependencyChanged(PASSWORD);
+        plugin.dependencyChanged(URL);
+        plugin.dependencyChanged(PASSWORD);
+        Assert.assertTrue("Updated before the delay", updates.isEmpty());
+
+        awaitUpdates(2);
+        Thread.sleep(UPDATE_DELAY * 2);
+        Assert.assertEquals(2, updates.size());
+        Assert.assertTrue(updates.containsAll(Arrays.asList("app.db", "app.web")));
+    }
+
+    @Test
+    public void testIgnoresChangesOnceDeactivated() throws Exception {
+        modify("app.db", PASSWORD);
+        plugin.deactivate();
+
+        plugin.dependencyChanged(PASSWORD);
+        Thread.sleep(UPDATE_DELAY * 2);
+        Assert.assertTrue(updates.isEmpty());
+    }
+
+    private void modify(String pid, PlaceholderDependency... dependencies) {
+        resolved.put(pid, new HashSet<>(Arrays.asList(dependencies)));
+
+        Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(Constants.SERVICE_PID, pid);
+        plugin.modifyConfiguration(null, properties);
+    }
+
+    private void awaitUpdates(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (updates.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, updates.size());
+    }
+
+    private ConfigurationAdmin configAdmin() {
+        return proxy(ConfigurationAdmin.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("listConfigurations".equals(method.getName())) {
+                    String filter = (String) args[0];
+                    String pid = filter.substring(filter.indexOf('=') + 1, filter.length() - 1);
+                    return new Configuration[]{ configuration(pid) };
+                }
+                return null;
+            }
+        });
+    }
+
+    private Configuration configuration(final String pid) {
+        return proxy(Configuration.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getProperties".equals(method.getName())) {
+                    Dictionary<String, Object> properties = new Hashtable<>();
+                    properties.put(Constants.SERVICE_PID, pid);
+                    return properties;
+                } else if ("update".equals(method.getName()) && args != null) {
+                    updates.add(pid);
+                }
+                return null;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(
+            PlaceholderResolverConfigurationPluginTest.class.getClassLoader(), new Class<?>[]{ type }, handler);
+    }
+
+    /**
+     * Records the dependencies given for the pid like the k8s function does while resolving placeholders
+     */
+    private final class RecordingResolver implements PlaceholderResolver {
+        @Override
+        public boolean replaceAll(Dictionary<String, Object> dictionary) {
+            for (PlaceholderDependency dependency : resolved.get(dictionary.get(Constants.SERVICE_PID))) {
+                PlaceholderDependencies.record(dependency);
+            }
+            return false;
+        }
+
+        @Override
+        public String resolve(String value) {
+            return value;
+        }
+
+        @Override
+        public String replace(String value) {
+            return value;
+        }
+
+        @Override
+        public boolean replaceIn(StringBuilder value) {
+            return false;
+        }
+
+        @Override
+        public boolean replaceAll(Map<String, Object> dictionary) {
+            return false;
+        }
+    }
+}
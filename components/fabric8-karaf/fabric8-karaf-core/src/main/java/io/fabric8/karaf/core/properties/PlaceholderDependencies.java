@@ -0,0 +1,70 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the dependencies of the placeholders resolved by the current thread.
+ *
+ * <pre>
+ * PlaceholderDependencies.startTracking();
+ * try {
+ *     resolver.replaceAll(dictionary);
+ * } finally {
+ *     dependencies = PlaceholderDependencies.stopTracking();
+ * }
+ * </pre>
+ */
+public final class PlaceholderDependencies {
+    private static final ThreadLocal<Set<PlaceholderDependency>> TRACKED = new ThreadLocal<>();
+
+    private PlaceholderDependencies() {
+    }
+
+    /**
+     * Starts recording the dependencies of the placeholders resolved by the current thread
+     */
+    public static void startTracking() {
+        TRACKED.set(new HashSet<PlaceholderDependency>());
+    }
+
+    /**
+     * Stops recording and returns the dependencies recorded since {@link #startTracking()}
+     *
+     * @return the recorded dependencies, never null
+     */
+    public static Set<PlaceholderDependency> stopTracking() {
+        Set<PlaceholderDependency> answer = TRACKED.get();
+        TRACKED.remove();
+
+        return answer != null ? answer : Collections.<PlaceholderDependency>emptySet();
+    }
+
+    /**
+     * Records a dependency if the current thread is tracking them
+     *
+     * @param dependency the dependency
+     */
+    public static void record(PlaceholderDependency dependency) {
+        Set<PlaceholderDependency> tracked = TRACKED.get();
+        if (tracked != null) {
+            tracked.add(dependency);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties;
+
+/**
+ * A value a placeholder has been resolved from, like the key of a secret
+ * or of a ConfigMap.
+ */
+public final class PlaceholderDependency {
+    private final String kind;
+    private final String name;
+    private final String key;
+
+    public PlaceholderDependency(String kind, String name, String key) {
+        this.kind = kind;
+        this.name = name;
+        this.key = key;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        PlaceholderDependency that = (PlaceholderDependency) o;
+        return kind.equals(that.kind) && name.equals(that.name) && key.equals(that.key);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = kind.hashCode();
+        result = 31 * result + name.hashCode();
+        result = 31 * result + key.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return kind + ":" + name + "/" + key;
+    }
+}
@@ -15,9 +15,13 @@
  */
 package io.fabric8.karaf.core.properties;
 
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import io.fabric8.karaf.core.Support;
@@ -51,13 +55,21 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
     public static final String DEFAULT_PLACEHOLDER_PREFIX =  "$[";
     public static final String DEFAULT_PLACEHOLDER_SUFFIX =  "]";
 
+    private static final int MAX_CACHED_EXPRESSIONS = 4096;
+
     private final CopyOnWriteArrayList<PropertiesFunction> functions;
+    private final ConcurrentMap<String, Expression> expressions;
+    private final String prefix;
     private final StrSubstitutor substitutor;
+    private volatile Map<String, PropertiesFunction> functionsByName;
 
     public PlaceholderResolverImpl() {
         this.functions = new CopyOnWriteArrayList<>();
+        this.functionsByName = Collections.emptyMap();
+        this.expressions = new ConcurrentHashMap<>();
+        this.prefix = getSystemPropertyOrEnvVar(PLACEHOLDER_PREFIX, DEFAULT_PLACEHOLDER_PREFIX);
         this.substitutor = Support.createStrSubstitutor(
-            getSystemPropertyOrEnvVar(PLACEHOLDER_PREFIX, DEFAULT_PLACEHOLDER_PREFIX),
+            prefix,
             getSystemPropertyOrEnvVar(PLACEHOLDER_SUFFIX, DEFAULT_PLACEHOLDER_SUFFIX),
             new StrLookup<String>() {
                 @Override
@@ -69,11 +81,16 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
 
     @Override
     public String resolve(String value) {
-        String[] resolvers = Support.before(value, ":").split("\\+");
-        String remainder = Support.after(value, ":");
+        Expression expression = compile(value);
+        if (expression == null) {
+            return null;
+        }
+
+        Map<String, PropertiesFunction> functionsByName = this.functionsByName;
+        String remainder = expression.argument;
 
-        for (String resolver : resolvers) {
-            PropertiesFunction function = findFunction(resolver);
+        for (String resolver : expression.functions) {
+            PropertiesFunction function = functionsByName.get(resolver);
 
             if (function == null) {
                 value = null;
@@ -110,7 +127,7 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
             final String key = keys.nextElement();
             final Object val = dictionary.get(key);
 
-            if (val instanceof String) {
+            if (val instanceof String && hasPlaceholder((String)val)) {
                 StringBuilder sb = Support.acquireStringBuilder((String)val);
                 if (substitutor.replaceIn(sb)) {
                     replacedCount++;
@@ -128,7 +145,7 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
         for(String key : dictionary.keySet()) {
             final Object val = dictionary.get(key);
 
-            if (val instanceof String) {
+            if (val instanceof String && hasPlaceholder((String)val)) {
                 StringBuilder sb = Support.acquireStringBuilder((String)val);
                 if (substitutor.replaceIn(sb)) {
                     replacedCount++;
@@ -145,23 +162,76 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
     // ****************************
 
     protected void bindFunction(PropertiesFunction function) {
-        functions.addIfAbsent(function);
+        if (functions.addIfAbsent(function)) {
+            updateFunctionsByName();
+        }
     }
 
     protected void unbindFunction(PropertiesFunction function) {
-        functions.remove(function);
+        if (functions.remove(function)) {
+            updateFunctionsByName();
+        }
     }
 
     // ****************************
     // Helpers
     // ****************************
 
-    private PropertiesFunction findFunction(String name) {
-        for (PropertiesFunction fun : functions) {
-            if (name.equals(fun.getName())) {
-                return fun;
+    private synchronized void updateFunctionsByName() {
+        // the first bound function wins if more functions share the same name
+        Map<String, PropertiesFunction> answer = new HashMap<>();
+        for (PropertiesFunction function : functions) {
+            if (!answer.containsKey(function.getName())) {
+                answer.put(function.getName(), function);
+            }
+        }
+
+        functionsByName = answer;
+    }
+
+    private boolean hasPlaceholder(String value) {
+        return value.indexOf(prefix) >= 0;
+    }
+
+    private Expression compile(String value) {
+        Expression expression = expressions.get(value);
+        if (expression == null) {
+            expression = Expression.parse(value);
+            if (expression == null) {
+                return null;
             }
+
+            if (expressions.size() >= MAX_CACHED_EXPRESSIONS) {
+                expressions.clear();
+            }
+
+            expressions.put(value, expression);
+        }
+
+        return expression;
+    }
+
+    /**
+     * A parsed placeholder expression like <tt>fun1+fun2:argument</tt>
+     */
+    private static final class Expression {
+        final String[] functions;
+        final String argument;
+
+        private Expression(String[] functions, String argument) {
+            this.functions = functions;
+            this.argument = argument;
+        }
+
+        static Expression parse(String value) {
+            int separator = value.indexOf(':');
+            if (separator < 0) {
+                return null;
+            }
+
+            return new Expression(
+                value.substring(0, separator).split("\\+"),
+                value.substring(separator + 1));
         }
-        return null;
     }
 }
@@ -17,15 +17,21 @@ package io.fabric8.karaf.core.properties.function;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
 
+import io.fabric8.karaf.core.properties.PlaceholderDependencies;
+import io.fabric8.karaf.core.properties.PlaceholderDependency;
+import io.fabric8.karaf.core.properties.PlaceholderDependencyListener;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.ConfigurationPolicy;
+import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
+import org.apache.felix.scr.annotations.References;
 import org.apache.felix.scr.annotations.Service;
 
 @Component(
@@ -33,27 +39,42 @@ import org.apache.felix.scr.annotations.Service;
     policy = ConfigurationPolicy.IGNORE,
     createPid = false
 )
-@Reference(
-    name = "kubernetesClient",
-    cardinality = ReferenceCardinality.MANDATORY_UNARY,
-    policy = ReferencePolicy.STATIC,
-    referenceInterface = KubernetesClient.class
-)
+@References({
+    @Reference(
+        name = "kubernetesClient",
+        cardinality = ReferenceCardinality.MANDATORY_UNARY,
+        policy = ReferencePolicy.STATIC,
+        referenceInterface = KubernetesClient.class),
+    @Reference(
+        name = "dependencyListener",
+        cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE,
+        policy = ReferencePolicy.DYNAMIC,
+        referenceInterface = PlaceholderDependencyListener.class)
+})
 @Property(name = "function.name", value = KubernetesPropertiesFunction.FUNCTION_NAME)
 @Service(PropertiesFunction.class)
-public class KubernetesPropertiesFunction implements PropertiesFunction {
+public class KubernetesPropertiesFunction implements PropertiesFunction, PlaceholderDependencyListener {
     public static final String FUNCTION_NAME = "k8s";
 
     private final AtomicReference<KubernetesClient> kubernetesClient;
+    private final CopyOnWriteArrayList<PlaceholderDependencyListener> dependencyListeners;
     private final Map<String, KubernetesSupport.Resource> kubernetesResources;
 
     public KubernetesPropertiesFunction() {
         this.kubernetesClient = new AtomicReference<>();
+        this.dependencyListeners = new CopyOnWriteArrayList<>();
+
+        KubernetesSupport.Resource configMaps = KubernetesSupport.configMapResource(this);
 
         this.kubernetesResources = new HashMap<>();
-        this.kubernetesResources.put("secret", KubernetesSupport.secretsResource());
-        this.kubernetesResources.put("map", KubernetesSupport.configMapResource());
-        this.kubernetesResources.put("configmap", KubernetesSupport.configMapResource());
+        this.kubernetesResources.put("secret", KubernetesSupport.secretsResource(this));
+        this.kubernetesResources.put("map", configMaps);
+        this.kubernetesResources.put("configmap", configMaps);
+    }
+
+    @Deactivate
+    void deactivate() {
+        closeResources();
     }
 
     // ******************
@@ -77,6 +98,7 @@ public class KubernetesPropertiesFunction implements PropertiesFunction {
             if (tokens.length == 2) {
                 KubernetesSupport.Resource res = kubernetesResources.get(items[0]);
                 if (res != null) {
+                    PlaceholderDependencies.record(new PlaceholderDependency(res.getKind(), tokens[0], tokens[1]));
                     value = res.get(client, tokens[0], tokens[1]);
                 }
             }
@@ -85,6 +107,13 @@ public class KubernetesPropertiesFunction implements PropertiesFunction {
         return value;
     }
 
+    @Override
+    public void dependencyChanged(PlaceholderDependency dependency) {
+        for (PlaceholderDependencyListener listener : dependencyListeners) {
+            listener.dependencyChanged(dependency);
+        }
+    }
+
     // ******************
     // References
     // ******************
@@ -94,6 +123,22 @@ public class KubernetesPropertiesFunction implements PropertiesFunction {
     }
 
     protected void unbindKubernetesClient(KubernetesClient kubernetesClient) {
-        this.kubernetesClient.compareAndSet(kubernetesClient, null);
+        if (this.kubernetesClient.compareAndSet(kubernetesClient, null)) {
+            closeResources();
+        }
+    }
+
+    protected void bindDependencyListener(PlaceholderDependencyListener listener) {
+        this.dependencyListeners.addIfAbsent(listener);
+    }
+
+    protected void unbindDependencyListener(PlaceholderDependencyListener listener) {
+        this.dependencyListeners.remove(listener);
+    }
+
+    private void closeResources() {
+        for (KubernetesSupport.Resource resource : kubernetesResources.values()) {
+            resource.close();
+        }
     }
 }
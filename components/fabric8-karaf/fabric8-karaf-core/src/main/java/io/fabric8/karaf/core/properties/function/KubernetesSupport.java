@@ -16,16 +16,35 @@
 package io.fabric8.karaf.core.properties.function;
 
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import io.fabric8.karaf.core.properties.PlaceholderDependency;
+import io.fabric8.karaf.core.properties.PlaceholderDependencyListener;
 import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
 import io.fabric8.kubernetes.client.utils.Utils;
 import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
@@ -35,6 +54,7 @@ final class KubernetesSupport {
     public static final Logger LOGGER = LoggerFactory.getLogger(KubernetesSupport.class);
     public static final String FABRIC8_K8S_SECRET_PATHS = "fabric8.k8s.secrets.path";
     public static final String FABRIC8_K8S_SECRET_API_ENABLED = "fabric8.k8s.secrets.api.enabled";
+    public static final String FABRIC8_K8S_CACHE_ENABLED = "fabric8.k8s.cache.enabled";
 
     private KubernetesSupport() {
     }
@@ -43,20 +63,238 @@ final class KubernetesSupport {
     // Resource abstraction
     // ******************************
 
+    /**
+     * A kind of resource holding key/value data.
+     *
+     * The data of each resource is fetched once per name and then kept up to
+     * date by a watch on the resource, so resolving many placeholders against
+     * the same resource only costs a single API call. Keys whose value changes
+     * once cached are reported to the {@link PlaceholderDependencyListener}.
+     */
     static abstract class Resource {
+        private final String kind;
+        private final PlaceholderDependencyListener listener;
+        private final boolean useCache;
+        private final ConcurrentMap<String, CachedData> cache;
+
+        protected Resource(String kind, PlaceholderDependencyListener listener) {
+            this.kind = kind;
+            this.listener = listener;
+            this.useCache = Utils.getSystemPropertyOrEnvVar(FABRIC8_K8S_CACHE_ENABLED, true);
+            this.cache = new ConcurrentHashMap<>();
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
         public String get(KubernetesClient client, String name, String key) {
-            Map<String, String> data = getData(client, name);
+            Map<String, String> data = getCachedData(client, name);
             return data != null ? data.get(key) : null;
         }
 
+        /**
+         * Removes all the cached data and closes the watches
+         */
+        public void close() {
+            for (CachedData entry : cache.values()) {
+                entry.close();
+            }
+            cache.clear();
+        }
+
+        Map<String, String> getCachedData(KubernetesClient client, String name) {
+            if (!useCache) {
+                return getData(client, name);
+            }
+
+            CachedData entry = cache.get(name);
+            if (entry == null) {
+                CachedData newEntry = new CachedData(name);
+                entry = cache.putIfAbsent(name, newEntry);
+                if (entry == null) {
+                    entry = newEntry;
+                }
+            }
+
+            return entry.get(client);
+        }
+
+        void fireChanged(String name, String key) {
+            if (listener != null) {
+                LOGGER.debug("The value of {}:{}/{} has changed", kind, name, key);
+                try {
+                    listener.dependencyChanged(new PlaceholderDependency(kind, name, key));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Error notifying the change of {}:{}/{}", kind, name, key, e);
+                }
+            }
+        }
+
+        void fireChanges(String name, Map<String, String> oldData, Map<String, String> newData) {
+            if (oldData == null) {
+                oldData = Collections.emptyMap();
+            }
+            if (newData == null) {
+                newData = Collections.emptyMap();
+            }
+
+            Set<String> keys = new HashSet<>(oldData.keySet());
+            keys.addAll(newData.keySet());
+
+            for (String key : keys) {
+                if (!Objects.equals(oldData.get(key), newData.get(key))) {
+                    fireChanged(name, key);
+                }
+            }
+        }
+
         abstract Map<String, String> getData(KubernetesClient client, String name);
+
+        abstract Watch watch(KubernetesClient client, String name, CachedData entry);
+
+        /**
+         * The data of a single resource, updated by watch events.
+         */
+        final class CachedData {
+            private final String name;
+            private volatile KubernetesClient client;
+            private volatile boolean loaded;
+            private volatile boolean closed;
+            private boolean initialized;
+            private volatile Map<String, String> data;
+            private volatile Watch watch;
+
+            CachedData(String name) {
+                this.name = name;
+            }
+
+            Map<String, String> get(KubernetesClient client) {
+                if (!loaded) {
+                    synchronized (this) {
+                        if (!loaded) {
+                            this.client = client;
+
+                            // watch first so no change between the get and the watch is lost
+                            try {
+                                watch = watch(client, name, this);
+                            } catch (KubernetesClientException e) {
+                                LOGGER.warn("Unable to watch {}, it will not be cached: {}", name, e.getMessage());
+                            }
+
+                            Map<String, String> newData;
+                            try {
+                                newData = getData(client, name);
+                            } catch (RuntimeException e) {
+                                // don't leak the watch, the next get opens a new one
+                                closeWatch();
+                                throw e;
+                            }
+                            if (watch == null) {
+                                cache.remove(name, this);
+                                return newData;
+                            }
+
+                            update(newData);
+                            initialized = true;
+                            loaded = true;
+                        }
+                    }
+                }
+
+                return data;
+            }
+
+            synchronized void update(Map<String, String> newData) {
+                LOGGER.debug("Updating cached data of {}", name);
+
+                Map<String, String> oldData = data;
+                data = newData;
+
+                if (initialized) {
+                    fireChanges(name, oldData, newData);
+                }
+            }
+
+            /**
+             * Re-fetches the data after the watch has failed, reporting what changed meanwhile
+             */
+            void invalidate() {
+                LOGGER.debug("Invalidating cached data of {}", name);
+                closeWatch();
+                loaded = false;
+
+                KubernetesClient c = client;
+                if (c != null && !closed) {
+                    try {
+                        get(c);
+                    } catch (KubernetesClientException e) {
+                        LOGGER.warn("Unable to fetch {}, it will be fetched again on the next get: {}", name, e.getMessage());
+                    }
+                }
+            }
+
+            void close() {
+                closed = true;
+                client = null;
+                closeWatch();
+            }
+
+            private void closeWatch() {
+                Watch w = watch;
+                watch = null;
+                if (w != null) {
+                    w.close();
+                }
+            }
+        }
+
+        /**
+         * Keeps a {@link CachedData} up to date
+         */
+        abstract class DataWatcher<T extends HasMetadata> implements Watcher<T> {
+            private final CachedData entry;
+
+            DataWatcher(CachedData entry) {
+                this.entry = entry;
+            }
+
+            @Override
+            public void eventReceived(Action action, T resource) {
+                switch (action) {
+                case ADDED:
+                case MODIFIED:
+                    entry.update(dataOf(resource));
+                    break;
+                case DELETED:
+                    entry.update(null);
+                    break;
+                case ERROR:
+                    entry.invalidate();
+                    break;
+                }
+            }
+
+            @Override
+            public void onClose(KubernetesClientException cause) {
+                if (cause != null) {
+                    // the data may now be stale so lets fetch it again
+                    entry.invalidate();
+                }
+            }
+
+            abstract Map<String, String> dataOf(T resource);
+        }
     }
 
     static final class SecretsResource extends Resource {
         private final boolean useApi;
         private final List<Path> paths;
+        private final MountedSecrets mountedSecrets;
+
+        public SecretsResource(PlaceholderDependencyListener listener) {
+            super("secret", listener);
 
-        public SecretsResource() {
             this.useApi = Utils.getSystemPropertyOrEnvVar(FABRIC8_K8S_SECRET_API_ENABLED, false);
             this.paths = new ArrayList<>();
 
@@ -66,60 +304,283 @@ final class KubernetesSupport {
                     this.paths.add(Paths.get(path));
                 }
             }
+
+            this.mountedSecrets = new MountedSecrets(this, this.paths);
         }
 
         @Override
         Map<String, String> getData(KubernetesClient client, String name) {
             Secret resource = client.secrets().withName(name).get();
-            return (resource != null) ? resource.getData() : null;
+            return (resource != null) ? decode(resource.getData()) : null;
         }
 
         @Override
-        public String get(KubernetesClient client, String name, String key) {
-            // The secret's value
-            String value = null;
+        Watch watch(KubernetesClient client, String name, CachedData entry) {
+            return client.secrets().withName(name).watch(new DataWatcher<Secret>(entry) {
+                @Override
+                Map<String, String> dataOf(Secret resource) {
+                    return decode(resource.getData());
+                }
+            });
+        }
 
+        @Override
+        public String get(KubernetesClient client, String name, String key) {
             // First check if secret has been mounted locally
-            for (Path path : this.paths) {
-                Path secretPath = path.resolve(name).resolve(key);
-                if (Files.exists(secretPath) && Files.isRegularFile(secretPath)) {
-                    try {
-                        value = new String(Files.readAllBytes(secretPath)).trim();
-                    } catch (IOException e) {
-                        LOGGER.warn("", e);
-                    }
-                }
-            }
+            String value = mountedSecrets.get(name, key);
 
             // Then retrieve secrets using APIs if enabled and not found locally
             if (this.useApi && Utils.isNullOrEmpty(value)) {
                 value = super.get(client, name, key);
-                if (Utils.isNotNullOrEmpty(value)) {
-                    value = new String(Base64.decodeBase64(value));
-                }
             }
 
             return value;
         }
+
+        @Override
+        public void close() {
+            super.close();
+            mountedSecrets.close();
+        }
+
+        private static Map<String, String> decode(Map<String, String> data) {
+            if (data == null) {
+                return null;
+            }
+
+            Map<String, String> answer = new HashMap<>(data.size());
+            for (Map.Entry<String, String> entry : data.entrySet()) {
+                String value = entry.getValue();
+                answer.put(entry.getKey(), Utils.isNotNullOrEmpty(value) ? new String(Base64.decodeBase64(value)) : value);
+            }
+
+            return Collections.unmodifiableMap(answer);
+        }
     }
 
     static final class ConfigMapResource extends Resource {
+        public ConfigMapResource(PlaceholderDependencyListener listener) {
+            super("configmap", listener);
+        }
+
         @Override
         Map<String, String> getData(KubernetesClient client, String name) {
             ConfigMap resource = client.configMaps().withName(name).get();
             return (resource != null) ? resource.getData() : null;
         }
+
+        @Override
+        Watch watch(KubernetesClient client, String name, CachedData entry) {
+            return client.configMaps().withName(name).watch(new DataWatcher<ConfigMap>(entry) {
+                @Override
+                Map<String, String> dataOf(ConfigMap resource) {
+                    return resource.getData();
+                }
+            });
+        }
+    }
+
+    // ******************************
+    // Mounted secrets
+    // ******************************
+
+    /**
+     * Caches the values of secrets mounted as files, using a {@link WatchService}
+     * on the secret directories to re-read the cached values of a secret as soon
+     * as its files are changed (Kubernetes swaps the <tt>..data</tt> link of the
+     * mounted directory when a secret is updated).
+     */
+    static final class MountedSecrets implements Runnable {
+        private static final String NOT_FOUND = new String();
+
+        private final Resource owner;
+        private final List<Path> paths;
+        private final ConcurrentMap<String, ConcurrentMap<String, String>> values;
+        private final Map<WatchKey, Path> watchKeys;
+        private final Set<Path> watchedPaths;
+        private volatile WatchService watchService;
+        private volatile boolean useCache;
+        private Thread thread;
+
+        MountedSecrets(Resource owner, List<Path> paths) {
+            this.owner = owner;
+            this.paths = paths;
+            this.values = new ConcurrentHashMap<>();
+            this.watchKeys = new ConcurrentHashMap<>();
+            this.watchedPaths = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+            this.useCache = Utils.getSystemPropertyOrEnvVar(FABRIC8_K8S_CACHE_ENABLED, true);
+        }
+
+        String get(String name, String key) {
+            if (paths.isEmpty()) {
+                return null;
+            }
+            if (!useCache || !startWatching()) {
+                return read(name, key);
+            }
+
+            ConcurrentMap<String, String> secret = values.get(name);
+            if (secret == null) {
+                for (Path path : paths) {
+                    watch(path);
+                    watch(path.resolve(name));
+                }
+
+                ConcurrentMap<String, String> newSecret = new ConcurrentHashMap<>();
+                secret = values.putIfAbsent(name, newSecret);
+                if (secret == null) {
+                    secret = newSecret;
+                }
+            }
+
+            String value = secret.get(key);
+            if (value == null) {
+                value = read(name, key);
+                secret.putIfAbsent(key, value != null ? value : NOT_FOUND);
+            }
+
+            return value != NOT_FOUND ? value : null;
+        }
+
+        synchronized void close() {
+            values.clear();
+            watchKeys.clear();
+            watchedPaths.clear();
+
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    LOGGER.debug("", e);
+                }
+                watchService = null;
+            }
+            if (thread != null) {
+                thread.interrupt();
+                thread = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            WatchService service = watchService;
+            while (service != null) {
+                WatchKey key;
+                try {
+                    key = service.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+
+                Path dir = watchKeys.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        LOGGER.debug("Lost secret file events, re-reading all the cached secrets");
+                        for (String name : values.keySet()) {
+                            refresh(name);
+                        }
+                    } else if (dir != null && paths.contains(dir)) {
+                        // a secret directory has been added or removed
+                        Path child = dir.resolve((Path) event.context());
+                        String name = child.getFileName().toString();
+                        if (values.containsKey(name)) {
+                            watch(child);
+                        }
+                        refresh(name);
+                    } else if (dir != null) {
+                        refresh(dir.getFileName().toString());
+                    }
+                }
+
+                if (!key.reset()) {
+                    watchKeys.remove(key);
+                    if (dir != null) {
+                        watchedPaths.remove(dir);
+                    }
+                }
+
+                service = watchService;
+            }
+        }
+
+        private void refresh(String name) {
+            ConcurrentMap<String, String> secret = values.get(name);
+            if (secret == null) {
+                return;
+            }
+
+            LOGGER.debug("Secret files of {} changed, re-reading the cached values", name);
+            for (Map.Entry<String, String> entry : secret.entrySet()) {
+                String value = read(name, entry.getKey());
+                if (value == null) {
+                    value = NOT_FOUND;
+                }
+
+                String oldValue = entry.getValue();
+                if (!value.equals(oldValue) || (value == NOT_FOUND) != (oldValue == NOT_FOUND)) {
+                    secret.put(entry.getKey(), value);
+                    owner.fireChanged(name, entry.getKey());
+                }
+            }
+        }
+
+        private synchronized boolean startWatching() {
+            if (watchService == null && useCache) {
+                try {
+                    watchService = FileSystems.getDefault().newWatchService();
+                    thread = new Thread(this, "fabric8-secrets-watcher");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to watch the secret files, they will not be cached: {}", e.getMessage());
+                    useCache = false;
+                }
+            }
+            return useCache;
+        }
+
+        private void watch(Path dir) {
+            WatchService service = watchService;
+            if (service != null && Files.isDirectory(dir) && watchedPaths.add(dir)) {
+                try {
+                    WatchKey key = dir.register(
+                        service,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                    watchKeys.put(key, dir);
+                } catch (IOException | ClosedWatchServiceException e) {
+                    watchedPaths.remove(dir);
+                    LOGGER.warn("Unable to watch {}: {}", dir, e.getMessage());
+                }
+            }
+        }
+
+        private String read(String name, String key) {
+            String value = null;
+            for (Path path : paths) {
+                Path secretPath = path.resolve(name).resolve(key);
+                if (Files.exists(secretPath) && Files.isRegularFile(secretPath)) {
+                    try {
+                        value = new String(Files.readAllBytes(secretPath)).trim();
+                    } catch (IOException e) {
+                        LOGGER.warn("", e);
+                    }
+                }
+            }
+            return value;
+        }
     }
 
     // ******************************
     // Resource helpers
     // ******************************
 
-    public static Resource secretsResource() {
-        return new SecretsResource();
+    public static Resource secretsResource(PlaceholderDependencyListener listener) {
+        return new SecretsResource(listener);
     }
 
-    public static Resource configMapResource() {
-        return new ConfigMapResource();
+    public static Resource configMapResource(PlaceholderDependencyListener listener) {
+        return new ConfigMapResource(listener);
     }
 }
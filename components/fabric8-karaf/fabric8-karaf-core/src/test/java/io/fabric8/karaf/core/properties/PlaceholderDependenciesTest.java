@@ -0,0 +1,70 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PlaceholderDependenciesTest {
+    private static final PlaceholderDependency SECRET = new PlaceholderDependency("secret", "db", "password");
+    private static final PlaceholderDependency CONFIG_MAP = new PlaceholderDependency("configmap", "app", "url");
+
+    @Test
+    public void testTracking() {
+        PlaceholderDependencies.startTracking();
+        PlaceholderDependencies.record(SECRET);
+        PlaceholderDependencies.record(CONFIG_MAP);
+        PlaceholderDependencies.record(new PlaceholderDependency("secret", "db", "password"));
+
+        Set<PlaceholderDependency> dependencies = PlaceholderDependencies.stopTracking();
+        Assert.assertEquals(2, dependencies.size());
+        Assert.assertTrue(dependencies.contains(SECRET));
+        Assert.assertTrue(dependencies.contains(CONFIG_MAP));
+
+        // recording stops with the tracking
+        PlaceholderDependencies.record(SECRET);
+        Assert.assertEquals(Collections.emptySet(), PlaceholderDependencies.stopTracking());
+    }
+
+    @Test
+    public void testTrackingIsPerThread() throws Exception {
+        final AtomicReference<Set<PlaceholderDependency>> other = new AtomicReference<>();
+
+        PlaceholderDependencies.startTracking();
+        try {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    PlaceholderDependencies.startTracking();
+                    PlaceholderDependencies.record(CONFIG_MAP);
+                    other.set(PlaceholderDependencies.stopTracking());
+                }
+            });
+            thread.start();
+            thread.join();
+
+            PlaceholderDependencies.record(SECRET);
+        } finally {
+            Assert.assertEquals(Collections.singleton(SECRET), PlaceholderDependencies.stopTracking());
+        }
+
+        Assert.assertEquals(Collections.singleton(CONFIG_MAP), other.get());
+    }
+}
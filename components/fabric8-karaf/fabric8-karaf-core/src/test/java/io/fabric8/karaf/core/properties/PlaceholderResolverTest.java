@@ -38,6 +38,36 @@ public class PlaceholderResolverTest {
         Assert.assertEquals("hello1", resolver.resolve("map1:prop1"));
         Assert.assertEquals("hello2", resolver.resolve("map2:prop1"));
         Assert.assertNull(resolver.resolve("map1:noReplace"));
+        Assert.assertNull(resolver.resolve("map1"));
+        Assert.assertNull(resolver.resolve("unknown:prop1"));
+    }
+
+    @Test
+    public void testResolveChain() {
+        Assert.assertEquals("hello nested world!", resolver.resolve("map1+map2:prop-chain"));
+        Assert.assertEquals("hello nested world!", resolver.resolve("map1+map2:prop-chain"));
+        Assert.assertNull(resolver.resolve("map1+unknown:prop-chain"));
+    }
+
+    @Test
+    public void testUnbind() {
+        PropertiesFunction map3 = new PropertiesFunction() {
+            @Override
+            public String getName() {
+                return "map3";
+            }
+
+            @Override
+            public String apply(String remainder) {
+                return remainder;
+            }
+        };
+
+        resolver.bindFunction(map3);
+        Assert.assertEquals("prop1", resolver.resolve("map3:prop1"));
+
+        resolver.unbindFunction(map3);
+        Assert.assertNull(resolver.resolve("map3:prop1"));
     }
 
     @Test
@@ -96,6 +126,7 @@ public class PlaceholderResolverTest {
             map.put("prop6","$[map1:prop6]");
             map.put("prop7","$[map1:prop8]");
             map.put("prop8","$[map1:prop7]");
+            map.put("prop-chain","prop-nested");
         }
 
         public String getName() {
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties.function;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.fabric8.karaf.core.properties.PlaceholderDependency;
+import io.fabric8.karaf.core.properties.PlaceholderDependencyListener;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KubernetesPropertiesFunctionTest {
+    private final KubernetesPropertiesFunction function = new KubernetesPropertiesFunction();
+
+    @After
+    public void tearDown() {
+        function.deactivate();
+    }
+
+    @Test
+    public void testNotifiesBoundListeners() {
+        PlaceholderDependency dependency = new PlaceholderDependency("secret", "db", "password");
+        RecordingListener listener = new RecordingListener();
+
+        function.bindDependencyListener(listener);
+        function.bindDependencyListener(listener);
+        function.dependencyChanged(dependency);
+        Assert.assertEquals(Collections.singletonList(dependency), listener.changes);
+
+        function.unbindDependencyListener(listener);
+        function.dependencyChanged(dependency);
+        Assert.assertEquals(Collections.singletonList(dependency), listener.changes);
+    }
+
+    @Test
+    public void testUnresolvedWithoutClient() {
+        Assert.assertNull(function.apply("secret:db/password"));
+        Assert.assertNull(function.apply("unknown:db/password"));
+    }
+
+    private static final class RecordingListener implements PlaceholderDependencyListener {
+        private final List<PlaceholderDependency> changes = new ArrayList<>();
+
+        @Override
+        public void dependencyChanged(PlaceholderDependency dependency) {
+            changes.add(dependency);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.profiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reports which files of the target directory were changed by {@link Profiles#materialize(java.nio.file.Path, String...)}.
+ * File names are relative to the target directory and sorted.
+ */
+public class MaterializeResult {
+
+    private final List<String> added;
+    private final List<String> updated;
+    private final List<String> removed;
+    private final List<String> unchanged;
+
+    public MaterializeResult(List<String> added, List<String> updated, List<String> removed, List<String> unchanged) {
+        this.added = sorted(added);
+        this.updated = sorted(updated);
+        this.removed = sorted(removed);
+        this.unchanged = sorted(unchanged);
+    }
+
+    /**
+     * Files which did not exist in the target directory
+     */
+    public List<String> getAdded() {
+        return added;
+    }
+
+    /**
+     * Files whose content was rewritten as their merged content changed
+     */
+    public List<String> getUpdated() {
+        return updated;
+    }
+
+    /**
+     * Files written by a previous materialization which are no longer part of the profiles
+     */
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Files which were left untouched as their merged content did not change
+     */
+    public List<String> getUnchanged() {
+        return unchanged;
+    }
+
+    public boolean hasChanges() {
+        return !added.isEmpty() || !updated.isEmpty() || !removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "MaterializeResult{added=" + added + ", updated=" + updated + ", removed=" + removed +
+                ", unchanged=" + unchanged.size() + "}";
+    }
+
+    private static List<String> sorted(List<String> list) {
+        List<String> answer = new ArrayList<>(list);
+        Collections.sort(answer);
+        return Collections.unmodifiableList(answer);
+    }
+}
@@ -17,27 +17,61 @@ package io.fabric8.profiles;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static io.fabric8.profiles.ProfilesHelpers.readJsonFile;
-import static io.fabric8.profiles.ProfilesHelpers.readPropertiesFile;
-import static io.fabric8.profiles.ProfilesHelpers.readYamlFile;
+import static io.fabric8.profiles.ProfilesHelpers.readJson;
+import static io.fabric8.profiles.ProfilesHelpers.readProperties;
+import static io.fabric8.profiles.ProfilesHelpers.readYaml;
 import static io.fabric8.profiles.ProfilesHelpers.recusivelyCollectFileListing;
 import static io.fabric8.profiles.ProfilesHelpers.toBytes;
 import static io.fabric8.profiles.ProfilesHelpers.toJsonBytes;
 import static io.fabric8.profiles.ProfilesHelpers.toYamlBytes;
 
+/**
+ * Materializes profiles of a repository, merging the files of a profile with the files of its parents.
+ * <p/>
+ * Materialization is incremental: an instance remembers the content hash of the repository files (revalidated
+ * with their size and modification time), parses each distinct file content only once, and remembers the files it
+ * wrote. So materializing again only merges the files whose sources changed, and only rewrites the files whose
+ * merged content changed. Files are merged in parallel.
+ */
 public class Profiles {
 
+    // files modified this recently could still be modified within the same timestamp, so their hash is not kept
+    private static final long RACY_MILLIS = 2000;
+    private static final int PARALLEL_THRESHOLD = 4;
+    // the merges kept are bounded by the size of the files they merged over the merge of their parents,
+    // a proxy of their memory as each merge shares the rest of its tree with the merge of its parents
+    private static final long MAX_MERGED_BYTES = 32 * 1024 * 1024;
+
     private final Path repository;
+    private final Map<Path, FileHash> fileHashes = new ConcurrentHashMap<>();
+    private final Map<String, Parsed> parsedFiles = new ConcurrentHashMap<>();
+    private final Map<String, Merged> mergedNodes = new ConcurrentHashMap<>();
+    private final AtomicLong mergedBytes = new AtomicLong();
+    private final Map<Path, Output> outputs = new ConcurrentHashMap<>();
 
     /**
      * @param repository directory should be a repository containing profile configurations.
@@ -49,72 +83,297 @@ public class Profiles {
     /**
      * @param target       is the directory where resulting materialized profile configuration will be written to.
      * @param profileNames a list of profile names that will be combined to create the materialized profile.
+     * @return the files of the target directory which were added, updated, removed or left unchanged.
      */
-    public void materialize(Path target, String... profileNames) throws IOException {
+    public MaterializeResult materialize(Path target, String... profileNames) throws IOException {
         ArrayList<String> profileSearchOrder = new ArrayList<>();
         for (String profileName : profileNames) {
             collectProfileNames(profileSearchOrder, profileName);
         }
 
-        HashSet<String> files = new HashSet<>();
+        // the source files of each file, in search order
+        final Map<String, List<Path>> files = new TreeMap<>();
         for (String profileName : profileSearchOrder) {
-            files.addAll(listFiles(profileName));
+            Path dir = getProfilePath(profileName);
+            for (String file : listFiles(profileName)) {
+                List<Path> sources = files.get(file);
+                if (sources == null) {
+                    sources = new ArrayList<>();
+                    files.put(file, sources);
+                }
+                sources.add(dir.resolve(file));
+            }
         }
 
-        System.out.println("profile search order" + profileSearchOrder);
-        System.out.println("files: " + files);
-        for (String file : files) {
-            try (InputStream is = materializeFile(file, profileSearchOrder)) {
-                Files.copy(is, target.resolve(file), StandardCopyOption.REPLACE_EXISTING);
+        final Path targetDir = target.toAbsolutePath().normalize();
+        List<Callable<Status>> tasks = new ArrayList<>();
+        for (final Map.Entry<String, List<Path>> entry : files.entrySet()) {
+            tasks.add(new Callable<Status>() {
+                @Override
+                public Status call() throws IOException {
+                    return materializeFile(targetDir.resolve(entry.getKey()), entry.getKey(), entry.getValue());
+                }
+            });
+        }
+        List<Status> statuses = invokeAll(tasks);
+
+        List<String> added = new ArrayList<>();
+        List<String> updated = new ArrayList<>();
+        List<String> unchanged = new ArrayList<>();
+        int i = 0;
+        for (String file : files.keySet()) {
+            Status status = statuses.get(i++);
+            if (status == Status.ADDED) {
+                added.add(file);
+            } else if (status == Status.UPDATED) {
+                updated.add(file);
+            } else {
+                unchanged.add(file);
+            }
+        }
+
+        // remove the files written by a previous materialization of this target which are no longer produced
+        List<String> removed = new ArrayList<>();
+        for (Path path : new ArrayList<>(outputs.keySet())) {
+            if (path.startsWith(targetDir) && !files.containsKey(targetDir.relativize(path).toString())) {
+                outputs.remove(path);
+                if (Files.deleteIfExists(path)) {
+                    removed.add(targetDir.relativize(path).toString());
+                }
             }
         }
 
+        pruneParsedFiles();
+        return new MaterializeResult(added, updated, removed, unchanged);
     }
 
-    private InputStream materializeFile(String fileName, ArrayList<String> profileSearchOrder) throws IOException {
-        if (fileName.endsWith(".properties")) {
+    private Status materializeFile(Path target, String fileName, List<Path> sources) throws IOException {
+        String type = getFileType(fileName);
+        StringBuilder inputs = new StringBuilder(type);
+        List<String> hashes = new ArrayList<>(sources.size());
+        for (Path source : sources) {
+            String hash = getFileHash(source).hash;
+            hashes.add(hash);
+            inputs.append(':').append(hash);
+        }
+
+        Output previous = outputs.get(target);
+        boolean targetUnchanged = previous != null && previous.isUpToDate(target);
+        if (targetUnchanged && previous.inputs.equals(inputs.toString())) {
+            return Status.UNCHANGED;
+        }
+
+        byte[] data = null;
+        Path copy = null;
+        String hash;
+        if (type.isEmpty()) {
+            // Last profile in list wins, since we cant merge these types of files.
+            copy = sources.get(sources.size() - 1);
+            hash = hashes.get(hashes.size() - 1);
+        } else {
+            data = mergeFile(type, sources, hashes);
+            hash = hash(data);
+        }
+
+        Status status;
+        if (!Files.exists(target)) {
+            status = Status.ADDED;
+        } else if (hash.equals(targetUnchanged ? previous.hash : hash(Files.readAllBytes(target)))) {
+            status = Status.UNCHANGED;
+        } else {
+            status = Status.UPDATED;
+        }
+        if (status != Status.UNCHANGED) {
+            Files.createDirectories(target.getParent());
+            if (data != null) {
+                Files.write(target, data);
+            } else {
+                Files.copy(copy, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        outputs.put(target, new Output(inputs.toString(), hash, Files.readAttributes(target, BasicFileAttributes.class)));
+        return status;
+    }
 
+    private byte[] mergeFile(String type, List<Path> sources, List<String> hashes) throws IOException {
+        if (type.equals("properties")) {
             // later property files in the profile overwrite values
             // in previous properties.
             Properties properties = new Properties();
-            for (String profile : profileSearchOrder) {
-                Path path = getProfilePath(profile).resolve(fileName);
-                if (Files.exists(path)) {
-                    ProfilesHelpers.merge(properties, readPropertiesFile(path));
+            for (int i = 0; i < sources.size(); i++) {
+                ProfilesHelpers.merge(properties, (Properties) getParsedFile(sources.get(i), type, hashes.get(i)).value);
+            }
+            return toBytes(properties);
+        }
+        // merged trees share their unchanged subtrees, so the merge of each chain of parents is kept
+        // and a profile only merges its own overrides over the merge of its parents
+        JsonNode node = null;
+        String key = type;
+        List<String> chain = new ArrayList<>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            String chainKey = chainKey(type, key, hashes.get(i));
+            Merged merged = mergedNodes.get(chainKey);
+            if (merged == null) {
+                Parsed parsed = getParsedFile(sources.get(i), type, hashes.get(i));
+                // the file may have changed since it was hashed, so key the merge on the content really merged
+                chainKey = chainKey(type, key, parsed.hash);
+                chain.add(parsed.hash);
+                merged = new Merged(ProfilesHelpers.merge(node, (JsonNode) parsed.value), chain, parsed.size);
+                if (mergedNodes.putIfAbsent(chainKey, merged) == null) {
+                    mergedBytes.addAndGet(merged.size);
                 }
+            } else {
+                chain.add(hashes.get(i));
             }
-            return new ByteArrayInputStream(toBytes(properties));
+            key = chainKey;
+            node = merged.node;
+        }
+        return type.equals("json") ? toJsonBytes(node) : toYamlBytes(node);
+    }
+
+    private static String chainKey(String type, String parentKey, String hash) {
+        return type + ":" + hash((parentKey + ":" + hash).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String getFileType(String fileName) {
+        if (fileName.endsWith(".properties")) {
+            return "properties";
         } else if (fileName.endsWith(".json")) {
-            JsonNode node = null;
-            for (String profile : profileSearchOrder) {
-                Path path = getProfilePath(profile).resolve(fileName);
-                if (Files.exists(path)) {
-                    node = ProfilesHelpers.merge(node, readJsonFile(path));
+            return "json";
+        } else if (fileName.endsWith(".yml")) {
+            return "yml";
+        }
+        return "";
+    }
+
+    /**
+     * Returns the parsed content of the file, shared by all the files with the same content.
+     * The returned object must not be modified.
+     */
+    private Parsed getParsedFile(Path path, String type) throws IOException {
+        return getParsedFile(path, type, getFileHash(path).hash);
+    }
+
+    /**
+     * Returns the parsed content of the file looked up by the given hash of the file. If the file has to be read,
+     * its content is keyed by the hash of the bytes really read, as the file may have changed since it was hashed.
+     */
+    private Parsed getParsedFile(Path path, String type, String hash) throws IOException {
+        Parsed answer = parsedFiles.get(type + ":" + hash);
+        if (answer == null) {
+            byte[] data = Files.readAllBytes(path);
+            String dataHash = hash(data);
+            answer = parsedFiles.get(type + ":" + dataHash);
+            if (answer == null) {
+                Object value;
+                if (type.equals("properties")) {
+                    value = readProperties(data);
+                } else if (type.equals("json")) {
+                    value = readJson(data);
+                } else {
+                    value = readYaml(data);
                 }
+                answer = new Parsed(dataHash, value, data.length);
+                parsedFiles.put(type + ":" + dataHash, answer);
             }
-            return new ByteArrayInputStream(toJsonBytes(node));
-        } else if (fileName.endsWith(".yml")) {
-            JsonNode node = null;
-            for (String profile : profileSearchOrder) {
-                Path path = getProfilePath(profile).resolve(fileName);
-                if (Files.exists(path)) {
-                    node = ProfilesHelpers.merge(node, readYamlFile(path));
+        }
+        return answer;
+    }
+
+    /**
+     * Drops the parsed content of the files which have been modified since, and the merges of their content.
+     * If the merges kept exceed {@link #MAX_MERGED_BYTES} even so, they are all dropped.
+     */
+    private void pruneParsedFiles() {
+        boolean pruneParsedFiles = parsedFiles.size() > 2 * fileHashes.size();
+        if (!pruneParsedFiles && mergedBytes.get() <= MAX_MERGED_BYTES) {
+            return;
+        }
+        Set<String> hashes = new HashSet<>();
+        for (FileHash fileHash : fileHashes.values()) {
+            hashes.add(fileHash.hash);
+        }
+        if (pruneParsedFiles) {
+            for (String key : new ArrayList<>(parsedFiles.keySet())) {
+                if (!hashes.contains(key.substring(key.indexOf(':') + 1))) {
+                    parsedFiles.remove(key);
                 }
             }
-            return new ByteArrayInputStream(toYamlBytes(node));
-        } else {
-            // Last profile in list wins, since we cant merge these types of files.
-            Path last = null;
-            for (String profile : profileSearchOrder) {
-                Path path = getProfilePath(profile).resolve(fileName);
-                if (Files.exists(path)) {
-                    last = path;
+        }
+        for (Map.Entry<String, Merged> entry : mergedNodes.entrySet()) {
+            if (!hashes.containsAll(entry.getValue().hashes) && mergedNodes.remove(entry.getKey(), entry.getValue())) {
+                mergedBytes.addAndGet(-entry.getValue().size);
+            }
+        }
+        if (mergedBytes.get() > MAX_MERGED_BYTES) {
+            for (Map.Entry<String, Merged> entry : mergedNodes.entrySet()) {
+                if (mergedNodes.remove(entry.getKey(), entry.getValue())) {
+                    mergedBytes.addAndGet(-entry.getValue().size);
                 }
             }
-            return Files.newInputStream(last);
         }
     }
 
+    private FileHash getFileHash(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        FileHash answer = fileHashes.get(path);
+        if (answer == null || !answer.matches(attributes)) {
+            answer = new FileHash(attributes, hash(Files.readAllBytes(path)));
+            if (System.currentTimeMillis() - attributes.lastModifiedTime().toMillis() > RACY_MILLIS) {
+                fileHashes.put(path, answer);
+            } else {
+                fileHashes.remove(path);
+            }
+        }
+        return answer;
+    }
+
+    private static String hash(byte[] data) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] bytes = digest.digest(data);
+        StringBuilder answer = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            answer.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return answer.toString();
+    }
+
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException {
+        List<T> answer = new ArrayList<>(tasks.size());
+        try {
+            if (tasks.size() < PARALLEL_THRESHOLD) {
+                for (Callable<T> task : tasks) {
+                    answer.add(task.call());
+                }
+            } else {
+                for (Future<T> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                    answer.add(future.get());
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while materializing the profiles", e);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        return answer;
+    }
+
     private ArrayList<String> listFiles(String profileName) throws IOException {
         ArrayList<String> rc = new ArrayList<>();
         Path dir = getProfilePath(profileName);
@@ -134,7 +393,7 @@ public class Profiles {
         Properties props = new Properties();
         Path agentProperties = path.resolve("io.fabric8.agent.properties");
         if (Files.exists(agentProperties)) {
-            props = readPropertiesFile(agentProperties);
+            props = (Properties) getParsedFile(agentProperties, "properties").value;
         }
 
         String parents = props.getProperty("attribute.parents", "default".equals(profileName) ? "" : "default");
@@ -153,5 +412,82 @@ public class Profiles {
         return repository.resolve(profileName.replaceAll("-", "/") + ".profile");
     }
 
+    private enum Status {
+        ADDED, UPDATED, UNCHANGED
+    }
+
+    /**
+     * The parsed content of a file along with the hash and size of the bytes it was parsed from
+     */
+    private static final class Parsed {
+        private final String hash;
+        private final Object value;
+        private final long size;
 
-}
\ No newline at end of file
+        Parsed(String hash, Object value, long size) {
+            this.hash = hash;
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The merge of a chain of files, with the hashes of the files of the chain and the size of its last file
+     */
+    private static final class Merged {
+        private final JsonNode node;
+        private final List<String> hashes;
+        private final long size;
+
+        Merged(JsonNode node, List<String> hashes, long size) {
+            this.node = node;
+            this.hashes = new ArrayList<>(hashes);
+            this.size = size;
+        }
+    }
+
+    private static final class FileHash {
+        private final long size;
+        private final FileTime lastModified;
+        private final Object fileKey;
+        private final String hash;
+
+        FileHash(BasicFileAttributes attributes, String hash) {
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime();
+            this.fileKey = attributes.fileKey();
+            this.hash = hash;
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified.equals(attributes.lastModifiedTime())
+                    && (fileKey == null || fileKey.equals(attributes.fileKey()));
+        }
+    }
+
+    /**
+     * A file written to a target directory, with the hashes of the sources it was merged from
+     */
+    private static final class Output {
+        private final String inputs;
+        private final String hash;
+        private final long size;
+        private final FileTime lastModified;
+
+        Output(String inputs, String hash, BasicFileAttributes attributes) {
+            this.inputs = inputs;
+            this.hash = hash;
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime();
+        }
+
+        boolean isUpToDate(Path target) throws IOException {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(target, BasicFileAttributes.class);
+                return size == attributes.size() && lastModified.equals(attributes.lastModifiedTime());
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -30,6 +31,7 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -50,6 +52,20 @@ public class ProfilesHelpers {
     }
 
 
+    public static Properties readProperties(byte[] data) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(data));
+        return properties;
+    }
+
+    public static JsonNode readJson(byte[] data) throws IOException {
+        return JSON_MAPPER.readTree(data);
+    }
+
+    public static JsonNode readYaml(byte[] data) throws IOException {
+        return YAML_MAPPER.readTree(data);
+    }
+
     public static JsonNode readJsonFile(Path path) throws IOException {
         try (InputStream is = Files.newInputStream(path)) {
             return JSON_MAPPER.readTree(is);
@@ -62,10 +78,21 @@ public class ProfilesHelpers {
         }
     }
 
+    /**
+     * Stores the properties without the timestamp comment, so that the same properties always give the same bytes
+     */
     public static byte[] toBytes(Properties properties) throws IOException {
         try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
             properties.store(os, null);
-            return os.toByteArray();
+            byte[] data = os.toByteArray();
+            int start = 0;
+            if (data.length > 0 && data[0] == '#') {
+                while (start < data.length && data[start] != '\n') {
+                    start++;
+                }
+                start++;
+            }
+            return Arrays.copyOfRange(data, Math.min(start, data.length), data.length);
         }
     }
 
@@ -103,13 +130,24 @@ public class ProfilesHelpers {
         }
     }
 
+    /**
+     * Merges the source node over the target node, returning a new node when the source changes anything.
+     * <p/>
+     * Neither node is modified: the result shares with them every subtree the source does not override,
+     * so that merging costs in proportion to the overrides rather than to the inherited tree. As a consequence
+     * the merged nodes must be treated as immutable.
+     */
     public static JsonNode merge(JsonNode target, JsonNode source) {
         if( target == null ) {
             return source;
         }
         if( target.isArray() && source.isArray() ) {
             // we append values from the source.
-            ArrayNode copy = (ArrayNode) target.deepCopy();
+            if( source.size() == 0 ) {
+                return target;
+            }
+            ArrayNode copy = JsonNodeFactory.instance.arrayNode();
+            copy.addAll((ArrayNode) target);
             for (JsonNode n : source) {
                 if( (n.isTextual() && DELETED.equals(n.textValue())) ) {
                     copy = JsonNodeFactory.instance.arrayNode();
@@ -119,30 +157,46 @@ public class ProfilesHelpers {
             }
             return copy;
         } else if ( target.isObject() && source.isObject() ) {
-            ObjectNode copy = (ObjectNode) target.deepCopy();
             if( source.get(DELETED)!=null ) {
-                copy = JsonNodeFactory.instance.objectNode();
-            } else {
-                Iterator<String> iterator = source.fieldNames();
-                while (iterator.hasNext()) {
-                    String key =  iterator.next();
-                    if( !DELETED.equals(key) ) {
-                        JsonNode value = source.get(key);
-                        if( (value.isTextual() && DELETED.equals(value.textValue())) ) {
+                return JsonNodeFactory.instance.objectNode();
+            }
+            // only copy the fields of the target, not their values, and only if the source changes a field
+            ObjectNode copy = null;
+            Iterator<Map.Entry<String, JsonNode>> iterator = source.fields();
+            while (iterator.hasNext()) {
+                Map.Entry<String, JsonNode> entry = iterator.next();
+                String key = entry.getKey();
+                if( !DELETED.equals(key) ) {
+                    JsonNode value = entry.getValue();
+                    JsonNode original = target.get(key);
+                    if( (value.isTextual() && DELETED.equals(value.textValue())) ) {
+                        if( original != null ) {
+                            copy = shallowCopy((ObjectNode) target, copy);
                             copy.remove(key);
-                        } else {
-                            JsonNode original = target.get(key);
-                            value = merge(original, value);
+                        }
+                    } else {
+                        value = merge(original, value);
+                        if( value != original ) {
+                            copy = shallowCopy((ObjectNode) target, copy);
                             copy.set(key, value);
                         }
                     }
                 }
             }
-            return copy;
+            return copy != null ? copy : target;
         } else {
             return source;
         }
 
     }
 
+    private static ObjectNode shallowCopy(ObjectNode target, ObjectNode copy) {
+        if( copy != null ) {
+            return copy;
+        }
+        ObjectNode answer = JsonNodeFactory.instance.objectNode();
+        answer.setAll(target);
+        return answer;
+    }
+
 }
@@ -0,0 +1,110 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.profiles;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static io.fabric8.profiles.TestHelpers.recusiveDeleteIfExists;
+
+/**
+ * Measures materializing a generated repository of profiles, each inheriting from a few others, before and
+ * after editing a single file of a common parent, and once more with a fresh {@link Profiles} whose caches
+ * are empty. The repository has 300 profiles, or the number given as the first argument.
+ */
+public class ProfilesBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        Path root = Files.createTempDirectory("profiles-benchmark");
+        try {
+            Path repository = root.resolve("repository");
+            createRepository(repository, count);
+            Profiles profiles = new Profiles(repository);
+            for (int i = 0; i < 3; i++) {
+                long start = System.nanoTime();
+                int changes = materialize(profiles, root, count);
+                System.out.printf("materialize %d profiles: %d ms, %d changed files%n", count, millis(start), changes);
+            }
+
+            Path edited = repository.resolve("base1.profile/app.properties");
+            Files.write(edited, ("setting.edited=true\n" + new String(Files.readAllBytes(edited), StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8));
+            long start = System.nanoTime();
+            int changes = materialize(profiles, root, count);
+            System.out.printf("after one edit: %d ms, %d changed files%n", millis(start), changes);
+
+            start = System.nanoTime();
+            changes = materialize(new Profiles(repository), root, count);
+            System.out.printf("cold cache, nothing to write: %d ms, %d changed files%n", millis(start), changes);
+        } finally {
+            recusiveDeleteIfExists(root);
+        }
+    }
+
+    private static int materialize(Profiles profiles, Path root, int count) throws Exception {
+        int changes = 0;
+        for (int i = 0; i < count; i++) {
+            Path target = root.resolve("target/app" + i);
+            Files.createDirectories(target);
+            MaterializeResult result = profiles.materialize(target, "app" + i);
+            changes += result.getAdded().size() + result.getUpdated().size() + result.getRemoved().size();
+        }
+        return changes;
+    }
+
+    private static long millis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static void createRepository(Path repository, int count) throws Exception {
+        write(repository.resolve("default.profile/app.properties"), properties("default", 200));
+        for (int b = 0; b < 10; b++) {
+            write(repository.resolve("base" + b + ".profile/app.properties"), properties("base" + b, 100));
+            write(repository.resolve("base" + b + ".profile/app.yml"), yaml("base" + b, 50));
+            write(repository.resolve("base" + b + ".profile/logging.txt"), "base" + b);
+        }
+        for (int i = 0; i < count; i++) {
+            Path profile = repository.resolve("app" + i + ".profile");
+            write(profile.resolve("io.fabric8.agent.properties"), "attribute.parents=base" + (i % 10) + ",base" + ((i + 1) % 10) + "\n");
+            write(profile.resolve("app.properties"), properties("app" + i, 10));
+            write(profile.resolve("app.yml"), yaml("app" + i, 5));
+        }
+    }
+
+    private static String properties(String name, int size) {
+        StringBuilder answer = new StringBuilder("name=" + name + "\n");
+        for (int i = 0; i < size; i++) {
+            answer.append("setting.").append(i).append('=').append(name).append('-').append(i).append('\n');
+        }
+        return answer.toString();
+    }
+
+    private static String yaml(String name, int size) {
+        StringBuilder answer = new StringBuilder("name: " + name + "\nsettings:\n");
+        for (int i = 0; i < size; i++) {
+            answer.append("  key").append(i).append(":\n    value: ").append(name).append('\n')
+                    .append("    list: [").append(i).append(", ").append(name).append("]\n");
+        }
+        return answer.toString();
+    }
+
+    private static void write(Path path, String content) throws Exception {
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.profiles;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static io.fabric8.profiles.ProfilesHelpers.merge;
+import static io.fabric8.profiles.ProfilesHelpers.readJson;
+
+public class ProfilesHelpersTest {
+
+    @Test
+    public void mergeTest() throws IOException {
+        JsonNode parent = json("{'name':'parent','big':{'a':[1,2],'b':{'c':true}},'list':[1,2],'other':{'x':1},'gone':1}");
+        JsonNode child = json("{'name':'child','big':{'b':{'d':false}},'list':[3],'gone':'#deleted#','added':{'y':2}}");
+        String parentText = parent.toString();
+        String childText = child.toString();
+
+        JsonNode merged = merge(parent, child);
+        Assert.assertEquals(json("{'name':'child','big':{'a':[1,2],'b':{'c':true,'d':false}},'list':[1,2,3],'other':{'x':1},'added':{'y':2}}"), merged);
+
+        // the inputs are left untouched and the subtrees which are not overridden are shared
+        Assert.assertEquals(parentText, parent.toString());
+        Assert.assertEquals(childText, child.toString());
+        Assert.assertSame(parent.get("other"), merged.get("other"));
+        Assert.assertSame(parent.get("big").get("a"), merged.get("big").get("a"));
+        Assert.assertSame(child.get("added"), merged.get("added"));
+
+        // nothing is copied when nothing is overridden
+        Assert.assertSame(parent, merge(parent, json("{'big':{'b':{}},'list':[]}")));
+    }
+
+    @Test
+    public void mergeDeletedTest() throws IOException {
+        JsonNode parent = json("{'name':'parent','map':{'a':1},'list':[1,2]}");
+        Assert.assertEquals(json("{}"), merge(parent, json("{'#deleted#':true,'name':'child'}")));
+        Assert.assertEquals(json("{'name':'parent','map':{},'list':[3]}"), merge(parent, json("{'map':{'#deleted#':true},'list':['#deleted#',3]}")));
+        Assert.assertEquals(json("{'name':'parent','list':[1,2]}"), merge(parent, json("{'map':'#deleted#','missing':'#deleted#'}")));
+    }
+
+    private static JsonNode json(String text) throws IOException {
+        return readJson(text.replace('\'', '"').getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.profiles;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Measures the memory allocated and the time taken to merge a deep hierarchy of large JSON configurations,
+ * where each level only overrides a few values, comparing {@link ProfilesHelpers#merge(JsonNode, JsonNode)}
+ * with the previous implementation which deep copied the merged tree at each level. Allocations are read from
+ * the HotSpot thread MXBean, so it needs a HotSpot based JVM; the hierarchy is 25 levels deep unless the first
+ * argument says otherwise.
+ */
+public class ProfilesMergeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 25;
+        List<JsonNode> levels = new ArrayList<>();
+        levels.add(createNode(0, 2000));
+        for (int i = 1; i < depth; i++) {
+            levels.add(createNode(i, 5));
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            JsonNode shared = null;
+            for (JsonNode level : levels) {
+                shared = ProfilesHelpers.merge(shared, level);
+            }
+            long sharedTime = System.nanoTime();
+            long sharedAllocated = threads.getThreadAllocatedBytes(thread);
+            JsonNode copied = null;
+            for (JsonNode level : levels) {
+                copied = deepCopyMerge(copied, level);
+            }
+            long copiedTime = System.nanoTime();
+            long copiedAllocated = threads.getThreadAllocatedBytes(thread);
+            if (!shared.equals(copied)) {
+                throw new IllegalStateException("Merges differ");
+            }
+            System.out.printf("%d levels - structural sharing: %d KB in %.2f ms, deep copies: %d KB in %.2f ms%n", depth,
+                    (sharedAllocated - allocated) / 1024, (sharedTime - start) / 1e6,
+                    (copiedAllocated - sharedAllocated) / 1024, (copiedTime - sharedTime) / 1e6);
+        }
+    }
+
+    private static JsonNode createNode(int level, int size) {
+        JsonNodeFactory factory = JsonNodeFactory.instance;
+        ObjectNode root = factory.objectNode();
+        root.put("level", level);
+        ObjectNode settings = root.putObject("settings");
+        for (int i = 0; i < size; i++) {
+            ObjectNode setting = settings.putObject("key" + (level == 0 ? i : i * 397 % 2000));
+            setting.put("value", "level" + level);
+            setting.putArray("list").add(i).add("level" + level);
+        }
+        return root;
+    }
+
+    /**
+     * The merge which was used before structural sharing
+     */
+    private static JsonNode deepCopyMerge(JsonNode target, JsonNode source) {
+        if (target == null) {
+            return source;
+        }
+        if (target.isArray() && source.isArray()) {
+            ArrayNode copy = (ArrayNode) target.deepCopy();
+            for (JsonNode n : source) {
+                if (n.isTextual() && ProfilesHelpers.DELETED.equals(n.textValue())) {
+                    copy = JsonNodeFactory.instance.arrayNode();
+                } else {
+                    copy.add(n);
+                }
+            }
+            return copy;
+        } else if (target.isObject() && source.isObject()) {
+            ObjectNode copy = (ObjectNode) target.deepCopy();
+            if (source.get(ProfilesHelpers.DELETED) != null) {
+                copy = JsonNodeFactory.instance.objectNode();
+            } else {
+                Iterator<String> iterator = source.fieldNames();
+                while (iterator.hasNext()) {
+                    String key = iterator.next();
+                    if (!ProfilesHelpers.DELETED.equals(key)) {
+                        JsonNode value = source.get(key);
+                        if (value.isTextual() && ProfilesHelpers.DELETED.equals(value.textValue())) {
+                            copy.remove(key);
+                        } else {
+                            copy.set(key, deepCopyMerge(target.get(key), value));
+                        }
+                    }
+                }
+            }
+            return copy;
+        } else {
+            return source;
+        }
+    }
+}
@@ -20,13 +20,17 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Properties;
 
 import static io.fabric8.profiles.ProfilesHelpers.readPropertiesFile;
 import static io.fabric8.profiles.ProfilesHelpers.readYamlFile;
 import static io.fabric8.profiles.TestHelpers.PROJECT_BASE_DIR;
+import static io.fabric8.profiles.TestHelpers.copyDirectory;
 import static io.fabric8.profiles.TestHelpers.readTextFile;
 import static io.fabric8.profiles.TestHelpers.recusiveDeleteIfExists;
 
@@ -59,4 +63,50 @@ public class ProfilesTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void incrementalTest() throws IOException {
+        Path target = PROJECT_BASE_DIR.resolve("target/test-data/materialize2");
+        Path repository = PROJECT_BASE_DIR.resolve("target/test-data/profiles2");
+        recusiveDeleteIfExists(target);
+        recusiveDeleteIfExists(repository);
+        Files.createDirectories(target);
+        copyDirectory(PROJECT_BASE_DIR.resolve("src/test/profiles"), repository);
+
+        Profiles profiles = new Profiles(repository);
+        MaterializeResult result = profiles.materialize(target, "d");
+        Assert.assertEquals(Arrays.asList("a.txt", "b.txt", "c.txt", "d.txt", "default.txt", "io.fabric8.agent.properties",
+                "test.properties", "test.txt", "test.yml"), result.getAdded());
+
+        result = profiles.materialize(target, "d");
+        Assert.assertFalse(result.toString(), result.hasChanges());
+        Assert.assertEquals(9, result.getUnchanged().size());
+
+        // only the merged file whose source changed is rewritten
+        Files.write(repository.resolve("b.profile/test.properties"), "name=b\nextra=value\n".getBytes(StandardCharsets.UTF_8));
+        result = profiles.materialize(target, "d");
+        Assert.assertEquals(Collections.singletonList("test.properties"), result.getUpdated());
+        Assert.assertTrue(result.getAdded().isEmpty());
+        Properties properties = readPropertiesFile(target.resolve("test.properties"));
+        Assert.assertEquals("d", properties.getProperty("name"));
+        Assert.assertEquals("value", properties.getProperty("extra"));
+
+        // a source change which does not change the merged content does not rewrite it
+        Files.write(repository.resolve("c.profile/test.txt"), "changed c".getBytes(StandardCharsets.UTF_8));
+        result = profiles.materialize(target, "d");
+        Assert.assertFalse(result.toString(), result.hasChanges());
+
+        // files no longer in the profiles are removed, files changed in the target are restored
+        Files.delete(repository.resolve("a.profile/a.txt"));
+        Files.write(target.resolve("d.txt"), "edited".getBytes(StandardCharsets.UTF_8));
+        result = profiles.materialize(target, "d");
+        Assert.assertEquals(Collections.singletonList("a.txt"), result.getRemoved());
+        Assert.assertEquals(Collections.singletonList("d.txt"), result.getUpdated());
+        Assert.assertFalse(Files.exists(target.resolve("a.txt")));
+        Assert.assertEquals("d", readTextFile(target.resolve("d.txt")));
+
+        // a new instance does not rewrite the files which are already up to date
+        result = new Profiles(repository).materialize(target, "d");
+        Assert.assertFalse(result.toString(), result.hasChanges());
+    }
+
+}
@@ -68,4 +68,18 @@ public class TestHelpers {
         }
     }
 
+    static void copyDirectory(Path source, Path target) throws IOException {
+        Files.createDirectories(target);
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(source)) {
+            for (Path path : directoryStream) {
+                Path copy = target.resolve(path.getFileName().toString());
+                if (Files.isDirectory(path)) {
+                    copyDirectory(path, copy);
+                } else {
+                    Files.copy(path, copy);
+                }
+            }
+        }
+    }
+
 }
@@ -30,6 +30,7 @@ import javassist.ClassPool;
 import org.reflections.Reflections;
 import org.reflections.scanners.FieldAnnotationsScanner;
 import org.reflections.scanners.MethodAnnotationsScanner;
+import org.reflections.util.ClasspathHelper;
 import org.reflections.util.ConfigurationBuilder;
 import org.springframework.beans.factory.annotation.Autowire;
 import org.springframework.beans.factory.config.BeanDefinitionHolder;
@@ -43,7 +44,10 @@ import org.springframework.core.type.AnnotationMetadata;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.net.URLClassLoader;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import static io.fabric8.spring.boot.Constants.ALIAS;
 import static io.fabric8.spring.boot.Constants.DEFAULT_PROTOCOL;
@@ -55,13 +59,13 @@ public abstract class AbstractServiceRegistar implements ImportBeanDefinitionReg
 
     private final ClassPool classPool = ClassPool.getDefault();
 
-    private static final Reflections REFLECTIONS = new Reflections(new ConfigurationBuilder()
-            .setUrls(((URLClassLoader) AbstractServiceRegistar.class.getClassLoader()).getURLs())
-            .setScanners(
-                    new FieldAnnotationsScanner(),
-                    new MethodAnnotationsScanner()
-            )
-    );
+    /**
+     * The comma separated packages to scan for injection points on top of the compile time index,
+     * for application classes that have not been compiled with the index processor
+     */
+    public static final String SCAN_PACKAGES_PROPERTY = "fabric8.injection.scan.packages";
+
+    private static volatile InjectionPoints injectionPoints;
 
     public abstract Service getService(String name);
 
@@ -70,7 +74,9 @@ public abstract class AbstractServiceRegistar implements ImportBeanDefinitionReg
     public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata,
                                         BeanDefinitionRegistry registry) {
 
-        for (Method method : REFLECTIONS.getMethodsAnnotatedWith(Factory.class)) {
+        InjectionPoints points = getInjectionPoints();
+
+        for (Method method : points.factoryMethods) {
             String methodName = method.getName();
             Class sourceType = getSourceType(method);
             Class targetType = method.getReturnType();
@@ -79,7 +85,7 @@ public abstract class AbstractServiceRegistar implements ImportBeanDefinitionReg
             BeanDefinitionReaderUtils.registerBeanDefinition(holder, registry);
         }
 
-        for (Field field : REFLECTIONS.getFieldsAnnotatedWith(ServiceName.class)) {
+        for (Field field : points.serviceNameFields) {
             Class targetClass = field.getType();
             Alias alias = field.getAnnotation(Alias.class);
             ServiceName name = field.getAnnotation(ServiceName.class);
@@ -111,6 +117,55 @@ public abstract class AbstractServiceRegistar implements ImportBeanDefinitionReg
         }
     }
 
+    /**
+     * Returns the injection points listed in the compile time index of the classpath
+     * roots which have been compiled with the index processor. Without any index the
+     * whole classpath is scanned; otherwise only the roots of the packages listed in
+     * {@link #SCAN_PACKAGES_PROPERTY} which have no index of their own are.
+     */
+    private static InjectionPoints getInjectionPoints() {
+        InjectionPoints answer = injectionPoints;
+        if (answer == null) {
+            ClassLoader classLoader = AbstractServiceRegistar.class.getClassLoader();
+            Set<Method> factoryMethods = new LinkedHashSet<>();
+            Set<Field> serviceNameFields = new LinkedHashSet<>();
+
+            Set<URL> urls = new LinkedHashSet<>();
+            ServiceInjectionIndex index = ServiceInjectionIndex.load(classLoader);
+            if (index == null) {
+                urls.addAll(ClasspathHelper.forClassLoader(classLoader));
+                urls.addAll(ClasspathHelper.forJavaClassPath());
+            } else {
+                factoryMethods.addAll(index.getFactoryMethods());
+                serviceNameFields.addAll(index.getServiceNameFields());
+                //third party jars never have an index so only the packages opted in are scanned.
+                for (String packageName : Strings.splitAndTrimAsList(System.getProperty(SCAN_PACKAGES_PROPERTY, ""), ",")) {
+                    urls.addAll(ClasspathHelper.forPackage(packageName, classLoader));
+                }
+                for (Iterator<URL> iter = urls.iterator(); iter.hasNext(); ) {
+                    if (index.isIndexed(iter.next())) {
+                        iter.remove();
+                    }
+                }
+            }
+
+            if (!urls.isEmpty()) {
+                Reflections reflections = new Reflections(new ConfigurationBuilder()
+                        .setUrls(urls)
+                        .setScanners(
+                                new FieldAnnotationsScanner(),
+                                new MethodAnnotationsScanner()
+                        )
+                );
+                factoryMethods.addAll(reflections.getMethodsAnnotatedWith(Factory.class));
+                serviceNameFields.addAll(reflections.getFieldsAnnotatedWith(ServiceName.class));
+            }
+            answer = new InjectionPoints(factoryMethods, serviceNameFields);
+            injectionPoints = answer;
+        }
+        return answer;
+    }
+
     private static Class getSourceType(Method method) {
         Annotation[][] annotations = method.getParameterAnnotations();
         for (int i = 0; i < annotations.length; i++) {
@@ -171,4 +226,14 @@ public abstract class AbstractServiceRegistar implements ImportBeanDefinitionReg
         }
         return sb.toString();
     }
+
+    private static final class InjectionPoints {
+        private final Set<Method> factoryMethods;
+        private final Set<Field> serviceNameFields;
+
+        private InjectionPoints(Set<Method> factoryMethods, Set<Field> serviceNameFields) {
+            this.factoryMethods = factoryMethods;
+            this.serviceNameFields = serviceNameFields;
+        }
+    }
 }
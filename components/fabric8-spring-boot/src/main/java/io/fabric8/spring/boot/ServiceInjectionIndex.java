@@ -0,0 +1,159 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.spring.boot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.util.ClassUtils;
+
+/**
+ * The <tt>@ServiceName</tt> fields and <tt>@Factory</tt> methods of an application,
+ * read from the index files generated at compile time by
+ * {@link io.fabric8.spring.boot.processor.ServiceInjectionIndexProcessor}.
+ *
+ * Each line of an index file is either <tt>field class#name</tt> or
+ * <tt>factory class#name(parameterType,...)</tt>.
+ *
+ * An index only covers the classpath roots it has been found in, see {@link #isIndexed(URL)}.
+ */
+public class ServiceInjectionIndex {
+
+    public static final String INDEX_LOCATION = "META-INF/fabric8/service-injection.idx";
+    public static final String FIELD = "field";
+    public static final String FACTORY = "factory";
+
+    private final Set<Field> serviceNameFields = new LinkedHashSet<>();
+    private final Set<Method> factoryMethods = new LinkedHashSet<>();
+    private final Set<String> indexedRoots = new LinkedHashSet<>();
+
+    /**
+     * Loads the index files available to the given class loader
+     *
+     * @return the index or null if no index file has been found
+     */
+    public static ServiceInjectionIndex load(ClassLoader classLoader) {
+        try {
+            Enumeration<URL> urls = classLoader.getResources(INDEX_LOCATION);
+            if (!urls.hasMoreElements()) {
+                return null;
+            }
+
+            ServiceInjectionIndex index = new ServiceInjectionIndex();
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                String location = url.toExternalForm();
+                index.indexedRoots.add(normalizeRoot(location.substring(0, location.length() - INDEX_LOCATION.length())));
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        index.addEntry(line.trim(), classLoader, url);
+                    }
+                }
+            }
+            return index;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read " + INDEX_LOCATION, e);
+        }
+    }
+
+    public Set<Field> getServiceNameFields() {
+        return Collections.unmodifiableSet(serviceNameFields);
+    }
+
+    public Set<Method> getFactoryMethods() {
+        return Collections.unmodifiableSet(factoryMethods);
+    }
+
+    /**
+     * Returns whether the given classpath root (a directory or jar) contains an index file,
+     * so that it does not need to be scanned for injection points
+     */
+    public boolean isIndexed(URL classpathRoot) {
+        return indexedRoots.contains(normalizeRoot(classpathRoot.toExternalForm()));
+    }
+
+    /**
+     * Turns both <tt>jar:file:/app.jar!/</tt> and <tt>file:/app.jar</tt> into <tt>file:/app.jar</tt>
+     */
+    private static String normalizeRoot(String root) {
+        if (root.startsWith("jar:")) {
+            root = root.substring("jar:".length());
+        }
+        if (root.endsWith("!/")) {
+            root = root.substring(0, root.length() - "!/".length());
+        }
+        if (root.endsWith("/")) {
+            root = root.substring(0, root.length() - 1);
+        }
+        return root;
+    }
+
+    private void addEntry(String line, ClassLoader classLoader, URL url) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+
+        int space = line.indexOf(' ');
+        int hash = line.indexOf('#');
+        if (space < 0 || hash < space) {
+            throw new IllegalStateException("Invalid entry '" + line + "' in " + url);
+        }
+
+        String kind = line.substring(0, space);
+        String className = line.substring(space + 1, hash);
+        String member = line.substring(hash + 1);
+
+        try {
+            Class<?> type = ClassUtils.forName(className, classLoader);
+            if (FIELD.equals(kind)) {
+                serviceNameFields.add(type.getDeclaredField(member));
+            } else if (FACTORY.equals(kind)) {
+                int paren = member.indexOf('(');
+                String name = member.substring(0, paren);
+                String params = member.substring(paren + 1, member.length() - 1);
+
+                List<Class<?>> parameterTypes = new ArrayList<>();
+                if (!params.isEmpty()) {
+                    for (String param : params.split(",")) {
+                        parameterTypes.add(ClassUtils.forName(param, classLoader));
+                    }
+                }
+                factoryMethods.add(type.getDeclaredMethod(name, parameterTypes.toArray(new Class<?>[parameterTypes.size()])));
+            }
+        } catch (ClassNotFoundException | NoSuchFieldException | NoSuchMethodException | LinkageError e) {
+            throw new IllegalStateException("Failed to resolve entry '" + line + "' of " + url, e);
+        }
+    }
+
+    /**
+     * Formats an index entry
+     */
+    public static String entry(String kind, String className, String member) {
+        return kind + " " + className + "#" + member;
+    }
+}
@@ -16,6 +16,7 @@
 package io.fabric8.spring.boot.converters;
 
 import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.ServiceUrlCache;
 import io.fabric8.kubernetes.api.model.Service;
 import io.fabric8.kubernetes.api.model.ServicePort;
 import io.fabric8.kubernetes.client.KubernetesClient;
@@ -33,6 +34,7 @@ import java.net.URL;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static io.fabric8.spring.boot.Constants.DEFAULT_PROTOCOL;
 import static io.fabric8.spring.boot.Constants.EXTERNAL;
@@ -59,7 +61,7 @@ public class ServiceConverter implements GenericConverter {
         String serviceProtocol = getProtocolOfService(source);
         String servicePort = getPortOfService(source);
 
-        String str = getServiceURL(kubernetesClient, source, serviceProtocol, servicePort);
+        String str = getCachedServiceURL(kubernetesClient, source, serviceProtocol, servicePort);
         try {
             if (String.class.equals(targetType.getObjectType())) {
                 return str;
@@ -107,6 +109,31 @@ public class ServiceConverter implements GenericConverter {
         return external;
     }
 
+    /**
+     * Returns the URL of the service from the shared {@link ServiceUrlCache}. The given service is used to
+     * compute the URL the first time, refreshes of the cached URL look the service up again.
+     */
+    public String getCachedServiceURL(final KubernetesClient client, final Service srv, final String serviceProtocol, final String servicePortName) {
+        final String serviceName = KubernetesHelper.getName(srv);
+        final String namespace = Strings.isNotBlank(KubernetesHelper.getNamespace(srv)) ? KubernetesHelper.getNamespace(srv) : client.getNamespace();
+        return ServiceUrlCache.getDefault().get(client, namespace, serviceName, serviceProtocol + ":" + servicePortName, new Supplier<String>() {
+            private volatile boolean loaded;
+
+            @Override
+            public String get() {
+                Service service = srv;
+                if (loaded) {
+                    Service current = client.services().inNamespace(namespace).withName(serviceName).get();
+                    if (current != null) {
+                        service = current;
+                    }
+                }
+                loaded = true;
+                return getServiceURL(client, service, serviceProtocol, servicePortName);
+            }
+        });
+    }
+
     public String getServiceURL(KubernetesClient client, Service srv, String serviceProtocol, String servicePortName) {
         String serviceName = KubernetesHelper.getName(srv);
         String serviceProto = serviceProtocol != null ? serviceProtocol : KubernetesServices.serviceToProtocol(serviceName, servicePortName);
@@ -0,0 +1,159 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.spring.boot.processor;
+
+import io.fabric8.spring.boot.ServiceInjectionIndex;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes the index of the <tt>@ServiceName</tt> fields and <tt>@Factory</tt> methods
+ * read by {@link io.fabric8.spring.boot.AbstractServiceRegistar} at startup instead
+ * of scanning the classpath.
+ */
+//all the annotations, so that a compilation without injection points still drops the stale entries of its classes.
+@SupportedAnnotationTypes("*")
+public class ServiceInjectionIndexProcessor extends AbstractProcessor {
+
+    private final Set<String> entries = new TreeSet<>();
+    private final Set<String> processedClasses = new HashSet<>();
+    private boolean previousIndex;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+
+        for (Element element : roundEnv.getRootElements()) {
+            if (element instanceof TypeElement) {
+                addProcessedClasses((TypeElement) element);
+            }
+        }
+
+        for (TypeElement annotation : annotations) {
+            String annotationName = annotation.getQualifiedName().toString();
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.FIELD && "io.fabric8.annotations.ServiceName".equals(annotationName)) {
+                    entries.add(ServiceInjectionIndex.entry(ServiceInjectionIndex.FIELD,
+                        binaryName(element.getEnclosingElement()), element.getSimpleName().toString()));
+                } else if (element.getKind() == ElementKind.METHOD && "io.fabric8.annotations.Factory".equals(annotationName)) {
+                    entries.add(ServiceInjectionIndex.entry(ServiceInjectionIndex.FACTORY,
+                        binaryName(element.getEnclosingElement()), methodSignature((ExecutableElement) element)));
+                }
+            }
+        }
+        return false;
+    }
+
+    private void addProcessedClasses(TypeElement type) {
+        processedClasses.add(binaryName(type));
+        for (Element enclosed : type.getEnclosedElements()) {
+            if (enclosed instanceof TypeElement) {
+                addProcessedClasses((TypeElement) enclosed);
+            }
+        }
+    }
+
+    private String binaryName(Element type) {
+        return processingEnv.getElementUtils().getBinaryName((TypeElement) type).toString();
+    }
+
+    private String methodSignature(ExecutableElement method) {
+        StringBuilder sb = new StringBuilder(method.getSimpleName()).append('(');
+        boolean first = true;
+        for (VariableElement parameter : method.getParameters()) {
+            if (!first) {
+                sb.append(',');
+            }
+            TypeMirror type = processingEnv.getTypeUtils().erasure(parameter.asType());
+            sb.append(type.toString());
+            first = false;
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Keeps the entries of a previous compilation for the classes which have not been compiled again
+     */
+    private void mergePreviousIndex() {
+        try {
+            FileObject previous = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", ServiceInjectionIndex.INDEX_LOCATION);
+            try (Reader reader = previous.openReader(true); BufferedReader lines = new BufferedReader(reader)) {
+                previousIndex = true;
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    int space = line.indexOf(' ');
+                    int hash = line.indexOf('#');
+                    if (space < 0 || hash < space) {
+                        continue;
+                    }
+                    String className = line.substring(space + 1, hash);
+                    if (!processedClasses.contains(className)
+                        && processingEnv.getElementUtils().getTypeElement(className.replace('$', '.')) != null) {
+                        entries.add(line);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // no previous index
+        }
+    }
+
+    private void writeIndex() {
+        mergePreviousIndex();
+        if (entries.isEmpty() && !previousIndex) {
+            return;
+        }
+
+        try {
+            FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ServiceInjectionIndex.INDEX_LOCATION);
+            try (Writer writer = index.openWriter()) {
+                for (String entry : entries) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Error writing " + ServiceInjectionIndex.INDEX_LOCATION + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.spring.boot;
+
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.spring.boot.internal.ApplicationInternalTest;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class ServiceInjectionIndexTest {
+
+    private static final String ENTRIES = "# generated\n"
+            + "field io.fabric8.spring.boot.internal.ApplicationInternalTest#service1\n"
+            + "factory io.fabric8.spring.boot.URLToConnection#toUrlConnection(io.fabric8.kubernetes.api.model.Service)\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLoadsEntriesAndIndexedDirectory() throws Exception {
+        File root = folder.newFolder("classes");
+        write(new File(root, ServiceInjectionIndex.INDEX_LOCATION), ENTRIES);
+
+        ServiceInjectionIndex index = ServiceInjectionIndex.load(new IsolatedClassLoader(root));
+
+        Assert.assertNotNull(index);
+        Assert.assertEquals(1, index.getServiceNameFields().size());
+        Assert.assertEquals(ApplicationInternalTest.class.getDeclaredField("service1"), index.getServiceNameFields().iterator().next());
+        Assert.assertEquals(1, index.getFactoryMethods().size());
+        Assert.assertEquals(URLToConnection.class.getDeclaredMethod("toUrlConnection", Service.class), index.getFactoryMethods().iterator().next());
+
+        Assert.assertTrue(index.isIndexed(root.toURI().toURL()));
+        Assert.assertTrue(index.isIndexed(new URL(root.toURI().toURL().toExternalForm().replaceAll("/$", ""))));
+        Assert.assertFalse(index.isIndexed(folder.newFolder("other").toURI().toURL()));
+    }
+
+    @Test
+    public void testRecordsIndexedJar() throws Exception {
+        File jar = folder.newFile("app.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(ServiceInjectionIndex.INDEX_LOCATION));
+            out.write(ENTRIES.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+
+        ServiceInjectionIndex index = ServiceInjectionIndex.load(new URLClassLoader(new URL[]{jar.toURI().toURL()}, ServiceInjectionIndexTest.class.getClassLoader()));
+
+        Assert.assertNotNull(index);
+        Assert.assertTrue(index.isIndexed(jar.toURI().toURL()));
+        Assert.assertTrue(index.isIndexed(new URL("jar:" + jar.toURI().toURL().toExternalForm() + "!/")));
+    }
+
+    @Test
+    public void testReturnsNullWithoutIndex() throws Exception {
+        Assert.assertNull(ServiceInjectionIndex.load(new URLClassLoader(new URL[]{folder.newFolder("empty").toURI().toURL()}, null)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRejectsUnknownMembers() throws Exception {
+        File root = folder.newFolder("broken");
+        write(new File(root, ServiceInjectionIndex.INDEX_LOCATION), "field io.fabric8.spring.boot.internal.ApplicationInternalTest#missing\n");
+        ServiceInjectionIndex.load(new URLClassLoader(new URL[]{root.toURI().toURL()}, ServiceInjectionIndexTest.class.getClassLoader()));
+    }
+
+    /**
+     * Only sees the index files of its own root, unlike the test class loader which also has the generated index
+     */
+    private static class IsolatedClassLoader extends URLClassLoader {
+        IsolatedClassLoader(File root) throws IOException {
+            super(new URL[]{root.toURI().toURL()}, null);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            return ServiceInjectionIndexTest.class.getClassLoader().loadClass(name);
+        }
+    }
+
+    private static void write(File file, String text) throws IOException {
+        file.getParentFile().mkdirs();
+        java.nio.file.Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.spring.boot.processor;
+
+import io.fabric8.annotations.ServiceName;
+import io.fabric8.spring.boot.ServiceInjectionIndex;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+public class ServiceInjectionIndexProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIndexesServiceNameFieldsAndFactoryMethods() throws Exception {
+        File output = folder.newFolder("classes");
+        compile(output, source("test/Client.java", "package test;\n"
+                + "import io.fabric8.annotations.Factory;\n"
+                + "import io.fabric8.annotations.ServiceName;\n"
+                + "public class Client {\n"
+                + "    @ServiceName(\"foo\") String foo;\n"
+                + "    public static class Nested {\n"
+                + "        @ServiceName(\"bar\") String bar;\n"
+                + "    }\n"
+                + "    @Factory public String create(@ServiceName String service, java.util.List<String> hosts) { return service; }\n"
+                + "}\n"));
+
+        Assert.assertEquals(Arrays.asList(
+                "factory test.Client#create(java.lang.String,java.util.List)",
+                "field test.Client#foo",
+                "field test.Client$Nested#bar"), readIndex(output));
+    }
+
+    @Test
+    public void testWritesNoIndexWithoutInjectionPoints() throws Exception {
+        File output = folder.newFolder("classes");
+        compile(output, source("test/Plain.java", "package test;\npublic class Plain {\n}\n"));
+
+        Assert.assertFalse(new File(output, ServiceInjectionIndex.INDEX_LOCATION).exists());
+    }
+
+    @Test
+    public void testKeepsEntriesOfClassesNotCompiledAgain() throws Exception {
+        File output = folder.newFolder("classes");
+        File first = source("test/First.java", "package test;\n"
+                + "public class First {\n"
+                + "    @io.fabric8.annotations.ServiceName(\"foo\") String foo;\n"
+                + "}\n");
+        File second = source("test/Second.java", "package test;\n"
+                + "public class Second {\n"
+                + "    @io.fabric8.annotations.ServiceName(\"bar\") String bar;\n"
+                + "}\n");
+        compile(output, first, second);
+
+        // an incremental compilation of Second only, which no longer has any injection point
+        write(second, "package test;\npublic class Second {\n    String bar;\n}\n");
+        compile(output, second);
+
+        Assert.assertEquals(Arrays.asList("field test.First#foo"), readIndex(output));
+    }
+
+    private File source(String name, String text) throws IOException {
+        File file = new File(folder.getRoot(), "src/" + name);
+        write(file, text);
+        return file;
+    }
+
+    private static void write(File file, String text) throws IOException {
+        file.getParentFile().mkdirs();
+        java.nio.file.Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void compile(File output, File... sources) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("The tests need a JDK", compiler);
+        // the output directory is on the class path, as for an incremental build
+        String classpath = output.getPath() + File.pathSeparator + new File(ServiceName.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        String[] args = new String[6 + sources.length];
+        args[0] = "-d";
+        args[1] = output.getPath();
+        args[2] = "-classpath";
+        args[3] = classpath;
+        args[4] = "-processor";
+        args[5] = ServiceInjectionIndexProcessor.class.getName();
+        for (int i = 0; i < sources.length; i++) {
+            args[6 + i] = sources[i].getPath();
+        }
+        Assert.assertEquals(0, compiler.run(null, null, null, args));
+    }
+
+    private static List<String> readIndex(File output) throws IOException {
+        return java.nio.file.Files.readAllLines(new File(output, ServiceInjectionIndex.INDEX_LOCATION).toPath(), StandardCharsets.UTF_8);
+    }
+}
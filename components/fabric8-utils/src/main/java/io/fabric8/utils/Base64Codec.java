@@ -0,0 +1,350 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Streaming Base64 encoding and decoding, backed by {@link java.util.Base64}, in the basic, URL safe and MIME flavours
+ * of RFC 4648 and RFC 2045.
+ * <p/>
+ * Besides encoding whole arrays and buffers, a codec wraps streams in both directions so that large payloads,
+ * such as the data of a Kubernetes secret, can be encoded or decoded without holding them in memory:
+ * <ul>
+ * <li>{@link #wrap(OutputStream)} encodes what is written to it and {@link #wrap(InputStream)} decodes what is read
+ * from it, like the streams of {@link java.util.Base64}</li>
+ * <li>{@link #encodingStream(InputStream)} reads the encoded form of a raw stream and {@link #decodingStream(OutputStream)}
+ * writes the decoded form of what is written to it</li>
+ * </ul>
+ * Codecs are immutable and thread safe.
+ */
+public final class Base64Codec {
+
+    /**
+     * The basic alphabet, without line breaks; decoding rejects any character outside of the alphabet
+     */
+    public static final Base64Codec BASIC = new Base64Codec(Base64.getEncoder(), Base64.getDecoder(), false);
+
+    /**
+     * The URL and file name safe alphabet, using <tt>-</tt> and <tt>_</tt>, without line breaks
+     */
+    public static final Base64Codec URL_SAFE = new Base64Codec(Base64.getUrlEncoder(), Base64.getUrlDecoder(), false);
+
+    /**
+     * The basic alphabet with lines of 76 characters separated by CRLF; decoding ignores any character
+     * outside of the alphabet, such as line breaks
+     */
+    public static final Base64Codec MIME = new Base64Codec(Base64.getMimeEncoder(), Base64.getMimeDecoder(), true);
+
+    private static final int MIME_LINE_BYTES = 57;
+    private static final byte[] MIME_LINE_SEPARATOR = {'\r', '\n'};
+    private static final int BUFFER_SIZE = 64 * MIME_LINE_BYTES * 3;
+
+    private final Base64.Encoder encoder;
+    private final Base64.Decoder decoder;
+    private final boolean mime;
+
+    private Base64Codec(Base64.Encoder encoder, Base64.Decoder decoder, boolean mime) {
+        this.encoder = encoder;
+        this.decoder = decoder;
+        this.mime = mime;
+    }
+
+    /**
+     * Returns a codec which encodes without the trailing <tt>=</tt> padding characters
+     */
+    public Base64Codec withoutPadding() {
+        return new Base64Codec(encoder.withoutPadding(), decoder, mime);
+    }
+
+    public byte[] encode(byte[] data) {
+        return encoder.encode(data);
+    }
+
+    public String encodeToString(byte[] data) {
+        return encoder.encodeToString(data);
+    }
+
+    /**
+     * Encodes the UTF-8 bytes of the given text
+     */
+    public String encodeToString(String text) {
+        return encoder.encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Encodes the remaining bytes of the buffer into a new heap buffer, consuming the source buffer
+     */
+    public ByteBuffer encode(ByteBuffer data) {
+        return encoder.encode(data);
+    }
+
+    public byte[] decode(byte[] data) {
+        return decoder.decode(data);
+    }
+
+    public byte[] decode(String text) {
+        return decoder.decode(text);
+    }
+
+    /**
+     * Decodes the given text into a UTF-8 string
+     */
+    public String decodeToString(String text) {
+        return new String(decoder.decode(text), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the remaining bytes of the buffer into a new heap buffer, consuming the source buffer
+     */
+    public ByteBuffer decode(ByteBuffer data) {
+        return decoder.decode(data);
+    }
+
+    /**
+     * Returns a stream which encodes the bytes written to it into the given stream. The stream must be closed
+     * to write the last bytes and the padding; closing it closes the given stream.
+     */
+    public OutputStream wrap(OutputStream out) {
+        return encoder.wrap(out);
+    }
+
+    /**
+     * Returns a stream which decodes the bytes read from the given stream
+     */
+    public InputStream wrap(InputStream in) {
+        return decoder.wrap(in);
+    }
+
+    /**
+     * Returns a stream reading the encoded form of the given stream
+     */
+    public InputStream encodingStream(InputStream in) {
+        return new EncodingInputStream(in);
+    }
+
+    /**
+     * Returns a stream which decodes the encoded bytes written to it into the given stream. The stream must
+     * be closed to write the last bytes; closing it closes the given stream.
+     */
+    public OutputStream decodingStream(OutputStream out) {
+        return new DecodingOutputStream(out);
+    }
+
+    /**
+     * Copies the encoded form of the input stream to the output stream, closing neither of them
+     *
+     * @return the number of encoded bytes written
+     */
+    public long encode(InputStream in, OutputStream out) throws IOException {
+        return copy(encodingStream(in), out);
+    }
+
+    /**
+     * Copies the decoded form of the input stream to the output stream, closing neither of them
+     *
+     * @return the number of decoded bytes written
+     */
+    public long decode(InputStream in, OutputStream out) throws IOException {
+        return copy(wrap(in), out);
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long count = 0;
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+            count += n;
+        }
+        return count;
+    }
+
+    private static boolean isMimeAlphabet(byte b) {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '+' || b == '/' || b == '=';
+    }
+
+    /**
+     * Reads whole groups of 3 bytes (whole lines for MIME) and encodes them, so that the output of each chunk
+     * can simply be concatenated
+     */
+    private class EncodingInputStream extends InputStream {
+        private final InputStream in;
+        private final byte[] input = new byte[BUFFER_SIZE];
+        private byte[] output = new byte[0];
+        private int position;
+        private boolean started;
+        private boolean eof;
+
+        EncodingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return output[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, output.length - position);
+            System.arraycopy(output, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return output.length - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private boolean fill() throws IOException {
+            while (position == output.length) {
+                if (eof) {
+                    return false;
+                }
+                int length = 0;
+                while (length < input.length) {
+                    int n = in.read(input, length, input.length - length);
+                    if (n < 0) {
+                        eof = true;
+                        break;
+                    }
+                    length += n;
+                }
+                if (length == 0) {
+                    continue;
+                }
+                byte[] encoded = encoder.encode(length == input.length ? input : Arrays.copyOf(input, length));
+                if (mime && started) {
+                    output = new byte[encoded.length + MIME_LINE_SEPARATOR.length];
+                    System.arraycopy(MIME_LINE_SEPARATOR, 0, output, 0, MIME_LINE_SEPARATOR.length);
+                    System.arraycopy(encoded, 0, output, MIME_LINE_SEPARATOR.length, encoded.length);
+                } else {
+                    output = encoded;
+                }
+                position = 0;
+                started = true;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Buffers the encoded bytes and decodes them whenever the buffer is full, up to the last complete group
+     * of 4 characters of the alphabet
+     */
+    private class DecodingOutputStream extends FilterOutputStream {
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int length;
+        private boolean closed;
+
+        DecodingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            while (len > 0) {
+                int n = Math.min(len, buffer.length - length);
+                System.arraycopy(b, off, buffer, length, n);
+                length += n;
+                off += n;
+                len -= n;
+                if (length == buffer.length) {
+                    decodeBuffer();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (length > 0) {
+                    decodeTo(length);
+                }
+            } finally {
+                out.close();
+            }
+        }
+
+        private void decodeBuffer() throws IOException {
+            int end;
+            if (mime) {
+                // skip the line breaks and any other character outside of the alphabet
+                end = 0;
+                int count = 0;
+                for (int i = 0; i < length; i++) {
+                    if (isMimeAlphabet(buffer[i]) && ++count % 4 == 0) {
+                        end = i + 1;
+                    }
+                }
+            } else {
+                end = length - length % 4;
+            }
+            if (end == 0) {
+                // not a single group of 4 characters of the alphabet in a full buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                return;
+            }
+            decodeTo(end);
+            System.arraycopy(buffer, end, buffer, 0, length - end);
+            length -= end;
+        }
+
+        private void decodeTo(int end) throws IOException {
+            ByteBuffer decoded = decoder.decode(ByteBuffer.wrap(buffer, 0, end));
+            out.write(decoded.array(), decoded.arrayOffset() + decoded.position(), decoded.remaining());
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caches the checksums of files keyed by their path, size, modification time and inode, so that checksumming
+ * a tree of unchanged files only needs to stat them. The checksums of changed files are computed in parallel
+ * with {@link ChecksumUtils#checksumFiles(Collection, String)}.
+ * <p/>
+ * The cache is persisted in a compact binary file, usually {@link #CACHE_FILE} in the root of the tree.
+ * Each entry records when its checksum was computed. Entries of files modified within a couple of seconds
+ * before that are racy, as a later change could keep the same modification time on file systems with a
+ * coarse timestamp granularity, so their files are checksummed again before the entry is trusted.
+ */
+public class ChecksumCache {
+    public static final String CACHE_FILE = ".fabric8.checksums.bin";
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(ChecksumCache.class);
+
+    private static final int MAGIC = 0x46384353;
+    private static final int VERSION = 2;
+    private static final long RACY_INTERVAL = TimeUnit.SECONDS.toNanos(2);
+
+    private final File cacheFile;
+    private final String algorithm;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * Creates an empty cache persisted in the given file with the {@link ChecksumUtils#CHECKSUM_ALGORITHM}
+     */
+    public ChecksumCache(File cacheFile) {
+        this(cacheFile, ChecksumUtils.CHECKSUM_ALGORITHM);
+    }
+
+    public ChecksumCache(File cacheFile, String algorithm) {
+        this.cacheFile = cacheFile;
+        // record the algorithm really used so a JVM providing CRC32C does not trust CRC32 checksums
+        this.algorithm = ChecksumUtils.getEffectiveAlgorithm(algorithm);
+        ChecksumUtils.newHasher(algorithm);
+    }
+
+    /**
+     * Loads the cache from the given file if it exists, ignoring it if it is corrupt or was written with another algorithm
+     */
+    public static ChecksumCache load(File cacheFile) {
+        return load(cacheFile, ChecksumUtils.CHECKSUM_ALGORITHM);
+    }
+
+    public static ChecksumCache load(File cacheFile, String algorithm) {
+        ChecksumCache answer = new ChecksumCache(cacheFile, algorithm);
+        if (cacheFile.isFile()) {
+            try {
+                answer.read();
+            } catch (IOException e) {
+                LOG.warn("Failed to load checksum cache file " + cacheFile + ". " + e, e);
+                answer.entries.clear();
+            }
+        }
+        return answer;
+    }
+
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Returns the algorithm of the cached checksums, which is CRC32 when CRC32C was asked for on a JVM without it
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the checksum of the file, computing it only if the file changed since it was cached
+     */
+    public long checksum(File file) throws IOException {
+        return checksums(Collections.singletonList(file)).get(file);
+    }
+
+    /**
+     * Returns the checksums of the files, computing those of the changed files in parallel
+     */
+    public Map<File, Long> checksums(Collection<File> files) throws IOException {
+        Map<File, Long> answer = new LinkedHashMap<File, Long>();
+        Map<File, Entry> stale = new LinkedHashMap<File, Entry>();
+        for (File file : files) {
+            Entry current = Entry.of(file);
+            Entry cached = entries.get(current.path);
+            if (cached != null && cached.matches(current) && !cached.isRacy()) {
+                answer.put(file, cached.checksum);
+            } else {
+                answer.put(file, null);
+                stale.put(file, current);
+            }
+        }
+        if (!stale.isEmpty()) {
+            Map<File, Long> computed = ChecksumUtils.checksumFiles(stale.keySet(), algorithm);
+            for (Map.Entry<File, Long> entry : computed.entrySet()) {
+                Entry current = stale.get(entry.getKey());
+                current.checksum = entry.getValue();
+                answer.put(entry.getKey(), current.checksum);
+                cache(current);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the cached checksum of the file if the file has not changed since, without computing it otherwise.
+     * Only a racy entry is verified by checksumming the file again.
+     *
+     * @return the checksum or null if the file is not cached, changed or no longer exists
+     */
+    public Long getIfUnchanged(File file) {
+        try {
+            Entry current = Entry.of(file);
+            Entry cached = entries.get(current.path);
+            if (cached == null || !cached.matches(current)) {
+                return null;
+            }
+            if (cached.isRacy()) {
+                long checksum = ChecksumUtils.checksumFile(file, algorithm);
+                if (checksum != cached.checksum) {
+                    return null;
+                }
+                current.checksum = checksum;
+                cache(current);
+            }
+            return cached.checksum;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Caches a checksum of the current content of the file computed by the caller with the {@link #getAlgorithm()}
+     */
+    public void put(File file, long checksum) throws IOException {
+        Entry current = Entry.of(file);
+        current.checksum = checksum;
+        cache(current);
+    }
+
+    private void cache(Entry current) {
+        current.cached = System.currentTimeMillis() * 1000000L;
+        entries.put(current.path, current);
+        dirty.set(true);
+    }
+
+    /**
+     * Returns the checksums of all the regular files of the tree, except the cache file itself
+     */
+    public Map<File, Long> checksumTree(File dir) throws IOException {
+        final List<File> files = new ArrayList<File>();
+        final Path cachePath = cacheFile.getAbsoluteFile().toPath();
+        java.nio.file.Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() && !file.toAbsolutePath().equals(cachePath)) {
+                    files.add(file.toFile());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return checksums(files);
+    }
+
+    /**
+     * Removes the entries of the files which no longer exist
+     */
+    public void prune() {
+        for (String path : entries.keySet()) {
+            if (!new File(path).exists()) {
+                entries.remove(path);
+                dirty.set(true);
+            }
+        }
+    }
+
+    /**
+     * Writes the cache file if any entry changed since it was loaded or saved
+     */
+    public void save() throws IOException {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        File parent = cacheFile.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        File temp = File.createTempFile(cacheFile.getName(), ".tmp", parent);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(algorithm.toUpperCase());
+                List<Entry> values = new ArrayList<Entry>(entries.values());
+                out.writeInt(values.size());
+                for (Entry entry : values) {
+                    out.writeUTF(entry.path);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.modified);
+                    out.writeLong(entry.inode);
+                    out.writeLong(entry.checksum);
+                    out.writeLong(entry.cached);
+                }
+            } finally {
+                out.close();
+            }
+            try {
+                java.nio.file.Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                java.nio.file.Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            dirty.set(true);
+            throw e;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private void read() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a checksum cache file");
+            }
+            if (in.readInt() != VERSION || !in.readUTF().equalsIgnoreCase(algorithm)) {
+                dirty.set(true);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readLong());
+                entry.checksum = in.readLong();
+                entry.cached = in.readLong();
+                entries.put(entry.path, entry);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class Entry {
+        private final String path;
+        private final long size;
+        private final long modified;
+        private final long inode;
+        private long checksum;
+        private long cached;
+
+        Entry(String path, long size, long modified, long inode) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.inode = inode;
+        }
+
+        static Entry of(File file) throws IOException {
+            Path path = file.toPath();
+            long inode = 0;
+            long size;
+            FileTime modified;
+            try {
+                Map<String, Object> attributes = java.nio.file.Files.readAttributes(path, "unix:size,lastModifiedTime,ino");
+                size = (Long) attributes.get("size");
+                modified = (FileTime) attributes.get("lastModifiedTime");
+                inode = (Long) attributes.get("ino");
+            } catch (UnsupportedOperationException e) {
+                BasicFileAttributes attributes = java.nio.file.Files.readAttributes(path, BasicFileAttributes.class);
+                size = attributes.size();
+                modified = attributes.lastModifiedTime();
+            } catch (IllegalArgumentException e) {
+                BasicFileAttributes attributes = java.nio.file.Files.readAttributes(path, BasicFileAttributes.class);
+                size = attributes.size();
+                modified = attributes.lastModifiedTime();
+            }
+            return new Entry(file.getAbsolutePath(), size, modified.to(TimeUnit.NANOSECONDS), inode);
+        }
+
+        boolean matches(Entry other) {
+            return size == other.size && modified == other.modified && inode == other.inode;
+        }
+
+        /**
+         * Returns true if the file was modified too shortly before its checksum was computed to trust its stat alone
+         */
+        boolean isRacy() {
+            return modified >= cached - RACY_INTERVAL;
+        }
+    }
+}
@@ -23,19 +23,50 @@ import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.CRC32;
+import java.util.zip.Checksum;
 
 public class ChecksumUtils {
     public static final String FOLDER_CHECKSUM_CACHE = ".fabric8.checksums.properties";
 
+    /**
+     * The algorithm used by {@link #checksumFile(File)}: CRC32, CRC32C when the JVM provides it (Java 9+)
+     * or the name of a {@link MessageDigest}
+     */
+    public static final String CHECKSUM_ALGORITHM = System.getProperty("io.fabric8.utils.CHECKSUM_ALGORITHM", "CRC32");
+
     private static final transient Logger LOG = LoggerFactory.getLogger(ChecksumUtils.class);
 
+    static int CHECKSUM_THREADS = Integer.getInteger("io.fabric8.utils.CHECKSUM_THREADS", Runtime.getRuntime().availableProcessors());
+
+    private static final int MAP_THRESHOLD = 256 * 1024;
+    private static final int MAP_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final Method CRC32C_UPDATE = findCrc32c();
+
     private ChecksumUtils() {
     }
 
@@ -67,17 +98,98 @@ public class ChecksumUtils {
     }
 
 
+    /**
+     * Computes the checksum of the file with the {@link #CHECKSUM_ALGORITHM}, which is CRC32 by default
+     */
     public static long checksumFile(File file) throws IOException {
-        return checksum(new FileInputStream(file));
+        return checksumFile(file, CHECKSUM_ALGORITHM);
     }
 
     /**
-     * If there is a file called {@link #FOLDER_CHECKSUM_CACHE} load it where the key is the file name and the value is the checksum
+     * Computes the checksum of the file with the given algorithm. Large files are memory mapped chunk by chunk,
+     * so that the checksum is computed without copying them to the heap. The file is always read up to its end,
+     * so files which report no size, like those under /proc, or which grow while being read are fully covered.
+     *
+     * @param algorithm CRC32, CRC32C when the JVM provides it or the name of a {@link MessageDigest},
+     *                  in which case the first 8 bytes of the digest are returned
+     */
+    public static long checksumFile(File file, String algorithm) throws IOException {
+        Hasher hasher = newHasher(algorithm);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAP_CHUNK_SIZE) {
+                    hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK_SIZE, size - position)));
+                }
+                channel.position(size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(READ_BUFFER_SIZE, Math.min(size, MAP_THRESHOLD)));
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                hasher.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+        return hasher.getValue();
+    }
+
+    /**
+     * Computes the checksums of the given files in parallel with the {@link #CHECKSUM_ALGORITHM}
+     */
+    public static Map<File, Long> checksumFiles(Collection<File> files) throws IOException {
+        return checksumFiles(files, CHECKSUM_ALGORITHM);
+    }
+
+    /**
+     * Computes the checksums of the given files in parallel with the given algorithm
+     *
+     * @see #checksumFile(File, String)
+     */
+    public static Map<File, Long> checksumFiles(Collection<File> files, final String algorithm) throws IOException {
+        newHasher(algorithm);
+        Map<File, Long> answer = new LinkedHashMap<File, Long>();
+        if (files.size() <= 1 || CHECKSUM_THREADS <= 1) {
+            for (File file : files) {
+                answer.put(file, checksumFile(file, algorithm));
+            }
+            return answer;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(CHECKSUM_THREADS, files.size()));
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>(files.size());
+            for (final File file : files) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return checksumFile(file, algorithm);
+                    }
+                }));
+            }
+            int i = 0;
+            for (File file : files) {
+                answer.put(file, get(futures.get(i++)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return answer;
+    }
+
+    /**
+     * If there is a file called {@link #FOLDER_CHECKSUM_CACHE} load it where the key is the file name and the value is the checksum.
+     * <p/>
+     * Only the checksums of the files whose size, modification time and inode are the same as when they were saved are returned,
+     * as recorded in the {@link ChecksumCache#CACHE_FILE} next to it, so that a file changed since cannot be mistaken as unchanged.
+     * Files which were modified just before the save are checksummed again to be sure.
      */
     public static Map<File, Long> loadInstalledChecksumCache(File dir) {
         Map<File, Long> answer = new HashMap<File, Long>();
         File cacheFile = new File(dir, FOLDER_CHECKSUM_CACHE);
         if (cacheFile.exists() && cacheFile.isFile()) {
+            ChecksumCache validator = ChecksumCache.load(new File(dir, ChecksumCache.CACHE_FILE));
             Properties properties = new Properties();
             try {
                 properties.load(new FileReader(cacheFile));
@@ -94,7 +206,13 @@ public class ChecksumUtils {
                         String valueText = value.toString();
                         try {
                             long number = Long.parseLong(valueText);
-                            answer.put(new File(dir, keyText), number);
+                            File file = new File(dir, keyText);
+                            Long unchanged = validator.getIfUnchanged(file);
+                            if (unchanged != null && unchanged == number) {
+                                answer.put(file, number);
+                            } else {
+                                LOG.debug("Ignoring the cached checksum of " + file + " which changed since it was saved");
+                            }
                         } catch (NumberFormatException e) {
                             LOG.warn("Failed to parse checksum '" + valueText + "' in " + cacheFile + ". " + e, e);
                         }
@@ -102,20 +220,169 @@ public class ChecksumUtils {
 
                 }
             }
+            try {
+                // keep the racy entries verified above, so they are not checksummed again on the next load
+                validator.save();
+            } catch (IOException e) {
+                LOG.debug("Failed to update checksum cache file " + validator.getCacheFile() + ". " + e, e);
+            }
         }
         return answer;
     }
 
     /**
-     * Saves the given checksums into the folder in the {@link #FOLDER_CHECKSUM_CACHE} file
+     * Saves the given checksums into the folder in the {@link #FOLDER_CHECKSUM_CACHE} file, along with the size,
+     * modification time and inode of each file in the {@link ChecksumCache#CACHE_FILE}
      */
     public static void saveInstalledChecksumCache(File dir, Map<File, Long> checksums) throws IOException {
         File cacheFile = new File(dir, FOLDER_CHECKSUM_CACHE);
+        File validatorFile = new File(dir, ChecksumCache.CACHE_FILE);
+        // the entries of the previous save must not outlive it, even if none of the files can be cached now
+        validatorFile.delete();
+        ChecksumCache validator = new ChecksumCache(validatorFile);
         Properties properties = new Properties();
         Set<Map.Entry<File, Long>> entries = checksums.entrySet();
         for (Map.Entry<File, Long> entry : entries) {
             properties.put(entry.getKey().getName(), "" + entry.getValue());
+            if (entry.getKey().isFile()) {
+                validator.put(entry.getKey(), entry.getValue());
+            }
+        }
+        FileWriter writer = new FileWriter(cacheFile);
+        try {
+            properties.store(writer, "Updated on " + new Date());
+        } finally {
+            writer.close();
+        }
+        validator.save();
+    }
+
+    /**
+     * Returns the algorithm which {@link #checksumFile(File, String)} really uses for the given one,
+     * CRC32 instead of CRC32C on JVMs which do not provide it
+     */
+    public static String getEffectiveAlgorithm(String algorithm) {
+        if ("CRC32C".equalsIgnoreCase(algorithm) && CRC32C_UPDATE == null) {
+            return "CRC32";
+        }
+        return algorithm;
+    }
+
+    private static Long get(Future<Long> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while computing checksums");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns a new hasher for the algorithm, CRC32C falling back to CRC32 on JVMs which do not provide it
+     *
+     * @throws IllegalArgumentException if the algorithm is not supported
+     */
+    static Hasher newHasher(String algorithm) {
+        if ("CRC32".equalsIgnoreCase(algorithm)) {
+            return new Crc32Hasher();
+        } else if ("CRC32C".equalsIgnoreCase(algorithm)) {
+            if (CRC32C_UPDATE != null) {
+                try {
+                    return new ChecksumHasher((Checksum) CRC32C_UPDATE.getDeclaringClass().getDeclaredConstructor().newInstance());
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Failed to create CRC32C " + e, e);
+                }
+            }
+            return new Crc32Hasher();
+        }
+        try {
+            return new DigestHasher(MessageDigest.getInstance(algorithm));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unsupported checksum algorithm " + algorithm);
+        }
+    }
+
+    private static Method findCrc32c() {
+        try {
+            return Class.forName("java.util.zip.CRC32C").getMethod("update", ByteBuffer.class);
+        } catch (ReflectiveOperationException e) {
+            LOG.debug("CRC32C is not available on this JVM so CRC32 is used instead");
+            return null;
+        }
+    }
+
+    abstract static class Hasher {
+        abstract void update(ByteBuffer buffer);
+
+        abstract long getValue();
+    }
+
+    private static class Crc32Hasher extends Hasher {
+        private final CRC32 crc = new CRC32();
+
+        @Override
+        void update(ByteBuffer buffer) {
+            crc.update(buffer);
+        }
+
+        @Override
+        long getValue() {
+            return crc.getValue();
+        }
+    }
+
+    private static class ChecksumHasher extends Hasher {
+        private final Checksum checksum;
+
+        ChecksumHasher(Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        void update(ByteBuffer buffer) {
+            try {
+                CRC32C_UPDATE.invoke(checksum, buffer);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        @Override
+        long getValue() {
+            return checksum.getValue();
+        }
+    }
+
+    private static class DigestHasher extends Hasher {
+        private final MessageDigest digest;
+
+        DigestHasher(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        void update(ByteBuffer buffer) {
+            digest.update(buffer);
+        }
+
+        @Override
+        long getValue() {
+            byte[] bytes = digest.digest();
+            long answer = 0;
+            for (int i = 0; i < 8 && i < bytes.length; i++) {
+                answer = (answer << 8) | (bytes[i] & 0xff);
+            }
+            return answer;
         }
-        properties.store(new FileWriter(cacheFile), "Updated on " + new Date());
     }
 }
@@ -21,6 +21,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
 
+import javax.xml.XMLConstants;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -37,8 +38,9 @@ import java.io.StringWriter;
  */
 public class DomHelper {
 
-    private static TransformerFactory transformerFactory;
-    private static Transformer transformer;
+    private static volatile TransformerFactory transformerFactory;
+    private static volatile Transformer transformer;
+    private static volatile ThreadLocal<Transformer> transformers = new ThreadLocal<Transformer>();
 
     public static Element addChildElement(Node parent, String elementName) {
         Document ownerDocument = parent.getOwnerDocument();
@@ -55,38 +57,96 @@ public class DomHelper {
     }
 
     public static void save(Document document, File file) throws FileNotFoundException, TransformerException {
-        Transformer transformer = getTransformer();
-        transformer.transform(new DOMSource(document), new StreamResult(new FileOutputStream(file)));
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            transform(document, new StreamResult(out));
+        } finally {
+            Closeables.closeQuietly(out);
+        }
     }
 
 
     public static String toXml(Document document) throws TransformerException {
-        Transformer transformer = getTransformer();
         StringWriter buffer = new StringWriter();
-        transformer.transform(new DOMSource(document), new StreamResult(buffer));
+        transform(document, new StreamResult(buffer));
         return buffer.toString();
     }
 
+    private static void transform(Document document, StreamResult result) throws TransformerException {
+        Transformer shared = DomHelper.transformer;
+        if (shared != null) {
+            synchronized (shared) {
+                shared.transform(new DOMSource(document), result);
+            }
+        } else {
+            getTransformer().transform(new DOMSource(document), result);
+        }
+    }
+
+    /**
+     * Returns the transformer configured with {@link #setTransformer(Transformer)} or else the transformer
+     * of the current thread, as transformers are not thread safe
+     */
     public static Transformer getTransformer() throws TransformerConfigurationException {
-        if (transformer == null) {
-            transformer = getTransformerFactory().newTransformer();
+        Transformer shared = DomHelper.transformer;
+        if (shared != null) {
+            return shared;
         }
-        return transformer;
+        ThreadLocal<Transformer> threadTransformers = DomHelper.transformers;
+        Transformer answer = threadTransformers.get();
+        if (answer == null) {
+            TransformerFactory factory = getTransformerFactory();
+            synchronized (factory) {
+                answer = factory.newTransformer();
+            }
+            threadTransformers.set(answer);
+        }
+        return answer;
     }
 
+    /**
+     * Configures a transformer to be shared by all the threads, which then serialize their use of it
+     */
     public static void setTransformer(Transformer transformer) {
         DomHelper.transformer = transformer;
     }
 
+    /**
+     * Returns the transformer factory, which by default does not access external DTDs nor stylesheets
+     */
     public static TransformerFactory getTransformerFactory() {
-        if (transformerFactory == null){
-            transformerFactory = TransformerFactory.newInstance();
+        TransformerFactory answer = transformerFactory;
+        if (answer == null) {
+            synchronized (DomHelper.class) {
+                if (transformerFactory == null) {
+                    transformerFactory = createTransformerFactory();
+                }
+                answer = transformerFactory;
+            }
+        }
+        return answer;
+    }
+
+    private static TransformerFactory createTransformerFactory() {
+        TransformerFactory factory = TransformerFactory.newInstance();
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (TransformerConfigurationException e) {
+            // not supported by this implementation
+        }
+        try {
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+        } catch (IllegalArgumentException e) {
+            // not a JAXP 1.5 implementation
         }
-        return transformerFactory;
+        return factory;
     }
 
     public static void setTransformerFactory(TransformerFactory transformerFactory) {
         DomHelper.transformerFactory = transformerFactory;
+        // discard the transformers created by the previous factory
+        DomHelper.transformers = new ThreadLocal<Transformer>();
     }
 
     /**
@@ -0,0 +1,321 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Walks a file tree with NIO, listing each directory with a {@link DirectoryStream} and reading the attributes
+ * of each entry only once. Symbolic links are not followed unless asked to, in which case a link to one of its
+ * own ancestor directories is reported but not walked into, so that link loops terminate.
+ * <p/>
+ * When walking in parallel the subdirectories are walked as fork/join tasks, so the callbacks must be thread safe.
+ */
+abstract class FileTreeWalker {
+
+    private static final LinkOption[] NO_FOLLOW = {LinkOption.NOFOLLOW_LINKS};
+    private static final LinkOption[] FOLLOW = {};
+
+    private final boolean followLinks;
+    private final boolean parallel;
+
+    FileTreeWalker(boolean followLinks, boolean parallel) {
+        this.followLinks = followLinks;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Called for each file or directory before its children, returns false to skip the children of a directory
+     */
+    protected abstract boolean preVisit(Path path, BasicFileAttributes attributes) throws IOException;
+
+    /**
+     * Called for each directory which was walked into, after all of its children
+     */
+    protected void postVisitDirectory(Path dir) throws IOException {
+    }
+
+    /**
+     * Called when a directory cannot be listed, rethrows the exception by default
+     */
+    protected void visitFailed(Path dir, IOException e) throws IOException {
+        throw e;
+    }
+
+    /**
+     * Walks the tree, doing nothing if the root does not exist
+     */
+    void walk(Path root) throws IOException {
+        BasicFileAttributes attributes = readAttributes(root, followLinks);
+        if (attributes == null) {
+            return;
+        }
+        if (!parallel) {
+            visit(root, attributes, null);
+            return;
+        }
+        try {
+            ForkJoinPool.commonPool().invoke(new DirectoryTask(root, attributes, null));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns a lazy iterator over the paths of the tree, in the same order as a sequential walk
+     */
+    static TreeIterator iterator(Path root, boolean followLinks) throws IOException {
+        return new TreeIterator(root, followLinks);
+    }
+
+    //
+    // Implementation
+    //
+
+    private void visit(Path path, BasicFileAttributes attributes, Ancestor ancestors) throws IOException {
+        if (!preVisit(path, attributes) || !attributes.isDirectory()) {
+            return;
+        }
+        Ancestor self = null;
+        if (followLinks) {
+            Object key = fileKey(path, attributes);
+            if (Ancestor.contains(ancestors, key)) {
+                return;
+            }
+            self = new Ancestor(key, ancestors);
+        }
+        List<DirectoryTask> tasks = null;
+        DirectoryStream<Path> stream;
+        try {
+            stream = java.nio.file.Files.newDirectoryStream(path);
+        } catch (IOException e) {
+            visitFailed(path, e);
+            return;
+        }
+        try {
+            for (Path child : stream) {
+                BasicFileAttributes childAttributes = readAttributes(child, followLinks);
+                if (childAttributes == null) {
+                    continue;
+                }
+                if (parallel && childAttributes.isDirectory()) {
+                    if (tasks == null) {
+                        tasks = new ArrayList<DirectoryTask>();
+                    }
+                    DirectoryTask task = new DirectoryTask(child, childAttributes, self);
+                    task.fork();
+                    tasks.add(task);
+                } else {
+                    visit(child, childAttributes, self);
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        } finally {
+            stream.close();
+        }
+        if (tasks != null) {
+            for (DirectoryTask task : tasks) {
+                task.join();
+            }
+        }
+        postVisitDirectory(path);
+    }
+
+    /**
+     * Reads the attributes of the file or of the target of a link, falling back to the link itself if it is broken.
+     * Returns null if the file does not exist anymore.
+     */
+    static BasicFileAttributes readAttributes(Path path, boolean followLinks) throws IOException {
+        try {
+            return java.nio.file.Files.readAttributes(path, BasicFileAttributes.class, followLinks ? FOLLOW : NO_FOLLOW);
+        } catch (java.nio.file.NoSuchFileException e) {
+            if (followLinks) {
+                return readAttributes(path, false);
+            }
+            return null;
+        }
+    }
+
+    private static Object fileKey(Path path, BasicFileAttributes attributes) throws IOException {
+        Object key = attributes.fileKey();
+        return key != null ? key : path.toRealPath();
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path path;
+        private final BasicFileAttributes attributes;
+        private final Ancestor ancestors;
+
+        DirectoryTask(Path path, BasicFileAttributes attributes, Ancestor ancestors) {
+            this.path = path;
+            this.attributes = attributes;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                visit(path, attributes, ancestors);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * The file keys of the directories from the root down to the current one, shared by the tasks of subdirectories
+     */
+    private static class Ancestor {
+        private final Object key;
+        private final Ancestor parent;
+
+        Ancestor(Object key, Ancestor parent) {
+            this.key = key;
+            this.parent = parent;
+        }
+
+        static boolean contains(Ancestor ancestor, Object key) {
+            for (; ancestor != null; ancestor = ancestor.parent) {
+                if (ancestor.key.equals(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Iterates lazily over a tree keeping one open {@link DirectoryStream} per level, which must be closed
+     */
+    static class TreeIterator implements Iterator<Path>, Closeable {
+        private final boolean followLinks;
+        private final Deque<Level> levels = new ArrayDeque<Level>();
+        private Path next;
+
+        TreeIterator(Path root, boolean followLinks) throws IOException {
+            this.followLinks = followLinks;
+            BasicFileAttributes attributes = readAttributes(root, followLinks);
+            if (attributes != null) {
+                next = root;
+                enter(root, attributes);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = advance();
+                } catch (IOException e) {
+                    close();
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Path next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Path answer = next;
+            next = null;
+            return answer;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            while (!levels.isEmpty()) {
+                Closeables.closeQuietly(levels.pop().stream);
+            }
+        }
+
+        private Path advance() throws IOException {
+            while (!levels.isEmpty()) {
+                Level level = levels.peek();
+                Path child;
+                try {
+                    child = level.iterator.hasNext() ? level.iterator.next() : null;
+                } catch (DirectoryIteratorException e) {
+                    throw e.getCause();
+                }
+                if (child == null) {
+                    levels.pop().stream.close();
+                    continue;
+                }
+                BasicFileAttributes attributes = readAttributes(child, followLinks);
+                if (attributes != null) {
+                    enter(child, attributes);
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        private void enter(Path dir, BasicFileAttributes attributes) throws IOException {
+            if (!attributes.isDirectory()) {
+                return;
+            }
+            Ancestor ancestor = null;
+            if (followLinks) {
+                Object key = fileKey(dir, attributes);
+                Ancestor parent = levels.isEmpty() ? null : levels.peek().ancestor;
+                if (Ancestor.contains(parent, key)) {
+                    return;
+                }
+                ancestor = new Ancestor(key, parent);
+            }
+            DirectoryStream<Path> stream = java.nio.file.Files.newDirectoryStream(dir);
+            levels.push(new Level(stream, ancestor));
+        }
+    }
+
+    private static class Level {
+        private final DirectoryStream<Path> stream;
+        private final Iterator<Path> iterator;
+        private final Ancestor ancestor;
+
+        Level(DirectoryStream<Path> stream, Ancestor ancestor) {
+            this.stream = stream;
+            this.iterator = stream.iterator();
+            this.ancestor = ancestor;
+        }
+    }
+}
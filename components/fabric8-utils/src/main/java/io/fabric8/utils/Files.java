@@ -31,15 +31,30 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * File utilities
@@ -335,7 +350,8 @@ public final class Files {
     }
 
     /**
-     * Copy the source {@link File} to the target {@link File}.
+     * Copy the source {@link File} to the target {@link File}, recursively if the source is a directory.
+     * Files are copied with {@link FileChannel#transferTo} so that the kernel can copy them without going through the heap.
      */
     public static void copy(File source, File target) throws IOException {
         if (!source.exists()) {
@@ -354,17 +370,21 @@ public final class Files {
                 }
             }
         } else {
-            FileInputStream is = new FileInputStream(source);
-            FileOutputStream os = new FileOutputStream(target);
-            copy(is, os);
+            copyFile(source.toPath(), target.toPath());
         }
     }
 
     /**
-     * Copy the {@link InputStream} to the {@link OutputStream}.
+     * Copy the {@link InputStream} to the {@link OutputStream}, with {@link FileChannel#transferTo} when both are files.
      */
     public static void copy(InputStream is, OutputStream os) throws IOException {
         try {
+            if (is instanceof FileInputStream && os instanceof FileOutputStream) {
+                FileChannel in = ((FileInputStream) is).getChannel();
+                // pipes report a size of 0 and cannot seek
+                transfer(in, in.size() > 0 ? in.position() : 0, ((FileOutputStream) os).getChannel());
+                return;
+            }
             byte[] buffer = new byte[BUFFER_SIZE];
             int len;
             for (; ; ) {
@@ -381,6 +401,167 @@ public final class Files {
         }
     }
 
+    /**
+     * Options of {@link #syncTree(File, File, SyncOption...)}
+     */
+    public enum SyncOption {
+        /**
+         * Compares the checksums of files with the same size, instead of their modification times
+         */
+        CHECKSUM,
+        /**
+         * Deletes the files and directories of the target which are not in the source
+         */
+        DELETE,
+        /**
+         * Hard links the target files to the source files, falling back to copying them if the file system cannot
+         */
+        HARD_LINK
+    }
+
+    /**
+     * Makes the target tree a copy of the source tree, like rsync, only copying the files which changed.
+     * By default a file is unchanged if its size and modification time are the same, the modification times
+     * of the copied files being set to those of the source files. The subdirectories are synchronized in parallel,
+     * files are copied with {@link FileChannel#transferTo} and symbolic links are copied as links.
+     *
+     * @return the number of files which were copied, linked or deleted
+     */
+    public static int syncTree(File source, File target, SyncOption... options) throws IOException {
+        final Set<SyncOption> optionSet = new HashSet<>(Arrays.asList(options));
+        final Path sourceRoot = source.toPath();
+        final Path targetRoot = target.toPath();
+        if (!source.isDirectory()) {
+            throw new FileNotFoundException("Source directory not found:" + source.getAbsolutePath());
+        }
+        final AtomicInteger answer = new AtomicInteger();
+        new FileTreeWalker(false, true) {
+            @Override
+            protected boolean preVisit(Path path, BasicFileAttributes attributes) throws IOException {
+                Path targetPath = targetRoot.resolve(sourceRoot.relativize(path));
+                BasicFileAttributes targetAttributes = FileTreeWalker.readAttributes(targetPath, false);
+                if (attributes.isDirectory()) {
+                    if (targetAttributes != null && !targetAttributes.isDirectory()) {
+                        java.nio.file.Files.delete(targetPath);
+                        answer.incrementAndGet();
+                    }
+                    java.nio.file.Files.createDirectories(targetPath);
+                } else if (!isSynchronized(path, attributes, targetPath, targetAttributes, optionSet)) {
+                    if (targetAttributes != null && targetAttributes.isDirectory()) {
+                        recursiveDelete(targetPath.toFile());
+                    }
+                    syncFile(path, attributes, targetPath, optionSet.contains(SyncOption.HARD_LINK));
+                    answer.incrementAndGet();
+                }
+                return true;
+            }
+        }.walk(sourceRoot);
+
+        if (optionSet.contains(SyncOption.DELETE)) {
+            new FileTreeWalker(false, true) {
+                @Override
+                protected boolean preVisit(Path path, BasicFileAttributes attributes) throws IOException {
+                    Path sourcePath = sourceRoot.resolve(targetRoot.relativize(path));
+                    if (FileTreeWalker.readAttributes(sourcePath, false) == null) {
+                        answer.addAndGet(attributes.isDirectory() ? recursiveDelete(path.toFile()) : delete(path) ? 1 : 0);
+                        return false;
+                    }
+                    return true;
+                }
+            }.walk(targetRoot);
+        }
+        return answer.get();
+    }
+
+    private static boolean isSynchronized(Path source, BasicFileAttributes attributes, Path target, BasicFileAttributes targetAttributes, Set<SyncOption> options) throws IOException {
+        if (targetAttributes == null || targetAttributes.isDirectory() || attributes.size() != targetAttributes.size()
+                || attributes.isSymbolicLink() != targetAttributes.isSymbolicLink()) {
+            return false;
+        }
+        if (attributes.isSymbolicLink()) {
+            return java.nio.file.Files.readSymbolicLink(source).equals(java.nio.file.Files.readSymbolicLink(target));
+        }
+        if (attributes.fileKey() != null && attributes.fileKey().equals(targetAttributes.fileKey())) {
+            return true;
+        }
+        if (options.contains(SyncOption.CHECKSUM)) {
+            return ChecksumUtils.checksumFile(source.toFile()) == ChecksumUtils.checksumFile(target.toFile());
+        }
+        return attributes.lastModifiedTime().toMillis() == targetAttributes.lastModifiedTime().toMillis();
+    }
+
+    private static void syncFile(Path source, BasicFileAttributes attributes, Path target, boolean hardLink) throws IOException {
+        if (attributes.isSymbolicLink()) {
+            java.nio.file.Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, LinkOption.NOFOLLOW_LINKS);
+            return;
+        }
+        if (hardLink) {
+            try {
+                java.nio.file.Files.deleteIfExists(target);
+                java.nio.file.Files.createLink(target, source);
+                return;
+            } catch (IOException e) {
+                // not supported, or another file system, so lets copy
+            } catch (UnsupportedOperationException e) {
+                // not supported so lets copy
+            }
+        }
+        copyFile(source, target);
+        java.nio.file.Files.setLastModifiedTime(target, attributes.lastModifiedTime());
+        PosixFileAttributeView view = java.nio.file.Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (view != null) {
+            view.setPermissions(java.nio.file.Files.getPosixFilePermissions(source));
+        }
+    }
+
+    private static void copyFile(Path source, Path target) throws IOException {
+        FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+        try {
+            FileChannel out;
+            try {
+                out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (NoSuchFileException e) {
+                java.nio.file.Files.createDirectories(target.getParent());
+                out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            try {
+                transfer(in, 0, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Transfers the input channel from the given position to its end, with {@link FileChannel#transferTo} for the size
+     * it reports and then with a buffered loop, as files like the ones of /proc and pipes report a size of 0 and
+     * files may grow while they are copied
+     */
+    private static void transfer(FileChannel in, long position, FileChannel out) throws IOException {
+        long start = position;
+        long size = in.size();
+        while (position < size) {
+            long transferred = in.transferTo(position, size - position, out);
+            if (transferred <= 0) {
+                break;
+            }
+            position += transferred;
+        }
+        if (position != start) {
+            in.position(position);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (in.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
 
     public static String getRelativePath(File rootDir, File file) throws IOException {
         String rootPath = rootDir.getCanonicalPath();
@@ -422,55 +603,73 @@ public final class Files {
         }
     }
 
-    public static Set<File> recursiveList(File root, FilenameFilter filter) {
-        Set<File> result = new HashSet<>();
+    /**
+     * Returns the root and all the files and directories below it whose names are accepted by the filter,
+     * the children of rejected directories being skipped. Symbolic links are followed but not into link loops.
+     */
+    public static Set<File> recursiveList(File root, final FilenameFilter filter) {
+        final Set<File> result = new HashSet<>();
         if (root != null) {
             result.add(root);
-            if (root.isDirectory()) {
-                for (File child : root.listFiles(filter)) {
-                    result.addAll(recursiveList(child, filter));
+            final Path rootPath = root.toPath();
+            walkQuietly(rootPath, new QuietWalker(true, false) {
+                @Override
+                protected boolean preVisit(Path path, BasicFileAttributes attributes) {
+                    if (path == rootPath) {
+                        return true;
+                    }
+                    File file = path.toFile();
+                    if (filter != null && !filter.accept(file.getParentFile(), file.getName())) {
+                        return false;
+                    }
+                    result.add(file);
+                    return true;
                 }
-            }
+            });
         }
         return result;
     }
 
-
     /**
      * Recursively deletes the given file whether its a file or directory returning the number
-     * of files deleted
+     * of files deleted. Symbolic links are deleted but not followed, and the subdirectories are deleted in parallel.
      */
     public static int recursiveDelete(File file) {
-        int answer = 0;
-        if (file.isDirectory()) {
-            File[] files = file.listFiles();
-            if (files != null) {
-                for (File child : files) {
-                    answer += recursiveDelete(child);
+        final AtomicInteger answer = new AtomicInteger();
+        walkQuietly(file.toPath(), new QuietWalker(false, true) {
+            @Override
+            protected boolean preVisit(Path path, BasicFileAttributes attributes) {
+                if (!attributes.isDirectory() && delete(path)) {
+                    answer.incrementAndGet();
                 }
+                return true;
             }
-        }
-        if (file.delete()) {
-            answer += 1;
-        }
-        return answer;
+
+            @Override
+            protected void postVisitDirectory(Path dir) {
+                if (delete(dir)) {
+                    answer.incrementAndGet();
+                }
+            }
+        });
+        return answer.get();
     }
 
     /**
-     * Recursively finds all files matching the given filter and adds them to the collection
+     * Recursively finds all files matching the given filter and adds them to the collection.
+     * Symbolic links are followed but not into link loops.
      */
-    public static void findRecursive(File file, Filter<File> filter, Collection<File> collection) {
-        if (filter.matches(file)) {
-            collection.add(file);
-        }
-        if (file.isDirectory()) {
-            File[] files = file.listFiles();
-            if (files != null) {
-                for (File child : files) {
-                    findRecursive(child, filter, collection);
+    public static void findRecursive(File file, final Filter<File> filter, final Collection<File> collection) {
+        walkQuietly(file.toPath(), new QuietWalker(true, false) {
+            @Override
+            protected boolean preVisit(Path path, BasicFileAttributes attributes) {
+                File child = path.toFile();
+                if (filter.matches(child)) {
+                    collection.add(child);
                 }
+                return true;
             }
-        }
+        });
     }
 
     /**
@@ -484,25 +683,96 @@ public final class Files {
 
 
     /**
-     * Recursively deletes the file and any children files if its a directory
+     * Recursively deletes the file and any children files if its a directory. Symbolic links are deleted but not followed.
      */
-    public static void recursiveDelete(File file, FileFilter filter) {
-        if (filter == null || filter.accept(file)) {
-            if (file.isDirectory()) {
-                File[] files = file.listFiles();
-                if (files != null) {
-                    for (File child : files) {
-                        recursiveDelete(child, filter);
-                    }
+    public static void recursiveDelete(File file, final FileFilter filter) {
+        walkQuietly(file.toPath(), new QuietWalker(false, false) {
+            @Override
+            protected boolean preVisit(Path path, BasicFileAttributes attributes) {
+                if (filter != null && !filter.accept(path.toFile())) {
+                    return false;
                 }
-                files = file.listFiles();
-                // lets not delete if we didn't delete a child file
-                if (files == null || files.length == 0) {
-                    file.delete();
+                if (!attributes.isDirectory()) {
+                    delete(path);
                 }
-            } else {
-                file.delete();
+                return true;
+            }
+
+            @Override
+            protected void postVisitDirectory(Path dir) {
+                // lets not delete if we didn't delete a child file
+                delete(dir);
             }
+        });
+    }
+
+    /**
+     * Callback of {@link #walkTree(File, boolean, boolean, TreeVisitor)}
+     */
+    public interface TreeVisitor {
+        /**
+         * Visits a file or a directory before its children, returning false to skip the children of a directory
+         */
+        boolean visit(Path path, BasicFileAttributes attributes) throws IOException;
+    }
+
+    /**
+     * Walks the tree of the given file or directory, reading the attributes of each entry only once.
+     * Symbolic links are only followed if asked to, in which case links to one of their ancestors are visited but not walked into.
+     *
+     * @param parallel whether to walk the subdirectories as fork/join tasks, in which case the visitor must be thread safe
+     */
+    public static void walkTree(File root, boolean followLinks, boolean parallel, final TreeVisitor visitor) throws IOException {
+        new FileTreeWalker(followLinks, parallel) {
+            @Override
+            protected boolean preVisit(Path path, BasicFileAttributes attributes) throws IOException {
+                return visitor.visit(path, attributes);
+            }
+        }.walk(root.toPath());
+    }
+
+    /**
+     * Returns a lazily populated stream of the root and all the files and directories below it, which must be closed.
+     * Symbolic links are only followed if asked to, in which case links to one of their ancestors are not walked into.
+     */
+    public static Stream<Path> streamTree(File root, boolean followLinks) throws IOException {
+        final FileTreeWalker.TreeIterator iterator = FileTreeWalker.iterator(root.toPath(), followLinks);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .onClose(new Runnable() {
+                    @Override
+                    public void run() {
+                        iterator.close();
+                    }
+                });
+    }
+
+    private static void walkQuietly(Path root, FileTreeWalker walker) {
+        try {
+            walker.walk(root);
+        } catch (IOException e) {
+            // the root cannot be read, like File.listFiles() returning null
+        }
+    }
+
+    private static boolean delete(Path path) {
+        try {
+            java.nio.file.Files.delete(path);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Skips the directories which cannot be listed, like the recursion over {@link File#listFiles()} used to
+     */
+    private abstract static class QuietWalker extends FileTreeWalker {
+        QuietWalker(boolean followLinks, boolean parallel) {
+            super(followLinks, parallel);
+        }
+
+        @Override
+        protected void visitFailed(Path dir, IOException e) {
         }
     }
 
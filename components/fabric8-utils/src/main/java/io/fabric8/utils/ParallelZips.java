@@ -0,0 +1,652 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The parallel implementation of {@link Zips}.
+ * <p/>
+ * When zipping, each file is deflated on its own by a pool of threads into an independent raw deflate block
+ * (kept in memory for small files, in a temporary file for large ones) and the blocks are appended to the zip
+ * in order by the calling thread. The blocks in flight are bounded both in number and by the memory of the
+ * files deflated in memory, see {@link #IN_FLIGHT_LIMIT}. Files which are already compressed,
+ * or which do not shrink, are STORED and copied straight from the file with {@link FileChannel#transferTo}.
+ * The POSIX permissions of the files are kept in the external attributes of the central directory.
+ * <p/>
+ * When unzipping, the entries are inflated in parallel from a {@link ZipFile} and the permissions are restored.
+ */
+class ParallelZips {
+
+    static int THREADS = Integer.getInteger("io.fabric8.utils.ZIP_THREADS", Runtime.getRuntime().availableProcessors());
+    static int IN_MEMORY_LIMIT = Integer.getInteger("io.fabric8.utils.ZIP_IN_MEMORY_LIMIT", 4 * 1024 * 1024);
+    static long IN_FLIGHT_LIMIT = Long.getLong("io.fabric8.utils.ZIP_IN_FLIGHT_LIMIT", 32 * 1024 * 1024);
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList(
+            "zip", "jar", "war", "ear", "kar", "apk", "gz", "tgz", "bz2", "xz", "lz", "lzma", "7z", "rar", "zst",
+            "png", "jpg", "jpeg", "gif", "webp", "mp3", "mp4", "ogg", "avi", "mkv", "mov", "woff", "woff2"));
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final int VERSION_NEEDED = 20;
+    private static final int VERSION_MADE_BY_UNIX = (3 << 8) | VERSION_NEEDED;
+    private static final long MAX_ZIP32 = 0xffffffffL;
+    private static final int MAX_ZIP32_ENTRIES = 0xffff;
+    private static final int DIRECTORY_MODE = 040755;
+    private static final int FILE_MODE = 0100644;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final PosixFilePermission[] PERMISSIONS = {
+            PosixFilePermission.OTHERS_EXECUTE, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_READ,
+            PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_READ,
+            PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_READ};
+
+    /**
+     * Zips the content of the directory into the given file.
+     *
+     * @return false if the archive would need zip64 extensions, in which case nothing is written
+     */
+    static boolean createZipFile(final Logger log, File sourceDir, File outputZipFile, FileFilter filter) throws IOException {
+        List<Source> sources = new ArrayList<Source>();
+        collect(sourceDir, "", filter, sources);
+        long maxSize = 22;
+        for (Source source : sources) {
+            maxSize += source.size + 76 + 2 * source.name.length;
+            if (source.size >= MAX_ZIP32) {
+                return false;
+            }
+        }
+        if (sources.size() > MAX_ZIP32_ENTRIES || maxSize >= MAX_ZIP32) {
+            return false;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        Deque<Future<Block>> pending = new ArrayDeque<Future<Block>>();
+        final AtomicBoolean aborted = new AtomicBoolean();
+        RandomAccessFile output = new RandomAccessFile(outputZipFile, "rw");
+        try {
+            output.setLength(0);
+            FileChannel channel = output.getChannel();
+            List<Block> written = new ArrayList<Block>(sources.size());
+            int window = THREADS * 4;
+            long inFlight = 0;
+            for (final Source source : sources) {
+                long memory = memory(source);
+                // always let one block through, however large, so that the zip makes progress
+                while (!pending.isEmpty() && (pending.size() >= window || inFlight + memory > IN_FLIGHT_LIMIT)) {
+                    Block block = get(pending.poll());
+                    inFlight -= memory(block.source);
+                    written.add(writeEntry(channel, block));
+                }
+                inFlight += memory;
+                pending.add(executor.submit(new Callable<Block>() {
+                    @Override
+                    public Block call() throws Exception {
+                        Block block = null;
+                        try {
+                            block = compress(source);
+                            if (log.isDebugEnabled() && !source.directory) {
+                                log.debug("zipping file " + source.path());
+                            }
+                            return block;
+                        } finally {
+                            // nobody will write the block of a cancelled zip
+                            if (block != null && aborted.get()) {
+                                block.deleteTemporaryFile();
+                            }
+                        }
+                    }
+                }));
+            }
+            while (!pending.isEmpty()) {
+                written.add(writeEntry(channel, get(pending.poll())));
+            }
+            writeCentralDirectory(channel, written);
+        } finally {
+            aborted.set(true);
+            for (Future<Block> future : pending) {
+                future.cancel(true);
+            }
+            executor.shutdown();
+            for (Future<Block> future : pending) {
+                if (future.isDone() && !future.isCancelled()) {
+                    try {
+                        future.get().deleteTemporaryFile();
+                    } catch (Exception e) {
+                        // ignore
+                    }
+                }
+            }
+            Closeables.closeQuietly(output);
+        }
+        return true;
+    }
+
+    /**
+     * Unzips the given zip file into the directory, inflating the entries in parallel
+     */
+    static void unzip(File zipFile, File toDir) throws IOException {
+        final ZipFile zip = new ZipFile(zipFile);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final Map<String, Integer> modes = readUnixModes(zipFile);
+            File root = toDir.getCanonicalFile();
+            root.mkdirs();
+            Map<File, Integer> directories = new HashMap<File, Integer>();
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                final File target = Zips.resolveEntry(root, entry.getName());
+                if (entry.isDirectory()) {
+                    target.mkdirs();
+                    directories.put(target, modes.get(entry.getName()));
+                    continue;
+                }
+                target.getParentFile().mkdirs();
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        InputStream in = zip.getInputStream(entry);
+                        try {
+                            java.nio.file.Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        } finally {
+                            Closeables.closeQuietly(in);
+                        }
+                        if (entry.getTime() != -1) {
+                            target.setLastModified(entry.getTime());
+                        }
+                        setMode(target, modes.get(entry.getName()));
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                get(future);
+            }
+            // apply the permissions of the directories last, in case they are not writable
+            for (Map.Entry<File, Integer> entry : directories.entrySet()) {
+                setMode(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            executor.shutdownNow();
+            zip.close();
+        }
+    }
+
+    //
+    // Implementation
+    //
+
+    private static void collect(File directory, String path, FileFilter filter, List<Source> sources) throws IOException {
+        File[] dirList = directory.listFiles();
+        if (dirList != null) {
+            for (File f : dirList) {
+                if (!Zips.matches(filter, f)) {
+                    continue;
+                }
+                if (f.isDirectory()) {
+                    String prefix = path + f.getName() + "/";
+                    sources.add(new Source(f, prefix, true));
+                    collect(f, prefix, filter, sources);
+                } else {
+                    sources.add(new Source(f, path + f.getName(), false));
+                }
+            }
+        }
+    }
+
+    private static Block compress(Source source) throws IOException {
+        Block block = new Block(source);
+        if (source.directory) {
+            block.method = ZipEntry.STORED;
+            return block;
+        }
+        if (isCompressed(source.path()) || source.size == 0) {
+            block.method = ZipEntry.STORED;
+            block.crc = crc(source.file, source.size);
+            block.size = source.size;
+            block.compressedSize = source.size;
+        } else if (source.size <= IN_MEMORY_LIMIT) {
+            byte[] data = java.nio.file.Files.readAllBytes(source.file.toPath());
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            block.crc = crc.getValue();
+            block.size = data.length;
+            byte[] deflated = deflate(data);
+            if (deflated.length < data.length) {
+                block.method = ZipEntry.DEFLATED;
+                block.data = deflated;
+            } else {
+                block.method = ZipEntry.STORED;
+                block.data = data;
+            }
+            block.compressedSize = block.data.length;
+        } else {
+            File temp = File.createTempFile("fabric8-zip-", ".deflate");
+            CRC32 crc = new CRC32();
+            long size = 0;
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            boolean deflated = false;
+            InputStream in = new FileInputStream(source.file);
+            try {
+                OutputStream out = new DeflaterOutputStream(new FileOutputStream(temp), deflater, BUFFER_SIZE);
+                try {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        crc.update(buffer, 0, count);
+                        size += count;
+                        out.write(buffer, 0, count);
+                    }
+                } finally {
+                    out.close();
+                }
+                deflated = true;
+            } finally {
+                if (!deflated) {
+                    temp.delete();
+                }
+                deflater.end();
+                Closeables.closeQuietly(in);
+            }
+            block.crc = crc.getValue();
+            block.size = size;
+            if (temp.length() < size && size == source.size) {
+                block.method = ZipEntry.DEFLATED;
+                block.temporaryFile = temp;
+                block.compressedSize = temp.length();
+            } else {
+                temp.delete();
+                block.method = ZipEntry.STORED;
+                block.crc = crc(source.file, source.size);
+                block.size = source.size;
+                block.compressedSize = source.size;
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Returns the memory held by the block of the given source until it is written: only the files deflated in memory
+     * hold their content, the other blocks are streamed from a file
+     */
+    private static long memory(Source source) {
+        if (source.directory || source.size == 0 || source.size > IN_MEMORY_LIMIT || isCompressed(source.path())) {
+            return 0;
+        }
+        return source.size;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, data.length / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static long crc(File file, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long remaining = size;
+            while (remaining > 0) {
+                buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                int count = channel.read(buffer);
+                if (count < 0) {
+                    throw new IOException("File " + file + " was truncated while zipping it");
+                }
+                crc.update(buffer.array(), 0, buffer.position());
+                remaining -= count;
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+        return crc.getValue();
+    }
+
+    private static Block writeEntry(FileChannel channel, Block block) throws IOException {
+        try {
+            block.offset = channel.position();
+            byte[] name = block.source.name;
+            ByteBuffer header = ByteBuffer.allocate(30 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(LOCAL_HEADER);
+            header.putShort((short) VERSION_NEEDED);
+            header.putShort((short) UTF8_FLAG);
+            header.putShort((short) block.method);
+            header.putInt(block.source.dosTime);
+            header.putInt((int) block.crc);
+            header.putInt((int) block.compressedSize);
+            header.putInt((int) block.size);
+            header.putShort((short) name.length);
+            header.putShort((short) 0);
+            header.put(name);
+            flush(channel, header);
+            if (block.data != null) {
+                writeFully(channel, ByteBuffer.wrap(block.data));
+            } else if (block.temporaryFile != null) {
+                transfer(block.temporaryFile, channel, block.compressedSize);
+            } else if (!block.source.directory) {
+                transfer(block.source.file, channel, block.compressedSize);
+            }
+            block.data = null;
+        } finally {
+            block.deleteTemporaryFile();
+        }
+        return block;
+    }
+
+    private static void writeCentralDirectory(FileChannel channel, List<Block> blocks) throws IOException {
+        long start = channel.position();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (Block block : blocks) {
+            byte[] name = block.source.name;
+            if (buffer.remaining() < 46 + name.length) {
+                flush(channel, buffer);
+                if (buffer.capacity() < 46 + name.length) {
+                    buffer = ByteBuffer.allocate(46 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+            buffer.putInt(CENTRAL_HEADER);
+            buffer.putShort((short) VERSION_MADE_BY_UNIX);
+            buffer.putShort((short) VERSION_NEEDED);
+            buffer.putShort((short) UTF8_FLAG);
+            buffer.putShort((short) block.method);
+            buffer.putInt(block.source.dosTime);
+            buffer.putInt((int) block.crc);
+            buffer.putInt((int) block.compressedSize);
+            buffer.putInt((int) block.size);
+            buffer.putShort((short) name.length);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putInt((block.source.mode << 16) | (block.source.directory ? 0x10 : 0));
+            buffer.putInt((int) block.offset);
+            buffer.put(name);
+        }
+        long size = channel.position() + buffer.position() - start;
+        if (buffer.remaining() < 22) {
+            flush(channel, buffer);
+        }
+        buffer.putInt(END_OF_CENTRAL_DIRECTORY);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) blocks.size());
+        buffer.putShort((short) blocks.size());
+        buffer.putInt((int) size);
+        buffer.putInt((int) start);
+        buffer.putShort((short) 0);
+        flush(channel, buffer);
+    }
+
+    /**
+     * Reads the unix modes of the entries from the central directory, as {@link ZipFile} does not expose them.
+     * Returns an empty map for archives which cannot be read this way, such as zip64 ones.
+     */
+    static Map<String, Integer> readUnixModes(File zipFile) throws IOException {
+        Map<String, Integer> answer = new HashMap<String, Integer>();
+        FileChannel channel = FileChannel.open(zipFile.toPath(), StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            int tail = (int) Math.min(length, 22 + 0xffff);
+            ByteBuffer end = ByteBuffer.allocate(tail).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(end, length - tail);
+            int eocd = -1;
+            for (int i = tail - 22; i >= 0; i--) {
+                if (end.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd < 0) {
+                return answer;
+            }
+            long size = end.getInt(eocd + 12) & MAX_ZIP32;
+            long offset = end.getInt(eocd + 16) & MAX_ZIP32;
+            if (offset == MAX_ZIP32 || offset + size > length) {
+                return answer;
+            }
+            ByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+            while (directory.remaining() >= 46 && directory.getInt(directory.position()) == CENTRAL_HEADER) {
+                int position = directory.position();
+                int madeBy = directory.getShort(position + 4) & 0xffff;
+                int nameLength = directory.getShort(position + 28) & 0xffff;
+                int extraLength = directory.getShort(position + 30) & 0xffff;
+                int commentLength = directory.getShort(position + 32) & 0xffff;
+                int mode = directory.getInt(position + 38) >>> 16;
+                byte[] name = new byte[nameLength];
+                directory.position(position + 46);
+                directory.get(name);
+                if ((madeBy >> 8) == 3 && mode != 0) {
+                    answer.put(new String(name, StandardCharsets.UTF_8), mode);
+                }
+                directory.position(position + 46 + nameLength + extraLength + commentLength);
+            }
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyMap();
+        } catch (IndexOutOfBoundsException e) {
+            return Collections.emptyMap();
+        } finally {
+            channel.close();
+        }
+        return answer;
+    }
+
+    private static void setMode(File file, Integer mode) throws IOException {
+        if (mode == null) {
+            return;
+        }
+        PosixFileAttributeView view = java.nio.file.Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class);
+        if (view != null) {
+            Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+            for (int i = 0; i < PERMISSIONS.length; i++) {
+                if ((mode & (1 << i)) != 0) {
+                    permissions.add(PERMISSIONS[i]);
+                }
+            }
+            view.setPermissions(permissions);
+        } else if ((mode & 0100) != 0) {
+            file.setExecutable(true);
+        }
+    }
+
+    private static int getMode(File file, boolean directory) {
+        int type = directory ? DIRECTORY_MODE & ~0777 : FILE_MODE & ~0777;
+        try {
+            PosixFileAttributeView view = java.nio.file.Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class);
+            if (view != null) {
+                int mode = 0;
+                for (PosixFilePermission permission : view.readAttributes().permissions()) {
+                    mode |= 1 << Arrays.asList(PERMISSIONS).indexOf(permission);
+                }
+                return type | mode;
+            }
+        } catch (IOException e) {
+            // fall back to the defaults
+        }
+        if (directory) {
+            return DIRECTORY_MODE;
+        }
+        return file.canExecute() ? FILE_MODE | 0111 : FILE_MODE;
+    }
+
+    private static boolean isCompressed(String name) {
+        int idx = name.lastIndexOf('.');
+        return idx > 0 && COMPRESSED_EXTENSIONS.contains(name.substring(idx + 1).toLowerCase(Locale.ENGLISH));
+    }
+
+    private static int toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11 | calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    private static void transfer(File file, FileChannel target, long count) throws IOException {
+        FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long position = 0;
+            while (position < count) {
+                long transferred = source.transferTo(position, count - position, target);
+                if (transferred <= 0) {
+                    throw new IOException("File " + file + " was truncated while zipping it");
+                }
+                position += transferred;
+            }
+        } finally {
+            source.close();
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a zip entry");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static class Source {
+        private final File file;
+        private final byte[] name;
+        private final boolean directory;
+        private final long size;
+        private final int dosTime;
+        private final int mode;
+
+        Source(File file, String name, boolean directory) {
+            this.file = file;
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.directory = directory;
+            this.size = directory ? 0 : file.length();
+            this.dosTime = toDosTime(file.lastModified());
+            this.mode = getMode(file, directory);
+        }
+
+        String path() {
+            return new String(name, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class Block {
+        private final Source source;
+        private int method;
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private long offset;
+        private byte[] data;
+        private File temporaryFile;
+
+        Block(Source source) {
+            this.source = source;
+        }
+
+        synchronized void deleteTemporaryFile() {
+            if (temporaryFile != null) {
+                temporaryFile.delete();
+                temporaryFile = null;
+            }
+        }
+    }
+}
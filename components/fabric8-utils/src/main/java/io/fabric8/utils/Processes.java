@@ -19,27 +19,68 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static java.lang.String.format;
 
 /**
  * Platform, Java and Docker specific process utilities.
+ * <p/>
+ * On Linux processes are inspected by reading <tt>/proc</tt>, and they are killed with <tt>ProcessHandle</tt>
+ * when running on Java 9 or later, so that no external command is spawned. The <tt>ps</tt>, <tt>jps</tt>
+ * and <tt>kill</tt> commands are only used as a fallback on other platforms.
  */
 public class Processes {
     private static final transient Logger LOG = LoggerFactory.getLogger(Processes.class);
 
     private static boolean isWindows = System.getProperty("os.name").toLowerCase().contains("windows");
 
+    private static final File PROC = new File("/proc");
+    private static final boolean HAS_PROC = !isWindows && new File(PROC, "self/status").isFile();
+    private static final Set<String> JAVA_OPTIONS_WITH_VALUE = new HashSet<>(Arrays.asList(
+            "-cp", "-classpath", "--class-path", "-p", "--module-path", "--upgrade-module-path", "--add-modules",
+            "--limit-modules", "--add-exports", "--add-opens", "--add-reads", "--patch-module"));
+
+    // java.lang.ProcessHandle is only available on Java 9 or later
+    private static final Method PROCESS_HANDLE_OF = processHandleMethod("of", long.class);
+    private static final Method PROCESS_HANDLE_IS_ALIVE = processHandleMethod("isAlive");
+    private static final Method PROCESS_HANDLE_DESTROY = processHandleMethod("destroy");
+    private static final Method PROCESS_HANDLE_DESTROY_FORCIBLY = processHandleMethod("destroyForcibly");
+    private static final Method PROCESS_HANDLE_DESCENDANTS = processHandleMethod("descendants");
+    private static final Method PROCESS_HANDLE_PID = processHandleMethod("pid");
+
     /**
      * Returns true if the given PID is still alive
      */
     public static boolean isProcessAlive(long pid) {
+        if (HAS_PROC) {
+            Map<String, String> status = readProcStatus(pid);
+            return status != null && Long.toString(pid).equals(status.get("Tgid")) && !isZombie(status);
+        } else if (PROCESS_HANDLE_OF != null) {
+            Object handle = processHandle(pid);
+            return handle != null && (Boolean) invoke(PROCESS_HANDLE_IS_ALIVE, handle);
+        }
         List<Long> processIds = getProcessIds();
         if (processIds.isEmpty()) {
             // we must be on a platform that the PID list doesn't work like windows
@@ -52,7 +93,9 @@ public class Processes {
      * Returns the list of current active PIDs
      */
     public static List<Long> getProcessIds() {
-        if (isWindows) {
+        if (HAS_PROC) {
+            return getProcessIdsProc();
+        } else if (isWindows) {
             return getProcessIdsWindows();
         } else {
             return getProcessIdsUnix();
@@ -98,6 +141,9 @@ public class Processes {
      * that has a main class which contains any of the given bits of text
      */
     public static List<Long> getJavaProcessIds(String... classNameFilter) {
+        if (HAS_PROC) {
+            return getJavaProcessIdsProc(Filters.containsAnyString(classNameFilter));
+        }
         String commands = "jps -l";
         String message = commands;
         LOG.debug("Executing commands: " + message);
@@ -219,6 +265,9 @@ public class Processes {
             return 0;
         }
 
+        if (PROCESS_HANDLE_OF != null && (params == null || "-9".equals(params) || "-KILL".equals(params) || "-15".equals(params) || "-TERM".equals(params))) {
+            return destroy(pid, "-9".equals(params) || "-KILL".equals(params)) ? 0 : 1;
+        }
         if (isWindows) {
             if ("-9".equals(params)) {
                 params = "/F";
@@ -229,6 +278,269 @@ public class Processes {
         }
     }
 
+    /**
+     * Kills the descendants of the given process, the deepest ones first, and then the process itself
+     *
+     * @return the number of processes which were alive and were signalled
+     */
+    public static int killProcessTree(long pid, String params) {
+        List<Long> processIds = getDescendantProcessIds(pid);
+        Collections.reverse(processIds);
+        processIds.add(pid);
+        int count = 0;
+        for (Long processId : processIds) {
+            if (isProcessAlive(processId) && killProcess(processId, params) == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the PIDs of the children of the given process, of their children and so on, parents before children
+     */
+    public static List<Long> getDescendantProcessIds(long pid) {
+        List<Long> answer = new ArrayList<>();
+        if (!HAS_PROC && PROCESS_HANDLE_OF != null) {
+            Object handle = processHandle(pid);
+            if (handle != null) {
+                Stream<?> descendants = (Stream<?>) invoke(PROCESS_HANDLE_DESCENDANTS, handle);
+                for (Iterator<?> it = descendants.iterator(); it.hasNext(); ) {
+                    answer.add((Long) invoke(PROCESS_HANDLE_PID, it.next()));
+                }
+            }
+            return answer;
+        }
+        Map<Long, List<Long>> children = getChildProcessIds();
+        Deque<Long> queue = new ArrayDeque<>();
+        queue.add(pid);
+        while (!queue.isEmpty()) {
+            List<Long> list = children.get(queue.poll());
+            if (list != null) {
+                answer.addAll(list);
+                queue.addAll(list);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Waits for the given process to exit
+     *
+     * @return false if the process was still alive after the timeout
+     */
+    public static boolean waitForExit(long pid, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long sleep = 1;
+        while (isProcessAlive(pid)) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return false;
+            }
+            Thread.sleep(Math.min(sleep, remaining));
+            sleep = Math.min(sleep * 2, 100);
+        }
+        return true;
+    }
+
+    private static List<Long> getProcessIdsProc() {
+        List<Long> answer = new ArrayList<>();
+        String[] names = PROC.list();
+        if (names != null) {
+            for (String name : names) {
+                long pid = parsePid(name);
+                if (pid > 0) {
+                    answer.add(pid);
+                }
+            }
+        }
+        return answer;
+    }
+
+    private static List<Long> getJavaProcessIdsProc(Filter<String> filter) {
+        List<Long> answer = new ArrayList<>();
+        Map<String, String> self = readProcStatus("self");
+        String uid = self != null ? firstField(self.get("Uid")) : null;
+        for (Long pid : getProcessIdsProc()) {
+            String[] args = readProcCmdline(pid);
+            if (args.length == 0 || !isJavaCommand(args[0])) {
+                continue;
+            }
+            // like jps, only include the processes of the current user
+            Map<String, String> status = readProcStatus(pid);
+            if (status == null || isZombie(status) || (uid != null && !uid.equals(firstField(status.get("Uid"))))) {
+                continue;
+            }
+            String mainClass = getMainClass(args);
+            String line = mainClass != null ? pid + " " + mainClass : pid.toString();
+            if (filter.matches(line)) {
+                answer.add(pid);
+            }
+        }
+        return answer;
+    }
+
+    private static Map<Long, List<Long>> getChildProcessIds() {
+        Map<Long, List<Long>> answer = new HashMap<>();
+        if (HAS_PROC) {
+            for (Long pid : getProcessIdsProc()) {
+                Map<String, String> status = readProcStatus(pid);
+                if (status != null) {
+                    long ppid = parsePid(status.get("PPid"));
+                    addChild(answer, ppid, pid);
+                }
+            }
+        } else if (!isWindows) {
+            String commands = "ps -e -o pid= -o ppid=";
+            try {
+                Process process = Runtime.getRuntime().exec(commands);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                try {
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        StringTokenizer tokenizer = new StringTokenizer(line);
+                        if (tokenizer.countTokens() == 2) {
+                            long pid = parsePid(tokenizer.nextToken());
+                            addChild(answer, parsePid(tokenizer.nextToken()), pid);
+                        }
+                    }
+                } finally {
+                    Closeables.closeQuietly(reader);
+                }
+                processErrors(process.getErrorStream(), commands);
+            } catch (Exception e) {
+                LOG.error("Failed to execute process " + "stdin" + " for " +
+                        commands + ": " + e, e);
+            }
+        }
+        return answer;
+    }
+
+    private static void addChild(Map<Long, List<Long>> children, long ppid, long pid) {
+        if (ppid <= 0 || pid <= 0) {
+            return;
+        }
+        List<Long> list = children.get(ppid);
+        if (list == null) {
+            list = new ArrayList<>();
+            children.put(ppid, list);
+        }
+        list.add(pid);
+    }
+
+    /**
+     * Returns the main class, module or jar of the java command line, like <tt>jps -l</tt> would
+     */
+    static String getMainClass(String[] args) {
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if ("-jar".equals(arg) || "-m".equals(arg) || "--module".equals(arg)) {
+                return i + 1 < args.length ? args[i + 1] : null;
+            } else if (JAVA_OPTIONS_WITH_VALUE.contains(arg)) {
+                i++;
+            } else if (!arg.startsWith("-")) {
+                return arg;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isJavaCommand(String command) {
+        String name = new File(command).getName();
+        return name.equals("java") || name.equals("javaw") || name.equals("java.exe");
+    }
+
+    private static String[] readProcCmdline(long pid) {
+        try {
+            byte[] bytes = java.nio.file.Files.readAllBytes(new File(PROC, pid + "/cmdline").toPath());
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            if (text.isEmpty()) {
+                return new String[0];
+            }
+            return text.split("\u0000");
+        } catch (IOException e) {
+            return new String[0];
+        }
+    }
+
+    private static Map<String, String> readProcStatus(long pid) {
+        return readProcStatus(Long.toString(pid));
+    }
+
+    /**
+     * Reads the <tt>/proc/&lt;pid&gt;/status</tt> file of the process or returns null if there is no such process
+     */
+    private static Map<String, String> readProcStatus(String pid) {
+        try {
+            List<String> lines = java.nio.file.Files.readAllLines(new File(PROC, pid + "/status").toPath(), StandardCharsets.UTF_8);
+            Map<String, String> answer = new HashMap<>();
+            for (String line : lines) {
+                int idx = line.indexOf(':');
+                if (idx > 0) {
+                    answer.put(line.substring(0, idx), line.substring(idx + 1).trim());
+                }
+            }
+            return answer;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isZombie(Map<String, String> status) {
+        String state = status.get("State");
+        return state != null && (state.startsWith("Z") || state.startsWith("X"));
+    }
+
+    private static String firstField(String value) {
+        if (value == null) {
+            return null;
+        }
+        StringTokenizer tokenizer = new StringTokenizer(value);
+        return tokenizer.hasMoreTokens() ? tokenizer.nextToken() : null;
+    }
+
+    private static long parsePid(String text) {
+        if (text == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Method processHandleMethod(String name, Class<?>... parameterTypes) {
+        try {
+            return Class.forName("java.lang.ProcessHandle").getMethod(name, parameterTypes);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static Object processHandle(long pid) {
+        Optional<?> handle = (Optional<?>) invoke(PROCESS_HANDLE_OF, null, pid);
+        return handle.isPresent() ? handle.get() : null;
+    }
+
+    private static boolean destroy(long pid, boolean force) {
+        Object handle = processHandle(pid);
+        return handle != null && (Boolean) invoke(force ? PROCESS_HANDLE_DESTROY_FORCIBLY : PROCESS_HANDLE_DESTROY, handle);
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to invoke " + method + ": " + e, e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Failed to invoke " + method + ": " + cause, cause);
+        }
+    }
+
     protected static int killProcessWindows(Long pid, String params) {
         String commands = "taskkill " + (params != null ? params + " " : "") + "/PID " + pid;
         Process process = null;
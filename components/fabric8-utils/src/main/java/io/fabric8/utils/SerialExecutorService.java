@@ -15,65 +15,34 @@
  */
 package io.fabric8.utils;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * An ExecutorService which ensures serial execution of the Runnable
  * objects which it is asked to execute.  By default it delegates
- * execution of those tasks to a thread pool, but can be configured
+ * execution of those tasks to a shared, bounded thread pool, but can be configured
  * to use any Executor.
+ * <p/>
+ * When draining on the thread pool at most {@link #DRAIN_QUOTA} tasks are run
+ * before the executor yields its thread to the other serial executors.
  */
 public class SerialExecutorService extends AbstractExecutorService {
 
     static long THREAD_POOL_KEEP_ALIVE = Integer.getInteger("io.fabric8.utils.THREAD_POOL_KEEP_ALIVE", 5000);
+    static int THREAD_POOL_SIZE = Integer.getInteger("io.fabric8.utils.THREAD_POOL_SIZE", Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+    static int DRAIN_QUOTA = Integer.getInteger("io.fabric8.utils.SERIAL_EXECUTOR_DRAIN_QUOTA", 100);
     static final ThreadGroup group = new ThreadGroup("Fabric Tasks");
 
-    static final Executor threadPool = new Executor() {
-        SynchronousQueue<Runnable> queue = new SynchronousQueue<Runnable>();
+    static final ThreadPoolExecutor threadPool = createThreadPool();
 
-        @Override
-        public void execute(final Runnable task) {
-
-            if (task == null) {
-                throw new NullPointerException();
-            }
-
-            // Lets try to give the task to a running thread..
-            if (!queue.offer(task)) {
-
-                // Existing thread did not take the task, so spin
-                // up a thread to execute the task..
-                new Thread(group, "Fabric Task") {
-                    @Override
-                    public void run() {
-                        while (true) {
-                            Runnable task;
-                            try {
-                                task = queue.poll(THREAD_POOL_KEEP_ALIVE, TimeUnit.MILLISECONDS);
-                            } catch (InterruptedException e) {
-                                return;
-                            }
-                            if (task == null) {
-                                return;
-                            }
-                            task.run();
-                        }
-                    }
-                }.start();
-
-                // Now wait till a thread picks it up..
-                try {
-                    queue.put(task);
-                } catch (InterruptedException e) {
-                    throw new RejectedExecutionException(e);
-                }
-            }
-        }
-    };
+    private static final AtomicInteger activeExecutors = new AtomicInteger();
 
     protected Executor target;
     protected volatile String label;
@@ -82,14 +51,21 @@ public class SerialExecutorService extends AbstractExecutorService {
     protected CountDownLatch terminatedLatch = new CountDownLatch(1);
     protected final AtomicBoolean triggered = new AtomicBoolean();
     protected final ConcurrentLinkedQueue<Runnable> externalQueue = new ConcurrentLinkedQueue<Runnable>();
-    protected final LinkedList<Runnable> localQueue = new LinkedList<Runnable>();
+    protected final ArrayDeque<Runnable> localQueue = new ArrayDeque<Runnable>();
     protected final ThreadLocal<Boolean> draining = new ThreadLocal<Boolean>();
+    protected final ReentrantLock drainLock = new ReentrantLock();
     protected final Runnable drainTask = new Runnable() {
         public void run() {
-            drain();
+            drainTriggered();
         }
     };
 
+    // Metrics
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong drainCount = new AtomicLong();
+    private final AtomicLong totalDrainLatency = new AtomicLong();
+    private volatile long maxDrainLatency;
+    private volatile long triggeredAt;
 
     public SerialExecutorService() {
         this("<no-label>");
@@ -119,6 +95,7 @@ public class SerialExecutorService extends AbstractExecutorService {
         if (shutdown.get())
             throw new RejectedExecutionException("shutdown");
 
+        queueDepth.incrementAndGet();
         if (isDraining()) {
             localQueue.add(runnable);
         } else {
@@ -141,6 +118,7 @@ public class SerialExecutorService extends AbstractExecutorService {
         if (isDraining()) {
             runnable.run();
         } else {
+            queueDepth.incrementAndGet();
             externalQueue.add(runnable);
             drain();
         }
@@ -148,46 +126,100 @@ public class SerialExecutorService extends AbstractExecutorService {
 
     protected void triggerDrain() {
         if (triggered.compareAndSet(false, true)) {
-            target.execute(drainTask);
+            triggeredAt = System.nanoTime();
+            activeExecutors.incrementAndGet();
+            try {
+                target.execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                clearTriggered();
+                throw e;
+            }
         }
     }
 
     /**
      * This method blocks until all previously queued Runnable objects are run.
      */
-    synchronized public void drain() {
+    public void drain() {
+        drainLock.lock();
+        try {
+            drain(Integer.MAX_VALUE);
+        } finally {
+            drainLock.unlock();
+        }
+        // a drain may still be queued on the target, it owns the trigger so only trigger if none is
+        if (queueDepth.get() > 0) {
+            triggerDrain();
+        }
+    }
+
+    /**
+     * Runs a batch of at most {@link #DRAIN_QUOTA} tasks on the target executor. If another thread is already
+     * draining, it will run the tasks instead so the target thread is given back straight away.
+     */
+    protected void drainTriggered() {
+        if (drainLock.tryLock()) {
+            try {
+                long latency = System.nanoTime() - triggeredAt;
+                drainCount.incrementAndGet();
+                totalDrainLatency.addAndGet(latency);
+                if (latency > maxDrainLatency) {
+                    maxDrainLatency = latency;
+                }
+                drain(DRAIN_QUOTA);
+            } finally {
+                drainLock.unlock();
+            }
+        }
+        retriggerIfNeeded();
+    }
+
+    private void drain(int quota) {
         draining.set(Boolean.TRUE);
         try {
-            boolean drained = false;
-            while (!drained) {
+            for (int i = 0; i < quota; i++) {
                 Runnable runnable = localQueue.poll();
                 if (runnable == null) {
                     runnable = externalQueue.poll();
                 }
                 if (runnable == null) {
-                    drained = true;
-                } else {
-                    try {
-                        runnable.run();
-                    } catch (Throwable e) {
-                        Thread thread = Thread.currentThread();
-                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
-                    }
+                    break;
+                }
+                queueDepth.decrementAndGet();
+                try {
+                    runnable.run();
+                } catch (Throwable e) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
                 }
             }
         } finally {
             draining.remove();
-            triggered.set(false);
-            if (!externalQueue.isEmpty()) {
-                triggerDrain();
-            }
         }
     }
 
+    /**
+     * Clears the trigger and, as tasks may have been queued meanwhile, triggers another drain if the queues are not empty.
+     * This must only be called by the running drain task, after releasing the drain lock, so that at most one drain
+     * is ever queued on the target.
+     */
+    private void retriggerIfNeeded() {
+        clearTriggered();
+        if (queueDepth.get() > 0 && !drainLock.isLocked()) {
+            triggerDrain();
+        }
+    }
+
+    private void clearTriggered() {
+        if (triggered.compareAndSet(true, false)) {
+            activeExecutors.decrementAndGet();
+        }
+    }
 
     @Override
     public void shutdown() {
         if (shutdown.compareAndSet(false, true)) {
+            queueDepth.incrementAndGet();
             externalQueue.add(new Runnable() {
                 @Override
                 public void run() {
@@ -225,6 +257,56 @@ public class SerialExecutorService extends AbstractExecutorService {
         return terminatedLatch.await(timeout, unit);
     }
 
+    /**
+     * Returns the number of tasks waiting to be run
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Returns the number of drains run on the target executor
+     */
+    public long getDrainCount() {
+        return drainCount.get();
+    }
+
+    /**
+     * Returns the average time between queuing a drain on the target executor and the drain starting
+     */
+    public long getAverageDrainLatency(TimeUnit unit) {
+        long count = drainCount.get();
+        return count > 0 ? unit.convert(totalDrainLatency.get() / count, TimeUnit.NANOSECONDS) : 0;
+    }
+
+    /**
+     * Returns the longest time between queuing a drain on the target executor and the drain starting
+     */
+    public long getMaxDrainLatency(TimeUnit unit) {
+        return unit.convert(maxDrainLatency, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of serial executors which have a drain queued or running
+     */
+    public static int getActiveExecutors() {
+        return activeExecutors.get();
+    }
+
+    /**
+     * Returns the number of threads of the shared thread pool
+     */
+    public static int getThreadPoolSize() {
+        return threadPool.getPoolSize();
+    }
+
+    /**
+     * Returns the number of serial executors waiting for a thread of the shared thread pool
+     */
+    public static int getThreadPoolQueueDepth() {
+        return threadPool.getQueue().size();
+    }
+
     @Override
     public String toString() {
         return label;
@@ -245,4 +327,17 @@ public class SerialExecutorService extends AbstractExecutorService {
     public void setLabel(String label) {
         this.label = label;
     }
+
+    private static ThreadPoolExecutor createThreadPool() {
+        // each serial executor queues at most one drain at a time, so the queue is bounded by the number of executors
+        ThreadPoolExecutor answer = new ThreadPoolExecutor(THREAD_POOL_SIZE, THREAD_POOL_SIZE, THREAD_POOL_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new java.util.concurrent.ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(group, r, "Fabric Task");
+            }
+        });
+        answer.allowCoreThreadTimeOut(true);
+        return answer;
+    }
 }
@@ -15,6 +15,8 @@
  */
 package io.fabric8.utils;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
@@ -24,36 +26,94 @@ import javax.xml.xpath.XPathFactory;
  * A helper class for creating XPath expressions
  */
 public class XPathBuilder {
-    private XPathFactory xpathFactory;
-    private XPath xpath;
+    static int XPATH_CACHE_SIZE = Integer.getInteger("io.fabric8.utils.XPATH_CACHE_SIZE", 256);
+
+    private volatile XPathFactory xpathFactory;
+    private volatile XPath xpath;
+    private volatile ThreadLocal<XPath> xpaths = new ThreadLocal<XPath>();
+    private volatile ThreadLocal<Map<String, XPathExpression>> expressions = new ThreadLocal<Map<String, XPathExpression>>();
 
     /**
-     * Creates an XPath expression facade
+     * Creates an XPath expression facade.
+     * <p/>
+     * Compiled expressions are cached per thread, as neither {@link XPath} nor {@link XPathExpression} objects
+     * are thread safe, so the returned facade should be used by the calling thread.
      */
     public XPathFacade xpath(String xpath) throws XPathExpressionException {
-        XPathExpression expression = getXPath().compile(xpath);
+        Map<String, XPathExpression> cache = getExpressionCache();
+        XPathExpression expression = cache.get(xpath);
+        if (expression == null) {
+            XPath shared = this.xpath;
+            if (shared != null) {
+                synchronized (shared) {
+                    expression = shared.compile(xpath);
+                }
+            } else {
+                expression = getXPath().compile(xpath);
+            }
+            cache.put(xpath, expression);
+        }
         return new XPathFacade(this, xpath, expression);
     }
 
+    /**
+     * Returns the XPath configured with {@link #setXPath(XPath)} or else the XPath of the current thread
+     */
     public XPath getXPath() {
-        if (xpath == null) {
-            xpath = getXPathFactory().newXPath();
+        XPath answer = xpath;
+        if (answer == null) {
+            ThreadLocal<XPath> threadXPaths = xpaths;
+            answer = threadXPaths.get();
+            if (answer == null) {
+                XPathFactory factory = getXPathFactory();
+                synchronized (factory) {
+                    answer = factory.newXPath();
+                }
+                threadXPaths.set(answer);
+            }
         }
-        return xpath;
+        return answer;
     }
 
+    /**
+     * Configures an XPath to be shared by all the threads, which then serialize the compilation of expressions
+     */
     public void setXPath(XPath xpath) {
         this.xpath = xpath;
+        this.expressions = new ThreadLocal<Map<String, XPathExpression>>();
     }
 
     public XPathFactory getXPathFactory() {
-        if (xpathFactory == null) {
-            xpathFactory = XPathFactory.newInstance();
+        XPathFactory answer = xpathFactory;
+        if (answer == null) {
+            synchronized (this) {
+                if (xpathFactory == null) {
+                    xpathFactory = XPathFactory.newInstance();
+                }
+                answer = xpathFactory;
+            }
         }
-        return xpathFactory;
+        return answer;
     }
 
     public void setXPathFactory(XPathFactory xpathFactory) {
         this.xpathFactory = xpathFactory;
+        this.xpaths = new ThreadLocal<XPath>();
+        this.expressions = new ThreadLocal<Map<String, XPathExpression>>();
+    }
+
+    private Map<String, XPathExpression> getExpressionCache() {
+        ThreadLocal<Map<String, XPathExpression>> threadExpressions = expressions;
+        Map<String, XPathExpression> answer = threadExpressions.get();
+        if (answer == null) {
+            answer = new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                    return size() > XPATH_CACHE_SIZE;
+                }
+            };
+            threadExpressions.set(answer);
+        }
+        return answer;
     }
 }
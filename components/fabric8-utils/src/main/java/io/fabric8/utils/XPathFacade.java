@@ -15,6 +15,7 @@
  */
 package io.fabric8.utils;
 
+import javax.xml.namespace.QName;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
@@ -55,7 +56,7 @@ public class XPathFacade {
      * Evaluates the XPath expression on the given item and return the first node or null
      */
     public Node node(Object item) throws XPathExpressionException {
-        Object answer = expression.evaluate(item, XPathConstants.NODE);
+        Object answer = evaluate(item, XPathConstants.NODE);
         if (answer instanceof Node) {
             return (Node) answer;
         }
@@ -67,7 +68,7 @@ public class XPathFacade {
      */
     public List<Node> nodes(Object item) throws XPathExpressionException {
         List<Node> answer = new ArrayList<Node>();
-        Object value = expression.evaluate(item, XPathConstants.NODESET);
+        Object value = evaluate(item, XPathConstants.NODESET);
         if (value instanceof NodeList) {
             NodeList nodeList = (NodeList) value;
             for (int i = 0, size = nodeList.getLength(); i < size; i++) {
@@ -87,7 +88,7 @@ public class XPathFacade {
      */
     public List<Element> elements(Object item) throws XPathExpressionException {
         List<Element> answer = new ArrayList<Element>();
-        Object value = expression.evaluate(item, XPathConstants.NODESET);
+        Object value = evaluate(item, XPathConstants.NODESET);
         if (value instanceof NodeList) {
             NodeList nodeList = (NodeList) value;
             for (int i = 0, size = nodeList.getLength(); i < size; i++) {
@@ -125,6 +126,16 @@ public class XPathFacade {
         return null;
     }
 
+    /**
+     * Evaluates the XPath expression on the given item, serializing the evaluations if the facade is shared
+     * between threads as expressions are not thread safe
+     */
+    public Object evaluate(Object item, QName returnType) throws XPathExpressionException {
+        synchronized (expression) {
+            return expression.evaluate(item, returnType);
+        }
+    }
+
     public XPathBuilder getBuilder() {
         return builder;
     }
@@ -16,17 +16,22 @@
 package io.fabric8.utils;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -37,13 +42,68 @@ import org.xml.sax.SAXException;
 
 /**
  * XML related utilities.
+ * <p/>
+ * All the methods are thread safe: each thread reuses its own {@link DocumentBuilder} rather than creating
+ * a new factory and builder on every call. Parsers are configured for secure processing, so that DOCTYPE
+ * declarations and external entities are rejected.
  */
 public class XmlUtils {
 
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY;
+    private static final XMLInputFactory XML_INPUT_FACTORY;
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDERS = new ThreadLocal<DocumentBuilder>();
+
+    static {
+        try {
+            DOCUMENT_BUILDER_FACTORY = createDocumentBuilderFactory();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Failed to configure the XML parser: " + e, e);
+        }
+        XML_INPUT_FACTORY = createXMLInputFactory();
+    }
+
     private XmlUtils() {
         // utility class
     }
 
+    /**
+     * Creates a new {@link DocumentBuilderFactory} with secure processing enabled and DOCTYPE declarations,
+     * external entities and XInclude disabled
+     */
+    public static DocumentBuilderFactory createDocumentBuilderFactory() throws ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        factory.setXIncludeAware(false);
+        factory.setExpandEntityReferences(false);
+        return factory;
+    }
+
+    /**
+     * Creates a new {@link XMLInputFactory} which does not support DTDs nor external entities
+     */
+    public static XMLInputFactory createXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Creates a new empty document
+     */
+    public static Document newDocument() throws ParserConfigurationException {
+        DocumentBuilder builder = acquireDocumentBuilder();
+        try {
+            return builder.newDocument();
+        } finally {
+            releaseDocumentBuilder(builder);
+        }
+    }
+
     public static Document parseDoc(File xmlFile)
             throws ParserConfigurationException,
             SAXException,
@@ -55,7 +115,7 @@ public class XmlUtils {
             throws ParserConfigurationException,
             SAXException,
             IOException {
-        return parseDoc(new ByteArrayInputStream(xml.getBytes()));
+        return parseDoc(new InputSource(new StringReader(xml)));
     }
 
 
@@ -64,17 +124,151 @@ public class XmlUtils {
             SAXException,
             IOException {
         try {
-            BufferedInputStream in = new BufferedInputStream(is);
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            InputSource source = new InputSource(in);
+            return parseDoc(new InputSource(new BufferedInputStream(is)));
+        } finally {
+            is.close();
+        }
+    }
+
+    public static Document parseDoc(InputSource source)
+            throws ParserConfigurationException,
+            SAXException,
+            IOException {
+        DocumentBuilder builder = acquireDocumentBuilder();
+        try {
             return builder.parse(source);
+        } finally {
+            releaseDocumentBuilder(builder);
+        }
+    }
+
+    /**
+     * Returns the builder of the current thread, taking it out of the thread local so that
+     * a nested parse on the same thread gets its own builder
+     */
+    private static DocumentBuilder acquireDocumentBuilder() throws ParserConfigurationException {
+        DocumentBuilder builder = DOCUMENT_BUILDERS.get();
+        if (builder != null) {
+            DOCUMENT_BUILDERS.set(null);
+            return builder;
+        }
+        synchronized (DOCUMENT_BUILDER_FACTORY) {
+            return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+        }
+    }
+
+    private static void releaseDocumentBuilder(DocumentBuilder builder) {
+        builder.reset();
+        DOCUMENT_BUILDERS.set(builder);
+    }
+
+    /**
+     * Creates a StAX reader on the given stream which does not support DTDs nor external entities
+     */
+    public static XMLStreamReader createXMLStreamReader(InputStream is) throws XMLStreamException {
+        synchronized (XML_INPUT_FACTORY) {
+            return XML_INPUT_FACTORY.createXMLStreamReader(is);
+        }
+    }
+
+    /**
+     * Streams the given document and invokes the handler with each element of the given local name, so that
+     * large documents can be processed without loading them in memory; only the current element and its children
+     * are turned into a DOM tree, so the handler can use the other methods of this class or an {@link XPathBuilder}
+     * on it. Elements nested in a matching element are not passed to the handler on their own.
+     * <p/>
+     * The stream is closed once the document has been read or the handler returns false to stop the iteration.
+     *
+     * @return the number of elements passed to the handler
+     */
+    public static int forEachElement(InputStream is, String localName, Function<Element, Boolean> handler)
+            throws ParserConfigurationException, XMLStreamException, IOException {
+        NullArgumentException.validateNotNull(localName, "Element name");
+        NullArgumentException.validateNotNull(handler, "Handler");
+        int count = 0;
+        try {
+            XMLStreamReader reader = createXMLStreamReader(is);
+            try {
+                Document document = newDocument();
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && localName.equals(reader.getLocalName())) {
+                        Element element = readElement(reader, document);
+                        Node previous = document.getDocumentElement();
+                        if (previous != null) {
+                            document.replaceChild(element, previous);
+                        } else {
+                            document.appendChild(element);
+                        }
+                        count++;
+                        if (Boolean.FALSE.equals(handler.apply(element))) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
         } finally {
             is.close();
         }
+        return count;
+    }
+
+    /**
+     * Reads the element the reader is positioned on, leaving the reader on its end tag
+     */
+    private static Element readElement(XMLStreamReader reader, Document document) throws XMLStreamException {
+        Element root = createElement(reader, document);
+        Node current = root;
+        while (current != null) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    current = current.appendChild(createElement(reader, document));
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    current = current == root ? null : current.getParentNode();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    current.appendChild(document.createTextNode(reader.getText()));
+                    break;
+                case XMLStreamConstants.CDATA:
+                    current.appendChild(document.createCDATASection(reader.getText()));
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    current.appendChild(document.createComment(reader.getText()));
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    current.appendChild(document.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return root;
+    }
+
+    private static Element createElement(XMLStreamReader reader, Document document) {
+        String elementNamespace = reader.getNamespaceURI();
+        Element element = document.createElementNS(Strings.isNullOrBlank(elementNamespace) ? null : elementNamespace,
+                qualifiedName(reader.getPrefix(), reader.getLocalName()));
+        for (int i = 0, size = reader.getNamespaceCount(); i < size; i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                    prefix == null || prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix,
+                    reader.getNamespaceURI(i));
+        }
+        for (int i = 0, size = reader.getAttributeCount(); i < size; i++) {
+            String namespace = reader.getAttributeNamespace(i);
+            element.setAttributeNS(Strings.isNullOrBlank(namespace) ? null : namespace,
+                    qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                    reader.getAttributeValue(i));
+        }
+        return element;
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
     }
 
     public static Element getElement(final Document doc, final String path) {
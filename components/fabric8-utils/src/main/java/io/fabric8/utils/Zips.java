@@ -43,8 +43,15 @@ public class Zips {
         createZipFile(log, sourceDir, outputZipFile, filter);
     }
 
+    /**
+     * Creates a zip file from the given source directory, deflating the files in parallel and keeping their permissions.
+     * Archives which would need zip64 extensions are written sequentially with {@link #zipDirectory}.
+     */
     public static void createZipFile(Logger log, File sourceDir, File outputZipFile, FileFilter filter) throws IOException {
         outputZipFile.getParentFile().mkdirs();
+        if (ParallelZips.createZipFile(log, sourceDir, outputZipFile, filter)) {
+            return;
+        }
         OutputStream os = new FileOutputStream(outputZipFile);
         ZipOutputStream zos = new ZipOutputStream(os);
         try {
@@ -103,17 +110,25 @@ public class Zips {
         return filter == null || filter.accept(f);
     }
 
+    /**
+     * Unzips the given ZIP file to the given directory, extracting the entries in parallel and restoring their permissions
+     */
+    public static void unzip(File zipFile, File toDir) throws IOException {
+        ParallelZips.unzip(zipFile, toDir);
+    }
+
     /**
      * Unzips the given input stream of a ZIP to the given directory
      */
     public static void unzip(InputStream in, File toDir) throws IOException {
         ZipInputStream zis = new ZipInputStream(new BufferedInputStream(in));
         try {
+            File root = toDir.getCanonicalFile();
             ZipEntry entry = zis.getNextEntry();
             while (entry != null) {
                 if (!entry.isDirectory()) {
                     String entryName = entry.getName();
-                    File toFile = new File(toDir, entryName);
+                    File toFile = resolveEntry(root, entryName);
                     toFile.getParentFile().mkdirs();
                     OutputStream os = new FileOutputStream(toFile);
                     try {
@@ -133,6 +148,17 @@ public class Zips {
         }
     }
 
+    /**
+     * Returns the file of the given entry in the directory, rejecting entries which would be extracted outside of it
+     */
+    static File resolveEntry(File canonicalDir, String entryName) throws IOException {
+        File file = new File(canonicalDir, entryName).getCanonicalFile();
+        if (!file.toPath().startsWith(canonicalDir.toPath())) {
+            throw new IOException("Zip entry " + entryName + " is outside of the target directory " + canonicalDir);
+        }
+        return file;
+    }
+
     static void copy(InputStream is, OutputStream os) throws IOException {
         try {
             byte[] b = new byte[4096];
@@ -0,0 +1,293 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A streaming JSON writer, writing a document token by token through an internal buffer.
+ * <p/>
+ * Call {@link #flush()} once the document has been written, to hand the buffered output to the writer.
+ */
+public class JsonGenerator implements Closeable, Flushable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Writer writer;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+
+    private int[] scopes = new int[32];
+    private int depth;
+
+    public JsonGenerator(Writer writer) {
+        this.writer = writer;
+        this.scopes[0] = EMPTY_DOCUMENT;
+    }
+
+    public JsonGenerator writeStartObject() throws IOException {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        append('{');
+        return this;
+    }
+
+    public JsonGenerator writeEndObject() throws IOException {
+        if (scopes[depth] != EMPTY_OBJECT && scopes[depth] != NONEMPTY_OBJECT) {
+            throw new IllegalStateException("Not at the end of an object");
+        }
+        depth--;
+        append('}');
+        return this;
+    }
+
+    public JsonGenerator writeStartArray() throws IOException {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        append('[');
+        return this;
+    }
+
+    public JsonGenerator writeEndArray() throws IOException {
+        if (scopes[depth] != EMPTY_ARRAY && scopes[depth] != NONEMPTY_ARRAY) {
+            throw new IllegalStateException("Not at the end of an array");
+        }
+        depth--;
+        append(']');
+        return this;
+    }
+
+    public JsonGenerator writeName(String name) throws IOException {
+        if (scopes[depth] == NONEMPTY_OBJECT) {
+            append(',');
+        } else if (scopes[depth] != EMPTY_OBJECT) {
+            throw new IllegalStateException("Names can only be written inside an object");
+        }
+        scopes[depth] = DANGLING_NAME;
+        appendString(name);
+        append(':');
+        return this;
+    }
+
+    public JsonGenerator writeString(String value) throws IOException {
+        if (value == null) {
+            return writeNull();
+        }
+        beforeValue();
+        appendString(value);
+        return this;
+    }
+
+    public JsonGenerator writeNumber(Number value) throws IOException {
+        if (value == null) {
+            return writeNull();
+        }
+        beforeValue();
+        append(value.toString());
+        return this;
+    }
+
+    public JsonGenerator writeNumber(long value) throws IOException {
+        beforeValue();
+        append(Long.toString(value));
+        return this;
+    }
+
+    public JsonGenerator writeNumber(double value) throws IOException {
+        beforeValue();
+        append(Double.toString(value));
+        return this;
+    }
+
+    public JsonGenerator writeBoolean(boolean value) throws IOException {
+        beforeValue();
+        append(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonGenerator writeNull() throws IOException {
+        beforeValue();
+        append("null");
+        return this;
+    }
+
+    /**
+     * Writes a whole object graph made of maps, collections, numbers, strings, booleans and null
+     *
+     * @throws IllegalArgumentException if the graph contains any other type of value
+     */
+    public JsonGenerator writeValue(Object value) throws IOException {
+        if (value instanceof Map) {
+            writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writeName((String) entry.getKey());
+                writeValue(entry.getValue());
+            }
+            writeEndObject();
+        } else if (value instanceof Collection) {
+            writeStartArray();
+            for (Iterator<?> it = ((Collection<?>) value).iterator(); it.hasNext(); ) {
+                writeValue(it.next());
+            }
+            writeEndArray();
+        } else if (value instanceof Number) {
+            writeNumber((Number) value);
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Boolean) {
+            writeBoolean((Boolean) value);
+        } else if (value == null) {
+            writeNull();
+        } else {
+            throw new IllegalArgumentException("Unsupported value: " + value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes the buffered output to the writer and flushes it
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        writer.close();
+    }
+
+    //
+    // Implementation
+    //
+
+    private void beforeValue() throws IOException {
+        switch (scopes[depth]) {
+            case EMPTY_DOCUMENT:
+                scopes[depth] = NONEMPTY_DOCUMENT;
+                break;
+            case EMPTY_ARRAY:
+                scopes[depth] = NONEMPTY_ARRAY;
+                break;
+            case NONEMPTY_ARRAY:
+                append(',');
+                break;
+            case DANGLING_NAME:
+                scopes[depth] = NONEMPTY_OBJECT;
+                break;
+            case NONEMPTY_DOCUMENT:
+                throw new IllegalStateException("A document can only have one top level value");
+            default:
+                throw new IllegalStateException("Expected a name before the value");
+        }
+    }
+
+    private void push(int scope) {
+        if (++depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+        }
+        scopes[depth] = scope;
+    }
+
+    private void appendString(String value) throws IOException {
+        append('"');
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escape = escape(c);
+            if (escape != null) {
+                append(value, start, i);
+                append(escape);
+                start = i + 1;
+            }
+        }
+        append(value, start, length);
+        append('"');
+    }
+
+    private static String escape(char c) {
+        switch (c) {
+            case '"':
+                return "\\\"";
+            case '\\':
+                return "\\\\";
+            case '\b':
+                return "\\b";
+            case '\f':
+                return "\\f";
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            case '\t':
+                return "\\t";
+            default:
+                if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+                    String hex = Integer.toHexString(c);
+                    return "\\u0000".substring(0, 6 - hex.length()) + hex;
+                }
+                return null;
+        }
+    }
+
+    private void append(char c) throws IOException {
+        if (pos == buffer.length) {
+            flushBuffer();
+        }
+        buffer[pos++] = c;
+    }
+
+    private void append(String s) throws IOException {
+        append(s, 0, s.length());
+    }
+
+    private void append(String s, int start, int end) throws IOException {
+        while (start < end) {
+            if (pos == buffer.length) {
+                flushBuffer();
+            }
+            int count = Math.min(end - start, buffer.length - pos);
+            s.getChars(start, start + count, buffer, pos);
+            pos += count;
+            start += count;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            writer.write(buffer, 0, pos);
+            pos = 0;
+        }
+    }
+}
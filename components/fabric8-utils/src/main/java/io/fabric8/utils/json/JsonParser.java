@@ -0,0 +1,529 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A streaming pull parser, reporting a JSON document as a sequence of {@link JsonToken}s.
+ * <p/>
+ * The input is read through an internal buffer, so there is no need to wrap the reader in a BufferedReader.
+ * Subtrees which are not needed can be skipped with {@link #skipChildren()} without materializing them,
+ * and the value at the current position can be materialized as maps and lists with {@link #readValue()}.
+ */
+public class JsonParser implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private int line = 1;
+    private int column;
+
+    private int[] scopes = new int[32];
+    private String[] pathNames = new String[32];
+    private int[] pathIndices = new int[32];
+    private int depth;
+
+    private final StringBuilder text = new StringBuilder();
+    private JsonToken token;
+    private boolean skipping;
+
+    public JsonParser(Reader reader) {
+        this.reader = reader;
+        this.scopes[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Creates a parser reading the stream as UTF-8, as required by RFC 7159
+     */
+    public JsonParser(InputStream is) {
+        this(new InputStreamReader(is, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the token of the last call to {@link #next()}
+     */
+    public JsonToken getToken() {
+        return token;
+    }
+
+    /**
+     * Moves to the next token of the document.
+     *
+     * @throws IOException if the document is not valid JSON
+     */
+    public JsonToken next() throws IOException {
+        int c;
+        switch (scopes[depth]) {
+            case EMPTY_DOCUMENT:
+                scopes[depth] = NONEMPTY_DOCUMENT;
+                return token = readValueToken(nextNonWhiteSpace());
+            case NONEMPTY_DOCUMENT:
+                if (nextNonWhiteSpace() != -1) {
+                    throw error("Unexpected character");
+                }
+                return token = JsonToken.END_DOCUMENT;
+            case EMPTY_ARRAY:
+                c = nextNonWhiteSpace();
+                if (c == ']') {
+                    depth--;
+                    return token = JsonToken.END_ARRAY;
+                }
+                scopes[depth] = NONEMPTY_ARRAY;
+                pathIndices[depth] = 0;
+                return token = readValueToken(c);
+            case NONEMPTY_ARRAY:
+                c = nextNonWhiteSpace();
+                if (c == ']') {
+                    depth--;
+                    return token = JsonToken.END_ARRAY;
+                } else if (c != ',') {
+                    throw expected("',' or ']'", c);
+                }
+                pathIndices[depth]++;
+                return token = readValueToken(nextNonWhiteSpace());
+            case EMPTY_OBJECT:
+                c = nextNonWhiteSpace();
+                if (c == '}') {
+                    depth--;
+                    return token = JsonToken.END_OBJECT;
+                }
+                return token = readName(c);
+            case NONEMPTY_OBJECT:
+                c = nextNonWhiteSpace();
+                if (c == '}') {
+                    depth--;
+                    return token = JsonToken.END_OBJECT;
+                } else if (c != ',') {
+                    throw expected("',' or '}'", c);
+                }
+                return token = readName(nextNonWhiteSpace());
+            case DANGLING_NAME:
+                c = nextNonWhiteSpace();
+                if (c != ':') {
+                    throw expected("':'", c);
+                }
+                scopes[depth] = NONEMPTY_OBJECT;
+                return token = readValueToken(nextNonWhiteSpace());
+            default:
+                throw new IllegalStateException("Unknown scope " + scopes[depth]);
+        }
+    }
+
+    /**
+     * Returns the name, string or number of the current token
+     */
+    public String getText() {
+        switch (token) {
+            case NAME:
+            case STRING:
+            case NUMBER:
+                return text.toString();
+            case TRUE:
+                return "true";
+            case FALSE:
+                return "false";
+            case NULL:
+                return "null";
+            default:
+                return null;
+        }
+    }
+
+    public double getDouble() {
+        if (token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Current token is not a number but " + token);
+        }
+        return Double.parseDouble(text.toString());
+    }
+
+    public boolean getBoolean() {
+        if (token != JsonToken.TRUE && token != JsonToken.FALSE) {
+            throw new IllegalStateException("Current token is not a boolean but " + token);
+        }
+        return token == JsonToken.TRUE;
+    }
+
+    /**
+     * Returns the nesting depth of the current token, top level values are at depth 0
+     */
+    public int getDepth() {
+        return token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY ? depth - 1 : depth;
+    }
+
+    /**
+     * Returns the location of the current token, like <tt>$.items[2].metadata</tt>
+     */
+    public String getPath() {
+        StringBuilder answer = new StringBuilder("$");
+        int last = token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY ? depth - 1 : depth;
+        for (int i = 1; i <= last; i++) {
+            switch (scopes[i]) {
+                case EMPTY_ARRAY:
+                case NONEMPTY_ARRAY:
+                    answer.append('[').append(pathIndices[i]).append(']');
+                    break;
+                default:
+                    if (pathNames[i] != null) {
+                        answer.append('.').append(pathNames[i]);
+                    }
+            }
+        }
+        return answer.toString();
+    }
+
+    /**
+     * Skips the children of the current object or array, so that the next token follows its end.
+     * Does nothing if the current token does not start an object or an array.
+     */
+    public void skipChildren() throws IOException {
+        if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) {
+            return;
+        }
+        skipping = true;
+        try {
+            int open = 1;
+            while (open > 0) {
+                switch (next()) {
+                    case START_OBJECT:
+                    case START_ARRAY:
+                        open++;
+                        break;
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        open--;
+                        break;
+                    default:
+                }
+            }
+        } finally {
+            skipping = false;
+        }
+    }
+
+    /**
+     * Materializes the value starting at the current token: objects as maps, arrays as collections,
+     * numbers as doubles, strings, booleans or null. Afterwards the current token is the last one of the value.
+     */
+    public Object readValue() throws IOException {
+        switch (token) {
+            case START_OBJECT:
+                Map<String, Object> object = new HashMap<String, Object>();
+                while (next() != JsonToken.END_OBJECT) {
+                    String name = text.toString();
+                    next();
+                    object.put(name, readValue());
+                }
+                return object;
+            case START_ARRAY:
+                Collection<Object> array = new ArrayList<Object>();
+                while (next() != JsonToken.END_ARRAY) {
+                    array.add(readValue());
+                }
+                return array;
+            case STRING:
+                return text.toString();
+            case NUMBER:
+                return Double.parseDouble(text.toString());
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case NULL:
+                return null;
+            default:
+                throw new IllegalStateException("Current token is not a value but " + token);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    //
+    // Implementation
+    //
+
+    private JsonToken readName(int c) throws IOException {
+        if (c != '"') {
+            throw expected("name", c);
+        }
+        readString();
+        scopes[depth] = DANGLING_NAME;
+        pathNames[depth] = skipping ? null : text.toString();
+        return JsonToken.NAME;
+    }
+
+    private JsonToken readValueToken(int c) throws IOException {
+        switch (c) {
+            case '{':
+                push(EMPTY_OBJECT);
+                return JsonToken.START_OBJECT;
+            case '[':
+                push(EMPTY_ARRAY);
+                return JsonToken.START_ARRAY;
+            case '"':
+                readString();
+                return JsonToken.STRING;
+            case 't':
+                readLiteral("rue");
+                return JsonToken.TRUE;
+            case 'f':
+                readLiteral("alse");
+                return JsonToken.FALSE;
+            case 'n':
+                readLiteral("ull");
+                return JsonToken.NULL;
+            case '-':
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                readNumber(c);
+                return JsonToken.NUMBER;
+            default:
+                throw expected("value", c);
+        }
+    }
+
+    private void push(int scope) {
+        if (++depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+            pathNames = Arrays.copyOf(pathNames, depth * 2);
+            pathIndices = Arrays.copyOf(pathIndices, depth * 2);
+        }
+        scopes[depth] = scope;
+        pathNames[depth] = null;
+        pathIndices[depth] = 0;
+    }
+
+    private void readLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            int c = read();
+            if (c != rest.charAt(i)) {
+                throw expected("'" + rest.charAt(i) + "'", c);
+            }
+        }
+    }
+
+    /**
+     * Reads the string after the opening quote into the text, or just consumes it while skipping
+     */
+    private void readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw error("Unexpected end of input");
+            }
+            // copy the plain characters in the buffer in one go
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == '"' || c == '\\' || c < 0x20) {
+                    break;
+                }
+                pos++;
+            }
+            if (!skipping) {
+                text.append(buffer, start, pos - start);
+            }
+            column += pos - start;
+            if (pos == limit) {
+                continue;
+            }
+            int c = read();
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                readEscape();
+            } else {
+                throw error("Expected valid string character");
+            }
+        }
+    }
+
+    private void readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '/':
+            case '\\':
+                text.append((char) c);
+                break;
+            case 'b':
+                text.append('\b');
+                break;
+            case 'f':
+                text.append('\f');
+                break;
+            case 'n':
+                text.append('\n');
+                break;
+            case 'r':
+                text.append('\r');
+                break;
+            case 't':
+                text.append('\t');
+                break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    c = read();
+                    int digit = Character.digit(c, 16);
+                    if (c > 'f' || digit < 0) {
+                        throw expected("hexadecimal digit", c);
+                    }
+                    value = (value << 4) + digit;
+                }
+                text.append((char) value);
+                break;
+            default:
+                throw expected("valid escape sequence", c);
+        }
+    }
+
+    private void readNumber(int first) throws IOException {
+        text.setLength(0);
+        int c = first;
+        if (c == '-') {
+            text.append('-');
+            c = read();
+        }
+        if (!isDigit(c)) {
+            throw expected("digit", c);
+        }
+        text.append((char) c);
+        if (c != '0') {
+            appendDigits();
+        }
+        if (peek() == '.') {
+            text.append((char) read());
+            if (!isDigit(peek())) {
+                throw expected("digit", read());
+            }
+            appendDigits();
+        }
+        if (peek() == 'e' || peek() == 'E') {
+            text.append((char) read());
+            if (peek() == '+' || peek() == '-') {
+                text.append((char) read());
+            }
+            if (!isDigit(peek())) {
+                throw expected("digit", read());
+            }
+            appendDigits();
+        }
+    }
+
+    private void appendDigits() throws IOException {
+        while (isDigit(peek())) {
+            text.append((char) read());
+        }
+    }
+
+    private int nextNonWhiteSpace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[pos++];
+            if (c == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+                if (c != ' ' && c != '\t' && c != '\r') {
+                    return c;
+                }
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        char c = buffer[pos++];
+        if (c == '\n') {
+            line++;
+            column = 0;
+        } else {
+            column++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    private boolean fill() throws IOException {
+        int count = reader.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            pos = limit = 0;
+            return false;
+        }
+        pos = 0;
+        limit = count;
+        return true;
+    }
+
+    private IOException expected(String expected, int c) {
+        if (c == -1) {
+            return error("Unexpected end of input");
+        }
+        return error("Expected " + expected);
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at " + line + ":" + column);
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding large secret payloads, comparing the legacy whole array encoding of
+ * {@link Base64Encoder} with the streams of {@link Base64Codec}, which do not hold the payload in memory.
+ * The random payload is 64 MB by default, or as many MB as the first argument, and is also written to a
+ * temporary file to time encoding straight from disk.
+ */
+public class Base64Benchmark {
+
+    public static void main(String[] args) throws Exception {
+        int size = (args.length > 0 ? Integer.parseInt(args[0]) : 64) * 1024 * 1024;
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        File file = File.createTempFile("base64-benchmark", ".bin");
+        try {
+            java.nio.file.Files.write(file.toPath(), data);
+            byte[] encoded = Base64Codec.BASIC.encode(data);
+            for (int i = 0; i < 5; i++) {
+                long start = System.nanoTime();
+                String legacy = new String(Base64CodecTest.legacyEncode(data), StandardCharsets.ISO_8859_1);
+                long legacyEncoded = System.nanoTime();
+                String text = Base64Codec.BASIC.encodeToString(data);
+                long arrayEncoded = System.nanoTime();
+                long streamed;
+                InputStream in = new FileInputStream(file);
+                try {
+                    streamed = Base64Codec.BASIC.encode(in, new NullOutputStream());
+                } finally {
+                    in.close();
+                }
+                long streamEncoded = System.nanoTime();
+                Base64Encoder.decode(legacy);
+                long stringDecoded = System.nanoTime();
+                OutputStream out = Base64Codec.BASIC.decodingStream(new NullOutputStream());
+                out.write(encoded);
+                out.close();
+                long streamDecoded = System.nanoTime();
+                if (!legacy.equals(text) || streamed != encoded.length) {
+                    throw new IllegalStateException("Encodings differ");
+                }
+                System.out.printf("encode: legacy %s, array %s, file stream %s - decode: string %s, stream %s%n",
+                        throughput(size, legacyEncoded - start), throughput(size, arrayEncoded - legacyEncoded),
+                        throughput(size, streamEncoded - arrayEncoded), throughput(size, stringDecoded - streamEncoded),
+                        throughput(size, streamDecoded - stringDecoded));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static String throughput(long size, long nanos) {
+        return String.format("%.1f MB/s", size / (1024.0 * 1024) / (nanos / (double) TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+
+        @Override
+        public void write(int b) {
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class Base64CodecTest {
+
+    private static final int[] SIZES = {0, 1, 2, 3, 4, 56, 57, 58, 100, 10943, 10944, 10945, 100000};
+
+    @Test
+    public void compatibilityTest() throws Exception {
+        Random random = new Random(42);
+        for (int size : SIZES) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            byte[] legacy = legacyEncode(data);
+            assertArrayEquals("encode " + size, legacy, Base64Encoder.encode(data));
+            assertArrayEquals("decode " + size, data, Base64Encoder.decode(legacy));
+            assertArrayEquals("codec " + size, data, Base64Codec.BASIC.decode(Base64Codec.BASIC.encode(data)));
+
+            String text = new String(legacy, StandardCharsets.ISO_8859_1);
+            String latin = new String(data, StandardCharsets.ISO_8859_1);
+            assertEquals(latin, Base64Encoder.decode(text));
+            // line breaks are ignored when decoding
+            assertEquals(latin, Base64Encoder.decode(new String(Base64Codec.MIME.encode(data), StandardCharsets.ISO_8859_1)));
+        }
+        assertEquals("Zm9vYmFy", Base64Encoder.encode("foobar"));
+        assertEquals("foobar", Base64Encoder.decode("Zm9v\r\nYmFy\n"));
+    }
+
+    @Test
+    public void urlSafeTest() throws Exception {
+        byte[] data = {(byte) 0xfb, (byte) 0xff, (byte) 0xbf};
+        assertEquals("+/+/", Base64Codec.BASIC.encodeToString(data));
+        assertEquals("-_-_", Base64Codec.URL_SAFE.encodeToString(data));
+        assertArrayEquals(data, Base64Codec.URL_SAFE.decode("-_-_"));
+        assertEquals("Zm8", Base64Codec.URL_SAFE.withoutPadding().encodeToString("fo"));
+        assertEquals("fo", Base64Codec.URL_SAFE.decodeToString("Zm8"));
+        try {
+            Base64Codec.BASIC.decode("-_-_");
+            fail("Should have rejected the URL safe alphabet");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void byteBufferTest() throws Exception {
+        ByteBuffer data = ByteBuffer.allocateDirect(5);
+        data.put("fooba".getBytes(StandardCharsets.US_ASCII)).flip();
+        ByteBuffer encoded = Base64Codec.BASIC.encode(data);
+        assertEquals(0, data.remaining());
+        assertEquals("Zm9vYmE=", StandardCharsets.US_ASCII.decode(encoded.duplicate()).toString());
+        ByteBuffer decoded = Base64Codec.BASIC.decode(encoded);
+        assertEquals("fooba", StandardCharsets.US_ASCII.decode(decoded).toString());
+    }
+
+    @Test
+    public void streamingTest() throws Exception {
+        Random random = new Random(7);
+        Base64Codec[] codecs = {Base64Codec.BASIC, Base64Codec.URL_SAFE, Base64Codec.MIME, Base64Codec.BASIC.withoutPadding()};
+        Base64.Encoder[] encoders = {Base64.getEncoder(), Base64.getUrlEncoder(), Base64.getMimeEncoder(), Base64.getEncoder().withoutPadding()};
+        for (int c = 0; c < codecs.length; c++) {
+            Base64Codec codec = codecs[c];
+            for (int size : SIZES) {
+                byte[] data = new byte[size];
+                random.nextBytes(data);
+                byte[] expected = encoders[c].encode(data);
+
+                // raw stream to encoded stream, read in odd sized chunks
+                assertArrayEquals(codec + " " + size, expected, readFully(codec.encodingStream(new ByteArrayInputStream(data)), 1 + random.nextInt(100)));
+
+                // encoded stream to raw stream, written in odd sized chunks
+                ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+                writeFully(codec.decodingStream(decoded), expected, 1 + random.nextInt(100));
+                assertArrayEquals(codec + " " + size, data, decoded.toByteArray());
+
+                // the java.util.Base64 stream wrappers
+                ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                writeFully(codec.wrap(encoded), data, 1 + random.nextInt(100));
+                assertArrayEquals(expected, encoded.toByteArray());
+                assertArrayEquals(data, readFully(codec.wrap(new ByteArrayInputStream(expected)), 1 + random.nextInt(100)));
+
+                ByteArrayOutputStream copy = new ByteArrayOutputStream();
+                assertEquals(expected.length, codec.encode(new ByteArrayInputStream(data), copy));
+                assertArrayEquals(expected, copy.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void decodingStreamRejectsInvalidInputTest() throws Exception {
+        OutputStream out = Base64Codec.BASIC.decodingStream(new ByteArrayOutputStream());
+        out.write("Zm9v*mFy".getBytes(StandardCharsets.US_ASCII));
+        try {
+            out.close();
+            fail("Should have rejected the invalid character");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int chunk) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[chunk];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static void writeFully(OutputStream out, byte[] data, int chunk) throws Exception {
+        for (int i = 0; i < data.length; i += chunk) {
+            out.write(data, i, Math.min(chunk, data.length - i));
+        }
+        out.close();
+    }
+
+    private static final byte[] ALPHASET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/=".getBytes();
+
+    /**
+     * The encoding algorithm {@link Base64Encoder} used before delegating to {@link Base64Codec}
+     */
+    static byte[] legacyEncode(byte[] dData) {
+        byte[] eData = new byte[((dData.length + 2) / 3) * 4];
+        int eIndex = 0;
+        for (int i = 0; i < dData.length; i += 3) {
+            int d1 = dData[i];
+            int d2 = 0;
+            int d3 = 0;
+            int pad = 0;
+            if ((i + 1) < dData.length) {
+                d2 = dData[i + 1];
+                if ((i + 2) < dData.length) {
+                    d3 = dData[i + 2];
+                } else {
+                    pad = 1;
+                }
+            } else {
+                pad = 2;
+            }
+            eData[eIndex++] = ALPHASET[(d1 & 252) >> 2];
+            eData[eIndex++] = ALPHASET[(d1 & 3) << 4 | (d2 & 240) >> 4];
+            eData[eIndex++] = (pad < 2) ? ALPHASET[(d2 & 15) << 2 | (d3 & 192) >> 6] : (byte) '=';
+            eData[eIndex++] = (pad < 1) ? ALPHASET[(d3 & 63)] : (byte) '=';
+        }
+        return eData;
+    }
+}
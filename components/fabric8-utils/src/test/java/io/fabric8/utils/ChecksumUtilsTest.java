@@ -16,14 +16,27 @@
 package io.fabric8.utils;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
 
 import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class ChecksumUtilsTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void checksumTest() throws IOException {
         
@@ -44,5 +57,128 @@ public class ChecksumUtilsTest {
         }
 
     }
-    
+
+    @Test
+    public void checksumFileTest() throws IOException {
+        byte[] data = new byte[1024 * 1024 + 17];
+        new Random(1).nextBytes(data);
+        File large = write("large.bin", data);
+        File small = write("small.txt", "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertEquals(ChecksumUtils.checksum(new FileInputStream(large)), ChecksumUtils.checksumFile(large));
+        Assert.assertEquals(0x414fa339, ChecksumUtils.checksumFile(small));
+        // the first 8 bytes of the well known SHA-256 digest
+        Assert.assertEquals(0xd7a8fbb307d78094L, ChecksumUtils.checksumFile(small, "SHA-256"));
+
+        Map<File, Long> checksums = ChecksumUtils.checksumFiles(Arrays.asList(large, small));
+        Assert.assertEquals(Arrays.asList(large, small), Arrays.asList(checksums.keySet().toArray()));
+        Assert.assertEquals(Long.valueOf(0x414fa339), checksums.get(small));
+
+        try {
+            ChecksumUtils.checksumFile(small, "NOPE");
+            Assert.fail("Expected IllegalArgumentException but nothing happened");
+        } catch (IllegalArgumentException e) {
+
+        }
+    }
+
+    @Test
+    public void checksumCacheTest() throws IOException {
+        File dir = folder.newFolder("tree");
+        File a = write("tree/a.txt", "aaaa".getBytes(StandardCharsets.UTF_8));
+        File b = write("tree/sub/b.txt", "bbbb".getBytes(StandardCharsets.UTF_8));
+        long modified = System.currentTimeMillis() - 60000;
+        a.setLastModified(modified);
+        b.setLastModified(modified);
+        File cacheFile = new File(dir, ChecksumCache.CACHE_FILE);
+
+        ChecksumCache cache = ChecksumCache.load(cacheFile);
+        Map<File, Long> checksums = cache.checksumTree(dir);
+        Assert.assertEquals(2, checksums.size());
+        Assert.assertEquals(Long.valueOf(ChecksumUtils.checksumFile(a)), checksums.get(a));
+        cache.save();
+        Assert.assertTrue(cacheFile.isFile());
+
+        // same size and modification time so the cached checksum is used
+        long original = checksums.get(a);
+        write("tree/a.txt", "cccc".getBytes(StandardCharsets.UTF_8));
+        a.setLastModified(modified);
+        cache = ChecksumCache.load(cacheFile);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(original, cache.checksum(a));
+        Assert.assertEquals(2, cache.checksumTree(dir).size());
+
+        // a changed modification time invalidates the entry
+        a.setLastModified(modified + 2000);
+        Assert.assertEquals(ChecksumUtils.checksumFile(a), cache.checksum(a));
+        Assert.assertNotEquals(original, cache.checksum(a));
+
+        // another algorithm ignores the cached checksums
+        Assert.assertEquals(ChecksumUtils.checksumFile(b, "MD5"), ChecksumCache.load(cacheFile, "MD5").checksum(b));
+
+        b.delete();
+        cache.prune();
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void checksumCacheAlgorithmTest() throws IOException {
+        File cacheFile = new File(folder.getRoot(), ChecksumCache.CACHE_FILE);
+        boolean crc32c = ChecksumUtils.getEffectiveAlgorithm("CRC32C").equals("CRC32C");
+        Assert.assertEquals(crc32c ? "CRC32C" : "CRC32", new ChecksumCache(cacheFile, "CRC32C").getAlgorithm());
+        Assert.assertEquals("SHA-256", new ChecksumCache(cacheFile, "SHA-256").getAlgorithm());
+    }
+
+    @Test
+    public void installedChecksumCacheTest() throws IOException {
+        File dir = folder.newFolder("installed");
+        File a = write("installed/a.txt", "aaaa".getBytes(StandardCharsets.UTF_8));
+        File b = write("installed/b.txt", "bbbb".getBytes(StandardCharsets.UTF_8));
+        long modified = System.currentTimeMillis() - 60000;
+        a.setLastModified(modified);
+        b.setLastModified(modified);
+        Map<File, Long> checksums = ChecksumUtils.checksumFiles(Arrays.asList(a, b));
+        ChecksumUtils.saveInstalledChecksumCache(dir, checksums);
+        Assert.assertEquals(checksums, ChecksumUtils.loadInstalledChecksumCache(dir));
+
+        // a file changed since the save is no longer trusted
+        write("installed/a.txt", "changed".getBytes(StandardCharsets.UTF_8));
+        a.setLastModified(modified);
+        Map<File, Long> loaded = ChecksumUtils.loadInstalledChecksumCache(dir);
+        Assert.assertEquals(1, loaded.size());
+        Assert.assertEquals(checksums.get(b), loaded.get(b));
+    }
+
+    @Test
+    public void installedChecksumCacheOfFreshFilesTest() throws IOException {
+        File dir = folder.newFolder("fresh");
+        File a = write("fresh/a.txt", "aaaa".getBytes(StandardCharsets.UTF_8));
+        File b = write("fresh/b.txt", "bbbb".getBytes(StandardCharsets.UTF_8));
+        // saved right after the files were written, as after an install
+        Map<File, Long> checksums = ChecksumUtils.checksumFiles(Arrays.asList(a, b));
+        ChecksumUtils.saveInstalledChecksumCache(dir, checksums);
+        Assert.assertEquals(checksums, ChecksumUtils.loadInstalledChecksumCache(dir));
+
+        // a change which keeps the size and modification time is caught by checksumming the racy file again
+        FileTime modified = java.nio.file.Files.getLastModifiedTime(a.toPath());
+        write("fresh/a.txt", "AAAA".getBytes(StandardCharsets.UTF_8));
+        java.nio.file.Files.setLastModifiedTime(a.toPath(), modified);
+        Map<File, Long> loaded = ChecksumUtils.loadInstalledChecksumCache(dir);
+        Assert.assertEquals(1, loaded.size());
+        Assert.assertEquals(checksums.get(b), loaded.get(b));
+    }
+
+    @Test
+    public void checksumFileReportingNoSizeTest() throws IOException {
+        File cmdline = new File("/proc/self/cmdline");
+        Assume.assumeTrue(cmdline.isFile() && cmdline.length() == 0);
+        Assert.assertEquals(ChecksumUtils.checksum(new FileInputStream(cmdline)), ChecksumUtils.checksumFile(cmdline, "CRC32"));
+    }
+
+    private File write(String name, byte[] data) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        file.getParentFile().mkdirs();
+        java.nio.file.Files.write(file.toPath(), data);
+        return file;
+    }
 }
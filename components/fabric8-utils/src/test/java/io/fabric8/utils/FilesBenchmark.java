@@ -0,0 +1,183 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Compares the tree operations of {@link Files} with the recursion over {@link File#listFiles()} they used to do,
+ * on a generated tree of 120000 files spread over directories of {@link #FILES_PER_DIRECTORY}. A smaller tree,
+ * for a quick run, can be asked for with the first argument.
+ */
+public class FilesBenchmark {
+
+    private static final int FILES_PER_DIRECTORY = 20;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 120000;
+        final File root = java.nio.file.Files.createTempDirectory("files-benchmark").toFile();
+        try {
+            final File tree = new File(root, "tree");
+            createTree(tree, count);
+            final Filter<File> filter = new Filter<File>() {
+                @Override
+                public boolean matches(File file) {
+                    return file.getName().endsWith("7.txt");
+                }
+            };
+            for (int i = 0; i < 3; i++) {
+                run("recursiveList (legacy)", new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return legacyRecursiveList(tree).size();
+                    }
+                });
+                run("recursiveList", new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return Files.recursiveList(tree, null).size();
+                    }
+                });
+                run("findRecursive (legacy)", new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        Set<File> answer = new HashSet<>();
+                        legacyFindRecursive(tree, filter, answer);
+                        return answer.size();
+                    }
+                });
+                run("findRecursive", new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return Files.findRecursive(tree, filter).size();
+                    }
+                });
+                run("walkTree (parallel)", new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        final AtomicInteger answer = new AtomicInteger();
+                        Files.walkTree(tree, false, true, new Files.TreeVisitor() {
+                            @Override
+                            public boolean visit(Path path, BasicFileAttributes attributes) {
+                                answer.incrementAndGet();
+                                return true;
+                            }
+                        });
+                        return answer.get();
+                    }
+                });
+                run("streamTree", new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        Stream<Path> stream = Files.streamTree(tree, false);
+                        try {
+                            return stream.count();
+                        } finally {
+                            stream.close();
+                        }
+                    }
+                });
+            }
+            final File copy1 = new File(root, "copy1");
+            final File copy2 = new File(root, "copy2");
+            createTree(copy1, count);
+            createTree(copy2, count);
+            run("recursiveDelete (legacy)", new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return legacyRecursiveDelete(copy1);
+                }
+            });
+            run("recursiveDelete", new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return Files.recursiveDelete(copy2);
+                }
+            });
+        } finally {
+            Files.recursiveDelete(root);
+        }
+    }
+
+    private static void run(String name, Callable<Object> call) throws Exception {
+        long start = System.nanoTime();
+        Object result = call.call();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-26s %8d ms (%s)%n", name, TimeUnit.NANOSECONDS.toMillis(elapsed), result);
+    }
+
+    private static void createTree(File dir, int count) throws IOException {
+        int created = 0;
+        for (int d = 0; created < count; d++) {
+            File child = new File(dir, "d" + (d % 10) + "/d" + (d / 10 % 10) + "/d" + d);
+            child.mkdirs();
+            for (int f = 0; f < FILES_PER_DIRECTORY && created < count; f++, created++) {
+                new File(child, "file" + f + ".txt").createNewFile();
+            }
+        }
+    }
+
+    private static Set<File> legacyRecursiveList(File root) {
+        Set<File> result = new HashSet<>();
+        result.add(root);
+        if (root.isDirectory()) {
+            for (File child : root.listFiles()) {
+                result.addAll(legacyRecursiveList(child));
+            }
+        }
+        return result;
+    }
+
+    private static void legacyFindRecursive(File file, Filter<File> filter, Collection<File> collection) {
+        if (filter.matches(file)) {
+            collection.add(file);
+        }
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files != null) {
+                for (File child : files) {
+                    legacyFindRecursive(child, filter, collection);
+                }
+            }
+        }
+    }
+
+    private static int legacyRecursiveDelete(File file) {
+        int answer = 0;
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files != null) {
+                for (File child : files) {
+                    answer += legacyRecursiveDelete(child);
+                }
+            }
+        }
+        if (file.delete()) {
+            answer += 1;
+        }
+        return answer;
+    }
+}
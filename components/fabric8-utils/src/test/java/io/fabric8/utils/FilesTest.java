@@ -18,15 +18,30 @@ package io.fabric8.utils;
 
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class FilesTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void normalizePathTest() {
 
@@ -49,5 +64,162 @@ public class FilesTest {
         Assert.assertEquals(testString, Files.toString(stream, Charset.forName("UTF-8")));
         
     }
-    
+
+    @Test
+    public void recursiveListTest() throws IOException {
+        File root = createTree();
+        symlink(new File(root, "a/loop"), root);
+
+        Set<File> all = Files.recursiveList(root, null);
+        Assert.assertEquals(9, all.size());
+        Assert.assertTrue(all.contains(new File(root, "a/loop")));
+        Assert.assertFalse(all.contains(new File(root, "a/loop/a")));
+
+        Set<File> filtered = Files.recursiveList(root, new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return !name.equals("b");
+            }
+        });
+        Assert.assertEquals(5, filtered.size());
+        Assert.assertFalse(filtered.contains(new File(root, "a/b/3.txt")));
+
+        Set<File> texts = Files.findRecursive(root, new Filter<File>() {
+            @Override
+            public boolean matches(File file) {
+                return file.getName().endsWith(".txt");
+            }
+        });
+        Assert.assertEquals(3, texts.size());
+    }
+
+    @Test
+    public void walkTreeTest() throws IOException {
+        File root = createTree();
+        final AtomicInteger count = new AtomicInteger();
+        Files.walkTree(root, false, true, new Files.TreeVisitor() {
+            @Override
+            public boolean visit(Path path, BasicFileAttributes attributes) {
+                count.incrementAndGet();
+                return true;
+            }
+        });
+        Assert.assertEquals(8, count.get());
+
+        Stream<Path> stream = Files.streamTree(root, false);
+        try {
+            Iterator<Path> iterator = stream.iterator();
+            Assert.assertEquals(root.toPath(), iterator.next());
+            int files = 1;
+            while (iterator.hasNext()) {
+                Assert.assertTrue(iterator.next().startsWith(root.toPath()));
+                files++;
+            }
+            Assert.assertEquals(8, files);
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void recursiveDeleteTest() throws IOException {
+        File root = createTree();
+        File outside = folder.newFolder("outside");
+        File kept = new File(outside, "kept.txt");
+        Files.writeToFile(kept, new byte[]{1});
+        symlink(new File(root, "a/outside"), outside);
+
+        Files.recursiveDelete(root, new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return !file.getName().equals("3.txt");
+            }
+        });
+        Assert.assertTrue(new File(root, "a/b/3.txt").exists());
+        Assert.assertFalse(new File(root, "1.txt").exists());
+
+        Assert.assertEquals(4, Files.recursiveDelete(root));
+        Assert.assertFalse(root.exists());
+        Assert.assertTrue(kept.exists());
+    }
+
+    @Test
+    public void copyTest() throws IOException {
+        File source = createTree();
+        File target = new File(folder.getRoot(), "copy");
+        Files.copy(source, target);
+        Assert.assertArrayEquals(new byte[]{4}, Files.readBytes(new File(target, "a/b/c/4.bin")));
+
+        File file = new File(folder.getRoot(), "copy.bin");
+        java.io.FileInputStream in = new java.io.FileInputStream(new File(source, "1.txt"));
+        Files.copy(in, new java.io.FileOutputStream(file));
+        Assert.assertArrayEquals(new byte[]{1}, Files.readBytes(file));
+    }
+
+    @Test
+    public void copyFileReportingNoSizeTest() throws IOException {
+        // the files of /proc report a size of 0, like pipes, so they cannot be copied with transferTo alone
+        File status = new File("/proc/self/status");
+        Assume.assumeTrue(status.isFile() && status.length() == 0);
+
+        File target = new File(folder.getRoot(), "status");
+        Files.copy(status, target);
+        Assert.assertTrue(Files.toString(target).startsWith("Name:"));
+
+        File streamed = new File(folder.getRoot(), "streamed");
+        Files.copy(new java.io.FileInputStream(status), new java.io.FileOutputStream(streamed));
+        Assert.assertTrue(Files.toString(streamed).startsWith("Name:"));
+    }
+
+    @Test
+    public void syncTreeTest() throws IOException {
+        File source = createTree();
+        File target = new File(folder.getRoot(), "target");
+        Assert.assertEquals(4, Files.syncTree(source, target));
+        Assert.assertArrayEquals(new byte[]{3}, Files.readBytes(new File(target, "a/b/3.txt")));
+        Assert.assertEquals(new File(source, "a/b/3.txt").lastModified(), new File(target, "a/b/3.txt").lastModified());
+        Assert.assertEquals(0, Files.syncTree(source, target));
+
+        // changed content with the same size and modification time is only found by checksum
+        File changed = new File(target, "a/2.txt");
+        long modified = changed.lastModified();
+        Files.writeToFile(changed, new byte[]{9});
+        changed.setLastModified(modified);
+        Assert.assertEquals(0, Files.syncTree(source, target));
+        Assert.assertEquals(1, Files.syncTree(source, target, Files.SyncOption.CHECKSUM));
+        Assert.assertArrayEquals(new byte[]{2}, Files.readBytes(changed));
+
+        // a modified source file, an orphan file and an orphan directory
+        Files.writeToFile(new File(source, "1.txt"), new byte[]{1, 1});
+        Files.writeToFile(new File(target, "orphan.txt"), new byte[]{0});
+        Files.writeToFile(new File(target, "orphans/orphan.txt"), new byte[]{0});
+        Assert.assertEquals(1, Files.syncTree(source, target));
+        Assert.assertTrue(new File(target, "orphan.txt").exists());
+        Assert.assertEquals(3, Files.syncTree(source, target, Files.SyncOption.DELETE));
+        Assert.assertFalse(new File(target, "orphan.txt").exists());
+        Assert.assertFalse(new File(target, "orphans").exists());
+        Assert.assertArrayEquals(new byte[]{1, 1}, Files.readBytes(new File(target, "1.txt")));
+
+        File linked = new File(folder.getRoot(), "linked");
+        Assert.assertEquals(4, Files.syncTree(source, linked, Files.SyncOption.HARD_LINK));
+        Assert.assertArrayEquals(new byte[]{4}, Files.readBytes(new File(linked, "a/b/c/4.bin")));
+        Assert.assertEquals(0, Files.syncTree(source, linked, Files.SyncOption.HARD_LINK));
+    }
+
+    private File createTree() throws IOException {
+        File root = folder.newFolder("root");
+        Files.writeToFile(new File(root, "1.txt"), new byte[]{1});
+        Files.writeToFile(new File(root, "a/2.txt"), new byte[]{2});
+        Files.writeToFile(new File(root, "a/b/3.txt"), new byte[]{3});
+        Files.writeToFile(new File(root, "a/b/c/4.bin"), new byte[]{4});
+        return root;
+    }
+
+    private static void symlink(File link, File target) throws IOException {
+        try {
+            java.nio.file.Files.createSymbolicLink(link.toPath(), target.toPath());
+        } catch (UnsupportedOperationException e) {
+            Assume.assumeNoException(e);
+        }
+    }
 }
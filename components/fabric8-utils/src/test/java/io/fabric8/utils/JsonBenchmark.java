@@ -0,0 +1,125 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import io.fabric8.utils.json.JsonReader;
+import io.fabric8.utils.json.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading, path extraction and writing of a generated multi-megabyte document,
+ * like a large list of kubernetes resources. Each operation is timed over {@link #ITERATIONS} runs after
+ * {@link #WARMUP} unmeasured ones; the first argument changes the number of items (20000 by default).
+ */
+public class JsonBenchmark {
+
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final Object document = createDocument(items);
+        StringWriter out = new StringWriter();
+        JsonWriter.write(out, document);
+        final String json = out.toString();
+        final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        final String path = "items[" + (items - 1) + "].metadata.name";
+        System.out.printf("Document of %d items, %d KB%n", items, bytes.length / 1024);
+
+        run("JsonReader.read(Reader)", new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return JsonReader.read(new StringReader(json));
+            }
+        });
+        run("JsonReader.read(InputStream)", new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return JsonReader.read(new ByteArrayInputStream(bytes));
+            }
+        });
+        run("JsonReader.read(InputStream, path)", new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return JsonReader.read(new ByteArrayInputStream(bytes), path);
+            }
+        });
+        run("JsonWriter.write", new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length);
+                OutputStreamWriter writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8);
+                JsonWriter.write(writer, document);
+                writer.flush();
+                return buffer;
+            }
+        });
+    }
+
+    private static void run(String name, Callable<Object> call) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            call.call();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.call();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-36s %8.2f ms/op%n", name, (double) elapsed / ITERATIONS / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static Object createDocument(int count) {
+        List<Object> items = new ArrayList<Object>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> labels = new HashMap<String, Object>();
+            labels.put("app", "app-" + (i % 100));
+            labels.put("version", "1.0." + i);
+            Map<String, Object> metadata = new HashMap<String, Object>();
+            metadata.put("name", "pod-" + i);
+            metadata.put("namespace", "default");
+            metadata.put("labels", labels);
+            metadata.put("annotations", new HashMap<String, Object>());
+            Map<String, Object> container = new HashMap<String, Object>();
+            container.put("image", "fabric8/app:1.0." + i);
+            container.put("args", Arrays.asList("--port", "8080", "--description=\"quoted\"\tvalue"));
+            container.put("ports", Arrays.asList(8080, 8778, 9779));
+            Map<String, Object> item = new HashMap<String, Object>();
+            item.put("kind", "Pod");
+            item.put("metadata", metadata);
+            item.put("containers", Arrays.asList(container));
+            item.put("ready", i % 2 == 0);
+            item.put("restarts", i * 1.5);
+            items.add(item);
+        }
+        Map<String, Object> document = new HashMap<String, Object>();
+        document.put("kind", "List");
+        document.put("items", items);
+        return document;
+    }
+}
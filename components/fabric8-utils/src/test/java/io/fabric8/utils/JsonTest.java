@@ -0,0 +1,167 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import io.fabric8.utils.json.JsonGenerator;
+import io.fabric8.utils.json.JsonParser;
+import io.fabric8.utils.json.JsonReader;
+import io.fabric8.utils.json.JsonToken;
+import io.fabric8.utils.json.JsonWriter;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonTest {
+
+    private static final String DOCUMENT = "{\"kind\": \"List\", \"items\": [\n"
+            + "  {\"metadata\": {\"name\": \"a\", \"labels\": {\"app\": \"x\"}}, \"replicas\": 1},\n"
+            + "  {\"metadata\": {\"name\": \"b\\u00e9\\n\"}, \"replicas\": -2.5e1, \"ready\": true, \"extra\": null}\n"
+            + "]}";
+
+    @Test
+    public void testTokens() throws Exception {
+        JsonParser parser = new JsonParser(new StringReader("{\"a\": [1, \"two\", true, false, null], \"b\": {}}"));
+        List<JsonToken> tokens = new ArrayList<JsonToken>();
+        List<String> paths = new ArrayList<String>();
+        JsonToken token;
+        do {
+            token = parser.next();
+            tokens.add(token);
+            paths.add(parser.getPath());
+        } while (token != JsonToken.END_DOCUMENT);
+        assertEquals(Arrays.asList(JsonToken.START_OBJECT, JsonToken.NAME, JsonToken.START_ARRAY, JsonToken.NUMBER,
+                JsonToken.STRING, JsonToken.TRUE, JsonToken.FALSE, JsonToken.NULL, JsonToken.END_ARRAY,
+                JsonToken.NAME, JsonToken.START_OBJECT, JsonToken.END_OBJECT, JsonToken.END_OBJECT,
+                JsonToken.END_DOCUMENT), tokens);
+        assertEquals("$.a[1]", paths.get(4));
+        assertEquals("$.b", paths.get(10));
+    }
+
+    @Test
+    public void testSkipChildren() throws Exception {
+        JsonParser parser = new JsonParser(new StringReader(DOCUMENT));
+        assertEquals(JsonToken.START_OBJECT, parser.next());
+        assertEquals(JsonToken.NAME, parser.next());
+        assertEquals(JsonToken.STRING, parser.next());
+        assertEquals(JsonToken.NAME, parser.next());
+        assertEquals("items", parser.getText());
+        assertEquals(JsonToken.START_ARRAY, parser.next());
+        parser.skipChildren();
+        assertEquals(JsonToken.END_ARRAY, parser.getToken());
+        assertEquals(JsonToken.END_OBJECT, parser.next());
+        assertEquals(JsonToken.END_DOCUMENT, parser.next());
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        Map<?, ?> document = (Map<?, ?>) JsonReader.read(new ByteArrayInputStream(DOCUMENT.getBytes("UTF-8")));
+        List<?> items = (List<?>) document.get("items");
+        assertEquals(2, items.size());
+        Map<?, ?> second = (Map<?, ?>) items.get(1);
+        assertEquals("bé\n", ((Map<?, ?>) second.get("metadata")).get("name"));
+        assertEquals(-25.0, second.get("replicas"));
+        assertEquals(Boolean.TRUE, second.get("ready"));
+        assertTrue(second.containsKey("extra"));
+        assertNull(second.get("extra"));
+    }
+
+    @Test
+    public void testReadPath() throws Exception {
+        assertEquals("a", JsonReader.read(new StringReader(DOCUMENT), "items[0].metadata.name"));
+        assertEquals("bé\n", JsonReader.read(new StringReader(DOCUMENT), "$.items[1].metadata.name"));
+        assertEquals(Collections.singletonMap("app", "x"), JsonReader.read(new StringReader(DOCUMENT), "items[0].metadata.labels"));
+        assertNull(JsonReader.read(new StringReader(DOCUMENT), "items[2].metadata.name"));
+        assertNull(JsonReader.read(new StringReader(DOCUMENT), "kind.name"));
+    }
+
+    @Test
+    public void testReadUtf8AcrossBuffers() throws Exception {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            value.append("é中😀");
+        }
+        String json = "[\"" + value + "\"]";
+        List<?> answer = (List<?>) JsonReader.read(new ByteArrayInputStream(json.getBytes("UTF-8")));
+        assertEquals(value.toString(), answer.get(0));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        assertError("", "Unexpected end of input");
+        assertError("{\"a\" 1}", "Expected ':'");
+        assertError("[1 2]", "Expected ',' or ']'");
+        assertError("{\"a\": 1,}", "Expected name");
+        assertError("[01]", "Expected ',' or ']'");
+        assertError("[1] x", "Unexpected character");
+        assertError("[\"a", "Unexpected end of input");
+        assertError("{\"a\": tru}", "Expected 'e'");
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        Map<String, Object> value = new LinkedHashMap<String, Object>();
+        value.put("name", "quote\" slash\\ tab\t line\n nel\u0085");
+        value.put("list", Arrays.asList(1, 2.5, true, null, Collections.emptyMap()));
+        StringWriter writer = new StringWriter();
+        JsonWriter.write(writer, value);
+        assertEquals("{\"name\":\"quote\\\" slash\\\\ tab\\t line\\n nel\\u0085\",\"list\":[1,2.5,true,null,{}]}", writer.toString());
+        assertEquals(value.get("name"), ((Map<?, ?>) JsonReader.read(new StringReader(writer.toString()))).get("name"));
+    }
+
+    @Test
+    public void testGenerator() throws Exception {
+        StringWriter writer = new StringWriter();
+        JsonGenerator generator = new JsonGenerator(writer);
+        generator.writeStartArray();
+        for (int i = 0; i < 3; i++) {
+            generator.writeStartObject().writeName("id").writeNumber(i).writeName("tags").writeStartArray().writeEndArray().writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.flush();
+        assertEquals("[{\"id\":0,\"tags\":[]},{\"id\":1,\"tags\":[]},{\"id\":2,\"tags\":[]}]", writer.toString());
+        try {
+            new JsonGenerator(writer).writeStartObject().writeString("value");
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private static void assertError(String json, String message) {
+        Reader reader = new StringReader(json);
+        try {
+            JsonReader.read(reader);
+            fail("Expected an error for " + json);
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message + " at "));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class ProcessesTest {
+
+    private long pid;
+
+    @Before
+    public void init() {
+        assumeTrue(new File("/proc/self/status").isFile());
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        pid = Long.parseLong(name.substring(0, name.indexOf('@')));
+    }
+
+    @Test
+    public void isProcessAliveTest() throws Exception {
+        assertTrue(Processes.isProcessAlive(pid));
+        assertFalse(Processes.isProcessAlive(Integer.MAX_VALUE));
+        assertTrue(Processes.getProcessIds().contains(pid));
+    }
+
+    @Test
+    public void getJavaProcessIdsTest() throws Exception {
+        assertTrue(Processes.getJavaProcessIds(pid + " ").contains(pid));
+        assertFalse(Processes.getJavaProcessIds("no.such.MainClass").contains(pid));
+    }
+
+    @Test
+    public void getMainClassTest() throws Exception {
+        assertEquals("org.foo.Main", Processes.getMainClass(new String[]{"java", "-Xmx1g", "-cp", "a.jar:b.jar", "org.foo.Main", "arg"}));
+        assertEquals("app.jar", Processes.getMainClass(new String[]{"/usr/bin/java", "-Dx=y", "-jar", "app.jar"}));
+        assertEquals("org.foo/org.foo.Main", Processes.getMainClass(new String[]{"java", "--module-path", "mods", "-m", "org.foo/org.foo.Main"}));
+        assertNull(Processes.getMainClass(new String[]{"java", "-version"}));
+    }
+
+    @Test
+    public void killProcessTreeTest() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", "sleep 60 & sleep 60 & wait").start();
+        try {
+            long shell = -1;
+            List<Long> descendants = null;
+            for (int i = 0; i < 100; i++) {
+                descendants = Processes.getDescendantProcessIds(pid);
+                if (descendants.size() >= 3) {
+                    break;
+                }
+                Thread.sleep(50);
+            }
+            assertTrue("Descendants " + descendants, descendants.size() >= 3);
+            for (Long descendant : descendants) {
+                if (Processes.getDescendantProcessIds(descendant).size() == 2) {
+                    shell = descendant;
+                }
+            }
+            assertTrue("No shell in " + descendants, shell > 0);
+
+            List<Long> sleeps = Processes.getDescendantProcessIds(shell);
+            assertFalse(Processes.waitForExit(shell, 10, TimeUnit.MILLISECONDS));
+            // the shell may exit by itself once its children are killed
+            assertTrue(Processes.killProcessTree(shell, "-9") >= sleeps.size());
+            process.waitFor();
+            assertTrue(Processes.waitForExit(shell, 10, TimeUnit.SECONDS));
+            for (Long sleep : sleeps) {
+                assertTrue(Processes.waitForExit(sleep, 10, TimeUnit.SECONDS));
+            }
+        } finally {
+            process.destroy();
+        }
+    }
+}
@@ -17,6 +17,10 @@ package io.fabric8.utils;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
@@ -45,4 +49,109 @@ public class SerialExecutorServiceTest {
         assertEquals(10000, data[0]);
     }
 
+    @Test
+    public void testManyExecutorsShareBoundedPool() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(200 * 100);
+        List<SerialExecutorService> executors = new ArrayList<SerialExecutorService>();
+        for (int i = 0; i < 200; i++) {
+            executors.add(new SerialExecutorService("executor-" + i));
+        }
+        for (int t = 0; t < 100; t++) {
+            for (SerialExecutorService executor : executors) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        done.countDown();
+                    }
+                });
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(SerialExecutorService.getThreadPoolSize() <= SerialExecutorService.THREAD_POOL_SIZE);
+        for (SerialExecutorService executor : executors) {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(0, executor.getQueueDepth());
+        }
+    }
+
+    @Test
+    public void testDrainYieldsAfterQuota() throws InterruptedException {
+        final List<Runnable> drains = new ArrayList<Runnable>();
+        SerialExecutorService executor = new SerialExecutorService(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                drains.add(command);
+            }
+        });
+        final int[] count = new int[] {0};
+        int tasks = SerialExecutorService.DRAIN_QUOTA * 2 + 1;
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    count[0]++;
+                }
+            });
+        }
+        assertEquals(1, drains.size());
+        assertEquals(tasks, executor.getQueueDepth());
+
+        drains.remove(0).run();
+        assertEquals(SerialExecutorService.DRAIN_QUOTA, count[0]);
+        // the executor queued another drain for the rest of its tasks
+        assertEquals(1, drains.size());
+
+        drains.remove(0).run();
+        drains.remove(0).run();
+        assertEquals(tasks, count[0]);
+        assertEquals(0, executor.getQueueDepth());
+        assertTrue(drains.isEmpty());
+        assertEquals(3, executor.getDrainCount());
+    }
+
+    @Test
+    public void testExecuteAndDrainKeepsQueuedDrain() throws InterruptedException {
+        final List<Runnable> drains = new ArrayList<Runnable>();
+        SerialExecutorService executor = new SerialExecutorService(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                drains.add(command);
+            }
+        });
+        final int[] count = new int[] {0};
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                count[0]++;
+            }
+        };
+        executor.execute(task);
+        assertEquals(1, drains.size());
+
+        // draining in the caller must not clear the trigger of the drain which is still queued
+        executor.executeAndDrain(task);
+        executor.execute(task);
+        assertEquals(1, drains.size());
+        assertEquals(2, count[0]);
+
+        drains.remove(0).run();
+        assertEquals(3, count[0]);
+        assertTrue(drains.isEmpty());
+    }
+
+    @Test
+    public void testExecuteAndDrain() throws InterruptedException {
+        SerialExecutorService executor = new SerialExecutorService();
+        final long data[] = new long[] {0};
+        executor.executeAndDrain(new Runnable() {
+            @Override
+            public void run() {
+                data[0]++;
+            }
+        });
+        assertEquals(1, data[0]);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
 }
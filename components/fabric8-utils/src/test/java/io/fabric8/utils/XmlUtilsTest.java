@@ -0,0 +1,120 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXParseException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class XmlUtilsTest {
+
+    @Test
+    public void parseDocRejectsExternalEntitiesTest() throws Exception {
+        String xml = "<?xml version=\"1.0\"?>\n" +
+                "<!DOCTYPE foo [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>\n" +
+                "<foo>&xxe;</foo>";
+        try {
+            XmlUtils.parseDoc(xml);
+            fail("Should have rejected the DOCTYPE");
+        } catch (SAXParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("DOCTYPE"));
+        }
+        // the builder of this thread can still be used after a failure
+        assertEquals("bar", XmlUtils.getTextContentOfElement(XmlUtils.parseDoc("<foo><bar>bar</bar></foo>"), "bar"));
+    }
+
+    @Test
+    public void forEachElementTest() throws Exception {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n<catalog xmlns:x=\"urn:x\">");
+        for (int i = 0; i < 1000; i++) {
+            xml.append("<item id=\"").append(i).append("\" x:type=\"t\"><name>item ").append(i)
+                    .append("</name><![CDATA[<data>]]><item>nested</item></item>");
+        }
+        xml.append("</catalog>");
+
+        final List<String> names = new ArrayList<>();
+        final XPathBuilder builder = new XPathBuilder();
+        int count = XmlUtils.forEachElement(new ByteArrayInputStream(xml.toString().getBytes(StandardCharsets.UTF_8)), "item", new Function<Element, Boolean>() {
+            @Override
+            public Boolean apply(Element element) {
+                try {
+                    assertEquals("t", element.getAttributeNS("urn:x", "type"));
+                    assertEquals("nested", builder.xpath("/item/item").elementTextContent(element.getOwnerDocument()));
+                    names.add(element.getAttribute("id") + ":" + DomHelper.firstChildTextContent(element, "name"));
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+                return names.size() < 500;
+            }
+        });
+        assertEquals(500, count);
+        assertEquals("0:item 0", names.get(0));
+        assertEquals("499:item 499", names.get(499));
+    }
+
+    @Test
+    public void concurrentUseTest() throws Exception {
+        final XPathBuilder builder = new XPathBuilder();
+        int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        int checked = 0;
+                        for (int i = 0; i < 200; i++) {
+                            String value = thread + "-" + i;
+                            Document doc = XmlUtils.parseDoc("<root><a id=\"" + value + "\"><b>" + value + "</b></a></root>");
+                            assertEquals(value, builder.xpath("//a[@id='" + value + "']/b").elementTextContent(doc));
+                            assertEquals(value, builder.xpath("/root/a/b").elementTextContent(doc));
+
+                            Document copy = XmlUtils.parseDoc(DomHelper.toXml(doc));
+                            assertEquals(value, XmlUtils.getTextContentOfElement(copy, "a/b"));
+                            checked++;
+                        }
+                        return checked;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> future : futures) {
+                assertEquals(Integer.valueOf(200), future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Measures the throughput of zipping and unzipping a generated directory tree of text, binary and already
+ * compressed files, comparing the parallel implementation with sequential streams. The tree holds 2000 files
+ * unless another count is given as the first argument, and the per entry debug logging of {@link Zips} is
+ * turned off so it does not skew the numbers.
+ */
+public class ZipsBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        File root = java.nio.file.Files.createTempDirectory("zips-benchmark").toFile();
+        try {
+            File source = new File(root, "source");
+            long size = createTree(source, count);
+            System.out.printf("Tree of %d files, %d MB%n", count, size / (1024 * 1024));
+            File zip = new File(root, "parallel.zip");
+            File sequentialZip = new File(root, "sequential.zip");
+            for (int i = 0; i < 3; i++) {
+                long start = System.nanoTime();
+                ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(sequentialZip));
+                try {
+                    Zips.zipDirectory(NOPLogger.NOP_LOGGER, source, zos, "", null);
+                } finally {
+                    zos.close();
+                }
+                long sequential = System.nanoTime();
+                Zips.createZipFile(NOPLogger.NOP_LOGGER, source, zip);
+                long parallel = System.nanoTime();
+                Files.recursiveDelete(new File(root, "streamed"));
+                Zips.unzip(new FileInputStream(zip), new File(root, "streamed"));
+                long streamed = System.nanoTime();
+                Files.recursiveDelete(new File(root, "extracted"));
+                Zips.unzip(zip, new File(root, "extracted"));
+                long extracted = System.nanoTime();
+                System.out.printf("zip: sequential %s, parallel %s (%d KB vs %d KB) - unzip: streamed %s, parallel %s%n",
+                        throughput(size, sequential - start), throughput(size, parallel - sequential),
+                        sequentialZip.length() / 1024, zip.length() / 1024,
+                        throughput(size, streamed - parallel), throughput(size, extracted - streamed));
+            }
+        } finally {
+            Files.recursiveDelete(root);
+        }
+    }
+
+    private static String throughput(long size, long nanos) {
+        return String.format("%.1f MB/s", size / (1024.0 * 1024) / (nanos / (double) TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private static long createTree(File source, int count) throws IOException {
+        Random random = new Random(42);
+        byte[] text = ("The quick brown fox jumps over the lazy dog " + random.nextLong() + "\n").getBytes(StandardCharsets.UTF_8);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            File dir = new File(source, "dir" + (i % 50) + "/sub" + (i % 7));
+            dir.mkdirs();
+            int size = i % 100 == 0 ? 8 * 1024 * 1024 : 1024 + random.nextInt(64 * 1024);
+            byte[] data = new byte[size];
+            if (i % 10 == 0) {
+                random.nextBytes(data);
+            } else {
+                for (int j = 0; j < size; j++) {
+                    data[j] = text[(j + random.nextInt(3)) % text.length];
+                }
+            }
+            String name = i % 10 == 0 ? "file" + i + ".png" : "file" + i + ".txt";
+            java.nio.file.Files.write(new File(dir, name).toPath(), data);
+            total += size;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ZipsTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ZipsTest.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testZipAndUnzip() throws Exception {
+        File source = folder.newFolder("source");
+        byte[] text = repeat("some text which compresses well\n", 1000);
+        byte[] random = new byte[100000];
+        new Random(1).nextBytes(random);
+        write(new File(source, "a.txt"), text);
+        write(new File(source, "sub/b.txt"), text);
+        write(new File(source, "sub/image.png"), text);
+        write(new File(source, "sub/random.bin"), random);
+        write(new File(source, "sub/empty.txt"), new byte[0]);
+        new File(source, "empty").mkdirs();
+        File script = new File(source, "bin/run.sh");
+        write(script, "#!/bin/sh\n".getBytes(StandardCharsets.UTF_8));
+        boolean posix = setPermissions(script, "rwxr-x---");
+
+        File zip = new File(folder.getRoot(), "out/test.zip");
+        Zips.createZipFile(LOG, source, zip);
+
+        ZipFile zipFile = new ZipFile(zip);
+        try {
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("a.txt").getMethod());
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("sub/image.png").getMethod());
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("sub/random.bin").getMethod());
+            assertTrue(zipFile.getEntry("empty/").isDirectory());
+            assertEquals(9, zipFile.size());
+        } finally {
+            zipFile.close();
+        }
+
+        File parallel = folder.newFolder("parallel");
+        Zips.unzip(zip, parallel);
+        assertArrayEquals(text, read(new File(parallel, "sub/b.txt")));
+        assertArrayEquals(text, read(new File(parallel, "sub/image.png")));
+        assertArrayEquals(random, read(new File(parallel, "sub/random.bin")));
+        assertEquals(0, new File(parallel, "sub/empty.txt").length());
+        assertTrue(new File(parallel, "empty").isDirectory());
+        if (posix) {
+            assertEquals("rwxr-x---", PosixFilePermissions.toString(getPermissions(new File(parallel, "bin/run.sh"))));
+        }
+
+        File streamed = folder.newFolder("streamed");
+        InputStream in = new FileInputStream(zip);
+        Zips.unzip(in, streamed);
+        assertArrayEquals(random, read(new File(streamed, "sub/random.bin")));
+        assertArrayEquals(text, read(new File(streamed, "a.txt")));
+    }
+
+    @Test
+    public void testLargeFiles() throws Exception {
+        int limit = ParallelZips.IN_MEMORY_LIMIT;
+        ParallelZips.IN_MEMORY_LIMIT = 1000;
+        try {
+            File source = folder.newFolder("source");
+            byte[] text = repeat("large file\n", 10000);
+            byte[] random = new byte[5000];
+            new Random(2).nextBytes(random);
+            write(new File(source, "large.txt"), text);
+            write(new File(source, "random.bin"), random);
+            File zip = new File(folder.getRoot(), "large.zip");
+            Zips.createZipFile(LOG, source, zip);
+
+            ZipInputStream zis = new ZipInputStream(new FileInputStream(zip));
+            try {
+                int count = 0;
+                for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+                    count++;
+                }
+                assertEquals(2, count);
+            } finally {
+                zis.close();
+            }
+            File target = folder.newFolder("target");
+            Zips.unzip(zip, target);
+            assertArrayEquals(text, read(new File(target, "large.txt")));
+            assertArrayEquals(random, read(new File(target, "random.bin")));
+        } finally {
+            ParallelZips.IN_MEMORY_LIMIT = limit;
+        }
+    }
+
+    @Test
+    public void testInFlightLimit() throws Exception {
+        long limit = ParallelZips.IN_FLIGHT_LIMIT;
+        // smaller than any file so that the blocks are written one at a time
+        ParallelZips.IN_FLIGHT_LIMIT = 1;
+        try {
+            File source = folder.newFolder("source");
+            for (int i = 0; i < 20; i++) {
+                write(new File(source, "file" + i + ".txt"), repeat("file " + i + "\n", 100 + i));
+            }
+            File zip = new File(folder.getRoot(), "limited.zip");
+            Zips.createZipFile(LOG, source, zip);
+
+            File target = folder.newFolder("target");
+            Zips.unzip(zip, target);
+            for (int i = 0; i < 20; i++) {
+                assertArrayEquals(repeat("file " + i + "\n", 100 + i), read(new File(target, "file" + i + ".txt")));
+            }
+        } finally {
+            ParallelZips.IN_FLIGHT_LIMIT = limit;
+        }
+    }
+
+    @Test
+    public void testZipSlip() throws Exception {
+        File zip = new File(folder.getRoot(), "evil.zip");
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+        try {
+            zos.putNextEntry(new ZipEntry("../evil.txt"));
+            zos.write("evil".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        } finally {
+            zos.close();
+        }
+        File target = folder.newFolder("target");
+        try {
+            Zips.unzip(zip, target);
+            fail("Expected the entry outside of the directory to be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("../evil.txt"));
+        }
+        try {
+            Zips.unzip(new FileInputStream(zip), target);
+            fail("Expected the entry outside of the directory to be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("../evil.txt"));
+        }
+        assertFalse(new File(folder.getRoot(), "evil.txt").exists());
+    }
+
+    private static byte[] repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        file.getParentFile().mkdirs();
+        java.nio.file.Files.write(file.toPath(), data);
+    }
+
+    private static byte[] read(File file) throws IOException {
+        return java.nio.file.Files.readAllBytes(file.toPath());
+    }
+
+    private static boolean setPermissions(File file, String permissions) throws IOException {
+        try {
+            java.nio.file.Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString(permissions));
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static Set<PosixFilePermission> getPermissions(File file) throws IOException {
+        return java.nio.file.Files.getPosixFilePermissions(file.toPath());
+    }
+}
@@ -38,6 +38,8 @@ import io.fabric8.kubernetes.api.model.extensions.Deployment;
 import io.fabric8.kubernetes.api.model.extensions.Ingress;
 import io.fabric8.kubernetes.api.model.extensions.ReplicaSet;
 import io.fabric8.kubernetes.api.model.extensions.StatefulSet;
+import io.fabric8.kubernetes.api.rollouts.RolloutProgressEvent;
+import io.fabric8.kubernetes.api.rollouts.RolloutTracker;
 import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
@@ -112,6 +114,8 @@ public class Controller {
     private String namesapce = KubernetesHelper.defaultNamespace();
     private boolean requireSecretsCreatedBeforeReplicationControllers;
     private boolean rollingUpgradePreserveScale = true;
+    private boolean asyncRollout;
+    private volatile RolloutTracker rolloutTracker;
 
     public Controller() {
         this(new DefaultKubernetesClient());
@@ -279,7 +283,7 @@ public class Controller {
         } else if (dto instanceof DaemonSet) {
             applyResource((DaemonSet) dto, sourceName, kubernetesClient.extensions().daemonSets());
         } else if (dto instanceof Deployment) {
-            applyResource((Deployment) dto, sourceName, kubernetesClient.extensions().deployments());
+            applyDeployment((Deployment) dto, sourceName);
         } else if (dto instanceof ReplicaSet) {
             applyResource((ReplicaSet) dto, sourceName, kubernetesClient.extensions().replicaSets());
         } else if (dto instanceof StatefulSet) {
@@ -1250,11 +1254,18 @@ public class Controller {
                         }
                     }
                     LOG.info("rollingUpgradePreserveScale " + rollingUpgradePreserveScale + " new replicas is " + (newSpec != null ? newSpec.getReplicas() : "<null>"));
-                    kubernetesClient.replicationControllers().inNamespace(namespace).withName(id).rolling().replace(replicationController);
+                    if (asyncRollout) {
+                        getRolloutTracker().rollReplicationController(namespace, replicationController);
+                    } else {
+                        kubernetesClient.replicationControllers().inNamespace(namespace).withName(id).rolling().replace(replicationController);
+                    }
                 } else if (isRecreateMode()) {
                     LOG.info("Deleting ReplicationController: " + id);
                     kubernetesClient.replicationControllers().inNamespace(namespace).withName(id).delete();
                     doCreateReplicationController(replicationController, namespace, sourceName);
+                } else if (asyncRollout && deletePodsOnReplicationControllerUpdate) {
+                    LOG.info("Updating ReplicationController from " + sourceName + " namespace " + namespace + " name " + getName(replicationController) + " and gradually replacing its pods");
+                    getRolloutTracker().rollReplicationController(namespace, replicationController);
                 } else {
                     LOG.info("Updating ReplicationController from " + sourceName + " namespace " + namespace + " name " + getName(replicationController));
                     try {
@@ -1281,6 +1292,29 @@ public class Controller {
         }
     }
 
+    public void applyDeployment(Deployment deployment, String sourceName) throws Exception {
+        if (asyncRollout) {
+            getRolloutTracker().applyRollingUpdateLimits(deployment);
+        }
+        applyResource(deployment, sourceName, kubernetesClient.extensions().deployments());
+        if (asyncRollout && !isServicesOnlyMode()) {
+            getRolloutTracker().trackDeployment(getNamespace(), deployment);
+        }
+    }
+
+    /**
+     * Waits for all the asynchronous rollouts started by this controller to finish
+     *
+     * @return the final progress of each rollout
+     */
+    public List<RolloutProgressEvent> awaitRollouts() throws Exception {
+        RolloutTracker tracker = rolloutTracker;
+        if (tracker == null) {
+            return new ArrayList<>();
+        }
+        return tracker.awaitAll();
+    }
+
     protected void doCreateReplicationController(ReplicationController replicationController, String namespace, String sourceName) {
         LOG.info("Creating a ReplicationController from " + sourceName + " namespace " + namespace + " name " + getName(replicationController));
         try {
@@ -1554,4 +1588,28 @@ public class Controller {
     public void setRollingUpgradePreserveScale(boolean rollingUpgradePreserveScale) {
         this.rollingUpgradePreserveScale = rollingUpgradePreserveScale;
     }
+
+    /**
+     * Returns true if rolling upgrades and pod replacements of ReplicationControllers and Deployments are
+     * performed asynchronously by the {@link #getRolloutTracker()} so that many can progress at once;
+     * use {@link #awaitRollouts()} to wait for them to finish
+     */
+    public boolean isAsyncRollout() {
+        return asyncRollout;
+    }
+
+    public void setAsyncRollout(boolean asyncRollout) {
+        this.asyncRollout = asyncRollout;
+    }
+
+    public synchronized RolloutTracker getRolloutTracker() {
+        if (rolloutTracker == null) {
+            rolloutTracker = new RolloutTracker(kubernetesClient);
+        }
+        return rolloutTracker;
+    }
+
+    public synchronized void setRolloutTracker(RolloutTracker rolloutTracker) {
+        this.rolloutTracker = rolloutTracker;
+    }
 }
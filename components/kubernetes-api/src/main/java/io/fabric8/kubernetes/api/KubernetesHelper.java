@@ -58,7 +58,6 @@ import io.fabric8.utils.Objects;
 import io.fabric8.utils.Strings;
 import io.fabric8.utils.Systems;
 import io.fabric8.utils.URLUtils;
-import io.fabric8.utils.ssl.TrustEverythingSSLTrustManager;
 import okhttp3.Credentials;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
@@ -67,29 +66,15 @@ import okhttp3.Response;
 import okhttp3.logging.HttpLoggingInterceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xbill.DNS.ARecord;
-import org.xbill.DNS.Lookup;
-import org.xbill.DNS.Record;
-import org.xbill.DNS.SRVRecord;
-import org.xbill.DNS.TextParseException;
-import org.xbill.DNS.Type;
 
 import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.SSLException;
-import javax.net.ssl.SSLHandshakeException;
-import javax.net.ssl.SSLKeyException;
-import javax.net.ssl.SSLPeerUnverifiedException;
-import javax.net.ssl.SSLProtocolException;
 import javax.net.ssl.SSLSession;
-import javax.net.ssl.SSLSocketFactory;
 import javax.tools.FileObject;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.Writer;
 import java.net.InetSocketAddress;
-import java.net.Socket;
 import java.net.URL;
 import java.net.UnknownHostException;
 import java.text.ParseException;
@@ -98,7 +83,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -1778,39 +1762,11 @@ public final class KubernetesHelper {
      * by priority & weight before being returned to the client.
      * <p/>
      * See https://github.com/GoogleCloudPlatform/kubernetes/blob/master/cluster/addons/dns/README.md
+     * <p/>
+     * Results are cached for the TTL of the SRV records by the {@link ServiceDnsResolver}
      */
     public static List<String> lookupServiceEndpointsInDns(String serviceName) throws IllegalArgumentException, UnknownHostException {
-        try {
-            Lookup l = new Lookup(serviceName, Type.SRV);
-            Record[] records = l.run();
-            if (l.getResult() == Lookup.SUCCESSFUL) {
-
-                SRVRecord[] srvRecords = Arrays.copyOf(records, records.length, SRVRecord[].class);
-                Arrays.sort(srvRecords, new Comparator<SRVRecord>() {
-                    @Override
-                    public int compare(SRVRecord a, SRVRecord b) {
-                        int ret = Integer.compare(b.getPriority(), a.getPriority());
-                        if (ret == 0) {
-                            ret = Integer.compare(b.getWeight(), a.getWeight());
-                        }
-                        return ret;
-                    }
-                });
-
-                List<String> endpointAddresses = new ArrayList<>(srvRecords.length);
-                for (SRVRecord srvRecord : srvRecords) {
-                    endpointAddresses.add(srvRecord.getTarget().toString(true).concat(":").concat(String.valueOf(srvRecord.getPort())));
-                }
-                return endpointAddresses;
-            } else {
-                LOG.warn("Lookup {} result: {}", serviceName, l.getErrorString());
-            }
-        } catch (TextParseException e) {
-            LOG.error("Unparseable service name: {}", serviceName, e);
-        } catch (ClassCastException e) {
-            LOG.error("Invalid response from DNS server - should have been A records", e);
-        }
-        return Collections.EMPTY_LIST;
+        return ServiceDnsResolver.getDefault().getServiceEndpoints(serviceName);
     }
 
     /**
@@ -1821,71 +1777,15 @@ public final class KubernetesHelper {
      * See https://github.com/GoogleCloudPlatform/kubernetes/blob/master/docs/services.md#headless-services
      */
     public static Set<String> lookupServiceInDns(String serviceName) throws IllegalArgumentException, UnknownHostException {
-        try {
-            Lookup l = new Lookup(serviceName);
-            Record[] records = l.run();
-            if (l.getResult() == Lookup.SUCCESSFUL) {
-                Set<String> endpointAddresses = new HashSet<>(records.length);
-                for (int i = 0; i < records.length; i++) {
-                    ARecord aRecord = (ARecord) records[i];
-                    endpointAddresses.add(aRecord.getAddress().getHostAddress());
-                }
-                return endpointAddresses;
-            } else {
-                LOG.warn("Lookup {} result: {}", serviceName, l.getErrorString());
-            }
-        } catch (TextParseException e) {
-            LOG.error("Unparseable service name: {}", serviceName, e);
-        } catch (ClassCastException e) {
-            LOG.error("Invalid response from DNS server - should have been A records", e);
-        }
-        return Collections.EMPTY_SET;
+        return ServiceDnsResolver.getDefault().getServiceAddresses(serviceName);
     }
 
+    /**
+     * Returns whether the service on the given host and port talks SSL; the result is cached per host and port
+     * by the {@link ServiceDnsResolver}
+     */
     public static boolean isServiceSsl(String host, int port, boolean trustAllCerts) {
-        try {
-            LOG.info("Checking if a service is SSL on " + host + ":" + port);
-            SSLSocketFactory sslsocketfactory;
-            if (trustAllCerts) {
-                sslsocketfactory = TrustEverythingSSLTrustManager.getTrustingSSLSocketFactory();
-            } else {
-                sslsocketfactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
-            }
-
-            Socket socket = sslsocketfactory.createSocket();
-
-            // Connect, with an explicit timeout value
-            socket.connect(new InetSocketAddress(host, port), 1 * 1000);
-            try {
-
-                InputStream in = socket.getInputStream();
-                OutputStream out = socket.getOutputStream();
-
-                // Write a test byte to get a reaction :)
-                out.write(1);
-
-                while (in.available() > 0) {
-                    System.out.print(in.read());
-                }
-                return true;
-            } finally {
-                LOG.info("Checked if a service is SSL on " + host + ":" + port);
-                socket.close();
-            }
-        } catch (SSLHandshakeException e) {
-            LOG.error("SSL handshake failed - this probably means that you need to trust the kubernetes root SSL certificate or set the environment variable " + Utils.convertSystemPropertyNameToEnvVar(io.fabric8.kubernetes.client.Config.KUBERNETES_TRUST_CERT_SYSTEM_PROPERTY), e);
-        } catch (SSLProtocolException e) {
-            LOG.error("SSL protocol error", e);
-        } catch (SSLKeyException e) {
-            LOG.error("Bad SSL key", e);
-        } catch (SSLPeerUnverifiedException e) {
-            LOG.error("Could not verify server", e);
-        } catch (SSLException e) {
-            LOG.debug("Address does not appear to be SSL-enabled - falling back to http", e);
-        } catch (IOException e) {
-            LOG.debug("Failed to validate service", e);
-        }
-        return false;
+        return ServiceDnsResolver.getDefault().isServiceSsl(host, port, trustAllCerts);
     }
 
     /**
@@ -0,0 +1,605 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.client.utils.Utils;
+import io.fabric8.utils.ThreadFactory;
+import io.fabric8.utils.ssl.TrustEverythingSSLTrustManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.Address;
+import org.xbill.DNS.Lookup;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLKeyException;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLProtocolException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Resolves services via DNS and probes services for SSL, caching the results.
+ * <p/>
+ * DNS answers are cached for the TTL of the returned SRV or A records (clamped between
+ * {@link #getMinTtlMillis()} and {@link #getMaxTtlMillis()}), failed lookups for {@link #getNegativeTtlMillis()}
+ * and SSL probes per <tt>host:port</tt> for {@link #getSslTtlMillis()}. A failed refresh keeps the value
+ * already cached: only a successful answer replaces it. Each cache holds at most {@link #getMaxEntries()}
+ * names, evicting the least recently used ones beyond that.
+ * <p/>
+ * Lookups always run on the resolver's executor, so the returned futures never block the caller: only callers
+ * that wait on the first resolution of a name block. Once a value is cached it is always returned straight
+ * away and refreshed in the background when it gets close to its expiry. SSL probes run on a separate
+ * bounded executor with a {@link #getProbeTimeoutMillis()} timeout, so that slow peers cannot hold up DNS lookups.
+ */
+public class ServiceDnsResolver {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ServiceDnsResolver.class);
+
+    public static final long DEFAULT_MIN_TTL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    public static final long DEFAULT_MAX_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    public static final long DEFAULT_SSL_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    public static final int DEFAULT_PROBE_TIMEOUT_MILLIS = 1000;
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    /**
+     * The fraction of the TTL after which a cached value is refreshed in the background
+     */
+    public static final double REFRESH_AHEAD_FACTOR = 0.75;
+
+    private static final ServiceDnsResolver DEFAULT = new ServiceDnsResolver();
+
+    private final ConcurrentMap<String, CacheEntry<List<String>>> endpoints = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CacheEntry<Set<String>>> addresses = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CacheEntry<List<InetAddress>>> hostAddresses = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CacheEntry<Boolean>> sslChecks = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final ExecutorService probeExecutor;
+
+    private long minTtlMillis = DEFAULT_MIN_TTL_MILLIS;
+    private long maxTtlMillis = DEFAULT_MAX_TTL_MILLIS;
+    private long negativeTtlMillis = DEFAULT_NEGATIVE_TTL_MILLIS;
+    private long sslTtlMillis = DEFAULT_SSL_TTL_MILLIS;
+    private int probeTimeoutMillis = DEFAULT_PROBE_TIMEOUT_MILLIS;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    public ServiceDnsResolver() {
+        this(createDefaultExecutor());
+    }
+
+    public ServiceDnsResolver(ExecutorService executor) {
+        this(executor, createDefaultProbeExecutor());
+    }
+
+    /**
+     * @param executor      runs the DNS lookups
+     * @param probeExecutor runs the SSL probes
+     */
+    public ServiceDnsResolver(ExecutorService executor, ExecutorService probeExecutor) {
+        this.executor = executor;
+        this.probeExecutor = probeExecutor;
+    }
+
+    /**
+     * Returns the shared resolver used by {@link KubernetesHelper}
+     */
+    public static ServiceDnsResolver getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Resolves the SRV records of the service as a list of "host:port" values ordered by priority and weight
+     */
+    public CompletableFuture<List<String>> resolveServiceEndpoints(final String serviceName) {
+        return resolve(endpoints, serviceName, executor, new Supplier<Answer<List<String>>>() {
+            @Override
+            public Answer<List<String>> get() {
+                return lookupServiceEndpoints(serviceName);
+            }
+        });
+    }
+
+    /**
+     * Resolves the A records of the service; the endpoint IPs of a headless service or the service IP otherwise
+     */
+    public CompletableFuture<Set<String>> resolveServiceAddresses(final String serviceName) {
+        return resolve(addresses, serviceName, executor, new Supplier<Answer<Set<String>>>() {
+            @Override
+            public Answer<Set<String>> get() {
+                return lookupServiceAddresses(serviceName);
+            }
+        });
+    }
+
+    /**
+     * Resolves the A records of the given host, or its AAAA records if it has no A records. IP literals are
+     * returned as is without a lookup.
+     */
+    public CompletableFuture<List<InetAddress>> resolveHostAddresses(final String host) {
+        return resolve(hostAddresses, host, executor, new Supplier<Answer<List<InetAddress>>>() {
+            @Override
+            public Answer<List<InetAddress>> get() {
+                return lookupHostAddresses(host);
+            }
+        });
+    }
+
+    /**
+     * Returns whether the service listening on the given host and port talks SSL
+     */
+    public CompletableFuture<Boolean> resolveServiceSsl(final String host, final int port, final boolean trustAllCerts) {
+        String key = host + ":" + port + (trustAllCerts ? ":trust" : "");
+        return resolve(sslChecks, key, probeExecutor, new Supplier<Answer<Boolean>>() {
+            @Override
+            public Answer<Boolean> get() {
+                return probeServiceSsl(host, port, trustAllCerts);
+            }
+        });
+    }
+
+    public List<String> getServiceEndpoints(String serviceName) {
+        return resolveServiceEndpoints(serviceName).join();
+    }
+
+    public Set<String> getServiceAddresses(String serviceName) {
+        return resolveServiceAddresses(serviceName).join();
+    }
+
+    public boolean isServiceSsl(String host, int port, boolean trustAllCerts) {
+        return resolveServiceSsl(host, port, trustAllCerts).join();
+    }
+
+    /**
+     * Removes all cached values so that the next request resolves them again
+     */
+    public void clear() {
+        endpoints.clear();
+        addresses.clear();
+        hostAddresses.clear();
+        sslChecks.clear();
+    }
+
+    /**
+     * Stops the background refresh threads
+     */
+    public void close() {
+        executor.shutdownNow();
+        probeExecutor.shutdownNow();
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public long getMinTtlMillis() {
+        return minTtlMillis;
+    }
+
+    public void setMinTtlMillis(long minTtlMillis) {
+        this.minTtlMillis = minTtlMillis;
+    }
+
+    public long getMaxTtlMillis() {
+        return maxTtlMillis;
+    }
+
+    public void setMaxTtlMillis(long maxTtlMillis) {
+        this.maxTtlMillis = maxTtlMillis;
+    }
+
+    public long getNegativeTtlMillis() {
+        return negativeTtlMillis;
+    }
+
+    public void setNegativeTtlMillis(long negativeTtlMillis) {
+        this.negativeTtlMillis = negativeTtlMillis;
+    }
+
+    public long getSslTtlMillis() {
+        return sslTtlMillis;
+    }
+
+    public void setSslTtlMillis(long sslTtlMillis) {
+        this.sslTtlMillis = sslTtlMillis;
+    }
+
+    public int getProbeTimeoutMillis() {
+        return probeTimeoutMillis;
+    }
+
+    /**
+     * Sets the timeout of the connect and of each read of the handshake of the SSL probes
+     */
+    public void setProbeTimeoutMillis(int probeTimeoutMillis) {
+        this.probeTimeoutMillis = probeTimeoutMillis;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Sets the number of names each cache holds before evicting the least recently used ones
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    // Implementation
+    //-------------------------------------------------------------------------
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    protected <T> CompletableFuture<T> resolve(ConcurrentMap<String, CacheEntry<T>> cache, String key, Executor executor, final Supplier<Answer<T>> loader) {
+        long now = currentTimeMillis();
+        CacheEntry<T> entry = cache.get(key);
+        if (entry == null) {
+            CacheEntry<T> created = new CacheEntry<>();
+            created.accessedAt = now;
+            entry = cache.putIfAbsent(key, created);
+            if (entry == null) {
+                if (cache.size() > maxEntries) {
+                    evict(cache);
+                }
+                // first resolution of this key so the returned future completes once it is loaded
+                entry = created;
+                entry.refreshing.set(true);
+                final CacheEntry<T> newEntry = entry;
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            load(newEntry, loader);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    LOG.debug("Could not schedule lookup of " + key + " so resolving it in the caller: " + e, e);
+                    load(newEntry, loader);
+                }
+                return entry.value;
+            }
+        }
+        entry.accessedAt = now;
+        if (now >= entry.refreshAt && entry.refreshing.compareAndSet(false, true)) {
+            final CacheEntry<T> staleEntry = entry;
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        load(staleEntry, loader);
+                    }
+                });
+            } catch (RuntimeException e) {
+                LOG.debug("Could not schedule refresh of " + key + ": " + e, e);
+                entry.refreshing.set(false);
+            }
+        }
+        return entry.value;
+    }
+
+    private <T> void load(CacheEntry<T> entry, Supplier<Answer<T>> loader) {
+        Answer<T> answer;
+        try {
+            answer = loader.get();
+        } catch (RuntimeException e) {
+            entry.refreshAt = currentTimeMillis() + negativeTtlMillis;
+            entry.refreshing.set(false);
+            if (!entry.value.completeExceptionally(e)) {
+                LOG.debug("Failed to refresh cached value: " + e, e);
+            }
+            return;
+        }
+        long ttl = answer.getTtlMillis();
+        // clear the flag before completing, so that callers woken up by the first resolution can refresh it
+        if (!answer.isSuccessful()) {
+            entry.refreshAt = currentTimeMillis() + ttl;
+            entry.refreshing.set(false);
+            if (!entry.value.complete(answer.getValue())) {
+                LOG.debug("Keeping the cached value after a failed refresh");
+            }
+            return;
+        }
+        entry.refreshAt = currentTimeMillis() + (long) (ttl * REFRESH_AHEAD_FACTOR);
+        entry.refreshing.set(false);
+        if (!entry.value.complete(answer.getValue())) {
+            entry.value = CompletableFuture.completedFuture(answer.getValue());
+        }
+    }
+
+    /**
+     * Removes the least recently used entries of the cache beyond {@link #getMaxEntries()}
+     */
+    private <T> void evict(ConcurrentMap<String, CacheEntry<T>> cache) {
+        // snapshot the access times as they keep changing while sorting
+        List<Map.Entry<String, Long>> accesses = new ArrayList<>(cache.size());
+        for (Map.Entry<String, CacheEntry<T>> entry : cache.entrySet()) {
+            accesses.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().accessedAt));
+        }
+        Collections.sort(accesses, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                return Long.compare(a.getValue(), b.getValue());
+            }
+        });
+        int excess = accesses.size() - maxEntries;
+        for (int i = 0; i < excess; i++) {
+            cache.remove(accesses.get(i).getKey());
+        }
+    }
+
+    protected long clampTtl(long ttlSeconds) {
+        long ttl = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        return Math.min(Math.max(ttl, minTtlMillis), maxTtlMillis);
+    }
+
+    /**
+     * Performs a blocking SRV lookup of the service
+     */
+    protected Answer<List<String>> lookupServiceEndpoints(String serviceName) {
+        try {
+            Lookup l = new Lookup(serviceName, Type.SRV);
+            Record[] records = l.run();
+            if (l.getResult() == Lookup.SUCCESSFUL) {
+
+                SRVRecord[] srvRecords = Arrays.copyOf(records, records.length, SRVRecord[].class);
+                Arrays.sort(srvRecords, new Comparator<SRVRecord>() {
+                    @Override
+                    public int compare(SRVRecord a, SRVRecord b) {
+                        int ret = Integer.compare(b.getPriority(), a.getPriority());
+                        if (ret == 0) {
+                            ret = Integer.compare(b.getWeight(), a.getWeight());
+                        }
+                        return ret;
+                    }
+                });
+
+                List<String> endpointAddresses = new ArrayList<>(srvRecords.length);
+                for (SRVRecord srvRecord : srvRecords) {
+                    endpointAddresses.add(srvRecord.getTarget().toString(true).concat(":").concat(String.valueOf(srvRecord.getPort())));
+                }
+                return new Answer<>(Collections.unmodifiableList(endpointAddresses), clampTtl(minimumTtl(srvRecords)));
+            } else {
+                LOG.warn("Lookup {} result: {}", serviceName, l.getErrorString());
+            }
+        } catch (TextParseException e) {
+            LOG.error("Unparseable service name: {}", serviceName, e);
+        } catch (ArrayStoreException e) {
+            LOG.error("Invalid response from DNS server - should have been SRV records", e);
+        }
+        return new Answer<>(Collections.<String>emptyList(), negativeTtlMillis, false);
+    }
+
+    /**
+     * Performs a blocking A record lookup of the service
+     */
+    protected Answer<Set<String>> lookupServiceAddresses(String serviceName) {
+        try {
+            Lookup l = new Lookup(serviceName);
+            Record[] records = l.run();
+            if (l.getResult() == Lookup.SUCCESSFUL) {
+                Set<String> endpointAddresses = new HashSet<>(records.length);
+                for (int i = 0; i < records.length; i++) {
+                    ARecord aRecord = (ARecord) records[i];
+                    endpointAddresses.add(aRecord.getAddress().getHostAddress());
+                }
+                return new Answer<>(Collections.unmodifiableSet(endpointAddresses), clampTtl(minimumTtl(records)));
+            } else {
+                LOG.warn("Lookup {} result: {}", serviceName, l.getErrorString());
+            }
+        } catch (TextParseException e) {
+            LOG.error("Unparseable service name: {}", serviceName, e);
+        } catch (ClassCastException e) {
+            LOG.error("Invalid response from DNS server - should have been A records", e);
+        }
+        return new Answer<>(Collections.<String>emptySet(), negativeTtlMillis, false);
+    }
+
+    /**
+     * Performs a blocking A lookup of the host, falling back to an AAAA lookup when there are no A records
+     */
+    protected Answer<List<InetAddress>> lookupHostAddresses(String host) {
+        try {
+            return new Answer<>(Collections.singletonList(Address.getByAddress(host)), maxTtlMillis);
+        } catch (UnknownHostException e) {
+            // not an IP literal so lets look it up
+        }
+        try {
+            for (int type : new int[]{Type.A, Type.AAAA}) {
+                Lookup l = new Lookup(host, type);
+                Record[] records = l.run();
+                if (l.getResult() == Lookup.SUCCESSFUL && records.length > 0) {
+                    List<InetAddress> hostAddresses = new ArrayList<>(records.length);
+                    for (Record record : records) {
+                        if (record instanceof ARecord) {
+                            hostAddresses.add(((ARecord) record).getAddress());
+                        } else if (record instanceof AAAARecord) {
+                            hostAddresses.add(((AAAARecord) record).getAddress());
+                        }
+                    }
+                    return new Answer<>(Collections.unmodifiableList(hostAddresses), clampTtl(minimumTtl(records)));
+                }
+            }
+            LOG.warn("Lookup {} found no A or AAAA records", host);
+        } catch (TextParseException e) {
+            LOG.error("Unparseable host name: {}", host, e);
+        }
+        return new Answer<>(Collections.<InetAddress>emptyList(), negativeTtlMillis, false);
+    }
+
+    /**
+     * Opens a TLS connection to the given host and port to find out if it talks SSL
+     */
+    protected Answer<Boolean> probeServiceSsl(String host, int port, boolean trustAllCerts) {
+        try {
+            LOG.info("Checking if a service is SSL on " + host + ":" + port);
+            SSLSocketFactory sslsocketfactory;
+            if (trustAllCerts) {
+                sslsocketfactory = TrustEverythingSSLTrustManager.getTrustingSSLSocketFactory();
+            } else {
+                sslsocketfactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+            }
+
+            Socket socket = sslsocketfactory.createSocket();
+            try {
+                // Connect and handshake with explicit timeouts, so a peer that never answers cannot hold the thread
+                socket.connect(new InetSocketAddress(host, port), probeTimeoutMillis);
+                socket.setSoTimeout(probeTimeoutMillis);
+                ((SSLSocket) socket).startHandshake();
+
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+
+                // Write a test byte to get a reaction :)
+                out.write(1);
+
+                while (in.available() > 0) {
+                    in.read();
+                }
+                return new Answer<>(true, sslTtlMillis);
+            } finally {
+                LOG.info("Checked if a service is SSL on " + host + ":" + port);
+                socket.close();
+            }
+        } catch (SSLHandshakeException e) {
+            LOG.error("SSL handshake failed - this probably means that you need to trust the kubernetes root SSL certificate or set the environment variable " + Utils.convertSystemPropertyNameToEnvVar(io.fabric8.kubernetes.client.Config.KUBERNETES_TRUST_CERT_SYSTEM_PROPERTY), e);
+        } catch (SSLProtocolException e) {
+            LOG.error("SSL protocol error", e);
+        } catch (SSLKeyException e) {
+            LOG.error("Bad SSL key", e);
+        } catch (SSLPeerUnverifiedException e) {
+            LOG.error("Could not verify server", e);
+        } catch (SSLException e) {
+            LOG.debug("Address does not appear to be SSL-enabled - falling back to http", e);
+            return new Answer<>(false, sslTtlMillis);
+        } catch (IOException e) {
+            LOG.debug("Failed to validate service", e);
+        }
+        return new Answer<>(false, negativeTtlMillis, false);
+    }
+
+    private static long minimumTtl(Record[] records) {
+        long answer = Long.MAX_VALUE;
+        for (Record record : records) {
+            answer = Math.min(answer, record.getTTL());
+        }
+        return records.length > 0 ? answer : 0;
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        final ThreadFactory threadFactory = new ThreadFactory("fabric8-dns-resolver");
+        ThreadPoolExecutor answer = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new java.util.concurrent.ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = threadFactory.newThread(r);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        answer.allowCoreThreadTimeOut(true);
+        return answer;
+    }
+
+    private static ExecutorService createDefaultProbeExecutor() {
+        final ThreadFactory threadFactory = new ThreadFactory("fabric8-ssl-probe");
+        // a full queue rejects probes: a first probe then runs in the caller, bounded by the probe timeouts
+        ThreadPoolExecutor answer = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(64), new java.util.concurrent.ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = threadFactory.newThread(r);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        answer.allowCoreThreadTimeOut(true);
+        return answer;
+    }
+
+    /**
+     * A resolved value along with how long it may be cached for
+     */
+    public static class Answer<T> {
+        private final T value;
+        private final long ttlMillis;
+        private final boolean successful;
+
+        public Answer(T value, long ttlMillis) {
+            this(value, ttlMillis, true);
+        }
+
+        /**
+         * @param successful false if the lookup failed and the value is only a fallback, which does not replace
+         *                   a value already cached
+         */
+        public Answer(T value, long ttlMillis, boolean successful) {
+            this.value = value;
+            this.ttlMillis = ttlMillis;
+            this.successful = successful;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getTtlMillis() {
+            return ttlMillis;
+        }
+
+        public boolean isSuccessful() {
+            return successful;
+        }
+    }
+
+    protected static class CacheEntry<T> {
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile CompletableFuture<T> value = new CompletableFuture<>();
+        private volatile long refreshAt;
+        private volatile long accessedAt;
+    }
+}
@@ -0,0 +1,392 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.utils.Utils;
+import io.fabric8.utils.Strings;
+import io.fabric8.utils.ThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Caches the URLs of services, so that producing a bean which injects a service URL doesn't need
+ * a round trip to the API server each time.
+ * <p/>
+ * URLs are cached for {@link #getTtlMillis()} and refreshed in the background once {@link #getRefreshAheadFactor()}
+ * of the TTL has elapsed, so that frequently used URLs never block. The cached URLs of a service are dropped
+ * as soon as a watch on the services of its namespace reports a change.
+ * <p/>
+ * The defaults can be changed with the <tt>fabric8.service.url.cache.ttl</tt> (millis, 0 disables the cache),
+ * <tt>fabric8.service.url.cache.refresh.ahead</tt> (percentage of the TTL, 100 disables refreshing ahead) and
+ * <tt>fabric8.service.url.cache.watch</tt> system properties or the equivalent environment variables.
+ */
+public class ServiceUrlCache {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ServiceUrlCache.class);
+
+    public static final String SERVICE_URL_CACHE_TTL = "fabric8.service.url.cache.ttl";
+    public static final String SERVICE_URL_CACHE_REFRESH_AHEAD = "fabric8.service.url.cache.refresh.ahead";
+    public static final String SERVICE_URL_CACHE_WATCH = "fabric8.service.url.cache.watch";
+
+    public static final int DEFAULT_TTL_MILLIS = 60000;
+    public static final int DEFAULT_REFRESH_AHEAD_PERCENT = 75;
+
+    private static final ServiceUrlCache DEFAULT = new ServiceUrlCache();
+
+    private final ConcurrentMap<Key, CacheEntry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, NamespaceWatcher> watchers = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    private long ttlMillis;
+    private double refreshAheadFactor;
+    private boolean watchEnabled;
+
+    public ServiceUrlCache() {
+        this(createDefaultExecutor());
+    }
+
+    public ServiceUrlCache(ExecutorService executor) {
+        this.executor = executor;
+        this.ttlMillis = Utils.getSystemPropertyOrEnvVar(SERVICE_URL_CACHE_TTL, DEFAULT_TTL_MILLIS);
+        this.refreshAheadFactor = Utils.getSystemPropertyOrEnvVar(SERVICE_URL_CACHE_REFRESH_AHEAD, DEFAULT_REFRESH_AHEAD_PERCENT) / 100.0;
+        this.watchEnabled = Utils.getSystemPropertyOrEnvVar(SERVICE_URL_CACHE_WATCH, true);
+    }
+
+    /**
+     * Returns the shared cache, used by the CDI and Spring Boot integrations
+     */
+    public static ServiceUrlCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the URL to access the service as {@link KubernetesHelper#getServiceURL(KubernetesClient, String, String, String, String, boolean)} does,
+     * using the cached value if there is one.
+     */
+    public String getServiceURL(final KubernetesClient client, final String serviceName, String serviceNamespace, final String serviceProtocol, final String servicePortName, final boolean serviceExternal) {
+        final String namespace = Strings.isNotBlank(serviceNamespace) ? serviceNamespace : client.getNamespace();
+        return get(client, namespace, serviceName, serviceProtocol + ":" + servicePortName + ":" + serviceExternal, new Supplier<String>() {
+            @Override
+            public String get() {
+                return KubernetesHelper.getServiceURL(client, serviceName, namespace, serviceProtocol, servicePortName, serviceExternal);
+            }
+        });
+    }
+
+    /**
+     * Returns the cached URL of the service or loads it with the given loader. The variant distinguishes the
+     * URLs of the same service, e.g. by protocol or port. The loader is kept with the cached URL to refresh it.
+     */
+    public String get(KubernetesClient client, String namespace, String serviceName, String variant, Supplier<String> loader) {
+        if (ttlMillis <= 0) {
+            return loader.get();
+        }
+        if (watchEnabled && client != null && Strings.isNotBlank(namespace)) {
+            watch(client, namespace);
+        }
+        Key key = new Key(namespace, serviceName, variant);
+        long now = currentTimeMillis();
+        CacheEntry entry = entries.get(key);
+        if (entry == null || now >= entry.expireAt) {
+            CacheEntry created = new CacheEntry(loader);
+            boolean owner = entry == null ? entries.putIfAbsent(key, created) == null : entries.replace(key, entry, created);
+            if (owner) {
+                // nothing usable is cached so the caller has to wait for the value
+                created.refreshing.set(true);
+                load(key, created);
+            }
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = created;
+            }
+        } else if (now >= entry.refreshAt && entry.refreshing.compareAndSet(false, true)) {
+            final Key staleKey = key;
+            final CacheEntry staleEntry = entry;
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        load(staleKey, staleEntry);
+                    }
+                });
+            } catch (RuntimeException e) {
+                LOG.debug("Could not schedule refresh of " + key + ": " + e, e);
+                entry.refreshing.set(false);
+            }
+        }
+        try {
+            return entry.value.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the cached URLs of the given service
+     */
+    public void invalidate(String namespace, String serviceName) {
+        for (Iterator<Key> iterator = entries.keySet().iterator(); iterator.hasNext(); ) {
+            Key key = iterator.next();
+            if (key.serviceName.equals(serviceName) && key.namespace.equals(namespace)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the cached URLs of all the services of the given namespace
+     */
+    public void invalidate(String namespace) {
+        for (Iterator<Key> iterator = entries.keySet().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().namespace.equals(namespace)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached values so that the next request loads them again
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Closes the watches and stops the background refresh threads
+     */
+    public void close() {
+        for (NamespaceWatcher watcher : watchers.values()) {
+            watcher.close();
+        }
+        watchers.clear();
+        executor.shutdownNow();
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public double getRefreshAheadFactor() {
+        return refreshAheadFactor;
+    }
+
+    /**
+     * Sets the fraction of the TTL after which a cached URL is refreshed in the background, 1 or more disables refreshing ahead
+     */
+    public void setRefreshAheadFactor(double refreshAheadFactor) {
+        this.refreshAheadFactor = refreshAheadFactor;
+    }
+
+    public boolean isWatchEnabled() {
+        return watchEnabled;
+    }
+
+    public void setWatchEnabled(boolean watchEnabled) {
+        this.watchEnabled = watchEnabled;
+    }
+
+    // Implementation
+    //-------------------------------------------------------------------------
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private void load(Key key, CacheEntry entry) {
+        try {
+            String value = entry.loader.get();
+            long now = currentTimeMillis();
+            entry.expireAt = now + ttlMillis;
+            entry.refreshAt = now + (long) (ttlMillis * Math.min(refreshAheadFactor, 1.0));
+            if (entry.value.isDone()) {
+                entry.value = CompletableFuture.completedFuture(value);
+            } else {
+                entry.value.complete(value);
+            }
+        } catch (RuntimeException e) {
+            if (!entry.value.isDone()) {
+                // don't cache failures, the next request tries again
+                entries.remove(key, entry);
+                entry.value.completeExceptionally(e);
+            } else {
+                LOG.debug("Failed to refresh the URL of " + key + ": " + e, e);
+            }
+        } finally {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private void watch(KubernetesClient client, String namespace) {
+        NamespaceWatcher watcher = watchers.get(namespace);
+        if (watcher == null) {
+            NamespaceWatcher created = new NamespaceWatcher(namespace);
+            watcher = watchers.putIfAbsent(namespace, created);
+            if (watcher == null) {
+                watcher = created;
+            }
+        }
+        watcher.open(client);
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        final ThreadFactory threadFactory = new ThreadFactory("fabric8-service-url-cache");
+        ThreadPoolExecutor answer = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new java.util.concurrent.ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = threadFactory.newThread(r);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        answer.allowCoreThreadTimeOut(true);
+        return answer;
+    }
+
+    /**
+     * Watches the services of a namespace, invalidating the cached URLs of the services that change.
+     * If the watch can't be opened it is retried after a TTL, until then the URLs just expire.
+     */
+    private class NamespaceWatcher implements Watcher<Service> {
+        private final String namespace;
+        private volatile boolean watching;
+        private volatile long retryAt;
+        private Watch watch;
+
+        private NamespaceWatcher(String namespace) {
+            this.namespace = namespace;
+        }
+
+        private void open(KubernetesClient client) {
+            if (watching || currentTimeMillis() < retryAt) {
+                return;
+            }
+            synchronized (this) {
+                if (watching || currentTimeMillis() < retryAt) {
+                    return;
+                }
+                retryAt = currentTimeMillis() + ttlMillis;
+                // set before opening the watch, so that an immediate onClose is not overwritten.
+                watching = true;
+                try {
+                    watch = client.services().inNamespace(namespace).watch(this);
+                } catch (KubernetesClientException e) {
+                    watching = false;
+                    LOG.debug("Could not watch the services of namespace " + namespace + ", relying on the TTL: " + e.getMessage());
+                }
+            }
+        }
+
+        private synchronized void close() {
+            watching = false;
+            if (watch != null) {
+                watch.close();
+                watch = null;
+            }
+        }
+
+        @Override
+        public void eventReceived(Action action, Service service) {
+            String name = KubernetesHelper.getName(service);
+            if (name != null) {
+                invalidate(namespace, name);
+            } else {
+                invalidate(namespace);
+            }
+        }
+
+        @Override
+        public void onClose(KubernetesClientException cause) {
+            watching = false;
+            if (cause != null) {
+                // events may have been missed.
+                invalidate(namespace);
+            }
+        }
+    }
+
+    private static final class Key {
+        private final String namespace;
+        private final String serviceName;
+        private final String variant;
+
+        private Key(String namespace, String serviceName, String variant) {
+            this.namespace = String.valueOf(namespace);
+            this.serviceName = serviceName;
+            this.variant = variant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+            return namespace.equals(key.namespace) && serviceName.equals(key.serviceName) && variant.equals(key.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = namespace.hashCode();
+            result = 31 * result + serviceName.hashCode();
+            result = 31 * result + variant.hashCode();
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return namespace + "/" + serviceName + " (" + variant + ")";
+        }
+    }
+
+    private static class CacheEntry {
+        private final Supplier<String> loader;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile CompletableFuture<String> value = new CompletableFuture<>();
+        // until the first load completes, callers wait for it
+        private volatile long refreshAt = Long.MAX_VALUE;
+        private volatile long expireAt = Long.MAX_VALUE;
+
+        private CacheEntry(Supplier<String> loader) {
+            this.loader = loader;
+        }
+    }
+}
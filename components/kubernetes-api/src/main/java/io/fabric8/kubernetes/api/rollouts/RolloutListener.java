@@ -0,0 +1,28 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.rollouts;
+
+/**
+ * A strategy for observing the progress of rollouts performed by a {@link RolloutTracker}
+ */
+public interface RolloutListener {
+
+    /**
+     * Invoked whenever the replica counts of a rollout change and once more when the rollout has finished
+     * (see {@link RolloutProgressEvent#isFinished()}).
+     */
+    void onRolloutProgress(RolloutProgressEvent event);
+}
@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.rollouts;
+
+/**
+ * A snapshot of the progress of the rollout of a ReplicationController or Deployment
+ */
+public class RolloutProgressEvent {
+    private final String kind;
+    private final String namespace;
+    private final String name;
+    private final int desiredReplicas;
+    private final int updatedReplicas;
+    private final int readyReplicas;
+    private final int unavailableReplicas;
+    private final int oldReplicas;
+    private final boolean finished;
+
+    public RolloutProgressEvent(String kind, String namespace, String name, int desiredReplicas, int updatedReplicas,
+                                int readyReplicas, int unavailableReplicas, int oldReplicas, boolean finished) {
+        this.kind = kind;
+        this.namespace = namespace;
+        this.name = name;
+        this.desiredReplicas = desiredReplicas;
+        this.updatedReplicas = updatedReplicas;
+        this.readyReplicas = readyReplicas;
+        this.unavailableReplicas = unavailableReplicas;
+        this.oldReplicas = oldReplicas;
+        this.finished = finished;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + namespace + "/" + name + " desired: " + desiredReplicas + " updated: " + updatedReplicas
+                + " ready: " + readyReplicas + " unavailable: " + unavailableReplicas + " old: " + oldReplicas
+                + (finished ? " finished" : "");
+    }
+
+    /**
+     * Returns true if the given event reports the same replica counts as this event
+     */
+    public boolean sameProgress(RolloutProgressEvent that) {
+        return that != null && desiredReplicas == that.desiredReplicas && updatedReplicas == that.updatedReplicas
+                && readyReplicas == that.readyReplicas && unavailableReplicas == that.unavailableReplicas
+                && oldReplicas == that.oldReplicas && finished == that.finished;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of replicas the rollout is aiming for
+     */
+    public int getDesiredReplicas() {
+        return desiredReplicas;
+    }
+
+    /**
+     * Returns the number of replicas running the new pod template
+     */
+    public int getUpdatedReplicas() {
+        return updatedReplicas;
+    }
+
+    /**
+     * Returns the number of ready replicas whether old or updated
+     */
+    public int getReadyReplicas() {
+        return readyReplicas;
+    }
+
+    /**
+     * Returns how many replicas short of the desired number of ready replicas the rollout currently is
+     */
+    public int getUnavailableReplicas() {
+        return unavailableReplicas;
+    }
+
+    /**
+     * Returns the number of replicas still running the old pod template
+     */
+    public int getOldReplicas() {
+        return oldReplicas;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+}
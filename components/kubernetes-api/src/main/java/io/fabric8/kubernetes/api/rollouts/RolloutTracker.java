@@ -0,0 +1,651 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.rollouts;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.IntOrString;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.ReplicationControllerSpec;
+import io.fabric8.kubernetes.api.model.extensions.Deployment;
+import io.fabric8.kubernetes.api.model.extensions.DeploymentSpec;
+import io.fabric8.kubernetes.api.model.extensions.DeploymentStatus;
+import io.fabric8.kubernetes.api.model.extensions.DeploymentStrategy;
+import io.fabric8.kubernetes.api.model.extensions.RollingUpdateDeployment;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.utils.Objects;
+import io.fabric8.utils.ThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
+
+/**
+ * Performs and tracks rollouts of ReplicationControllers and Deployments asynchronously.
+ * <p/>
+ * Each rollout runs on its own thread so that several services can be rolled out at once; use
+ * {@link #awaitAll()} to wait for all of them to finish. Progress is reported to the registered
+ * {@link RolloutListener}s whenever the replica counts change.
+ * <p/>
+ * A ReplicationController is rolled out by replacing its pod template (surging its replicas by {@link #getMaxSurge()})
+ * then deleting the pods which were running before the update, never letting the number of ready pods drop more
+ * than {@link #getMaxUnavailable()} below the desired number of replicas. Deployments are rolled out by Kubernetes
+ * itself so they are only tracked, though the same limits can be applied to their strategy
+ * via {@link #applyRollingUpdateLimits(Deployment)}. If a ReplicationController rollout fails or times out, the
+ * ReplicationController is scaled back from its surged replica count to its desired replica count.
+ */
+public class RolloutTracker {
+    private static final transient Logger LOG = LoggerFactory.getLogger(RolloutTracker.class);
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    public static final long DEFAULT_RESYNC_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final KubernetesClient kubernetesClient;
+    private final ExecutorService executor;
+    private final List<RolloutListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<RolloutProgressEvent>> rollouts = new CopyOnWriteArrayList<>();
+
+    private int maxUnavailable = 1;
+    private int maxSurge = 1;
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private long resyncMillis = DEFAULT_RESYNC_MILLIS;
+
+    public RolloutTracker(KubernetesClient kubernetesClient) {
+        this(kubernetesClient, createDefaultExecutor());
+    }
+
+    public RolloutTracker(KubernetesClient kubernetesClient, ExecutorService executor) {
+        this.kubernetesClient = kubernetesClient;
+        this.executor = executor;
+    }
+
+    public void addListener(RolloutListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RolloutListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Replaces the given ReplicationController then replaces its old pods gradually, honouring the
+     * {@link #getMaxUnavailable()} and {@link #getMaxSurge()} limits
+     *
+     * @return the future which completes with the final progress event once all pods have been updated
+     */
+    public CompletableFuture<RolloutProgressEvent> rollReplicationController(String namespace, ReplicationController replicationController) {
+        validateLimits();
+        return submit(new ReplicationControllerRollout(namespace, replicationController));
+    }
+
+    /**
+     * Tracks the rollout of a Deployment which has already been applied until all of its replicas are updated and available
+     *
+     * @return the future which completes with the final progress event once the rollout has finished
+     */
+    public CompletableFuture<RolloutProgressEvent> trackDeployment(String namespace, Deployment deployment) {
+        return submit(new DeploymentRollout(namespace, getName(deployment)));
+    }
+
+    /**
+     * Configures the rolling update strategy of the Deployment with the {@link #getMaxUnavailable()} and
+     * {@link #getMaxSurge()} limits unless the Deployment already specifies them
+     */
+    public void applyRollingUpdateLimits(Deployment deployment) {
+        DeploymentSpec spec = deployment.getSpec();
+        if (spec == null) {
+            return;
+        }
+        DeploymentStrategy strategy = spec.getStrategy();
+        if (strategy == null) {
+            strategy = new DeploymentStrategy();
+            strategy.setType("RollingUpdate");
+            spec.setStrategy(strategy);
+        }
+        if (!Objects.equal("RollingUpdate", strategy.getType())) {
+            return;
+        }
+        RollingUpdateDeployment rollingUpdate = strategy.getRollingUpdate();
+        if (rollingUpdate == null) {
+            rollingUpdate = new RollingUpdateDeployment();
+            strategy.setRollingUpdate(rollingUpdate);
+        }
+        if (rollingUpdate.getMaxUnavailable() == null) {
+            rollingUpdate.setMaxUnavailable(new IntOrString(maxUnavailable));
+        }
+        if (rollingUpdate.getMaxSurge() == null) {
+            rollingUpdate.setMaxSurge(new IntOrString(maxSurge));
+        }
+    }
+
+    /**
+     * Waits for all the rollouts started by this tracker to finish
+     *
+     * @return the final progress events of the rollouts
+     * @throws Exception the failure of the first rollout which failed
+     */
+    public List<RolloutProgressEvent> awaitAll() throws Exception {
+        List<RolloutProgressEvent> answer = new ArrayList<>();
+        for (CompletableFuture<RolloutProgressEvent> rollout : rollouts) {
+            try {
+                answer.add(rollout.get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw e;
+            } finally {
+                rollouts.remove(rollout);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the number of rollouts which have not finished yet
+     */
+    public int getPendingRolloutCount() {
+        int answer = 0;
+        for (CompletableFuture<RolloutProgressEvent> rollout : rollouts) {
+            if (!rollout.isDone()) {
+                answer++;
+            }
+        }
+        return answer;
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    /**
+     * Returns the maximum number of replicas which may be unavailable during a rollout
+     */
+    public int getMaxUnavailable() {
+        return maxUnavailable;
+    }
+
+    public void setMaxUnavailable(int maxUnavailable) {
+        this.maxUnavailable = maxUnavailable;
+    }
+
+    /**
+     * Returns the maximum number of replicas which may be created above the desired number of replicas during a rollout
+     */
+    public int getMaxSurge() {
+        return maxSurge;
+    }
+
+    public void setMaxSurge(int maxSurge) {
+        this.maxSurge = maxSurge;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Returns how often the state of a rollout is re-read from the API server in case watch events have been missed
+     */
+    public long getResyncMillis() {
+        return resyncMillis;
+    }
+
+    public void setResyncMillis(long resyncMillis) {
+        this.resyncMillis = resyncMillis;
+    }
+
+    // Implementation
+    //-------------------------------------------------------------------------
+
+    /**
+     * Returns the old pods which can be deleted right now without the number of ready pods dropping below
+     * <tt>desiredReplicas - maxUnavailable</tt>. Old pods which are not ready are always deleted first as deleting
+     * them does not reduce the availability of the service.
+     */
+    static List<Pod> selectPodsToDelete(Collection<Pod> oldPods, int readyReplicas, int desiredReplicas, int maxUnavailable) {
+        List<Pod> answer = new ArrayList<>();
+        List<Pod> readyOldPods = new ArrayList<>();
+        for (Pod pod : oldPods) {
+            if (KubernetesHelper.isPodReady(pod)) {
+                readyOldPods.add(pod);
+            } else {
+                answer.add(pod);
+            }
+        }
+        int budget = readyReplicas - (desiredReplicas - maxUnavailable);
+        for (int i = 0; i < budget && i < readyOldPods.size(); i++) {
+            answer.add(readyOldPods.get(i));
+        }
+        return answer;
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        final ThreadFactory threadFactory = new ThreadFactory("fabric8-rollout");
+        return Executors.newCachedThreadPool(new java.util.concurrent.ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = threadFactory.newThread(r);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    protected void validateLimits() {
+        if (maxUnavailable < 0 || maxSurge < 0) {
+            throw new IllegalArgumentException("maxUnavailable and maxSurge must not be negative");
+        }
+        if (maxUnavailable == 0 && maxSurge == 0) {
+            throw new IllegalArgumentException("maxUnavailable and maxSurge must not both be zero");
+        }
+    }
+
+    // Kubernetes API calls, which can be overridden to exercise the control loops without an API server
+    //-------------------------------------------------------------------------
+
+    protected PodList listPods(String namespace, Map<String, String> selector) {
+        return kubernetesClient.pods().inNamespace(namespace).withLabels(selector).list();
+    }
+
+    protected Watch watchPods(String namespace, Map<String, String> selector, Watcher<Pod> watcher) {
+        return kubernetesClient.pods().inNamespace(namespace).withLabels(selector).watch(watcher);
+    }
+
+    protected void deletePod(String namespace, String name) {
+        kubernetesClient.pods().inNamespace(namespace).withName(name).delete();
+    }
+
+    protected void replaceReplicationController(String namespace, ReplicationController replicationController) {
+        kubernetesClient.replicationControllers().inNamespace(namespace).withName(getName(replicationController)).replace(replicationController);
+    }
+
+    protected void scaleReplicationController(String namespace, String name, int replicas) {
+        kubernetesClient.replicationControllers().inNamespace(namespace).withName(name).scale(replicas);
+    }
+
+    protected CompletableFuture<RolloutProgressEvent> submit(Rollout rollout) {
+        rollouts.add(rollout.future);
+        executor.execute(rollout);
+        return rollout.future;
+    }
+
+    protected void fireProgress(RolloutProgressEvent event) {
+        LOG.info("Rollout progress: " + event);
+        for (RolloutListener listener : listeners) {
+            try {
+                listener.onRolloutProgress(event);
+            } catch (Exception e) {
+                LOG.warn("Rollout listener " + listener + " failed: " + e, e);
+            }
+        }
+    }
+
+    /**
+     * The control loop of a single rollout which is woken up by watch events or periodically to resync
+     */
+    protected abstract class Rollout implements Runnable {
+        protected final String namespace;
+        protected final String name;
+        private final CompletableFuture<RolloutProgressEvent> future = new CompletableFuture<>();
+        private final Object lock = new Object();
+        private boolean changed;
+        private RolloutProgressEvent lastEvent;
+
+        protected Rollout(String namespace, String name) {
+            this.namespace = namespace;
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            try {
+                start();
+                boolean resync = false;
+                while (true) {
+                    RolloutProgressEvent event = step(resync);
+                    if (!event.sameProgress(lastEvent)) {
+                        lastEvent = event;
+                        fireProgress(event);
+                    }
+                    if (event.isFinished()) {
+                        future.complete(event);
+                        return;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new TimeoutException("Timed out after " + timeoutMillis + " millis waiting for rollout: " + event);
+                    }
+                    resync = !awaitChange(Math.min(remaining, resyncMillis));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abort();
+                future.completeExceptionally(e);
+            } catch (Throwable e) {
+                LOG.error("Rollout of " + namespace + "/" + name + " failed: " + e, e);
+                abort();
+                future.completeExceptionally(e);
+            } finally {
+                stop();
+            }
+        }
+
+        /**
+         * Notifies the control loop that something it depends on has changed
+         */
+        protected void onChange() {
+            synchronized (lock) {
+                changed = true;
+                lock.notifyAll();
+            }
+        }
+
+        private boolean awaitChange(long timeoutMillis) throws InterruptedException {
+            synchronized (lock) {
+                if (!changed) {
+                    lock.wait(timeoutMillis);
+                }
+                boolean answer = changed;
+                changed = false;
+                return answer;
+            }
+        }
+
+        protected abstract void start();
+
+        /**
+         * Evaluates the current state of the rollout, taking any actions needed to move it forward
+         *
+         * @param resync whether the state should be reloaded from the API server rather than relying on watch events
+         */
+        protected abstract RolloutProgressEvent step(boolean resync);
+
+        protected abstract void stop();
+
+        /**
+         * Reverts any temporary change made by the rollout once it has failed or timed out
+         */
+        protected void abort() {
+        }
+    }
+
+    protected class ReplicationControllerRollout extends Rollout implements Watcher<Pod> {
+        private final ReplicationController replicationController;
+        private final Map<String, Pod> pods = new ConcurrentHashMap<>();
+        private final Set<String> oldPodNames = new HashSet<>();
+        private final Set<String> deletedPodNames = new HashSet<>();
+        private Map<String, String> selector;
+        private int desiredReplicas;
+        private int surgedReplicas;
+        private volatile Watch watch;
+
+        public ReplicationControllerRollout(String namespace, ReplicationController replicationController) {
+            super(namespace, getName(replicationController));
+            this.replicationController = replicationController;
+        }
+
+        @Override
+        protected void start() {
+            ReplicationControllerSpec spec = replicationController.getSpec();
+            Objects.notNull(spec, "No spec for ReplicationController " + namespace + "/" + name);
+            selector = spec.getSelector();
+            Objects.notNull(selector, "No selector for ReplicationController " + namespace + "/" + name);
+            Integer replicas = spec.getReplicas();
+            desiredReplicas = replicas != null ? replicas : 1;
+
+            loadPods();
+            oldPodNames.addAll(pods.keySet());
+            watchPods();
+
+            // surge only while there are old pods to replace
+            surgedReplicas = oldPodNames.isEmpty() ? desiredReplicas : desiredReplicas + maxSurge;
+            spec.setReplicas(surgedReplicas);
+            try {
+                replaceReplicationController(namespace, replicationController);
+            } finally {
+                spec.setReplicas(desiredReplicas);
+            }
+            LOG.info("Updated ReplicationController " + namespace + "/" + name + " with " + surgedReplicas
+                    + " replicas, replacing " + oldPodNames.size() + " old pods");
+        }
+
+        @Override
+        protected RolloutProgressEvent step(boolean resync) {
+            if (resync || watch == null) {
+                loadPods();
+                if (watch == null) {
+                    watchPods();
+                }
+            }
+            List<Pod> oldPods = new ArrayList<>();
+            int updated = 0;
+            int ready = 0;
+            for (Pod pod : pods.values()) {
+                String podName = getName(pod);
+                if (deletedPodNames.contains(podName) || pod.getMetadata().getDeletionTimestamp() != null) {
+                    continue;
+                }
+                if (KubernetesHelper.isPodReady(pod)) {
+                    ready++;
+                }
+                if (oldPodNames.contains(podName)) {
+                    oldPods.add(pod);
+                } else {
+                    updated++;
+                }
+            }
+            int unavailable = Math.max(0, desiredReplicas - ready);
+            boolean finished = oldPods.isEmpty() && ready >= desiredReplicas && updated >= desiredReplicas;
+            if (finished) {
+                if (surgedReplicas != desiredReplicas) {
+                    scaleReplicationController(namespace, name, desiredReplicas);
+                    surgedReplicas = desiredReplicas;
+                }
+            } else {
+                for (Pod pod : selectPodsToDelete(oldPods, ready, desiredReplicas, maxUnavailable)) {
+                    String podName = getName(pod);
+                    LOG.info("Deleting old pod " + namespace + "/" + podName + " of ReplicationController " + name);
+                    deletePod(namespace, podName);
+                    deletedPodNames.add(podName);
+                }
+            }
+            return new RolloutProgressEvent("ReplicationController", namespace, name, desiredReplicas, updated, ready,
+                    unavailable, oldPods.size(), finished);
+        }
+
+        @Override
+        protected void stop() {
+            Watch w = watch;
+            watch = null;
+            if (w != null) {
+                w.close();
+            }
+        }
+
+        @Override
+        protected void abort() {
+            if (surgedReplicas != desiredReplicas) {
+                LOG.warn("Scaling ReplicationController " + namespace + "/" + name + " back from " + surgedReplicas
+                        + " to " + desiredReplicas + " replicas as its rollout did not complete");
+                try {
+                    scaleReplicationController(namespace, name, desiredReplicas);
+                    surgedReplicas = desiredReplicas;
+                } catch (Exception e) {
+                    LOG.error("Failed to scale ReplicationController " + namespace + "/" + name + " back to "
+                            + desiredReplicas + " replicas, it is left with " + surgedReplicas + " replicas: " + e, e);
+                }
+            }
+        }
+
+        @Override
+        public void eventReceived(Action action, Pod pod) {
+            String podName = getName(pod);
+            if (podName != null) {
+                if (action == Action.DELETED) {
+                    pods.remove(podName);
+                } else {
+                    pods.put(podName, pod);
+                }
+                onChange();
+            }
+        }
+
+        @Override
+        public void onClose(KubernetesClientException cause) {
+            if (cause != null) {
+                LOG.warn("Watch of pods for ReplicationController " + namespace + "/" + name + " closed: " + cause);
+                watch = null;
+                onChange();
+            }
+        }
+
+        private void loadPods() {
+            PodList list = listPods(namespace, selector);
+            Set<String> names = new HashSet<>();
+            if (list != null) {
+                for (Pod pod : list.getItems()) {
+                    String podName = getName(pod);
+                    names.add(podName);
+                    pods.put(podName, pod);
+                }
+            }
+            pods.keySet().retainAll(names);
+        }
+
+        private void watchPods() {
+            try {
+                watch = RolloutTracker.this.watchPods(namespace, selector, this);
+            } catch (KubernetesClientException e) {
+                LOG.warn("Could not watch pods for ReplicationController " + namespace + "/" + name + " so polling instead: " + e);
+            }
+        }
+    }
+
+    protected class DeploymentRollout extends Rollout implements Watcher<Deployment> {
+        private volatile Deployment deployment;
+        private volatile Watch watch;
+
+        public DeploymentRollout(String namespace, String name) {
+            super(namespace, name);
+        }
+
+        @Override
+        protected void start() {
+            watchDeployment();
+        }
+
+        @Override
+        protected RolloutProgressEvent step(boolean resync) {
+            if (resync || deployment == null || watch == null) {
+                deployment = kubernetesClient.extensions().deployments().inNamespace(namespace).withName(name).get();
+                Objects.notNull(deployment, "No Deployment " + namespace + "/" + name);
+                if (watch == null) {
+                    watchDeployment();
+                }
+            }
+            Deployment current = deployment;
+            DeploymentSpec spec = current.getSpec();
+            DeploymentStatus status = current.getStatus();
+            int desired = spec != null && spec.getReplicas() != null ? spec.getReplicas() : 1;
+            int total = 0;
+            int updated = 0;
+            int ready = 0;
+            int available = 0;
+            int unavailable = desired;
+            boolean observed = false;
+            if (status != null) {
+                total = intValue(status.getReplicas());
+                updated = intValue(status.getUpdatedReplicas());
+                ready = intValue(status.getReadyReplicas());
+                available = intValue(status.getAvailableReplicas());
+                unavailable = intValue(status.getUnavailableReplicas());
+                Long generation = current.getMetadata().getGeneration();
+                Long observedGeneration = status.getObservedGeneration();
+                observed = generation == null || (observedGeneration != null && observedGeneration >= generation);
+            }
+            int old = Math.max(0, total - updated);
+            boolean finished = observed && updated >= desired && available >= desired && old == 0;
+            return new RolloutProgressEvent("Deployment", namespace, name, desired, updated, ready, unavailable, old, finished);
+        }
+
+        @Override
+        protected void stop() {
+            Watch w = watch;
+            watch = null;
+            if (w != null) {
+                w.close();
+            }
+        }
+
+        @Override
+        public void eventReceived(Action action, Deployment resource) {
+            if (action != Action.DELETED) {
+                deployment = resource;
+                onChange();
+            }
+        }
+
+        @Override
+        public void onClose(KubernetesClientException cause) {
+            if (cause != null) {
+                LOG.warn("Watch of Deployment " + namespace + "/" + name + " closed: " + cause);
+                watch = null;
+                onChange();
+            }
+        }
+
+        private void watchDeployment() {
+            try {
+                watch = kubernetesClient.extensions().deployments().inNamespace(namespace).withName(name).watch(this);
+            } catch (KubernetesClientException e) {
+                LOG.warn("Could not watch Deployment " + namespace + "/" + name + " so polling instead: " + e);
+            }
+        }
+
+        private int intValue(Integer value) {
+            return value != null ? value : 0;
+        }
+    }
+}
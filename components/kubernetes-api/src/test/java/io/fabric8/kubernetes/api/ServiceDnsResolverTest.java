@@ -0,0 +1,177 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ServiceDnsResolverTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final StubResolver resolver = new StubResolver(executor);
+
+    @After
+    public void tearDown() throws Exception {
+        resolver.close();
+    }
+
+    @Test
+    public void testCachesEndpointsForTtl() throws Exception {
+        assertEquals(Arrays.asList("host-1:8080"), resolver.getServiceEndpoints("foo"));
+        assertEquals(Arrays.asList("host-1:8080"), resolver.getServiceEndpoints("foo"));
+        assertEquals(1, resolver.endpointLookups.get());
+
+        resolver.getServiceEndpoints("bar");
+        assertEquals(2, resolver.endpointLookups.get());
+    }
+
+    @Test
+    public void testRefreshesInBackgroundReturningStaleValue() throws Exception {
+        assertEquals(Arrays.asList("host-1:8080"), resolver.getServiceEndpoints("foo"));
+
+        resolver.now += 10000;
+        // the stale value is returned straight away while refreshing
+        assertEquals(Arrays.asList("host-1:8080"), resolver.getServiceEndpoints("foo"));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(2, resolver.endpointLookups.get());
+        assertEquals(Arrays.asList("host-2:8080"), resolver.getServiceEndpoints("foo"));
+    }
+
+    @Test
+    public void testKeepsCachedValueWhenRefreshFails() throws Exception {
+        assertEquals(Arrays.asList("host-1:8080"), resolver.getServiceEndpoints("foo"));
+
+        resolver.failLookups = true;
+        resolver.now += 10000;
+        resolver.getServiceEndpoints("foo");
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(2, resolver.endpointLookups.get());
+        assertEquals(Arrays.asList("host-1:8080"), resolver.getServiceEndpoints("foo"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedNames() throws Exception {
+        resolver.setMaxEntries(2);
+        resolver.getServiceEndpoints("foo");
+        resolver.now++;
+        resolver.getServiceEndpoints("bar");
+        resolver.now++;
+        resolver.getServiceEndpoints("foo");
+        resolver.now++;
+        resolver.getServiceEndpoints("baz");
+        assertEquals(3, resolver.endpointLookups.get());
+
+        // bar was the least recently used so it is looked up again, unlike foo
+        resolver.getServiceEndpoints("foo");
+        assertEquals(3, resolver.endpointLookups.get());
+        resolver.getServiceEndpoints("bar");
+        assertEquals(4, resolver.endpointLookups.get());
+    }
+
+    @Test
+    public void testSslProbeTimesOutWhenPeerNeverHandshakes() throws Exception {
+        ServiceDnsResolver probingResolver = new ServiceDnsResolver(executor);
+        probingResolver.setProbeTimeoutMillis(200);
+        // the connection is accepted by the backlog but nothing ever answers the handshake
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            long start = System.currentTimeMillis();
+            assertFalse(probingResolver.resolveServiceSsl("127.0.0.1", server.getLocalPort(), true).get(10, TimeUnit.SECONDS));
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        } finally {
+            probingResolver.close();
+        }
+    }
+
+    @Test
+    public void testCachesSslProbePerHostAndPort() throws Exception {
+        assertTrue(resolver.isServiceSsl("10.0.0.1", 443, false));
+        assertTrue(resolver.isServiceSsl("10.0.0.1", 443, false));
+        assertEquals(1, resolver.sslProbes.get());
+
+        resolver.isServiceSsl("10.0.0.1", 8443, false);
+        assertEquals(2, resolver.sslProbes.get());
+    }
+
+    @Test
+    public void testResolvesFirstLookupOnExecutor() throws Exception {
+        resolver.getServiceEndpoints("foo");
+        assertTrue(resolver.lookupThread.get() != Thread.currentThread());
+    }
+
+    @Test
+    public void testResolvesIpLiteralsWithoutLookup() throws Exception {
+        assertEquals(Arrays.asList(InetAddress.getByName("10.0.0.1")), resolver.resolveHostAddresses("10.0.0.1").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testClampsTtl() throws Exception {
+        assertEquals(ServiceDnsResolver.DEFAULT_MIN_TTL_MILLIS, resolver.clampTtl(0));
+        assertEquals(30000, resolver.clampTtl(30));
+        assertEquals(ServiceDnsResolver.DEFAULT_MAX_TTL_MILLIS, resolver.clampTtl(3600));
+    }
+
+    private static class StubResolver extends ServiceDnsResolver {
+        private final AtomicInteger endpointLookups = new AtomicInteger();
+        private final AtomicInteger sslProbes = new AtomicInteger();
+        private final AtomicReference<Thread> lookupThread = new AtomicReference<>();
+        private volatile long now = 1000;
+        private volatile boolean failLookups;
+
+        public StubResolver(ExecutorService executor) {
+            super(executor);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+
+        @Override
+        protected Answer<List<String>> lookupServiceEndpoints(String serviceName) {
+            lookupThread.set(Thread.currentThread());
+            int count = endpointLookups.incrementAndGet();
+            if (failLookups) {
+                return new Answer<>(Collections.<String>emptyList(), getNegativeTtlMillis(), false);
+            }
+            return new Answer<>(Arrays.asList("host-" + count + ":8080"), clampTtl(5));
+        }
+
+        @Override
+        protected Answer<Boolean> probeServiceSsl(String host, int port, boolean trustAllCerts) {
+            sslProbes.incrementAndGet();
+            return new Answer<>(true, getSslTtlMillis());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ServiceUrlCacheTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final StubCache cache = new StubCache(executor);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Supplier<String> loader = new Supplier<String>() {
+        @Override
+        public String get() {
+            return "http://10.0.0." + loads.incrementAndGet() + ":8080";
+        }
+    };
+
+    @After
+    public void tearDown() throws Exception {
+        cache.close();
+    }
+
+    @Test
+    public void testCachesUrlPerServiceAndVariant() throws Exception {
+        assertEquals("http://10.0.0.1:8080", cache.get(null, "default", "foo", "http", loader));
+        assertEquals("http://10.0.0.1:8080", cache.get(null, "default", "foo", "http", loader));
+        assertEquals(1, loads.get());
+
+        cache.get(null, "default", "foo", "https", loader);
+        cache.get(null, "other", "foo", "http", loader);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testRefreshesAheadInBackground() throws Exception {
+        assertEquals("http://10.0.0.1:8080", cache.get(null, "default", "foo", "http", loader));
+
+        cache.now += 8000;
+        // the cached value is returned straight away while refreshing
+        assertEquals("http://10.0.0.1:8080", cache.get(null, "default", "foo", "http", loader));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(2, loads.get());
+        assertEquals("http://10.0.0.2:8080", cache.get(null, "default", "foo", "http", loader));
+    }
+
+    @Test
+    public void testReloadsExpiredUrl() throws Exception {
+        cache.setRefreshAheadFactor(1.0);
+        cache.get(null, "default", "foo", "http", loader);
+
+        cache.now += 10000;
+        assertEquals("http://10.0.0.2:8080", cache.get(null, "default", "foo", "http", loader));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        cache.get(null, "default", "foo", "http", loader);
+        cache.get(null, "default", "foo", "https", loader);
+        cache.get(null, "default", "bar", "http", loader);
+
+        cache.invalidate("default", "foo");
+        assertEquals("http://10.0.0.4:8080", cache.get(null, "default", "foo", "http", loader));
+        assertEquals("http://10.0.0.3:8080", cache.get(null, "default", "bar", "http", loader));
+
+        cache.invalidate("default");
+        cache.get(null, "default", "bar", "http", loader);
+        assertEquals(5, loads.get());
+    }
+
+    @Test
+    public void testDoesNotCacheFailures() throws Exception {
+        Supplier<String> failing = new Supplier<String>() {
+            @Override
+            public String get() {
+                loads.incrementAndGet();
+                throw new IllegalArgumentException("No kubernetes service could be found for name: foo");
+            }
+        };
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get(null, "default", "foo", "http", failing);
+                fail("Expected the failure of the loader");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        assertEquals(2, loads.get());
+    }
+
+    private static class StubCache extends ServiceUrlCache {
+        private volatile long now = 1000;
+
+        public StubCache(ExecutorService executor) {
+            super(executor);
+            setTtlMillis(10000);
+            setRefreshAheadFactor(0.75);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+}
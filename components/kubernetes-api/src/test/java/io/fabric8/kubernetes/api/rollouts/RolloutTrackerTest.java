@@ -0,0 +1,232 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.rollouts;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.IntOrString;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.ReplicationControllerBuilder;
+import io.fabric8.kubernetes.api.model.extensions.Deployment;
+import io.fabric8.kubernetes.api.model.extensions.DeploymentBuilder;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RolloutTrackerTest {
+
+    @Test
+    public void testDeletesOnlyWithinUnavailableBudget() throws Exception {
+        List<Pod> oldPods = Arrays.asList(pod("a", true), pod("b", true), pod("c", true));
+
+        // 3 ready out of 3 desired with maxUnavailable 1
+        assertEquals(1, RolloutTracker.selectPodsToDelete(oldPods, 3, 3, 1).size());
+        // a surged pod is ready too
+        assertEquals(2, RolloutTracker.selectPodsToDelete(oldPods, 4, 3, 1).size());
+        // already one short
+        assertEquals(0, RolloutTracker.selectPodsToDelete(oldPods, 2, 3, 1).size());
+    }
+
+    @Test
+    public void testAlwaysDeletesOldPodsWhichAreNotReady() throws Exception {
+        Pod notReady = pod("b", false);
+        List<Pod> oldPods = Arrays.asList(pod("a", true), notReady);
+
+        List<Pod> answer = RolloutTracker.selectPodsToDelete(oldPods, 1, 2, 1);
+        assertEquals(1, answer.size());
+        assertSame(notReady, answer.get(0));
+    }
+
+    @Test
+    public void testAppliesRollingUpdateLimitsToDeployment() throws Exception {
+        RolloutTracker tracker = new RolloutTracker(null);
+        tracker.setMaxUnavailable(0);
+        tracker.setMaxSurge(2);
+
+        Deployment deployment = new DeploymentBuilder().withNewMetadata().withName("foo").endMetadata()
+                .withNewSpec().withReplicas(3)
+                .withNewStrategy().withType("RollingUpdate").withNewRollingUpdate().withMaxSurge(new IntOrString("50%")).endRollingUpdate().endStrategy()
+                .endSpec().build();
+        tracker.applyRollingUpdateLimits(deployment);
+
+        assertEquals(Integer.valueOf(0), deployment.getSpec().getStrategy().getRollingUpdate().getMaxUnavailable().getIntVal());
+        assertEquals("50%", deployment.getSpec().getStrategy().getRollingUpdate().getMaxSurge().getStrVal());
+        tracker.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsLimitsWhichCannotProgress() throws Exception {
+        RolloutTracker tracker = new RolloutTracker(null);
+        tracker.setMaxUnavailable(0);
+        tracker.setMaxSurge(0);
+        try {
+            tracker.validateLimits();
+        } finally {
+            tracker.close();
+        }
+    }
+
+    @Test
+    public void testRollsReplicationControllerWithinLimits() throws Exception {
+        FakeCluster cluster = new FakeCluster(3, true);
+        try {
+            RolloutProgressEvent event = cluster.rollReplicationController("default", replicationController(3)).get(10, TimeUnit.SECONDS);
+
+            assertTrue(event.toString(), event.isFinished());
+            assertEquals(3, cluster.replicas);
+            assertEquals(Arrays.asList(4, 3), cluster.scaledTo);
+            for (String name : cluster.pods.keySet()) {
+                assertTrue(name, name.startsWith("new-"));
+            }
+            assertEquals(3, cluster.pods.size());
+            // never more than maxSurge extra pods nor less than maxUnavailable ready pods
+            assertEquals(4, cluster.maxPods);
+            assertTrue("min ready " + cluster.minReady, cluster.minReady >= 2);
+        } finally {
+            cluster.close();
+        }
+    }
+
+    @Test
+    public void testScalesBackWhenRolloutTimesOut() throws Exception {
+        FakeCluster cluster = new FakeCluster(3, false);
+        cluster.setTimeoutMillis(500);
+        try {
+            cluster.rollReplicationController("default", replicationController(3)).get(10, TimeUnit.SECONDS);
+            fail("Should have timed out as the new pods never become ready");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), e.getCause() instanceof TimeoutException);
+        } finally {
+            cluster.close();
+        }
+        assertEquals(Arrays.asList(4, 3), cluster.scaledTo);
+        assertEquals(3, cluster.replicas);
+        assertEquals(3, cluster.pods.size());
+    }
+
+    private static ReplicationController replicationController(int replicas) {
+        return new ReplicationControllerBuilder().withNewMetadata().withName("foo").endMetadata()
+                .withNewSpec().withReplicas(replicas).withSelector(Collections.singletonMap("app", "foo")).endSpec().build();
+    }
+
+    /**
+     * Simulates the ReplicationController manager of Kubernetes, creating or deleting pods to match the replica count
+     */
+    private static class FakeCluster extends RolloutTracker {
+        private final Map<String, Pod> pods = new LinkedHashMap<>();
+        private final List<Integer> scaledTo = new ArrayList<>();
+        private final boolean newPodsReady;
+        private int replicas;
+        private int created;
+        private boolean updated;
+        private int maxPods;
+        private int minReady;
+
+        FakeCluster(int replicas, boolean newPodsReady) {
+            super(null);
+            this.newPodsReady = newPodsReady;
+            this.replicas = replicas;
+            setResyncMillis(10);
+            reconcile();
+            maxPods = replicas;
+            minReady = replicas;
+        }
+
+        @Override
+        protected synchronized PodList listPods(String namespace, Map<String, String> selector) {
+            PodList list = new PodList();
+            list.setItems(new ArrayList<>(pods.values()));
+            return list;
+        }
+
+        @Override
+        protected Watch watchPods(String namespace, Map<String, String> selector, Watcher<Pod> watcher) {
+            // no watch so the rollout polls
+            return null;
+        }
+
+        @Override
+        protected synchronized void deletePod(String namespace, String name) {
+            pods.remove(name);
+            record();
+            reconcile();
+        }
+
+        @Override
+        protected synchronized void replaceReplicationController(String namespace, ReplicationController replicationController) {
+            updated = true;
+            scale(replicationController.getSpec().getReplicas());
+        }
+
+        @Override
+        protected synchronized void scaleReplicationController(String namespace, String name, int replicas) {
+            scale(replicas);
+        }
+
+        private void scale(int replicas) {
+            this.replicas = replicas;
+            scaledTo.add(replicas);
+            reconcile();
+        }
+
+        private void reconcile() {
+            while (pods.size() < replicas) {
+                String name = (updated ? "new-" : "old-") + created++;
+                pods.put(name, pod(name, !updated || newPodsReady));
+            }
+            List<String> names = new ArrayList<>(pods.keySet());
+            for (int i = names.size() - 1; pods.size() > replicas; i--) {
+                pods.remove(names.get(i));
+            }
+            record();
+        }
+
+        private void record() {
+            int ready = 0;
+            for (Pod pod : pods.values()) {
+                if (KubernetesHelper.isPodReady(pod)) {
+                    ready++;
+                }
+            }
+            maxPods = Math.max(maxPods, pods.size());
+            minReady = Math.min(minReady, ready);
+        }
+    }
+
+    private static Pod pod(String name, boolean ready) {
+        return new PodBuilder().withNewMetadata().withName(name).endMetadata()
+                .withNewStatus().withPhase("Running")
+                .addNewCondition().withType("Ready").withStatus(Boolean.toString(ready)).endCondition()
+                .endStatus().build();
+    }
+}